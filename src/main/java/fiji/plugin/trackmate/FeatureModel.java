@@ -8,8 +8,10 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 
+import fiji.plugin.trackmate.features.FeatureIndex;
 import fiji.plugin.trackmate.features.edges.EdgeTargetAnalyzer;
 import fiji.plugin.trackmate.features.track.TrackIndexAnalyzer;
+import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings.TrackMateObject;
 
 /**
  * This class represents the part of the {@link Model} that is in charge of
@@ -132,6 +134,7 @@ public class FeatureModel
 			edgeFeatureValues.put( edge, map );
 		}
 		map.put( feature, value );
+		invalidate( TrackMateObject.EDGES, feature );
 	}
 
 	public Double getEdgeFeature( final DefaultWeightedEdge edge, final String featureName )
@@ -156,6 +159,7 @@ public class FeatureModel
 		if ( null == map )
 			return;
 		map.remove( feature );
+		invalidate( TrackMateObject.EDGES, feature );
 	}
 
 	/**
@@ -384,6 +388,7 @@ public class FeatureModel
 			trackFeatureValues.put( trackID, trackFeatureMap );
 		}
 		trackFeatureMap.put( feature, value );
+		invalidate( TrackMateObject.TRACKS, feature );
 	}
 
 	/**
@@ -401,6 +406,7 @@ public class FeatureModel
 		if ( null == map )
 			return;
 		map.remove( feature );
+		invalidate( TrackMateObject.TRACKS, feature );
 	}
 
 	/**
@@ -453,8 +459,8 @@ public class FeatureModel
 	}
 
 	/*
-	 * SPOT FEATURES the spot features are stored in the Spot object themselves,
-	 * but we declare them here.
+	 * SPOT FEATURES the spot features are stored in the Spot object themselves
+	 * (or in the columnar SpotFeatureStore), but we declare them here.
 	 */
 
 	/**
@@ -478,6 +484,12 @@ public class FeatureModel
 	public void declareSpotFeatures( final Collection< String > features, final Map< String, String > featureNames, final Map< String, String > featureShortNames, final Map< String, Dimension > featureDimensions, final Map< String, Boolean > isIntFeature )
 	{
 		spotFeatures.addAll( features );
+		// Intern the feature keys in the columnar store, if any.
+		final SpotFeatureStore store = SpotFeatureStore.getInstance();
+		if ( null != store )
+			for ( final String feature : features )
+				store.intern( feature );
+
 		for ( final String feature : features )
 		{
 
@@ -615,6 +627,17 @@ public class FeatureModel
 		return str.toString();
 	}
 
+	/**
+	 * Discards the cached values of the specified feature in the feature index
+	 * of the model, if it is already built.
+	 */
+	private void invalidate( final TrackMateObject target, final String feature )
+	{
+		final FeatureIndex featureIndex = model.getFeatureIndex();
+		if ( null != featureIndex )
+			featureIndex.invalidate( target, feature );
+	}
+
 	/*
 	 * STATIC UTILS
 	 */
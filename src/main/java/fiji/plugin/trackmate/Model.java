@@ -1,14 +1,17 @@
 package fiji.plugin.trackmate;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.jgrapht.graph.SimpleWeightedGraph;
 
 import fiji.plugin.trackmate.features.FeatureFilter;
+import fiji.plugin.trackmate.features.FeatureIndex;
 
 /**
  * <h1>The model for the data managed by TrackMate trackmate.</h1>
@@ -48,6 +51,11 @@ public class Model
 	/** The spots managed by this model. */
 	protected SpotCollection spots = new SpotCollection();
 
+	// FEATURE VALUES
+
+	/** The cache of feature values, invalidated by model changes. */
+	private final FeatureIndex featureIndex;
+
 	// TRANSACTION MODEL
 
 	/**
@@ -99,6 +107,13 @@ public class Model
 	 */
 	Set< ModelChangeListener > modelChangeListeners = new LinkedHashSet< >();
 
+	/**
+	 * Delivers events to the listeners that do not need to be notified
+	 * synchronously. <code>null</code> if all listeners are notified
+	 * synchronously.
+	 */
+	private ModelChangeDispatcher dispatcher;
+
 	/*
 	 * CONSTRUCTOR
 	 */
@@ -107,6 +122,7 @@ public class Model
 	{
 		featureModel = createFeatureModel();
 		trackModel = createTrackModel();
+		featureIndex = new FeatureIndex( this );
 	}
 
 	/*
@@ -212,6 +228,91 @@ public class Model
 		return modelChangeListeners;
 	}
 
+	/**
+	 * Sets whether this model notifies some of its listeners asynchronously.
+	 * <p>
+	 * By default, all the listeners are notified on the thread that modified
+	 * the model, before the modification method returns. In asynchronous
+	 * mode, listeners that declare they do not need synchronous notification
+	 * (see {@link ModelChangeListener#isSynchronous()}) are notified on a
+	 * dedicated thread instead. Consecutive
+	 * {@link ModelChangeEvent#MODEL_MODIFIED} events that wait for delivery
+	 * are merged into one, so that these listeners, typically views, do not
+	 * refresh after every transaction of a long series of edits.
+	 * <p>
+	 * Switching back to synchronous mode delivers pending events before
+	 * stopping the delivery thread.
+	 *
+	 * @param asynchronous
+	 *            whether to notify listeners asynchronously.
+	 */
+	public synchronized void setAsynchronousDispatch( final boolean asynchronous )
+	{
+		if ( asynchronous && null == dispatcher )
+		{
+			dispatcher = new ModelChangeDispatcher( this::getLogger );
+		}
+		else if ( !asynchronous && null != dispatcher )
+		{
+			dispatcher.shutdown();
+			dispatcher = null;
+		}
+	}
+
+	/**
+	 * Returns whether this model notifies some of its listeners
+	 * asynchronously.
+	 *
+	 * @return <code>true</code> if this model is in asynchronous mode.
+	 * @see #setAsynchronousDispatch(boolean)
+	 */
+	public boolean isAsynchronousDispatch()
+	{
+		return null != dispatcher;
+	}
+
+	/**
+	 * Blocks until the listeners notified asynchronously have received all
+	 * the events fired so far. Returns immediately if this model is not in
+	 * asynchronous mode.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting.
+	 * @see #setAsynchronousDispatch(boolean)
+	 */
+	public void awaitDispatch() throws InterruptedException
+	{
+		final ModelChangeDispatcher d = dispatcher;
+		if ( null != d )
+			d.await();
+	}
+
+	/**
+	 * Notifies the listeners of this model with the specified event. In
+	 * asynchronous mode, only the listeners that require it are notified
+	 * directly, the others are notified by the dispatcher.
+	 */
+	private void fireModelChanged( final ModelChangeEvent event )
+	{
+		final ModelChangeDispatcher d = dispatcher;
+		if ( null == d )
+		{
+			for ( final ModelChangeListener listener : modelChangeListeners )
+				listener.modelChanged( event );
+			return;
+		}
+
+		final List< ModelChangeListener > asynchronous = new ArrayList< >();
+		for ( final ModelChangeListener listener : modelChangeListeners )
+		{
+			if ( listener.isSynchronous() )
+				listener.modelChanged( event );
+			else
+				asynchronous.add( listener );
+		}
+		d.dispatch( event, asynchronous );
+	}
+
 	/*
 	 * PHYSICAL UNITS
 	 */
@@ -288,12 +389,10 @@ public class Model
 	public void clearTracks( final boolean doNotify )
 	{
 		trackModel.clear();
+		final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.TRACKS_COMPUTED );
+		featureIndex.modelChanged( event );
 		if ( doNotify )
-		{
-			final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.TRACKS_COMPUTED );
-			for ( final ModelChangeListener listener : modelChangeListeners )
-				listener.modelChanged( event );
-		}
+			fireModelChanged( event );
 	}
 
 	/**
@@ -306,6 +405,28 @@ public class Model
 		return trackModel;
 	}
 
+	/**
+	 * Returns an immutable snapshot of the tracks of this model.
+	 * <p>
+	 * The snapshot can be iterated without holding a lock on this model, even
+	 * while it is being edited. Successive calls return the same instance as
+	 * long as the tracks are not modified, and only the tracks that changed are
+	 * copied when a new snapshot is taken.
+	 *
+	 * @return a snapshot of the tracks.
+	 */
+	public TrackSnapshot getTrackSnapshot()
+	{
+		final TrackSnapshot snapshot = trackModel.currentSnapshot();
+		if ( null != snapshot )
+			return snapshot;
+
+		synchronized ( this )
+		{
+			return trackModel.snapshot();
+		}
+	}
+
 	/**
 	 * Sets the tracks stored in this model in bulk.
 	 * <p>
@@ -323,12 +444,66 @@ public class Model
 	public void setTracks( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph, final boolean doNotify )
 	{
 		trackModel.setGraph( graph );
+		final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.TRACKS_COMPUTED );
+		featureIndex.modelChanged( event );
 		if ( doNotify )
+			fireModelChanged( event );
+	}
+
+	/**
+	 * Sets the tracks stored in this model in bulk, from arrays of links.
+	 * <p>
+	 * Link <code>i</code> connects the spots with IDs
+	 * <code>sourceIDs[i]</code> and <code>targetIDs[i]</code>, with the weight
+	 * <code>weights[i]</code>. All spots must belong to this model. The tracks
+	 * of this model are cleared and replaced by the tracks these links form,
+	 * which are made visible and given a default name.
+	 * <p>
+	 * This is much faster than adding links one by one with
+	 * {@link #addEdge(Spot, Spot, double)}, for the links are added to the
+	 * graph and merged into tracks in one pass, without an intermediate
+	 * graph, and listeners receive a single
+	 * {@link ModelChangeEvent#TRACKS_COMPUTED} event.
+	 *
+	 * @param sourceIDs
+	 *            the IDs of the link source spots.
+	 * @param targetIDs
+	 *            the IDs of the link target spots.
+	 * @param weights
+	 *            the link weights.
+	 * @param doNotify
+	 *            if <code>true</code>, model listeners will be notified with a
+	 *            {@link ModelChangeEvent#TRACKS_COMPUTED} event.
+	 * @throws IllegalArgumentException
+	 *             if the arrays do not have the same length, if a spot ID is
+	 *             not found in this model, or if a link connects a spot to
+	 *             itself or is specified twice.
+	 */
+	public void setTracks( final int[] sourceIDs, final int[] targetIDs, final double[] weights, final boolean doNotify )
+	{
+		if ( sourceIDs.length != targetIDs.length || sourceIDs.length != weights.length )
+			throw new IllegalArgumentException( "Link arrays do not have the same length: "
+					+ sourceIDs.length + ", " + targetIDs.length + " and " + weights.length + "." );
+
+		final Spot[] sources = new Spot[ sourceIDs.length ];
+		final Spot[] targets = new Spot[ targetIDs.length ];
+		for ( int i = 0; i < sourceIDs.length; i++ )
 		{
-			final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.TRACKS_COMPUTED );
-			for ( final ModelChangeListener listener : modelChangeListeners )
-				listener.modelChanged( event );
+			sources[ i ] = spots.search( sourceIDs[ i ] );
+			if ( null == sources[ i ] )
+				throw new IllegalArgumentException( "Unknown spot ID: " + sourceIDs[ i ] + "." );
+			targets[ i ] = spots.search( targetIDs[ i ] );
+			if ( null == targets[ i ] )
+				throw new IllegalArgumentException( "Unknown spot ID: " + targetIDs[ i ] + "." );
+			if ( sources[ i ] == targets[ i ] )
+				throw new IllegalArgumentException( "Cannot link spot " + sources[ i ] + " to itself." );
 		}
+
+		trackModel.setLinks( spots.iterable( false ), spots.getNSpots( false ), sources, targets, weights );
+		final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.TRACKS_COMPUTED );
+		featureIndex.modelChanged( event );
+		if ( doNotify )
+			fireModelChanged( event );
 	}
 
 	/*
@@ -345,6 +520,22 @@ public class Model
 		return spots;
 	}
 
+	/**
+	 * Returns the spot of this model with the specified ID, or
+	 * <code>null</code> if this model does not contain such a spot. The lookup
+	 * runs in constant time, which makes it the method of choice to retrieve
+	 * spots by ID in scripts.
+	 *
+	 * @param ID
+	 *            the ID of the spot to retrieve.
+	 * @return the spot, or <code>null</code>.
+	 * @see SpotCollection#search(int)
+	 */
+	public Spot getSpot( final int ID )
+	{
+		return spots.search( ID );
+	}
+
 	/**
 	 * Removes all the spots from this model.
 	 *
@@ -355,12 +546,10 @@ public class Model
 	public void clearSpots( final boolean doNotify )
 	{
 		spots.clear();
+		final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.SPOTS_COMPUTED );
+		featureIndex.modelChanged( event );
 		if ( doNotify )
-		{
-			final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.SPOTS_COMPUTED );
-			for ( final ModelChangeListener listener : modelChangeListeners )
-				listener.modelChanged( event );
-		}
+			fireModelChanged( event );
 	}
 
 	/**
@@ -375,12 +564,10 @@ public class Model
 	public void setSpots( final SpotCollection spots, final boolean doNotify )
 	{
 		this.spots = spots;
+		final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.SPOTS_COMPUTED );
+		featureIndex.modelChanged( event );
 		if ( doNotify )
-		{
-			final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.SPOTS_COMPUTED );
-			for ( final ModelChangeListener listener : modelChangeListeners )
-				listener.modelChanged( event );
-		}
+			fireModelChanged( event );
 	}
 
 	/**
@@ -396,13 +583,10 @@ public class Model
 	public void filterSpots( final Collection< FeatureFilter > spotFilters, final boolean doNotify )
 	{
 		spots.filter( spotFilters );
+		final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.SPOTS_FILTERED );
+		featureIndex.modelChanged( event );
 		if ( doNotify )
-		{
-			final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.SPOTS_FILTERED );
-			for ( final ModelChangeListener listener : modelChangeListeners )
-				listener.modelChanged( event );
-		}
-
+			fireModelChanged( event );
 	}
 
 	/**
@@ -413,8 +597,8 @@ public class Model
 	public void notifyFeaturesComputed()
 	{
 		final ModelChangeEvent event = new ModelChangeEvent( this, ModelChangeEvent.FEATURES_COMPUTED );
-		for ( final ModelChangeListener listener : modelChangeListeners )
-			listener.modelChanged( event );
+		featureIndex.modelChanged( event );
+		fireModelChanged( event );
 	}
 
 	/*
@@ -452,6 +636,18 @@ public class Model
 		return featureModel;
 	}
 
+	/**
+	 * Returns the index of the feature values of this model. It caches the
+	 * sorted values, min, max and histograms of spot, edge and track features,
+	 * and is kept up to date by this model.
+	 *
+	 * @return the feature index.
+	 */
+	public FeatureIndex getFeatureIndex()
+	{
+		return featureIndex;
+	}
+
 	/*
 	 * MODEL CHANGE METHODS
 	 */
@@ -604,6 +800,10 @@ public class Model
 	{
 		spotsUpdated.add( spotToUpdate ); // Enlist for feature update when
 											// transaction is marked as finished
+		// The spot might have moved.
+		final Double frame = spotToUpdate.getFeature( Spot.FRAME );
+		if ( null != frame )
+			spots.invalidateIndices( frame.intValue() );
 		final Set< DefaultWeightedEdge > touchingEdges = trackModel.edgesOf( spotToUpdate );
 		if ( null != touchingEdges )
 		{
@@ -839,16 +1039,14 @@ public class Model
 		{
 			if ( nEdgesToSignal + nSpotsToSignal > 0 )
 			{
+				featureIndex.modelChanged( event );
 				if ( DEBUG )
 				{
 					System.out.println( "[TrackMateModel] #flushUpdate(): firing model modified event" );
 					System.out.println( "[TrackMateModel] to " + modelChangeListeners );
 
 				}
-				for ( final ModelChangeListener listener : modelChangeListeners )
-				{
-					listener.modelChanged( event );
-				}
+				fireModelChanged( event );
 			}
 
 			// Fire events stored in the event cache
@@ -859,10 +1057,8 @@ public class Model
 					System.out.println( "[TrackMateModel] #flushUpdate(): firing event with ID " + eventID );
 				}
 				final ModelChangeEvent cachedEvent = new ModelChangeEvent( this, eventID );
-				for ( final ModelChangeListener listener : modelChangeListeners )
-				{
-					listener.modelChanged( cachedEvent );
-				}
+				featureIndex.modelChanged( cachedEvent );
+				fireModelChanged( cachedEvent );
 			}
 
 		}
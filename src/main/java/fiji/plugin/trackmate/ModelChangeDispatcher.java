@@ -0,0 +1,161 @@
+package fiji.plugin.trackmate;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Delivers {@link ModelChangeEvent}s to listeners on a dedicated thread, in
+ * the order they were fired.
+ * <p>
+ * Events waiting for delivery are queued. When a
+ * {@link ModelChangeEvent#MODEL_MODIFIED} event is fired while the last
+ * queued event is also a {@link ModelChangeEvent#MODEL_MODIFIED} event for
+ * the same listeners, the two are merged, so that a burst of edits results in
+ * a single notification. Other events are only dropped if they repeat the
+ * last queued event.
+ * <p>
+ * An exception thrown by a listener does not prevent the others from being
+ * notified. It is reported to the logger of the model.
+ */
+class ModelChangeDispatcher
+{
+
+	private final ArrayDeque< Delivery > queue = new ArrayDeque<>();
+
+	private final Supplier< Logger > logger;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor( r -> {
+		final Thread thread = new Thread( r, "TrackMate model change dispatcher" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	/**
+	 * Creates a new dispatcher.
+	 *
+	 * @param logger
+	 *            supplies the logger to which exceptions thrown by listeners
+	 *            are reported.
+	 */
+	ModelChangeDispatcher( final Supplier< Logger > logger )
+	{
+		this.logger = logger;
+	}
+
+	/**
+	 * Queues the specified event for delivery to the specified listeners.
+	 *
+	 * @param event
+	 *            the event. It is not modified, and
+	 *            {@link ModelChangeEvent#MODEL_MODIFIED} events are copied.
+	 * @param listeners
+	 *            the listeners to notify. The list must not be modified
+	 *            afterwards.
+	 */
+	void dispatch( final ModelChangeEvent event, final List< ModelChangeListener > listeners )
+	{
+		if ( listeners.isEmpty() )
+			return;
+
+		synchronized ( queue )
+		{
+			final Delivery last = queue.peekLast();
+			if ( null != last && last.listeners.equals( listeners ) && last.event.getEventID() == event.getEventID() )
+			{
+				if ( event.getEventID() == ModelChangeEvent.MODEL_MODIFIED )
+					last.event.append( event );
+				// Otherwise the listeners have not been notified of the
+				// last one yet, and will see the same model.
+				return;
+			}
+
+			final ModelChangeEvent copy;
+			if ( event.getEventID() == ModelChangeEvent.MODEL_MODIFIED )
+			{
+				copy = new ModelChangeEvent( event.getSource(), ModelChangeEvent.MODEL_MODIFIED );
+				copy.append( event );
+			}
+			else
+			{
+				copy = event;
+			}
+			queue.add( new Delivery( copy, listeners ) );
+		}
+		executor.execute( this::deliverNext );
+	}
+
+	/**
+	 * Blocks until all the events queued so far have been delivered.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting.
+	 */
+	void await() throws InterruptedException
+	{
+		try
+		{
+			executor.submit( () -> {} ).get();
+		}
+		catch ( final ExecutionException e )
+		{
+			// Cannot happen with an empty task.
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Delivers the queued events, then stops the delivery thread.
+	 */
+	void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	private void deliverNext()
+	{
+		final Delivery delivery;
+		synchronized ( queue )
+		{
+			delivery = queue.poll();
+		}
+		if ( null == delivery )
+			return;
+
+		for ( final ModelChangeListener listener : delivery.listeners )
+		{
+			try
+			{
+				listener.modelChanged( delivery.event );
+			}
+			catch ( final RuntimeException e )
+			{
+				// Do not let a faulty listener prevent others to be notified.
+				final StringWriter trace = new StringWriter();
+				e.printStackTrace( new PrintWriter( trace ) );
+				logger.get().error( "Model change listener " + listener
+						+ " failed to process event " + delivery.event.getEventID()
+						+ ":\n" + trace + '\n' );
+			}
+		}
+	}
+
+	private static final class Delivery
+	{
+
+		private final ModelChangeEvent event;
+
+		private final List< ModelChangeListener > listeners;
+
+		private Delivery( final ModelChangeEvent event, final List< ModelChangeListener > listeners )
+		{
+			this.event = event;
+			this.listeners = listeners;
+		}
+	}
+}
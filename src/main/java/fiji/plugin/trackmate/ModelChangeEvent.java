@@ -238,6 +238,108 @@ public class ModelChangeEvent extends EventObject {
 		return str.toString();
 	}
 
+	/**
+	 * Merges a later {@link #MODEL_MODIFIED} event into this one, so that this
+	 * event describes the net changes of both. The spot and edge flags are
+	 * resolved: for instance, a spot added then modified is flagged as added,
+	 * and a spot added then removed is not part of the merged event anymore.
+	 * The sets of tracks to update are unioned.
+	 * 
+	 * @param next
+	 *            the event that happened after this one.
+	 */
+	void append(final ModelChangeEvent next) {
+		for (final Spot spot : next.spots) {
+			if (spots.add(spot)) {
+				putIfNotNull(spotFlags, spot, next.spotFlags.get(spot));
+				putIfNotNull(fromFrame, spot, next.fromFrame.get(spot));
+				putIfNotNull(toFrame, spot, next.toFrame.get(spot));
+				continue;
+			}
+			final Integer flag = mergeSpotFlags(spotFlags.get(spot), next.spotFlags.get(spot));
+			if (null == flag) {
+				// Added then removed: forget it.
+				spots.remove(spot);
+				spotFlags.remove(spot);
+				fromFrame.remove(spot);
+				toFrame.remove(spot);
+				continue;
+			}
+			spotFlags.put(spot, flag);
+			putIfNotNull(toFrame, spot, next.toFrame.get(spot));
+		}
+
+		for (final DefaultWeightedEdge edge : next.edges) {
+			if (edges.add(edge)) {
+				putIfNotNull(edgeFlags, edge, next.edgeFlags.get(edge));
+				continue;
+			}
+			final Integer flag = mergeEdgeFlags(edgeFlags.get(edge), next.edgeFlags.get(edge));
+			if (null == flag) {
+				edges.remove(edge);
+				edgeFlags.remove(edge);
+				continue;
+			}
+			edgeFlags.put(edge, flag);
+		}
+
+		if (null != next.trackUpdated) {
+			if (null == trackUpdated)
+				trackUpdated = new HashSet<>();
+			trackUpdated.addAll(next.trackUpdated);
+		}
+	}
+
+	private static <K> void putIfNotNull(final Map<K, Integer> map, final K key, final Integer value) {
+		if (null != value)
+			map.put(key, value);
+	}
+
+	/**
+	 * Returns the flag of a spot flagged with <code>previous</code> then with
+	 * <code>next</code>, or <code>null</code> if the two cancel out.
+	 */
+	private static Integer mergeSpotFlags(final Integer previous, final Integer next) {
+		if (null == previous)
+			return next;
+		if (null == next)
+			return previous;
+
+		switch (previous) {
+		case FLAG_SPOT_ADDED:
+			return (next == FLAG_SPOT_REMOVED) ? null : previous;
+		case FLAG_SPOT_REMOVED:
+			// Removed then added back, possibly in another frame.
+			return (next == FLAG_SPOT_REMOVED) ? previous : Integer.valueOf(FLAG_SPOT_FRAME_CHANGED);
+		case FLAG_SPOT_FRAME_CHANGED:
+			return (next == FLAG_SPOT_REMOVED) ? next : previous;
+		case FLAG_SPOT_MODIFIED:
+		default:
+			return next;
+		}
+	}
+
+	/**
+	 * Returns the flag of an edge flagged with <code>previous</code> then with
+	 * <code>next</code>, or <code>null</code> if the two cancel out.
+	 */
+	private static Integer mergeEdgeFlags(final Integer previous, final Integer next) {
+		if (null == previous)
+			return next;
+		if (null == next)
+			return previous;
+
+		switch (previous) {
+		case FLAG_EDGE_ADDED:
+			return (next == FLAG_EDGE_REMOVED) ? null : previous;
+		case FLAG_EDGE_REMOVED:
+			return (next == FLAG_EDGE_REMOVED) ? previous : Integer.valueOf(FLAG_EDGE_MODIFIED);
+		case FLAG_EDGE_MODIFIED:
+		default:
+			return next;
+		}
+	}
+
 	public void setTracksUpdated(final Set<Integer> tracksToUpdate) {
 		this.trackUpdated = tracksToUpdate;
 	}
@@ -17,5 +17,24 @@ public interface ModelChangeListener extends EventListener {
 	 *            the {@link ModelChangeEvent}.
 	 */
 	public void modelChanged(final ModelChangeEvent event);
-	
+
+	/**
+	 * Returns whether this listener must be notified on the thread that
+	 * modified the model, before the modification returns. This is the
+	 * default.
+	 * <p>
+	 * Listeners that only refresh a view from the model content can return
+	 * <code>false</code>. When the model dispatches events asynchronously (see
+	 * {@link Model#setAsynchronousDispatch(boolean)}), they are then notified
+	 * on a dedicated thread, and consecutive
+	 * {@link ModelChangeEvent#MODEL_MODIFIED} events are merged before they
+	 * receive them.
+	 * 
+	 * @return <code>true</code> if this listener must be notified
+	 *         synchronously.
+	 */
+	public default boolean isSynchronous() {
+		return true;
+	}
+
 }
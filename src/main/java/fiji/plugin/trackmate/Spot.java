@@ -30,6 +30,10 @@ import net.imglib2.util.Util;
  * Each spot received at creation a unique ID (as an <code>int</code>), used
  * later for saving, retrieving and loading. Interfering with this value will
  * predictively cause undesired behavior.
+ * <p>
+ * If the {@link SpotFeatureStore} is enabled when the spot is created, its
+ * features are stored in the columnar store rather than in a map owned by the
+ * spot. The feature methods of this class are then a facade over the store.
  *
  * @author Jean-Yves Tinevez &lt;jeanyves.tinevez@gmail.com&gt; 2010, 2013
  *
@@ -43,8 +47,20 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 
 	public static AtomicInteger IDcounter = new AtomicInteger( -1 );
 
-	/** Store the individual features, and their values. */
-	private final ConcurrentHashMap< String, Double > features = new ConcurrentHashMap< >();
+	/**
+	 * Store the individual features, and their values. Is <code>null</code> if
+	 * the features of this spot are stored in a {@link SpotFeatureStore}.
+	 */
+	private final ConcurrentHashMap< String, Double > features;
+
+	/**
+	 * The columnar store that holds the features of this spot, or
+	 * <code>null</code> if they are stored in the {@link #features} map.
+	 */
+	private final SpotFeatureStore store;
+
+	/** The index of this spot in the columnar {@link #store}. */
+	private final int index;
 
 	/** A user-supplied name for this spot. */
 	private String name;
@@ -83,6 +99,9 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 	{
 		super( 3 );
 		this.ID = IDcounter.incrementAndGet();
+		this.store = SpotFeatureStore.getInstance();
+		this.features = ( null == store ) ? new ConcurrentHashMap<>() : null;
+		this.index = ( null == store ) ? -1 : store.register( this );
 		putFeature( POSITION_X, Double.valueOf( x ) );
 		putFeature( POSITION_Y, Double.valueOf( y ) );
 		putFeature( POSITION_Z, Double.valueOf( z ) );
@@ -178,6 +197,9 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 	{
 		super( 3 );
 		this.ID = ID;
+		this.store = SpotFeatureStore.getInstance();
+		this.features = ( null == store ) ? new ConcurrentHashMap<>() : null;
+		this.index = ( null == store ) ? -1 : store.register( this );
 		synchronized ( IDcounter )
 		{
 			if ( IDcounter.get() < ID )
@@ -285,16 +307,17 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 		s.append( "Position: " + Util.printCoordinates( coordinates ) + "\n" );
 
 		// Feature list
-		if ( null == features || features.size() < 1 )
+		final Map< String, Double > map = getFeatures();
+		if ( map.size() < 1 )
 			s.append( "No features calculated\n" );
 		else
 		{
 			s.append( "Feature list:\n" );
 			double val;
-			for ( final String key : features.keySet() )
+			for ( final String key : map.keySet() )
 			{
 				s.append( "\t" + key.toString() + ": " );
-				val = features.get( key );
+				val = map.get( key );
 				if ( val >= 1e4 )
 					s.append( String.format( "%.1g", val ) );
 				else
@@ -311,13 +334,16 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 
 	/**
 	 * Exposes the storage map of features for this spot. Altering the returned
-	 * map will alter the spot.
+	 * map will alter the spot. If the features of this spot are stored in a
+	 * {@link SpotFeatureStore}, a map view over the store is returned.
 	 *
 	 * @return a map of {@link String}s to {@link Double}s.
 	 */
 	public Map< String, Double > getFeatures()
 	{
-		return features;
+		if ( null == store )
+			return features;
+		return store.asMap( this, index );
 	}
 
 	/**
@@ -330,7 +356,9 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 	 */
 	public Double getFeature( final String feature )
 	{
-		return features.get( feature );
+		if ( null == store )
+			return features.get( feature );
+		return store.get( index, feature );
 	}
 
 	/**
@@ -344,7 +372,10 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 	 */
 	public void putFeature( final String feature, final Double value )
 	{
-		features.put( feature, value );
+		if ( null == store )
+			features.put( feature, value );
+		else
+			store.put( index, feature, value.doubleValue() );
 	}
 
 	/**
@@ -363,7 +394,7 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 	 */
 	public double diffTo( final Spot s, final String feature )
 	{
-		final double f1 = features.get( feature ).doubleValue();
+		final double f1 = getFeature( feature ).doubleValue();
 		final double f2 = s.getFeature( feature ).doubleValue();
 		return f1 - f2;
 	}
@@ -391,7 +422,7 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 	 */
 	public double normalizeDiffTo( final Spot s, final String feature )
 	{
-		final double a = features.get( feature ).doubleValue();
+		final double a = getFeature( feature ).doubleValue();
 		final double b = s.getFeature( feature ).doubleValue();
 		if ( a == -b )
 			return 0d;
@@ -542,7 +573,10 @@ public class Spot extends AbstractEuclideanSpace implements RealLocalizable, Com
 	@Override
 	public double getDoublePosition( final int d )
 	{
-		return getFeature( POSITION_FEATURES[ d ] );
+		if ( null == store )
+			return getFeature( POSITION_FEATURES[ d ] );
+		// Position features are interned to slots 0, 1 & 2.
+		return store.getDouble( d, index );
 	}
 
 	/*
@@ -1,19 +1,28 @@
 package fiji.plugin.trackmate;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import fiji.plugin.trackmate.features.FeatureFilter;
+import fiji.plugin.trackmate.util.SortedArrays;
+import fiji.plugin.trackmate.util.SpotSpatialIndex;
 import net.imglib2.algorithm.MultiThreaded;
 
 /**
@@ -23,6 +32,12 @@ import net.imglib2.algorithm.MultiThreaded;
  * Internally we rely on ConcurrentSkipListMap to allow concurrent access
  * without clashes.
  * <p>
+ * The visibility of spots is stored frame by frame in a {@link BitSet}. The
+ * {@link #VISIBILITY} feature of each spot is kept as a mirror of it, so that
+ * it can be saved and displayed, but it is not read by this class. Use
+ * {@link #setVisible(Spot, boolean)} and {@link #isVisible(Spot)} to change
+ * and query the visibility of a single spot.
+ * <p>
  * This class is {@link MultiThreaded}. There are a few processes that can
  * benefit from multithreaded computation ({@link #filter(Collection)},
  * {@link #filter(FeatureFilter)}
@@ -51,7 +66,24 @@ public class SpotCollection implements MultiThreaded
 	private static final long TIME_OUT_DELAY = 1;
 
 	/** The frame by frame list of spot this object wrap. */
-	private ConcurrentSkipListMap< Integer, Set< Spot > > content = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap< Integer, FrameContent > content = new ConcurrentSkipListMap<>();
+
+	/** Index of the spots of this collection by their ID. */
+	private final ConcurrentHashMap< Integer, Spot > idIndex = new ConcurrentHashMap<>();
+
+	/**
+	 * Per-frame spatial indices, built lazily and discarded when the content
+	 * of a frame changes.
+	 */
+	private final ConcurrentHashMap< Integer, SpotSpatialIndex > spatialIndices = new ConcurrentHashMap<>();
+
+	/**
+	 * The filters used in the last call to {@link #filter(Collection)}, or
+	 * <code>null</code> if the visibility was set otherwise since.
+	 */
+	private volatile List< FeatureFilter > lastFilters;
+
+	private final Predicate< Spot > visible = this::isVisible;
 
 	private int numThreads;
 
@@ -75,6 +107,9 @@ public class SpotCollection implements MultiThreaded
 	 * Retrieves and returns the {@link Spot} object in this collection with the
 	 * specified ID. Returns <code>null</code> if the spot cannot be found. All
 	 * spots, visible or not, are searched for.
+	 * <p>
+	 * The lookup uses an ID index maintained by this collection, and runs in
+	 * constant time.
 	 *
 	 * @param ID
 	 *            the ID to look for.
@@ -83,15 +118,7 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public Spot search( final int ID )
 	{
-		/*
-		 * Having a map id -> spot would be better, but we don't have a big need
-		 * for this.
-		 */
-		for ( final Spot spot : iterable( false ) )
-			if ( spot.ID() == ID )
-				return spot;
-
-		return null;
+		return idIndex.get( Integer.valueOf( ID ) );
 	}
 
 	@Override
@@ -116,7 +143,7 @@ public class SpotCollection implements MultiThreaded
 	 * If the frame does not exist yet in the collection, it is created and
 	 * added. Upon adding, the added spot has its feature {@link Spot#FRAME}
 	 * updated with the passed frame value.
-	 * 
+	 *
 	 * @param spot
 	 *            the spot to add.
 	 * @param frame
@@ -124,15 +151,17 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public void add( final Spot spot, final Integer frame )
 	{
-		Set< Spot > spots = content.get( frame );
+		FrameContent spots = content.get( frame );
 		if ( null == spots )
 		{
-			spots = new HashSet<>();
+			spots = new FrameContent( 16 );
 			content.put( frame, spots );
 		}
-		spots.add( spot );
 		spot.putFeature( Spot.FRAME, Double.valueOf( frame ) );
 		spot.putFeature( VISIBILITY, ONE );
+		spots.add( spot, true );
+		idIndex.put( Integer.valueOf( spot.ID() ), spot );
+		spatialIndices.remove( frame );
 	}
 
 	/**
@@ -141,7 +170,7 @@ public class SpotCollection implements MultiThreaded
 	 * If the spot frame collection does not exist yet, nothing is done and
 	 * <code>false</code> is returned. If the spot cannot be found in the frame
 	 * content, nothing is done and <code>false</code> is returned.
-	 * 
+	 *
 	 * @param spot
 	 *            the spot to remove.
 	 * @param frame
@@ -150,10 +179,14 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public boolean remove( final Spot spot, final Integer frame )
 	{
-		final Set< Spot > spots = content.get( frame );
+		final FrameContent spots = content.get( frame );
 		if ( null == spots )
 			return false;
-		return spots.remove( spot );
+		if ( !spots.removeSpot( spot ) )
+			return false;
+		idIndex.remove( Integer.valueOf( spot.ID() ), spot );
+		spatialIndices.remove( frame );
+		return true;
 	}
 
 	/**
@@ -164,38 +197,49 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public void setVisible( final boolean visible )
 	{
-		final Double val = visible ? ONE : ZERO;
-		final Collection< Integer > frames = content.keySet();
-
-		final ExecutorService executors = Executors.newFixedThreadPool( numThreads );
-		for ( final Integer frame : frames )
-		{
-
-			final Runnable command = new Runnable()
-			{
-				@Override
-				public void run()
-				{
+		lastFilters = null;
+		for ( final FrameContent spots : content.values() )
+			spots.setAllVisible( visible );
+	}
 
-					final Set< Spot > spots = content.get( frame );
-					for ( final Spot spot : spots )
-						spot.putFeature( VISIBILITY, val );
-				}
-			};
-			executors.execute( command );
-		}
+	/**
+	 * Marks the specified spot of this collection as visible or invisible. Its
+	 * frame is retrieved from its {@link Spot#FRAME} feature. Does nothing if
+	 * the spot does not belong to this collection.
+	 * <p>
+	 * This is the method to use to change the visibility of a single spot.
+	 * Changing its {@link #VISIBILITY} feature has no effect on this
+	 * collection.
+	 *
+	 * @param spot
+	 *            the spot.
+	 * @param visible
+	 *            if true, the spot will be marked as visible.
+	 * @return <code>true</code> if the spot was found in this collection.
+	 */
+	public boolean setVisible( final Spot spot, final boolean visible )
+	{
+		final FrameContent spots = frameOf( spot );
+		if ( null == spots )
+			return false;
+		return spots.setVisible( spot, visible );
+	}
 
-		executors.shutdown();
-		try
-		{
-			final boolean ok = executors.awaitTermination( TIME_OUT_DELAY, TIME_OUT_UNITS );
-			if ( !ok )
-				System.err.println( "[SpotCollection.setVisible()] Timeout of " + TIME_OUT_DELAY + " " + TIME_OUT_UNITS + " reached." );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
-		}
+	/**
+	 * Returns whether the specified spot is marked as visible in this
+	 * collection. Its frame is retrieved from its {@link Spot#FRAME} feature.
+	 *
+	 * @param spot
+	 *            the spot.
+	 * @return <code>true</code> if the spot belongs to this collection and is
+	 *         visible.
+	 */
+	public boolean isVisible( final Spot spot )
+	{
+		final FrameContent spots = frameOf( spot );
+		if ( null == spots )
+			return false;
+		return spots.isVisible( spot );
 	}
 
 	/**
@@ -208,54 +252,7 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public final void filter( final FeatureFilter featurefilter )
 	{
-
-		final Collection< Integer > frames = content.keySet();
-		final ExecutorService executors = Executors.newFixedThreadPool( numThreads );
-
-		for ( final Integer frame : frames )
-		{
-
-			final Runnable command = new Runnable()
-			{
-				@Override
-				public void run()
-				{
-					final Set< Spot > spots = content.get( frame );
-					final double tval = featurefilter.value;
-
-					if ( featurefilter.isAbove )
-					{
-						for ( final Spot spot : spots )
-						{
-							final Double val = spot.getFeature( featurefilter.feature );
-							spot.putFeature( VISIBILITY, val.compareTo( tval ) < 0 ? ZERO : ONE );
-						}
-
-					}
-					else
-					{
-						for ( final Spot spot : spots )
-						{
-							final Double val = spot.getFeature( featurefilter.feature );
-							spot.putFeature( VISIBILITY, val.compareTo( tval ) > 0 ? ZERO : ONE );
-						}
-					}
-				}
-			};
-			executors.execute( command );
-		}
-
-		executors.shutdown();
-		try
-		{
-			final boolean ok = executors.awaitTermination( TIME_OUT_DELAY, TIME_OUT_UNITS );
-			if ( !ok )
-				System.err.println( "[SpotCollection.filter()] Timeout of " + TIME_OUT_DELAY + " " + TIME_OUT_UNITS + " reached while filtering." );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
-		}
+		filter( Collections.singletonList( featurefilter ) );
 	}
 
 	/**
@@ -263,60 +260,51 @@ public class SpotCollection implements MultiThreaded
 	 * {@link FeatureFilter} collection. Spots that are filtered out are marked
 	 * as invisible, and visible otherwise. To be marked as visible, a spot must
 	 * pass <b>all</b> of the specified filters (AND chaining).
+	 * <p>
+	 * The result of each filter is kept frame by frame. If the filters passed
+	 * only differ from the ones of the previous call by their threshold
+	 * values, as when a filter slider is dragged, only the spots whose
+	 * feature value lies between the old and the new threshold are visited.
+	 * They are found through per-feature sorted indices, built on first need
+	 * and discarded with {@link #invalidateIndices(int)}.
 	 *
 	 * @param filters
 	 *            the filter collection to use.
 	 */
 	public final void filter( final Collection< FeatureFilter > filters )
 	{
+		final List< FeatureFilter > current = new ArrayList<>( filters );
+		final List< FeatureFilter > previous = lastFilters;
+		final boolean thresholdsOnly = sameFeatures( previous, current );
 
-		final Collection< Integer > frames = content.keySet();
-		final ExecutorService executors = Executors.newFixedThreadPool( numThreads );
-
-		for ( final Integer frame : frames )
+		final List< FrameContent > toFilter = new ArrayList<>();
+		for ( final FrameContent spots : content.values() )
 		{
-			final Runnable command = new Runnable()
-			{
-				@Override
-				public void run()
-				{
-					final Set< Spot > spots = content.get( frame );
-					for ( final Spot spot : spots )
-					{
-
-						boolean shouldNotBeVisible = false;
-						for ( final FeatureFilter featureFilter : filters )
-						{
-
-							final Double val = spot.getFeature( featureFilter.feature );
-							final double tval = featureFilter.value;
-							final boolean isAbove = featureFilter.isAbove;
-
-							if ( null == val || isAbove && val.compareTo( tval ) < 0 || !isAbove && val.compareTo( tval ) > 0 )
-							{
-								shouldNotBeVisible = true;
-								break;
-							}
-						} // loop over filters
-						spot.putFeature( VISIBILITY, shouldNotBeVisible ? ZERO : ONE );
-
-					} // loop over spots
-				}
-			};
-			executors.execute( command );
+			if ( thresholdsOnly && spots.isFiltered() )
+				spots.refilter( previous, current );
+			else
+				toFilter.add( spots );
 		}
 
-		executors.shutdown();
-		try
+		if ( !toFilter.isEmpty() )
 		{
-			final boolean ok = executors.awaitTermination( TIME_OUT_DELAY, TIME_OUT_UNITS );
-			if ( !ok )
-				System.err.println( "[SpotCollection.filter()] Timeout of " + TIME_OUT_DELAY + " " + TIME_OUT_UNITS + " reached while filtering." );
-		}
-		catch ( final InterruptedException e )
-		{
-			e.printStackTrace();
+			final ExecutorService executors = Executors.newFixedThreadPool( Math.min( numThreads, toFilter.size() ) );
+			for ( final FrameContent spots : toFilter )
+				executors.execute( () -> spots.filter( current ) );
+
+			executors.shutdown();
+			try
+			{
+				final boolean ok = executors.awaitTermination( TIME_OUT_DELAY, TIME_OUT_UNITS );
+				if ( !ok )
+					System.err.println( "[SpotCollection.filter()] Timeout of " + TIME_OUT_DELAY + " " + TIME_OUT_UNITS + " reached while filtering." );
+			}
+			catch ( final InterruptedException e )
+			{
+				e.printStackTrace();
+			}
 		}
+		lastFilters = current;
 	}
 
 	/**
@@ -336,25 +324,9 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public final Spot getClosestSpot( final Spot location, final int frame, final boolean visibleSpotsOnly )
 	{
-		final Set< Spot > spots = content.get( frame );
-		if ( null == spots )
+		if ( !content.containsKey( frame ) )
 			return null;
-		double minDist = Double.POSITIVE_INFINITY;
-		Spot target = null;
-		for ( final Spot spot : spots )
-		{
-
-			if ( visibleSpotsOnly && !isVisible( spot ) )
-				continue;
-
-			final double d2 = spot.squareDistanceTo( location );
-			if ( d2 < minDist )
-			{
-				minDist = d2;
-				target = spot;
-			}
-		}
-		return target;
+		return getSpatialIndex( frame ).nearest( location, visibleSpotsOnly ? visible : null );
 	}
 
 	/**
@@ -376,26 +348,62 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public final Spot getSpotAt( final Spot location, final int frame, final boolean visibleSpotsOnly )
 	{
-		final Set< Spot > spots = content.get( frame );
-		if ( null == spots || spots.isEmpty() )
+		if ( !content.containsKey( frame ) )
 			return null;
+		return getSpatialIndex( frame ).spotAt( location, visibleSpotsOnly ? visible : null );
+	}
 
-		double minDist2 = Double.POSITIVE_INFINITY;
-		Spot bestSpot = null;
-		for ( final Spot spot : spots )
-		{
-			if ( visibleSpotsOnly && !isVisible( spot ) )
-				continue;
+	/**
+	 * Returns the spatial index of the spots in the specified frame. The index
+	 * is built on first request, and is discarded when spots are added to or
+	 * removed from the frame, or when {@link #invalidateIndices(int)} is
+	 * called. It can be used by trackers, overlays and actions to query spots
+	 * by location. Use {@link #visibilityFilter()} to restrict queries to
+	 * visible spots.
+	 * <p>
+	 * The index is built over the spot positions at the time of the call.
+	 * Callers that move spots must call {@link #invalidateIndices(int)}, which
+	 * {@link Model#updateFeatures(Spot)} does.
+	 *
+	 * @param frame
+	 *            the frame.
+	 * @return the spatial index of this frame. Is empty if the frame does not
+	 *         exist in this collection.
+	 */
+	public SpotSpatialIndex getSpatialIndex( final int frame )
+	{
+		final FrameContent spots = content.get( frame );
+		if ( null == spots )
+			return EMPTY_INDEX;
+		return spatialIndices.computeIfAbsent( frame, f -> new SpotSpatialIndex( spots ) );
+	}
 
-			final double d2 = spot.squareDistanceTo( location );
-			final double radius = spot.getFeature( Spot.RADIUS );
-			if ( d2 < Math.min( minDist2, radius * radius ) )
-			{
-				minDist2 = d2;
-				bestSpot = spot;
-			}
-		}
-		return bestSpot;
+	/**
+	 * Discards the indices built over the spots of the specified frame: its
+	 * spatial index, its per-feature sorted indices and the results of the last
+	 * filtering. They are rebuilt on next request. Must be called when spots of
+	 * this frame are moved or have their features changed.
+	 *
+	 * @param frame
+	 *            the frame.
+	 */
+	public void invalidateIndices( final int frame )
+	{
+		spatialIndices.remove( frame );
+		final FrameContent spots = content.get( frame );
+		if ( null != spots )
+			spots.invalidate();
+	}
+
+	/**
+	 * Returns a predicate that accepts the visible spots of this collection,
+	 * to use with the queries of the {@link SpotSpatialIndex}.
+	 *
+	 * @return the visibility predicate.
+	 */
+	public Predicate< Spot > visibilityFilter()
+	{
+		return visible;
 	}
 
 	/**
@@ -409,21 +417,8 @@ public class SpotCollection implements MultiThreaded
 	public final int getNSpots( final boolean visibleSpotsOnly )
 	{
 		int nspots = 0;
-		if ( visibleSpotsOnly )
-		{
-			final Iterator< Spot > it = iterator( true );
-			while ( it.hasNext() )
-			{
-				it.next();
-				nspots++;
-			}
-
-		}
-		else
-		{
-			for ( final Set< Spot > spots : content.values() )
-				nspots += spots.size();
-		}
+		for ( final FrameContent spots : content.values() )
+			nspots += spots.size( visibleSpotsOnly );
 		return nspots;
 	}
 
@@ -439,23 +434,11 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public int getNSpots( final int frame, final boolean visibleSpotsOnly )
 	{
-		if ( visibleSpotsOnly )
-		{
-			final Iterator< Spot > it = iterator( frame, true );
-			int nspots = 0;
-			while ( it.hasNext() )
-			{
-				it.next();
-				nspots++;
-			}
-			return nspots;
-		}
-
-		final Set< Spot > spots = content.get( frame );
+		final FrameContent spots = content.get( frame );
 		if ( null == spots )
 			return 0;
 
-		return spots.size();
+		return spots.size( visibleSpotsOnly );
 	}
 
 	/*
@@ -473,10 +456,7 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public Iterator< Spot > iterator( final boolean visibleSpotsOnly )
 	{
-		if ( visibleSpotsOnly )
-			return new VisibleSpotsIterator();
-
-		return new AllSpotsIterator();
+		return new SpotsIterator( visibleSpotsOnly );
 	}
 
 	/**
@@ -492,14 +472,11 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public Iterator< Spot > iterator( final Integer frame, final boolean visibleSpotsOnly )
 	{
-		final Set< Spot > frameContent = content.get( frame );
+		final FrameContent frameContent = content.get( frame );
 		if ( null == frameContent )
 			return EMPTY_ITERATOR;
 
-		if ( visibleSpotsOnly )
-			return new VisibleSpotsFrameIterator( frameContent );
-
-		return frameContent.iterator();
+		return frameContent.iterator( visibleSpotsOnly );
 	}
 
 	/**
@@ -513,13 +490,13 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public Iterable< Spot > iterable( final boolean visibleSpotsOnly )
 	{
-		return new WholeCollectionIterable( visibleSpotsOnly );
+		return () -> new SpotsIterator( visibleSpotsOnly );
 	}
 
 	/**
 	 * A convenience methods that returns an {@link Iterable} wrapper for a
 	 * specific frame of this spot collection. The iterable is backed-up by the
-	 * actual collection content, so modifying it can have unexpected results.
+	 * actual collection content, and is read-only.
 	 *
 	 * @param visibleSpotsOnly
 	 *            if true, the iterable will contains only visible spots of the
@@ -533,7 +510,7 @@ public class SpotCollection implements MultiThreaded
 	public Iterable< Spot > iterable( final int frame, final boolean visibleSpotsOnly )
 	{
 		if ( visibleSpotsOnly )
-			return new FrameVisibleIterable( frame );
+			return () -> iterator( frame, true );
 
 		return content.get( frame );
 	}
@@ -555,13 +532,20 @@ public class SpotCollection implements MultiThreaded
 	 */
 	public void put( final int frame, final Collection< Spot > spots )
 	{
-		final Set< Spot > value = new HashSet<>( spots );
-		for ( final Spot spot : value )
+		final FrameContent value = new FrameContent( spots.size() );
+		for ( final Spot spot : spots )
 		{
 			spot.putFeature( Spot.FRAME, Double.valueOf( frame ) );
 			spot.putFeature( VISIBILITY, ZERO );
+			value.add( spot, false );
 		}
-		content.put( frame, value );
+		final FrameContent previous = content.put( frame, value );
+		spatialIndices.remove( frame );
+		if ( null != previous )
+			for ( final Spot spot : previous )
+				idIndex.remove( Integer.valueOf( spot.ID() ), spot );
+		for ( final Spot spot : value )
+			idIndex.put( Integer.valueOf( spot.ID() ), spot );
 	}
 
 	/**
@@ -602,6 +586,10 @@ public class SpotCollection implements MultiThreaded
 	 * elements as they existed upon construction of the iterator, and may (but
 	 * is not guaranteed to) reflect any modifications subsequent to
 	 * construction.
+	 * <p>
+	 * Frames removed through this view are not removed from the ID index used
+	 * by {@link #search(int)}. Use {@link #put(int, Collection)} with an empty
+	 * collection or {@link #clear()} instead.
 	 *
 	 * @return a navigable set view of the frames in this collection.
 	 */
@@ -616,6 +604,8 @@ public class SpotCollection implements MultiThreaded
 	public void clear()
 	{
 		content.clear();
+		idIndex.clear();
+		spatialIndices.clear();
 	}
 
 	/*
@@ -640,72 +630,91 @@ public class SpotCollection implements MultiThreaded
 		return numThreads;
 	}
 
+	/**
+	 * Remove all the non-visible spots of this collection.
+	 */
+	public void crop()
+	{
+		for ( final Map.Entry< Integer, FrameContent > entry : content.entrySet() )
+		{
+			final List< Spot > removed = entry.getValue().retainVisible();
+			if ( removed.isEmpty() )
+				continue;
+			for ( final Spot spot : removed )
+				idIndex.remove( Integer.valueOf( spot.ID() ), spot );
+			spatialIndices.remove( entry.getKey() );
+		}
+	}
+
 	/*
-	 * PRIVATE CLASSES
+	 * PRIVATE METHODS
 	 */
 
-	private class AllSpotsIterator implements Iterator< Spot >
+	private FrameContent frameOf( final Spot spot )
 	{
+		final Double frame = spot.getFeature( Spot.FRAME );
+		if ( null == frame )
+			return null;
+		return content.get( Integer.valueOf( frame.intValue() ) );
+	}
 
-		private boolean hasNext = true;
+	/**
+	 * Returns <code>true</code> if the two filter lists use the same features
+	 * in the same order and direction, and so only differ by their threshold
+	 * values.
+	 */
+	private static boolean sameFeatures( final List< FeatureFilter > previous, final List< FeatureFilter > current )
+	{
+		if ( null == previous || previous.size() != current.size() )
+			return false;
+		for ( int i = 0; i < current.size(); i++ )
+		{
+			final FeatureFilter p = previous.get( i );
+			final FeatureFilter c = current.get( i );
+			if ( p.isAbove != c.isAbove || !p.feature.equals( c.feature ) )
+				return false;
+		}
+		return true;
+	}
 
-		private final Iterator< Integer > frameIterator;
+	/*
+	 * PRIVATE CLASSES
+	 */
 
-		private Iterator< Spot > contentIterator;
+	private class SpotsIterator implements Iterator< Spot >
+	{
 
-		private Spot next = null;
+		private final boolean visibleSpotsOnly;
 
-		public AllSpotsIterator()
-		{
-			this.frameIterator = content.keySet().iterator();
-			if ( !frameIterator.hasNext() )
-			{
-				hasNext = false;
-				return;
-			}
-			final Set< Spot > currentFrameContent = content.get( frameIterator.next() );
-			contentIterator = currentFrameContent.iterator();
-			iterate();
-		}
+		private final Iterator< FrameContent > frameIterator;
 
-		private void iterate()
-		{
-			while ( true )
-			{
+		private Iterator< Spot > contentIterator;
 
-				// Is there still spots in current content?
-				if ( !contentIterator.hasNext() )
-				{
-					// No. Then move to next frame.
-					// Is there still frames to iterate over?
-					if ( !frameIterator.hasNext() )
-					{
-						// No. Then we are done
-						hasNext = false;
-						next = null;
-						return;
-					}
-
-					contentIterator = content.get( frameIterator.next() ).iterator();
-					continue;
-				}
-				next = contentIterator.next();
-				return;
-			}
+		public SpotsIterator( final boolean visibleSpotsOnly )
+		{
+			this.visibleSpotsOnly = visibleSpotsOnly;
+			this.frameIterator = content.values().iterator();
+			this.contentIterator = EMPTY_ITERATOR;
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			return hasNext;
+			while ( !contentIterator.hasNext() )
+			{
+				if ( !frameIterator.hasNext() )
+					return false;
+				contentIterator = frameIterator.next().iterator( visibleSpotsOnly );
+			}
+			return true;
 		}
 
 		@Override
 		public Spot next()
 		{
-			final Spot toReturn = next;
-			iterate();
-			return toReturn;
+			if ( !hasNext() )
+				throw new NoSuchElementException();
+			return contentIterator.next();
 		}
 
 		@Override
@@ -715,224 +724,536 @@ public class SpotCollection implements MultiThreaded
 		}
 	}
 
-	private class VisibleSpotsIterator implements Iterator< Spot >
+	/**
+	 * The content of a single frame. Spots are stored densely in an array and
+	 * located by their ID through an open-addressing hash table. Their
+	 * visibility and the result of each filter of the last filtering are
+	 * stored in bitsets indexed by their position in the array.
+	 * <p>
+	 * This class is a read-only {@link Set} view over the spots of the frame.
+	 * Its state is guarded by its own monitor, so that it can be read from the
+	 * event dispatch and overlay threads while the model is edited. Iterators
+	 * run over a copy of the spots taken when they are created, and are not
+	 * affected by later edits. Different instances can be modified
+	 * concurrently.
+	 */
+	private static final class FrameContent extends AbstractSet< Spot >
 	{
 
-		private boolean hasNext = true;
+		private static final int FREE = Integer.MIN_VALUE;
 
-		private final Iterator< Integer > frameIterator;
+		private Spot[] spots;
 
-		private Iterator< Spot > contentIterator;
+		private int size;
+
+		/** Open-addressing table, spot ID to position in the spot array. */
+		private int[] ids;
+
+		private int[] positions;
+
+		private BitSet visible;
 
-		private Spot next = null;
+		/**
+		 * For each filter of the last filtering, the positions of the spots
+		 * that pass it. <code>null</code> if the visibility of this frame is
+		 * not the result of a filtering anymore.
+		 */
+		private BitSet[] passes;
+
+		/** Lazily built sorted indices, by feature. */
+		private Map< String, SortedFeature > sortedFeatures;
+
+		/**
+		 * <code>true</code> if the spot array and the visibility set are read
+		 * by an iterator. They must then be copied before they are modified
+		 * in place.
+		 */
+		private boolean shared;
 
-		private Set< Spot > currentFrameContent;
+		private FrameContent( final int capacity )
+		{
+			this.spots = new Spot[ Math.max( 4, capacity ) ];
+			this.visible = new BitSet( spots.length );
+			allocateTable( tableSize( spots.length ) );
+		}
 
-		public VisibleSpotsIterator()
+		private FrameContent( final Collection< Spot > source )
 		{
-			this.frameIterator = content.keySet().iterator();
-			if ( !frameIterator.hasNext() )
+			this( source.size() );
+			for ( final Spot spot : source )
 			{
-				hasNext = false;
+				final Double val = spot.getFeature( VISIBILITY );
+				add( spot, null != val && val.compareTo( ZERO ) > 0 );
+			}
+		}
+
+		/*
+		 * CONTENT
+		 */
+
+		@Override
+		public synchronized int size()
+		{
+			return size;
+		}
+
+		private synchronized int size( final boolean visibleSpotsOnly )
+		{
+			return visibleSpotsOnly ? visible.cardinality() : size;
+		}
+
+		@Override
+		public synchronized boolean contains( final Object o )
+		{
+			return ( o instanceof Spot ) && indexOf( ( Spot ) o ) >= 0;
+		}
+
+		@Override
+		public Iterator< Spot > iterator()
+		{
+			return iterator( false );
+		}
+
+		/**
+		 * Returns an iterator over the spots of this frame, or over its
+		 * visible spots, as they are when this method is called. The iterator
+		 * reads the spot array and the visibility set of this frame without
+		 * copying them: they are copied by the next modification instead.
+		 */
+		private Iterator< Spot > iterator( final boolean visibleSpotsOnly )
+		{
+			final Spot[] lSpots;
+			final int lSize;
+			final BitSet lVisible;
+			synchronized ( this )
+			{
+				lSpots = spots;
+				lSize = size;
+				lVisible = visibleSpotsOnly ? visible : null;
+				shared = true;
+			}
+			return new FrameIterator( lSpots, lSize, lVisible );
+		}
+
+		/**
+		 * Copies the spot array and the visibility set if they are read by an
+		 * iterator, before they are modified in place.
+		 */
+		private void copyOnWrite()
+		{
+			if ( !shared )
 				return;
+			spots = spots.clone();
+			visible = ( BitSet ) visible.clone();
+			shared = false;
+		}
+
+		private int indexOf( final Spot spot )
+		{
+			final int mask = ids.length - 1;
+			final int id = spot.ID();
+			for ( int i = hash( id ) & mask;; i = ( i + 1 ) & mask )
+			{
+				if ( ids[ i ] == id )
+					return positions[ i ];
+				if ( ids[ i ] == FREE )
+					return -1;
 			}
-			currentFrameContent = content.get( frameIterator.next() );
-			contentIterator = currentFrameContent.iterator();
-			iterate();
 		}
 
-		private void iterate()
+		private synchronized boolean add( final Spot spot, final boolean isVisible )
 		{
+			if ( indexOf( spot ) >= 0 )
+				return false;
+			copyOnWrite();
+			if ( size == spots.length )
+				spots = Arrays.copyOf( spots, 2 * size );
+			if ( 2 * ( size + 1 ) > ids.length )
+				rehash( 2 * ids.length );
+			spots[ size ] = spot;
+			visible.set( size, isVisible );
+			putPosition( spot.ID(), size );
+			size++;
+			invalidate();
+			return true;
+		}
 
-			while ( true )
+		/**
+		 * Removes the specified spot by moving the last spot of the array in
+		 * its place.
+		 */
+		private synchronized boolean removeSpot( final Spot spot )
+		{
+			final int pos = indexOf( spot );
+			if ( pos < 0 )
+				return false;
+			copyOnWrite();
+			final int last = size - 1;
+			if ( pos != last )
 			{
-				// Is there still spots in current content?
-				if ( !contentIterator.hasNext() )
-				{
-					// No. Then move to next frame.
-					// Is there still frames to iterate over?
-					if ( !frameIterator.hasNext() )
-					{
-						// No. Then we are done
-						hasNext = false;
-						next = null;
-						return;
-					}
-
-					// Yes. Then start iterating over the next frame.
-					currentFrameContent = content.get( frameIterator.next() );
-					contentIterator = currentFrameContent.iterator();
-					continue;
-				}
-				next = contentIterator.next();
-				// Is it visible?
-				if ( next.getFeature( VISIBILITY ).compareTo( ZERO ) > 0 )
-				{
-					// Yes! Be happy and return
-					return;
-				}
+				spots[ pos ] = spots[ last ];
+				visible.set( pos, visible.get( last ) );
+				putPosition( spots[ pos ].ID(), pos );
 			}
+			spots[ last ] = null;
+			visible.clear( last );
+			removePosition( spot.ID() );
+			size--;
+			invalidate();
+			return true;
 		}
 
-		@Override
-		public boolean hasNext()
+		/**
+		 * Removes the non-visible spots and returns them.
+		 */
+		private synchronized List< Spot > retainVisible()
 		{
-			return hasNext;
+			final int nVisible = visible.cardinality();
+			if ( nVisible == size )
+				return Collections.emptyList();
+
+			final List< Spot > removed = new ArrayList<>( size - nVisible );
+			final Spot[] kept = new Spot[ Math.max( 4, nVisible ) ];
+			int n = 0;
+			for ( int pos = 0; pos < size; pos++ )
+			{
+				if ( visible.get( pos ) )
+					kept[ n++ ] = spots[ pos ];
+				else
+					removed.add( spots[ pos ] );
+			}
+			spots = kept;
+			size = n;
+			shared = false;
+			visible = new BitSet( kept.length );
+			visible.set( 0, n );
+			allocateTable( tableSize( kept.length ) );
+			for ( int pos = 0; pos < n; pos++ )
+				putPosition( spots[ pos ].ID(), pos );
+			invalidate();
+			return removed;
 		}
 
-		@Override
-		public Spot next()
+		private synchronized void invalidate()
 		{
-			final Spot toReturn = next;
-			iterate();
-			return toReturn;
+			passes = null;
+			sortedFeatures = null;
 		}
 
-		@Override
-		public void remove()
+		/*
+		 * VISIBILITY
+		 */
+
+		private synchronized boolean isVisible( final Spot spot )
 		{
-			throw new UnsupportedOperationException( "Remove operation is not supported for SpotCollection iterators." );
+			final int pos = indexOf( spot );
+			return pos >= 0 && visible.get( pos );
 		}
-	}
 
-	private class VisibleSpotsFrameIterator implements Iterator< Spot >
-	{
+		/**
+		 * Sets the visibility of the specified spot, as a manual edit that is
+		 * not part of any filter result.
+		 */
+		private synchronized boolean setVisible( final Spot spot, final boolean isVisible )
+		{
+			final int pos = indexOf( spot );
+			if ( pos < 0 )
+				return false;
+			passes = null;
+			setVisible( pos, isVisible );
+			return true;
+		}
 
-		private boolean hasNext = true;
+		/**
+		 * Returns <code>true</code> if the visibility of this frame is the
+		 * result of the last filtering.
+		 */
+		private synchronized boolean isFiltered()
+		{
+			return null != passes;
+		}
 
-		private Spot next = null;
+		/**
+		 * Sets the visibility of the spot at the specified position, and
+		 * mirrors it in its feature if it changed.
+		 */
+		private void setVisible( final int pos, final boolean isVisible )
+		{
+			if ( visible.get( pos ) == isVisible )
+				return;
+			copyOnWrite();
+			visible.set( pos, isVisible );
+			spots[ pos ].putFeature( VISIBILITY, isVisible ? ONE : ZERO );
+		}
 
-		private final Iterator< Spot > contentIterator;
+		private synchronized void setAllVisible( final boolean isVisible )
+		{
+			passes = null;
+			int pos = isVisible ? visible.nextClearBit( 0 ) : visible.nextSetBit( 0 );
+			while ( pos >= 0 && pos < size )
+			{
+				setVisible( pos, isVisible );
+				pos = isVisible ? visible.nextClearBit( pos + 1 ) : visible.nextSetBit( pos + 1 );
+			}
+		}
 
-		public VisibleSpotsFrameIterator( final Set< Spot > frameContent )
+		/**
+		 * Filters all the spots of this frame.
+		 */
+		private synchronized void filter( final List< FeatureFilter > filters )
 		{
-			this.contentIterator = ( null == frameContent ) ? EMPTY_ITERATOR : frameContent.iterator();
-			iterate();
+			final BitSet[] newPasses = new BitSet[ filters.size() ];
+			final BitSet newVisible = new BitSet( size );
+			newVisible.set( 0, size );
+			for ( int i = 0; i < newPasses.length; i++ )
+			{
+				newPasses[ i ] = computePasses( filters.get( i ) );
+				newVisible.and( newPasses[ i ] );
+			}
+
+			// Only touch the spots whose visibility changes.
+			final BitSet changed = ( BitSet ) visible.clone();
+			changed.xor( newVisible );
+			for ( int pos = changed.nextSetBit( 0 ); pos >= 0; pos = changed.nextSetBit( pos + 1 ) )
+				setVisible( pos, newVisible.get( pos ) );
+			passes = newPasses;
 		}
 
-		private void iterate()
+		/**
+		 * Updates the filtering of this frame for new thresholds. The filters
+		 * must be those of the last filtering, with possibly different
+		 * threshold values.
+		 */
+		private synchronized void refilter( final List< FeatureFilter > previous, final List< FeatureFilter > current )
 		{
-			while ( true )
+			for ( int i = 0; i < current.size(); i++ )
 			{
-				if ( !contentIterator.hasNext() )
+				final FeatureFilter oldFilter = previous.get( i );
+				final FeatureFilter newFilter = current.get( i );
+				if ( Double.compare( oldFilter.value, newFilter.value ) == 0 )
+					continue;
+
+				final SortedFeature sorted = getSortedFeature( newFilter.feature );
+				final int from;
+				final int to;
+				if ( newFilter.isAbove )
 				{
-					// No. Then we are done
-					hasNext = false;
-					next = null;
-					return;
+					from = SortedArrays.lowerBound( sorted.values, sorted.values.length, oldFilter.value );
+					to = SortedArrays.lowerBound( sorted.values, sorted.values.length, newFilter.value );
 				}
-				next = contentIterator.next();
-				// Is it visible?
-				if ( next.getFeature( VISIBILITY ).compareTo( ZERO ) > 0 )
+				else
 				{
-					// Yes. Be happy, and return.
-					return;
+					from = SortedArrays.upperBound( sorted.values, sorted.values.length, oldFilter.value );
+					to = SortedArrays.upperBound( sorted.values, sorted.values.length, newFilter.value );
+				}
+
+				// The spots between the two thresholds flip for this filter.
+				final BitSet pass = passes[ i ];
+				for ( int k = Math.min( from, to ); k < Math.max( from, to ); k++ )
+				{
+					final int pos = sorted.positions[ k ];
+					pass.flip( pos );
+					setVisible( pos, passesAll( pos ) );
 				}
 			}
 		}
 
-		@Override
-		public boolean hasNext()
+		private boolean passesAll( final int pos )
 		{
-			return hasNext;
+			for ( final BitSet pass : passes )
+				if ( !pass.get( pos ) )
+					return false;
+			return true;
 		}
 
-		@Override
-		public Spot next()
+		/**
+		 * Spots with no value for the filter feature never pass it.
+		 */
+		private BitSet computePasses( final FeatureFilter filter )
 		{
-			final Spot toReturn = next;
-			iterate();
-			return toReturn;
+			final BitSet pass = new BitSet( size );
+			final double tval = filter.value;
+			for ( int pos = 0; pos < size; pos++ )
+			{
+				final Double val = spots[ pos ].getFeature( filter.feature );
+				if ( null == val )
+					continue;
+				final int c = Double.compare( val.doubleValue(), tval );
+				if ( filter.isAbove ? c >= 0 : c <= 0 )
+					pass.set( pos );
+			}
+			return pass;
 		}
 
-		@Override
-		public void remove()
+		private SortedFeature getSortedFeature( final String feature )
 		{
-			throw new UnsupportedOperationException( "Remove operation is not supported for SpotCollection iterators." );
+			if ( null == sortedFeatures )
+				sortedFeatures = new HashMap<>();
+			SortedFeature sorted = sortedFeatures.get( feature );
+			if ( null == sorted )
+			{
+				sorted = new SortedFeature( this, feature );
+				sortedFeatures.put( feature, sorted );
+			}
+			return sorted;
 		}
-	}
 
-	/**
-	 * Remove all the non-visible spots of this collection.
-	 */
-	public void crop()
-	{
-		final Collection< Integer > frames = content.keySet();
-		final ExecutorService executors = Executors.newFixedThreadPool( numThreads );
-		for ( final Integer frame : frames )
+		/*
+		 * ID TABLE
+		 */
+
+		private void allocateTable( final int length )
+		{
+			ids = new int[ length ];
+			Arrays.fill( ids, FREE );
+			positions = new int[ length ];
+		}
+
+		private void rehash( final int length )
 		{
-			final Runnable command = new Runnable()
+			final int[] oldIds = ids;
+			final int[] oldPositions = positions;
+			allocateTable( length );
+			for ( int i = 0; i < oldIds.length; i++ )
+				if ( oldIds[ i ] != FREE )
+					putPosition( oldIds[ i ], oldPositions[ i ] );
+		}
+
+		private void putPosition( final int id, final int pos )
+		{
+			final int mask = ids.length - 1;
+			int i = hash( id ) & mask;
+			while ( ids[ i ] != FREE && ids[ i ] != id )
+				i = ( i + 1 ) & mask;
+			ids[ i ] = id;
+			positions[ i ] = pos;
+		}
+
+		/**
+		 * Removes an ID from the table, shifting back the entries that follow
+		 * so that probing sequences stay unbroken.
+		 */
+		private void removePosition( final int id )
+		{
+			final int mask = ids.length - 1;
+			int gap = hash( id ) & mask;
+			while ( ids[ gap ] != id )
 			{
-				@Override
-				public void run()
-				{
-					final Set< Spot > fc = content.get( frame );
-					final List< Spot > toRemove = new ArrayList<>();
-					for ( final Spot spot : fc )
-						if ( !isVisible( spot ) )
-							toRemove.add( spot );
+				if ( ids[ gap ] == FREE )
+					return;
+				gap = ( gap + 1 ) & mask;
+			}
 
-					fc.removeAll( toRemove );
+			int i = gap;
+			while ( true )
+			{
+				i = ( i + 1 ) & mask;
+				if ( ids[ i ] == FREE )
+					break;
+				final int home = hash( ids[ i ] ) & mask;
+				// Can the entry at i be moved to the gap?
+				final boolean homeInRange = ( gap <= i )
+						? ( home > gap && home <= i )
+						: ( home > gap || home <= i );
+				if ( !homeInRange )
+				{
+					ids[ gap ] = ids[ i ];
+					positions[ gap ] = positions[ i ];
+					gap = i;
 				}
-			};
-			executors.execute( command );
+			}
+			ids[ gap ] = FREE;
 		}
 
-		executors.shutdown();
-		try
+		private static int tableSize( final int capacity )
 		{
-			final boolean ok = executors.awaitTermination( TIME_OUT_DELAY, TIME_OUT_UNITS );
-			if ( !ok )
-				System.err.println( "[SpotCollection.crop()] Timeout of " + TIME_OUT_DELAY + " " + TIME_OUT_UNITS + " reached while cropping." );
+			return Integer.highestOneBit( Math.max( 4, 2 * capacity ) - 1 ) << 1;
 		}
-		catch ( final InterruptedException e )
+
+		private static int hash( final int id )
 		{
-			e.printStackTrace();
+			final int h = id * 0x9E3779B9;
+			return h ^ ( h >>> 16 );
 		}
 	}
 
 	/**
-	 * A convenience wrapper that implements {@link Iterable} for this spot
-	 * collection.
+	 * Iterates over the spots of a frame, or over its visible spots, from
+	 * arrays that are not modified anymore.
 	 */
-	private final class WholeCollectionIterable implements Iterable< Spot >
+	private static final class FrameIterator implements Iterator< Spot >
 	{
 
-		private final boolean visibleSpotsOnly;
+		private final Spot[] spots;
+
+		private final int size;
+
+		/** The visible positions, <code>null</code> to iterate all spots. */
+		private final BitSet visible;
 
-		public WholeCollectionIterable( final boolean visibleSpotsOnly )
+		private int next;
+
+		private FrameIterator( final Spot[] spots, final int size, final BitSet visible )
 		{
-			this.visibleSpotsOnly = visibleSpotsOnly;
+			this.spots = spots;
+			this.size = size;
+			this.visible = visible;
+			this.next = advance( 0 );
+		}
+
+		private int advance( final int from )
+		{
+			if ( null == visible )
+				return from;
+			final int pos = visible.nextSetBit( from );
+			return pos < 0 ? size : pos;
 		}
 
 		@Override
-		public Iterator< Spot > iterator()
+		public boolean hasNext()
 		{
-			if ( visibleSpotsOnly )
-				return new VisibleSpotsIterator();
+			return next < size;
+		}
 
-			return new AllSpotsIterator();
+		@Override
+		public Spot next()
+		{
+			if ( next >= size )
+				throw new NoSuchElementException();
+			final Spot spot = spots[ next ];
+			next = advance( next + 1 );
+			return spot;
 		}
 	}
 
 	/**
-	 * A convenience wrapper that implements {@link Iterable} for this spot
-	 * collection.
+	 * The values of one feature over the spots of a frame, sorted, along with
+	 * the positions of the spots. Spots with no value are omitted.
 	 */
-	private final class FrameVisibleIterable implements Iterable< Spot >
+	private static final class SortedFeature
 	{
 
-		private final int frame;
+		private final double[] values;
 
-		public FrameVisibleIterable( final int frame )
-		{
-			this.frame = frame;
-		}
+		private final int[] positions;
 
-		@Override
-		public Iterator< Spot > iterator()
+		private SortedFeature( final FrameContent frame, final String feature )
 		{
-			return new VisibleSpotsFrameIterator( content.get( frame ) );
+			final double[] vals = new double[ frame.size ];
+			final int[] pos = new int[ frame.size ];
+			int n = 0;
+			for ( int i = 0; i < frame.size; i++ )
+			{
+				final Double val = frame.spots[ i ].getFeature( feature );
+				if ( null == val )
+					continue;
+				vals[ n ] = val.doubleValue();
+				pos[ n ] = i;
+				n++;
+			}
+			SortedArrays.sort( vals, pos, n );
+			this.values = Arrays.copyOf( vals, n );
+			this.positions = Arrays.copyOf( pos, n );
 		}
 	}
 
@@ -976,13 +1297,15 @@ public class SpotCollection implements MultiThreaded
 		for ( final Spot spot : spots )
 		{
 			final int frame = spot.getFeature( Spot.FRAME ).intValue();
-			Set< Spot > fc = sc.content.get( frame );
+			FrameContent fc = sc.content.get( frame );
 			if ( null == fc )
 			{
-				fc = new HashSet<>();
+				fc = new FrameContent( 16 );
 				sc.content.put( frame, fc );
 			}
-			fc.add( spot );
+			final Double val = spot.getFeature( VISIBILITY );
+			fc.add( spot, null != val && val.compareTo( ZERO ) > 0 );
+			sc.idIndex.put( Integer.valueOf( spot.ID() ), spot );
 		}
 		return sc;
 	}
@@ -990,8 +1313,9 @@ public class SpotCollection implements MultiThreaded
 	/**
 	 * Creates a new {@link SpotCollection} from a copy of the specified map of
 	 * sets. The spots added this way are completely untouched. In particular,
-	 * their {@link #VISIBILITY} feature is left untouched, which makes this
-	 * method suitable to de-serialize a {@link SpotCollection}.
+	 * their {@link #VISIBILITY} feature is left untouched, and is used to set
+	 * their visibility in the new collection, which makes this method suitable
+	 * to de-serialize a {@link SpotCollection}.
 	 *
 	 * @param source
 	 *            the map to buidl the spot collection from.
@@ -1000,12 +1324,14 @@ public class SpotCollection implements MultiThreaded
 	public static SpotCollection fromMap( final Map< Integer, Set< Spot > > source )
 	{
 		final SpotCollection sc = new SpotCollection();
-		sc.content = new ConcurrentSkipListMap<>( source );
+		for ( final Map.Entry< Integer, Set< Spot > > entry : source.entrySet() )
+		{
+			sc.content.put( entry.getKey(), new FrameContent( entry.getValue() ) );
+			for ( final Spot spot : entry.getValue() )
+				sc.idIndex.put( Integer.valueOf( spot.ID() ), spot );
+		}
 		return sc;
 	}
 
-	private static final boolean isVisible( final Spot spot )
-	{
-		return spot.getFeature( VISIBILITY ).compareTo( ZERO ) > 0;
-	}
+	private static final SpotSpatialIndex EMPTY_INDEX = new SpotSpatialIndex( Collections.emptyList() );
 }
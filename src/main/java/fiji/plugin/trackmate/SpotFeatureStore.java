@@ -0,0 +1,635 @@
+package fiji.plugin.trackmate;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A columnar storage for spot features.
+ * <p>
+ * By default, each {@link Spot} stores its features in its own map of boxed
+ * {@link Double}s. For large models this is expensive in memory, and every
+ * feature read goes through a string hash lookup. When the columnar store is
+ * enabled, feature keys are interned to <code>int</code> slots, and the
+ * feature values are stored in primitive <code>double</code> columns, indexed
+ * by a dense spot index that is assigned to each spot at creation.
+ * {@link Spot#getFeature(String)}, {@link Spot#putFeature(String, Double)} and
+ * {@link Spot#getFeatures()} are kept as a facade over this store.
+ * <p>
+ * The store is opt-in. It is enabled by calling {@link #setEnabled(boolean)}
+ * before spots are created, or by setting the
+ * <code>trackmate.columnarSpotFeatures</code> system property to
+ * <code>true</code>. Only the spots created while the store is enabled use it;
+ * the other ones keep their own feature map, so that both kind of spots can
+ * coexist.
+ * <p>
+ * The position features ({@link Spot#POSITION_X}, {@link Spot#POSITION_Y},
+ * {@link Spot#POSITION_Z}) are always interned to the slots 0, 1 and 2, so
+ * that position access is a plain array read.
+ * <p>
+ * Columns are made of fixed-size chunks that are never moved once allocated,
+ * so that concurrent writes to different spots (as in multithreaded detection)
+ * are safe.
+ * <p>
+ * The index of a spot is released when the spot is garbage-collected: its
+ * values are cleared and the index is given to a spot created later. The
+ * memory used by the store is therefore bounded by the largest number of
+ * spots alive at the same time, not by the number of spots ever created.
+ */
+public class SpotFeatureStore
+{
+
+	/** Log2 of the number of spots per column chunk. */
+	private static final int CHUNK_SHIFT = 12;
+
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static volatile SpotFeatureStore instance = Boolean.getBoolean( "trackmate.columnarSpotFeatures" )
+			? new SpotFeatureStore()
+			: null;
+
+	/** Maps feature keys to their slot. */
+	private final ConcurrentHashMap< String, Integer > slots = new ConcurrentHashMap<>();
+
+	/** The feature keys, in slot order. */
+	private final List< String > keys = new ArrayList<>();
+
+	private volatile Column[] columns = new Column[ 0 ];
+
+	private final AtomicInteger nextIndex = new AtomicInteger( 0 );
+
+	/** Receives the references of the spots that were garbage-collected. */
+	private final ReferenceQueue< Spot > released = new ReferenceQueue<>();
+
+	/** Keeps the references of the live spots reachable. */
+	private final Set< SpotReference > references = ConcurrentHashMap.newKeySet();
+
+	/** The released indices, ready to be reused. */
+	private int[] freeIndices = new int[ 16 ];
+
+	private int nFree = 0;
+
+	/*
+	 * CONSTRUCTOR
+	 */
+
+	/**
+	 * Creates a new, empty feature store. The position features are interned
+	 * to the first slots, followed by the other privileged spot features.
+	 */
+	public SpotFeatureStore()
+	{
+		for ( final String feature : Spot.POSITION_FEATURES )
+			intern( feature );
+		for ( final String feature : Spot.FEATURES )
+			intern( feature );
+	}
+
+	/*
+	 * STATIC METHODS
+	 */
+
+	/**
+	 * Returns the feature store that new spots are registered in, or
+	 * <code>null</code> if the columnar storage is not enabled.
+	 *
+	 * @return the current feature store, or <code>null</code>.
+	 */
+	public static SpotFeatureStore getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Enables or disables the columnar feature storage for the spots that will
+	 * be created after this call. Spots already created are not affected.
+	 * Enabling it when it is already enabled keeps the current store.
+	 *
+	 * @param enabled
+	 *            whether new spots should store their features in the columnar
+	 *            store.
+	 */
+	public static synchronized void setEnabled( final boolean enabled )
+	{
+		if ( !enabled )
+			instance = null;
+		else if ( null == instance )
+			instance = new SpotFeatureStore();
+	}
+
+	/**
+	 * Returns <code>true</code> if new spots are created with their features
+	 * stored in the columnar store.
+	 *
+	 * @return whether the columnar storage is enabled.
+	 */
+	public static boolean isEnabled()
+	{
+		return null != instance;
+	}
+
+	/*
+	 * METHODS
+	 */
+
+	/**
+	 * Returns the slot of the specified feature, creating it if the feature
+	 * was not interned yet.
+	 *
+	 * @param feature
+	 *            the feature key.
+	 * @return the slot of this feature.
+	 */
+	public int intern( final String feature )
+	{
+		final Integer slot = slots.get( feature );
+		if ( null != slot )
+			return slot.intValue();
+
+		synchronized ( keys )
+		{
+			final Integer s = slots.get( feature );
+			if ( null != s )
+				return s.intValue();
+
+			final int newSlot = keys.size();
+			final Column[] newColumns = new Column[ newSlot + 1 ];
+			System.arraycopy( columns, 0, newColumns, 0, newSlot );
+			newColumns[ newSlot ] = new Column();
+			columns = newColumns;
+			keys.add( feature );
+			slots.put( feature, Integer.valueOf( newSlot ) );
+			return newSlot;
+		}
+	}
+
+	/**
+	 * Returns the slot of the specified feature, or <code>-1</code> if it was
+	 * never interned in this store.
+	 *
+	 * @param feature
+	 *            the feature key.
+	 * @return the slot of the feature, or <code>-1</code>.
+	 */
+	public int slot( final String feature )
+	{
+		final Integer slot = slots.get( feature );
+		return null == slot ? -1 : slot.intValue();
+	}
+
+	/**
+	 * Returns the number of feature slots in this store.
+	 *
+	 * @return the number of slots.
+	 */
+	public int nSlots()
+	{
+		return columns.length;
+	}
+
+	/**
+	 * Returns the number of spot indices allocated in this store. Released
+	 * indices are reused, so this is the largest number of spots registered
+	 * at the same time.
+	 *
+	 * @return the number of spot indices.
+	 */
+	public int size()
+	{
+		return nextIndex.get();
+	}
+
+	/**
+	 * Returns the number of spots registered in this store that were not
+	 * released yet.
+	 *
+	 * @return the number of live spots.
+	 */
+	public int nSpots()
+	{
+		return references.size();
+	}
+
+	/**
+	 * Allocates a dense index in this store for the specified spot. The index
+	 * of a spot that was garbage-collected is reused if there is one.
+	 *
+	 * @param spot
+	 *            the spot. Its index is released when it is garbage-collected.
+	 * @return the spot index.
+	 */
+	int register( final Spot spot )
+	{
+		releaseCollected();
+		int index = -1;
+		synchronized ( references )
+		{
+			if ( nFree > 0 )
+				index = freeIndices[ --nFree ];
+		}
+		if ( index < 0 )
+			index = nextIndex.getAndIncrement();
+		references.add( new SpotReference( spot, index, released ) );
+		return index;
+	}
+
+	/**
+	 * Clears the values of the spots that were garbage-collected, and makes
+	 * their indices available.
+	 */
+	private void releaseCollected()
+	{
+		Reference< ? extends Spot > reference;
+		while ( null != ( reference = released.poll() ) )
+		{
+			final SpotReference spotReference = ( SpotReference ) reference;
+			if ( !references.remove( spotReference ) )
+				continue;
+
+			final int index = spotReference.index;
+			for ( final Column column : columns )
+				column.unset( index );
+			synchronized ( references )
+			{
+				if ( nFree == freeIndices.length )
+					freeIndices = Arrays.copyOf( freeIndices, 2 * nFree );
+				freeIndices[ nFree++ ] = index;
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the feature in the specified slot, for the spot with
+	 * the specified index, or {@link Double#NaN} if it is not set.
+	 *
+	 * @param slot
+	 *            the feature slot.
+	 * @param index
+	 *            the spot index.
+	 * @return the feature value.
+	 */
+	public double getDouble( final int slot, final int index )
+	{
+		return columns[ slot ].get( index );
+	}
+
+	/**
+	 * Returns <code>true</code> if the feature in the specified slot is set
+	 * for the spot with the specified index.
+	 *
+	 * @param slot
+	 *            the feature slot.
+	 * @param index
+	 *            the spot index.
+	 * @return whether the value is set.
+	 */
+	public boolean isSet( final int slot, final int index )
+	{
+		return columns[ slot ].isSet( index );
+	}
+
+	/**
+	 * Sets the value of the feature in the specified slot, for the spot with
+	 * the specified index.
+	 *
+	 * @param slot
+	 *            the feature slot.
+	 * @param index
+	 *            the spot index.
+	 * @param value
+	 *            the feature value.
+	 */
+	public void setDouble( final int slot, final int index, final double value )
+	{
+		columns[ slot ].set( index, value );
+	}
+
+	/**
+	 * Un-sets the value of the feature in the specified slot, for the spot with
+	 * the specified index.
+	 *
+	 * @param slot
+	 *            the feature slot.
+	 * @param index
+	 *            the spot index.
+	 * @return <code>true</code> if a value was set.
+	 */
+	public boolean unset( final int slot, final int index )
+	{
+		return columns[ slot ].unset( index );
+	}
+
+	Double get( final int index, final String feature )
+	{
+		final int slot = slot( feature );
+		if ( slot < 0 )
+			return null;
+		final Column column = columns[ slot ];
+		if ( !column.isSet( index ) )
+			return null;
+		return Double.valueOf( column.get( index ) );
+	}
+
+	void put( final int index, final String feature, final double value )
+	{
+		setDouble( intern( feature ), index, value );
+	}
+
+	Double remove( final int index, final String feature )
+	{
+		final int slot = slot( feature );
+		if ( slot < 0 )
+			return null;
+		final Column column = columns[ slot ];
+		if ( !column.isSet( index ) )
+			return null;
+		final double val = column.get( index );
+		column.unset( index );
+		return Double.valueOf( val );
+	}
+
+	/**
+	 * Returns a {@link Map} view of the features of the spot with the
+	 * specified index. Changes to the map are written to this store.
+	 *
+	 * @param spot
+	 *            the spot. The view keeps it alive, so that its index is not
+	 *            released while the view is in use.
+	 * @param index
+	 *            the spot index.
+	 * @return a new map view.
+	 */
+	Map< String, Double > asMap( final Spot spot, final int index )
+	{
+		return new SpotFeatureMap( spot, index );
+	}
+
+	/*
+	 * INNER CLASSES
+	 */
+
+	/**
+	 * The reference of a registered spot, enqueued when the spot is
+	 * garbage-collected.
+	 */
+	private static final class SpotReference extends PhantomReference< Spot >
+	{
+
+		private final int index;
+
+		private SpotReference( final Spot spot, final int index, final ReferenceQueue< Spot > queue )
+		{
+			super( spot, queue );
+			this.index = index;
+		}
+	}
+
+	private static final class Chunk
+	{
+
+		private final double[] values = new double[ CHUNK_SIZE ];
+
+		private final AtomicLongArray set = new AtomicLongArray( CHUNK_SIZE >>> 6 );
+	}
+
+	private static final class Column
+	{
+
+		private volatile Chunk[] chunks = new Chunk[ 0 ];
+
+		private double get( final int index )
+		{
+			final Chunk[] cs = chunks;
+			final int c = index >>> CHUNK_SHIFT;
+			if ( c >= cs.length || null == cs[ c ] )
+				return Double.NaN;
+			final Chunk chunk = cs[ c ];
+			final int i = index & CHUNK_MASK;
+			if ( ( chunk.set.get( i >>> 6 ) & ( 1L << i ) ) == 0 )
+				return Double.NaN;
+			return chunk.values[ i ];
+		}
+
+		private boolean isSet( final int index )
+		{
+			final Chunk[] cs = chunks;
+			final int c = index >>> CHUNK_SHIFT;
+			if ( c >= cs.length || null == cs[ c ] )
+				return false;
+			final int i = index & CHUNK_MASK;
+			return ( cs[ c ].set.get( i >>> 6 ) & ( 1L << i ) ) != 0;
+		}
+
+		private void set( final int index, final double value )
+		{
+			final Chunk chunk = chunk( index >>> CHUNK_SHIFT );
+			final int i = index & CHUNK_MASK;
+			chunk.values[ i ] = value;
+			final int w = i >>> 6;
+			final long mask = 1L << i;
+			long old;
+			do
+			{
+				old = chunk.set.get( w );
+				if ( ( old & mask ) != 0 )
+					return;
+			}
+			while ( !chunk.set.compareAndSet( w, old, old | mask ) );
+		}
+
+		private boolean unset( final int index )
+		{
+			final Chunk[] cs = chunks;
+			final int c = index >>> CHUNK_SHIFT;
+			if ( c >= cs.length || null == cs[ c ] )
+				return false;
+			final Chunk chunk = cs[ c ];
+			final int i = index & CHUNK_MASK;
+			final int w = i >>> 6;
+			final long mask = 1L << i;
+			long old;
+			do
+			{
+				old = chunk.set.get( w );
+				if ( ( old & mask ) == 0 )
+					return false;
+			}
+			while ( !chunk.set.compareAndSet( w, old, old & ~mask ) );
+			return true;
+		}
+
+		private Chunk chunk( final int c )
+		{
+			final Chunk[] cs = chunks;
+			if ( c < cs.length && null != cs[ c ] )
+				return cs[ c ];
+
+			synchronized ( this )
+			{
+				Chunk[] current = chunks;
+				if ( c >= current.length )
+				{
+					final Chunk[] grown = new Chunk[ Math.max( c + 1, current.length * 3 / 2 + 1 ) ];
+					System.arraycopy( current, 0, grown, 0, current.length );
+					current = grown;
+				}
+				if ( null == current[ c ] )
+				{
+					current[ c ] = new Chunk();
+					// Publish the new chunk.
+					chunks = current;
+				}
+				return current[ c ];
+			}
+		}
+	}
+
+	/**
+	 * A {@link Map} view over the features of one spot.
+	 */
+	private final class SpotFeatureMap extends AbstractMap< String, Double >
+	{
+
+		@SuppressWarnings( "unused" )
+		private final Spot spot;
+
+		private final int index;
+
+		private SpotFeatureMap( final Spot spot, final int index )
+		{
+			this.spot = spot;
+			this.index = index;
+		}
+
+		@Override
+		public Double get( final Object key )
+		{
+			if ( !( key instanceof String ) )
+				return null;
+			return SpotFeatureStore.this.get( index, ( String ) key );
+		}
+
+		@Override
+		public boolean containsKey( final Object key )
+		{
+			if ( !( key instanceof String ) )
+				return false;
+			final int slot = slot( ( String ) key );
+			return slot >= 0 && isSet( slot, index );
+		}
+
+		@Override
+		public Double put( final String key, final Double value )
+		{
+			final Double old = SpotFeatureStore.this.get( index, key );
+			SpotFeatureStore.this.put( index, key, value.doubleValue() );
+			return old;
+		}
+
+		@Override
+		public Double remove( final Object key )
+		{
+			if ( !( key instanceof String ) )
+				return null;
+			return SpotFeatureStore.this.remove( index, ( String ) key );
+		}
+
+		@Override
+		public Set< Map.Entry< String, Double > > entrySet()
+		{
+			return new AbstractSet< Map.Entry< String, Double > >()
+			{
+
+				@Override
+				public Iterator< Map.Entry< String, Double > > iterator()
+				{
+					return new EntryIterator( spot, index );
+				}
+
+				@Override
+				public int size()
+				{
+					int size = 0;
+					final Column[] cs = columns;
+					for ( int slot = 0; slot < cs.length; slot++ )
+						if ( cs[ slot ].isSet( index ) )
+							size++;
+					return size;
+				}
+			};
+		}
+	}
+
+	private final class EntryIterator implements Iterator< Map.Entry< String, Double > >
+	{
+
+		@SuppressWarnings( "unused" )
+		private final Spot spot;
+
+		private final int index;
+
+		private final Column[] cs = columns;
+
+		private int next = -1;
+
+		private int last = -1;
+
+		private EntryIterator( final Spot spot, final int index )
+		{
+			this.spot = spot;
+			this.index = index;
+			advance();
+		}
+
+		private void advance()
+		{
+			next++;
+			while ( next < cs.length && !cs[ next ].isSet( index ) )
+				next++;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < cs.length;
+		}
+
+		@Override
+		public Map.Entry< String, Double > next()
+		{
+			if ( next >= cs.length )
+				throw new NoSuchElementException();
+			last = next;
+			advance();
+			final String key;
+			synchronized ( keys )
+			{
+				key = keys.get( last );
+			}
+			return new AbstractMap.SimpleImmutableEntry<>( key, Double.valueOf( cs[ last ].get( index ) ) );
+		}
+
+		@Override
+		public void remove()
+		{
+			if ( last < 0 )
+				throw new IllegalStateException();
+			cs[ last ].unset( index );
+			last = -1;
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package fiji.plugin.trackmate;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -8,17 +7,23 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.scijava.Named;
 import org.scijava.util.VersionUtils;
 
+import fiji.plugin.trackmate.detection.DetectorPrefetcher;
+import fiji.plugin.trackmate.detection.FilteredImageCache;
+import fiji.plugin.trackmate.detection.FilteringSpotDetector;
 import fiji.plugin.trackmate.detection.ManualDetectorFactory;
+import fiji.plugin.trackmate.detection.PrefetchableSpotDetector;
 import fiji.plugin.trackmate.detection.SpotDetector;
 import fiji.plugin.trackmate.detection.SpotDetectorFactory;
 import fiji.plugin.trackmate.detection.SpotDetectorFactoryBase;
 import fiji.plugin.trackmate.detection.SpotGlobalDetector;
 import fiji.plugin.trackmate.detection.SpotGlobalDetectorFactory;
+import fiji.plugin.trackmate.detection.TileableSpotDetector;
 import fiji.plugin.trackmate.features.EdgeFeatureCalculator;
 import fiji.plugin.trackmate.features.FeatureFilter;
 import fiji.plugin.trackmate.features.SpotFeatureCalculator;
 import fiji.plugin.trackmate.features.TrackFeatureCalculator;
 import fiji.plugin.trackmate.tracking.SpotTracker;
+import fiji.plugin.trackmate.util.RoiMask;
 import fiji.plugin.trackmate.util.TMUtils;
 import net.imagej.ImgPlus;
 import net.imagej.axis.Axes;
@@ -27,6 +32,9 @@ import net.imglib2.algorithm.Algorithm;
 import net.imglib2.algorithm.Benchmark;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
 
 /**
  * <p>
@@ -64,6 +72,37 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 
 	private String name;
 
+	/**
+	 * If <code>true</code>, frame-by-frame detection reads frames ahead of
+	 * their processing.
+	 */
+	private boolean streamingDetection = false;
+
+	/**
+	 * The maximal memory, in bytes, used by the frames held in streaming
+	 * detection.
+	 */
+	private long prefetchMemory = DEFAULT_PREFETCH_MEMORY;
+
+	/**
+	 * Default maximal memory used by the frames held in streaming detection:
+	 * 256 MB.
+	 */
+	public static final long DEFAULT_PREFETCH_MEMORY = 256l * 1024l * 1024l;
+
+	/**
+	 * The size of the tiles frames are split into by
+	 * {@link TileableSpotDetector}s. If <code>0</code>, frames are processed
+	 * in one piece.
+	 */
+	private long detectionTileSize = 0;
+
+	/**
+	 * If not <code>null</code>, frame-by-frame detection reuses the filtered
+	 * images of {@link FilteringSpotDetector}s stored in this cache.
+	 */
+	private FilteredImageCache filteredImageCache;
+
 	/*
 	 * CONSTRUCTORS
 	 */
@@ -286,13 +325,24 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 		return false;
 	}
 
+	/**
+	 * Rasterizes the ROI of the settings within its crop, or returns
+	 * <code>null</code> if there is no ROI.
+	 */
+	private RoiMask getRoiMask()
+	{
+		if ( settings.roi == null )
+			return null;
+		return new RoiMask( settings.roi, settings.xstart, settings.xend, settings.ystart, settings.yend );
+	}
+
 	@SuppressWarnings( "rawtypes" )
 	private boolean processGlobal( final SpotGlobalDetectorFactory factory, final ImgPlus img, final Logger logger )
 	{
-		final Interval interval = TMUtils.getIntervalWithTime( img, settings );
-
 		// To translate spots, later
 		final double[] calibration = TMUtils.getSpatialCalibration( settings.imp );
+		final RoiMask roiMask = getRoiMask();
+		final Interval interval = TMUtils.cropToRoi( TMUtils.getIntervalWithTime( img, settings ), img, roiMask, RoiMask.margin( settings.detectorSettings, calibration ) );
 
 		final SpotGlobalDetector< ? > detector = factory.getDetector( interval );
 		if ( detector instanceof MultiThreaded )
@@ -312,24 +362,12 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 			 * Filter out spots not in the ROI.
 			 */
 			final SpotCollection spots;
-			if ( settings.roi != null )
+			if ( roiMask != null )
 			{
 				spots = new SpotCollection();
 				spots.setNumThreads( numThreads );
 				for ( int frame = settings.tstart; frame <= settings.tend; frame++ )
-				{
-					for ( final Spot spot : rawSpots.iterable( frame, false ) )
-					{
-						final List< Spot > spotsThisFrame = new ArrayList<>();
-						if ( settings.roi.contains(
-								( int ) Math.round( spot.getFeature( Spot.POSITION_X ) / calibration[ 0 ] ),
-								( int ) Math.round( spot.getFeature( Spot.POSITION_Y ) / calibration[ 1 ] ) ) )
-						{
-							spotsThisFrame.add( spot );
-						}
-						spots.put( frame, spotsThisFrame );
-					}
-				}
+					spots.put( frame, roiMask.filter( rawSpots.iterable( frame, false ), calibration ) );
 			}
 			else
 			{
@@ -357,7 +395,10 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 	@SuppressWarnings( "rawtypes" )
 	private boolean processFrameByFrame( final SpotDetectorFactory factory, final ImgPlus img, final Logger logger )
 	{
-		final Interval interval = TMUtils.getInterval( img, settings );
+		// To translate spots, later
+		final double[] calibration = TMUtils.getSpatialCalibration( settings.imp );
+		final RoiMask roiMask = getRoiMask();
+		final Interval interval = TMUtils.cropToRoi( TMUtils.getInterval( img, settings ), img, roiMask, RoiMask.margin( settings.detectorSettings, calibration ) );
 		final int zindex = img.dimensionIndex( Axes.Z );
 		final int numFrames = settings.tend - settings.tstart + 1;
 		// Final results holder, for all frames
@@ -366,8 +407,6 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 		// To report progress
 		final AtomicInteger spotFound = new AtomicInteger( 0 );
 		final AtomicInteger progress = new AtomicInteger( 0 );
-		// To translate spots, later
-		final double[] calibration = TMUtils.getSpatialCalibration( settings.imp );
 
 		/*
 		 * Fine tune multi-threading: If we have 10 threads and 15 frames to
@@ -386,15 +425,44 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 				+ ( ( threadsPerFrame > 1 ) ? ( threadsPerFrame + " threads" ) : "1 thread" )
 				+ " per frame.\n" );
 
-		final Thread[] threads = SimpleMultiThreading.newThreads( nSimultaneousFrames );
+		/*
+		 * Streaming: a producer thread creates the detectors and reads their
+		 * frames ahead, while the detection threads process the previous
+		 * ones. The memory budget covers the frames being processed, the one
+		 * the producer is reading and the ones waiting in the queue, so the
+		 * queue gets what is left by the first two. Detectors store
+		 * prefetched frames as float (LoG) or in the source type (DoG), so we
+		 * count the largest of the two.
+		 */
+		final boolean streaming = streamingDetection;
+		final DetectorPrefetcher prefetcher;
+		if ( streaming )
+		{
+			final int sourceBits = ( ( RealType ) Util.getTypeFromInterval( img ) ).getBitsPerPixel();
+			final long bytesPerPixel = Math.max( Float.BYTES, ( sourceBits + 7 ) / 8 );
+			final long frameBytes = Math.max( 1l, bytesPerPixel * Intervals.numElements( interval ) );
+			final long inFlight = nSimultaneousFrames + 1l;
+			final int capacity = ( int ) Math.max( 1l, Math.min( 2l * nSimultaneousFrames, prefetchMemory / frameBytes - inFlight ) );
+			prefetcher = new DetectorPrefetcher( factory, interval, settings.tstart, settings.tend, capacity );
+			logger.log( "Streaming detection reads up to " + capacity + " frame(s) ahead.\n" );
+		}
+		else
+		{
+			prefetcher = null;
+		}
+
+		final Thread[] threads = SimpleMultiThreading.newThreads( streaming ? nSimultaneousFrames + 1 : nSimultaneousFrames );
 		final AtomicBoolean ok = new AtomicBoolean( true );
 
 		// Prepare the thread array
 		final AtomicInteger ai = new AtomicInteger( settings.tstart );
-		for ( int ithread = 0; ithread < threads.length; ithread++ )
+		if ( streaming )
+			threads[ nSimultaneousFrames ] = new Thread( prefetcher, "TrackMate spot detection prefetch thread" );
+
+		for ( int ithread = 0; ithread < nSimultaneousFrames; ithread++ )
 		{
 
-			threads[ ithread ] = new Thread( "TrackMate spot detection thread " + ( 1 + ithread ) + "/" + threads.length )
+			threads[ ithread ] = new Thread( "TrackMate spot detection thread " + ( 1 + ithread ) + "/" + nSimultaneousFrames )
 			{
 				private boolean wasInterrupted()
 				{
@@ -414,85 +482,114 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 				@Override
 				public void run()
 				{
-
-					for ( int frame = ai.getAndIncrement(); frame <= settings.tend; frame = ai.getAndIncrement() )
-						try
-						{
-							// Yield detector for target frame
-							final SpotDetector< ? > detector = factory.getDetector( interval, frame );
-							if ( detector instanceof MultiThreaded )
+					try
+					{
+						while ( true )
+							try
 							{
-								final MultiThreaded md = ( MultiThreaded ) detector;
-								md.setNumThreads( threadsPerFrame );
-							}
+								// Yield detector for target frame
+								final int frame;
+								final SpotDetector< ? > detector;
+								if ( streaming )
+								{
+									final DetectorPrefetcher.Prefetched next = prefetcher.next();
+									if ( null == next )
+										return;
+									frame = next.frame;
+									detector = next.detector;
+								}
+								else
+								{
+									frame = ai.getAndIncrement();
+									if ( frame > settings.tend )
+										return;
+									detector = factory.getDetector( interval, frame );
+								}
 
-							if ( wasInterrupted() )
-								return;
+								if ( detector instanceof MultiThreaded )
+								{
+									final MultiThreaded md = ( MultiThreaded ) detector;
+									md.setNumThreads( threadsPerFrame );
+								}
+								if ( detector instanceof TileableSpotDetector )
+									( ( TileableSpotDetector< ? > ) detector ).setTileSize( detectionTileSize );
 
-							// Execute detection
-							if ( ok.get() && detector.checkInput() && detector.process() )
-							{
-								// On success, get results.
-								final List< Spot > spotsThisFrame = detector.getResult();
-
-								/*
-								 * Special case: if we have a single column
-								 * image, then the detectors internally dealt
-								 * with a single line image. We need to permute
-								 * back the X & Y coordinates if it's the case.
-								 */
-								if ( img.dimension( 0 ) < 2 && zindex < 0 )
+								if ( wasInterrupted() )
+									return;
+
+								// Execute detection
+								final boolean detected;
+								if ( null != filteredImageCache && detector instanceof FilteringSpotDetector )
+									detected = ok.get() && filteredImageCache.process( ( FilteringSpotDetector< ? > ) detector, frame, interval, factory.getKey(), settings.detectorSettings );
+								else
+									detected = ok.get() && detector.checkInput() && detector.process();
+								if ( detected )
 								{
-									for ( final Spot spot : spotsThisFrame )
+									// On success, get results.
+									final List< Spot > spotsThisFrame = detector.getResult();
+
+									/*
+									 * Special case: if we have a single column
+									 * image, then the detectors internally dealt
+									 * with a single line image. We need to permute
+									 * back the X & Y coordinates if it's the case.
+									 */
+									if ( img.dimension( 0 ) < 2 && zindex < 0 )
 									{
-										spot.putFeature( Spot.POSITION_Y, spot.getDoublePosition( 0 ) );
-										spot.putFeature( Spot.POSITION_X, 0d );
+										for ( final Spot spot : spotsThisFrame )
+										{
+											spot.putFeature( Spot.POSITION_Y, spot.getDoublePosition( 0 ) );
+											spot.putFeature( Spot.POSITION_X, 0d );
+										}
 									}
-								}
 
-								List< Spot > prunedSpots;
-								if ( settings.roi != null )
-								{
-									prunedSpots = new ArrayList<>();
-									for ( final Spot spot : spotsThisFrame )
+									final List< Spot > prunedSpots = ( roiMask != null )
+											? roiMask.filter( spotsThisFrame, calibration )
+											: spotsThisFrame;
+									// Add detection feature other than position
+									for ( final Spot spot : prunedSpots )
 									{
-										if ( settings.roi.contains( (int) Math.round( spot.getFeature( Spot.POSITION_X ) / calibration[ 0 ] ), (int) Math.round( spot.getFeature( Spot.POSITION_Y ) / calibration[ 1 ] ) ) )
-											prunedSpots.add( spot );
+										// FRAME will be set upon adding to
+										// SpotCollection.
+										spot.putFeature( Spot.POSITION_T, frame * settings.dt );
 									}
+									// Store final results for this frame
+									spots.put( frame, prunedSpots );
+									// Report
+									spotFound.addAndGet( prunedSpots.size() );
+									logger.setProgress( progress.incrementAndGet() / ( double ) numFrames );
+
 								}
 								else
 								{
-									prunedSpots = spotsThisFrame;
+									// Fail: exit and report error.
+									ok.set( false );
+									errorMessage = detector.getErrorMessage();
+									return;
 								}
-								// Add detection feature other than position
-								for ( final Spot spot : prunedSpots )
-								{
-									// FRAME will be set upon adding to
-									// SpotCollection.
-									spot.putFeature( Spot.POSITION_T, frame * settings.dt );
-								}
-								// Store final results for this frame
-								spots.put( frame, prunedSpots );
-								// Report
-								spotFound.addAndGet( prunedSpots.size() );
-								logger.setProgress( progress.incrementAndGet() / ( double ) numFrames );
 
 							}
-							else
+							catch ( final InterruptedException e )
 							{
-								// Fail: exit and report error.
-								ok.set( false );
-								errorMessage = detector.getErrorMessage();
 								return;
 							}
-
-						}
-						catch ( final RuntimeException e )
-						{
-							final Throwable cause = e.getCause();
-							if ( cause != null && cause instanceof InterruptedException ) { return; }
-							throw e;
-						}
+							catch ( final RuntimeException e )
+							{
+								final Throwable cause = e.getCause();
+								if ( cause != null && cause instanceof InterruptedException ) { return; }
+								// The frames of this worker are lost.
+								ok.set( false );
+								errorMessage = "Detection failed: " + e.getMessage();
+								throw e;
+							}
+					}
+					finally
+					{
+						// Whatever the reason we stop, the producer must not wait
+						// for us.
+						if ( streaming )
+							prefetcher.cancel();
+					}
 				}
 			};
 		}
@@ -530,6 +627,11 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 				throw e;
 			}
 		}
+		if ( streaming && null != prefetcher.getErrorMessage() )
+		{
+			ok.set( false );
+			errorMessage = prefetcher.getErrorMessage();
+		}
 		model.setSpots( spots, true );
 
 		if ( ok.get() )
@@ -746,6 +848,66 @@ public class TrackMate implements Benchmark, MultiThreaded, Algorithm, Named
 		return processingTime;
 	}
 
+	/**
+	 * Sets whether frame-by-frame detection streams frames. In streaming
+	 * mode, a dedicated thread creates the detectors and, for
+	 * {@link PrefetchableSpotDetector}s, reads their frames ahead while the
+	 * previous frames are being processed, so that I/O and computation
+	 * overlap. Streaming is off by default, including for virtual stacks.
+	 *
+	 * @param streamingDetection
+	 *            whether to stream frames.
+	 */
+	public void setStreamingDetection( final boolean streamingDetection )
+	{
+		this.streamingDetection = streamingDetection;
+	}
+
+	/**
+	 * Sets the maximal memory used by the frames held in streaming detection:
+	 * the frames being processed, the frame being read and the frames waiting
+	 * to be processed. At least one frame is read ahead, even if this exceeds
+	 * the budget.
+	 *
+	 * @param prefetchMemory
+	 *            the memory, in bytes.
+	 */
+	public void setPrefetchMemory( final long prefetchMemory )
+	{
+		this.prefetchMemory = prefetchMemory;
+	}
+
+	/**
+	 * Sets the size of the tiles frames are split into in frame-by-frame
+	 * detection, for the detectors that support it. Tiles are processed in
+	 * parallel and the memory used per frame is bounded by the tile size,
+	 * which is useful for very large frames.
+	 *
+	 * @param detectionTileSize
+	 *            the tile size along each dimension, in pixels. If
+	 *            <code>0</code>, frames are processed in one piece.
+	 */
+	public void setDetectionTileSize( final long detectionTileSize )
+	{
+		this.detectionTileSize = detectionTileSize;
+	}
+
+	/**
+	 * Sets the cache of filtered images used in frame-by-frame detection.
+	 * Detection then skips the filtering step of {@link FilteringSpotDetector}s
+	 * when the cache holds the filtered image of the frame for the current
+	 * filtering parameters, so that changing only the quality threshold of an
+	 * interactive preview is fast.
+	 *
+	 * @param filteredImageCache
+	 *            the cache, or <code>null</code> to process all frames from
+	 *            scratch.
+	 */
+	public void setFilteredImageCache( final FilteredImageCache filteredImageCache )
+	{
+		this.filteredImageCache = filteredImageCache;
+	}
+
 	// --- org.scijava.Named methods ---
 
 	@Override
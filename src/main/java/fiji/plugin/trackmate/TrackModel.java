@@ -1,5 +1,7 @@
 package fiji.plugin.trackmate;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -12,23 +14,19 @@ import java.util.Set;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import org.jgrapht.Graph;
+import org.jgrapht.Graphs;
 import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
-import org.jgrapht.event.ConnectedComponentTraversalEvent;
-import org.jgrapht.event.EdgeTraversalEvent;
 import org.jgrapht.event.GraphEdgeChangeEvent;
 import org.jgrapht.event.GraphListener;
 import org.jgrapht.event.GraphVertexChangeEvent;
-import org.jgrapht.event.TraversalListener;
-import org.jgrapht.event.TraversalListenerAdapter;
-import org.jgrapht.event.VertexTraversalEvent;
 import org.jgrapht.graph.AsUnweightedGraph;
 import org.jgrapht.graph.DefaultListenableGraph;
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 import org.jgrapht.graph.SimpleWeightedGraph;
-import org.jgrapht.traverse.BreadthFirstIterator;
 import org.jgrapht.traverse.DepthFirstIterator;
 import org.jgrapht.traverse.GraphIterator;
+import fiji.plugin.trackmate.graph.CompactTrackGraph;
 import fiji.plugin.trackmate.graph.Function1;
 import fiji.plugin.trackmate.graph.SortedDepthFirstIterator;
 import fiji.plugin.trackmate.graph.TimeDirectedDepthFirstIterator;
@@ -51,6 +49,9 @@ public class TrackModel
 	 * trough the model methods {@link #addEdge(Spot, Spot, double)},
 	 * {@link #removeEdge(DefaultWeightedEdge)}, {@link #removeEdge(Spot, Spot)}
 	 * .
+	 * <p>
+	 * It wraps a {@link CompactTrackGraph}, into which the graphs passed to
+	 * this model are copied.
 	 */
 	private DefaultListenableGraph< Spot, DefaultWeightedEdge > graph;
 
@@ -110,11 +111,19 @@ public class TrackModel
 
 	private Map< Integer, Set< DefaultWeightedEdge > > connectedEdgeSets;
 
-	Map< DefaultWeightedEdge, Integer > edgeToID;
+	/**
+	 * Maps edges to a node of the disjoint-set forest. The track ID of an edge
+	 * is carried by the root of this node.
+	 */
+	private Map< DefaultWeightedEdge, TrackNode > edgeToNode;
 
 	private Map< Integer, Set< Spot > > connectedVertexSets;
 
-	Map< Spot, Integer > vertexToID;
+	/**
+	 * Maps spots to a node of the disjoint-set forest. The track ID of a spot
+	 * is carried by the root of this node.
+	 */
+	private Map< Spot, TrackNode > vertexToNode;
 
 	private Map< Integer, Boolean > visibility;
 
@@ -122,6 +131,27 @@ public class TrackModel
 
 	private final Iterator< String > nameGenerator = new DefaultNameGenerator();
 
+	/*
+	 * SNAPSHOT FIELDS
+	 */
+
+	/**
+	 * Incremented every time the tracks, their visibility or their names
+	 * change.
+	 */
+	private volatile long version = 0;
+
+	/**
+	 * The IDs of the tracks that changed since the last snapshot was taken.
+	 */
+	private final Set< Integer > changedTracks = new HashSet< >();
+
+	/**
+	 * The last snapshot taken. Possibly out of date, <code>null</code> if it
+	 * must be rebuilt from scratch.
+	 */
+	private volatile TrackSnapshot snapshot;
+
 	/*
 	 * Constructors -----------------------------------------------------------
 	 */
@@ -146,6 +176,9 @@ public class TrackModel
 	 * Clears the content of this model and replace it by the tracks found by
 	 * inspecting the specified graph. All new tracks found will be made visible
 	 * and will be given a default name.
+	 * <p>
+	 * The specified graph is copied and not modified by this model. The spot
+	 * and edge instances are shared.
 	 *
 	 * @param graph
 	 *            the graph to parse for tracks.
@@ -156,9 +189,59 @@ public class TrackModel
 		{
 			this.graph.removeGraphListener( mgl );
 		}
-		this.graph = new DefaultListenableGraph< >( graph );
+		this.graph = new DefaultListenableGraph< >( new CompactTrackGraph( graph ) );
+		this.graph.addGraphListener( mgl );
+		init( this.graph );
+	}
+
+	/**
+	 * Clears the content of this model and replace it by the tracks formed by
+	 * the specified links. All new tracks found will be made visible and will
+	 * be given a default name.
+	 * <p>
+	 * Link <code>i</code> connects <code>sources[i]</code> and
+	 * <code>targets[i]</code> with the weight <code>weights[i]</code>. The
+	 * links are added to the graph and merged in the disjoint-set forest in
+	 * the same pass, without an intermediate graph.
+	 *
+	 * @param spots
+	 *            all the spots of the graph.
+	 * @param nSpots
+	 *            the number of spots.
+	 * @param sources
+	 *            the link sources.
+	 * @param targets
+	 *            the link targets.
+	 * @param weights
+	 *            the link weights.
+	 * @throws IllegalArgumentException
+	 *             if a link connects a spot to itself or is specified twice.
+	 *             This model is then left unchanged.
+	 */
+	void setLinks( final Iterable< Spot > spots, final int nSpots, final Spot[] sources, final Spot[] targets, final double[] weights )
+	{
+		final CompactTrackGraph lGraph = new CompactTrackGraph( nSpots, sources.length );
+		for ( final Spot spot : spots )
+			lGraph.addVertex( spot );
+
+		final Map< Spot, TrackNode > lVertexToNode = new HashMap< >();
+		final Map< DefaultWeightedEdge, TrackNode > lEdgeToNode = new HashMap< >();
+		for ( int i = 0; i < sources.length; i++ )
+		{
+			final DefaultWeightedEdge edge = lGraph.addEdge( sources[ i ], targets[ i ] );
+			if ( null == edge )
+				throw new IllegalArgumentException( "Link from " + sources[ i ] + " to " + targets[ i ] + " is specified twice." );
+			lGraph.setEdgeWeight( edge, weights[ i ] );
+			link( lVertexToNode, lEdgeToNode, edge, sources[ i ], targets[ i ] );
+		}
+
+		if ( null != this.graph )
+		{
+			this.graph.removeGraphListener( mgl );
+		}
+		this.graph = new DefaultListenableGraph< >( lGraph );
 		this.graph.addGraphListener( mgl );
-		init( graph );
+		init( this.graph, lVertexToNode, lEdgeToNode );
 	}
 
 	/**
@@ -180,7 +263,8 @@ public class TrackModel
 	 * component are coherent. Unexpected behavior might result otherwise.
 	 *
 	 * @param lGraph
-	 *            the mother graph for the model.
+	 *            the mother graph for the model. It is copied, sharing its
+	 *            spot and edge instances.
 	 * @param trackSpots
 	 *            the mapping of track IDs vs the connected components as sets
 	 *            of spots.
@@ -199,13 +283,14 @@ public class TrackModel
 		{
 			this.graph.removeGraphListener( mgl );
 		}
-		this.graph = new DefaultListenableGraph< >( lGraph );
+		this.graph = new DefaultListenableGraph< >( new CompactTrackGraph( lGraph ) );
 		this.graph.addGraphListener( mgl );
 
 		edgesAdded.clear();
 		edgesModified.clear();
 		edgesRemoved.clear();
 		tracksUpdated.clear();
+		resetSnapshot();
 
 		visibility = trackVisibility;
 		names = trackNames;
@@ -214,16 +299,26 @@ public class TrackModel
 
 		// Rebuild the id maps
 		IDcounter = 0;
-		vertexToID = new HashMap< >();
+		vertexToNode = new HashMap< >();
+		edgeToNode = new HashMap< >();
 		int nameID;
 		int nameIDCounter = -1;
 		final int prefixLength = DefaultNameGenerator.DEFAULT_NAME_PREFIX.length();
 		final Pattern namePattern = Pattern.compile( "^" + DefaultNameGenerator.DEFAULT_NAME_PREFIX + "[0-9]+$" );		
 		for ( final Integer id : trackSpots.keySet() )
 		{
+			final TrackNode root = new TrackNode( id );
 			for ( final Spot spot : trackSpots.get( id ) )
 			{
-				vertexToID.put( spot, id );
+				vertexToNode.put( spot, root );
+			}
+			final Set< DefaultWeightedEdge > edges = trackEdges.get( id );
+			if ( null != edges )
+			{
+				for ( final DefaultWeightedEdge edge : edges )
+				{
+					edgeToNode.put( edge, root );
+				}
 			}
 			if ( id > IDcounter )
 			{
@@ -241,16 +336,6 @@ public class TrackModel
 		}
 		IDcounter++;
 		( ( DefaultNameGenerator ) nameGenerator ).setNameID( ++nameIDCounter );
-
-		edgeToID = new HashMap< >();
-		for ( final Integer id : trackEdges.keySet() )
-		{
-			for ( final DefaultWeightedEdge edge : trackEdges.get( id ) )
-			{
-				edgeToID.put( edge, id );
-			}
-		}
-
 	}
 
 	/*
@@ -300,6 +385,7 @@ public class TrackModel
 
 	Boolean setVisibility( final Integer trackID, final boolean visible )
 	{
+		version++;
 		return visibility.put( trackID, Boolean.valueOf( visible ) );
 	}
 
@@ -571,6 +657,7 @@ public class TrackModel
 	 */
 	public void setName( final Integer id, final String name )
 	{
+		version++;
 		names.put( id, name );
 	}
 
@@ -623,7 +710,7 @@ public class TrackModel
 	 */
 	public Integer trackIDOf( final DefaultWeightedEdge edge )
 	{
-		return edgeToID.get( edge );
+		return idOf( edgeToNode.get( edge ) );
 	}
 
 	/**
@@ -637,24 +724,181 @@ public class TrackModel
 	 */
 	public Integer trackIDOf( final Spot spot )
 	{
-		return vertexToID.get( spot );
+		return idOf( vertexToNode.get( spot ) );
+	}
+
+	/*
+	 * SNAPSHOTS
+	 */
+
+	/**
+	 * Returns the last snapshot taken of the tracks, if it is up to date, or
+	 * <code>null</code> otherwise. Safe to call while the model is edited.
+	 *
+	 * @return the snapshot or <code>null</code>.
+	 */
+	TrackSnapshot currentSnapshot()
+	{
+		final TrackSnapshot s = snapshot;
+		if ( null != s && s.version() == version )
+			return s;
+		return null;
+	}
+
+	/**
+	 * Returns an up-to-date snapshot of the tracks. Only the tracks that
+	 * changed since the last snapshot are copied. This method must not be
+	 * called while the model is edited.
+	 *
+	 * @return a snapshot of the tracks.
+	 * @see Model#getTrackSnapshot()
+	 */
+	TrackSnapshot snapshot()
+	{
+		final TrackSnapshot previous = snapshot;
+		final long v = version;
+		if ( null != previous && previous.version() == v )
+			return previous;
+
+		final Map< Integer, TrackSnapshot.Track > tracks;
+		if ( null == previous )
+		{
+			tracks = new HashMap< >( connectedEdgeSets.size() );
+			for ( final Integer id : connectedEdgeSets.keySet() )
+				tracks.put( id, snapshotTrack( id ) );
+		}
+		else
+		{
+			tracks = new HashMap< >( previous.tracks );
+			for ( final Integer id : changedTracks )
+			{
+				if ( connectedEdgeSets.containsKey( id ) )
+					tracks.put( id, snapshotTrack( id ) );
+				else
+					tracks.remove( id );
+			}
+		}
+		changedTracks.clear();
+
+		final Integer[] allIDs = tracks.keySet().toArray( new Integer[ tracks.size() ] );
+		Arrays.sort( allIDs, Comparator.comparing( names::get, AlphanumComparator.instance ) );
+		int nVisible = 0;
+		final Integer[] visibleIDs = new Integer[ allIDs.length ];
+		for ( final Integer id : allIDs )
+			if ( visibility.get( id ) )
+				visibleIDs[ nVisible++ ] = id;
+
+		final TrackSnapshot s = new TrackSnapshot( v, Collections.unmodifiableMap( tracks ), allIDs, Arrays.copyOf( visibleIDs, nVisible ) );
+		snapshot = s;
+		return s;
+	}
+
+	private TrackSnapshot.Track snapshotTrack( final Integer id )
+	{
+		final Set< DefaultWeightedEdge > edgeSet = connectedEdgeSets.get( id );
+		final DefaultWeightedEdge[] edges = edgeSet.toArray( new DefaultWeightedEdge[ edgeSet.size() ] );
+		final Spot[] sources = new Spot[ edges.length ];
+		final Spot[] targets = new Spot[ edges.length ];
+		for ( int i = 0; i < edges.length; i++ )
+		{
+			sources[ i ] = graph.getEdgeSource( edges[ i ] );
+			targets[ i ] = graph.getEdgeTarget( edges[ i ] );
+		}
+		return new TrackSnapshot.Track( edges, sources, targets, connectedVertexSets.get( id ) );
 	}
 
 	/*
 	 * PRIVATE METHODS
 	 */
 
+	/**
+	 * Records that the content of the specified track changed, so that the
+	 * next snapshot copies it.
+	 */
+	private void trackChanged( final Integer id )
+	{
+		version++;
+		if ( null == snapshot )
+			return;
+
+		changedTracks.add( id );
+		// Past this size, a snapshot from scratch is cheaper.
+		if ( changedTracks.size() > connectedEdgeSets.size() )
+			resetSnapshot();
+	}
+
+	/**
+	 * Discards the last snapshot, so that the next one is built from scratch.
+	 */
+	private void resetSnapshot()
+	{
+		version++;
+		snapshot = null;
+		changedTracks.clear();
+	}
+
+	/**
+	 * Returns the track ID carried by the root of the specified node, or
+	 * <code>null</code> if the node is <code>null</code>.
+	 */
+	private static Integer idOf( final TrackNode node )
+	{
+		if ( null == node )
+			return null;
+		return node.find().id;
+	}
+
 	/**
 	 * Generates initial connected sets in bulk, from a graph. All sets are
 	 * created visible, and are give a default name.
+	 * <p>
+	 * This is done in one pass over the edges, that merges the spots they link
+	 * in the disjoint-set forest, and one pass over the spots and edges to
+	 * build the sets. Tracks are numbered in the order of their first spot in
+	 * the graph.
 	 * 
 	 * @param lGraph
 	 *            the graph to read edges and vertices from.
 	 */
 	private void init( final Graph< Spot, DefaultWeightedEdge > lGraph )
 	{
-		vertexToID = new HashMap< >();
-		edgeToID = new HashMap< >();
+		final Map< Spot, TrackNode > lVertexToNode = new HashMap< >();
+		final Map< DefaultWeightedEdge, TrackNode > lEdgeToNode = new HashMap< >();
+		for ( final DefaultWeightedEdge edge : lGraph.edgeSet() )
+			link( lVertexToNode, lEdgeToNode, edge, lGraph.getEdgeSource( edge ), lGraph.getEdgeTarget( edge ) );
+		init( lGraph, lVertexToNode, lEdgeToNode );
+	}
+
+	/**
+	 * Merges the spots of the specified edge in the disjoint-set forest, and
+	 * maps the edge to the node of its source.
+	 */
+	private static void link( final Map< Spot, TrackNode > lVertexToNode, final Map< DefaultWeightedEdge, TrackNode > lEdgeToNode, final DefaultWeightedEdge edge, final Spot source, final Spot target )
+	{
+		final TrackNode sn = lVertexToNode.computeIfAbsent( source, v -> new TrackNode( null ) );
+		final TrackNode tn = lVertexToNode.computeIfAbsent( target, v -> new TrackNode( null ) );
+		final TrackNode sroot = sn.find();
+		final TrackNode troot = tn.find();
+		if ( sroot != troot )
+			sroot.union( troot );
+		lEdgeToNode.put( edge, sn );
+	}
+
+	/**
+	 * Builds the connected sets from the disjoint-set forest of the edges of
+	 * the specified graph.
+	 *
+	 * @param lGraph
+	 *            the graph to read edges and vertices from.
+	 * @param lVertexToNode
+	 *            the nodes of the linked spots.
+	 * @param lEdgeToNode
+	 *            the nodes of the edges.
+	 */
+	private void init( final Graph< Spot, DefaultWeightedEdge > lGraph, final Map< Spot, TrackNode > lVertexToNode, final Map< DefaultWeightedEdge, TrackNode > lEdgeToNode )
+	{
+		vertexToNode = lVertexToNode;
+		edgeToNode = lEdgeToNode;
 		IDcounter = 0;
 		visibility = new HashMap< >();
 		names = new HashMap< >();
@@ -665,17 +909,33 @@ public class TrackModel
 		edgesModified.clear();
 		edgesRemoved.clear();
 		tracksUpdated.clear();
+		resetSnapshot();
 
-		final Set< Spot > vertexSet = lGraph.vertexSet();
-		if ( vertexSet.size() > 0 )
+		// Spots that are not linked are not in the map and have no track.
+		for ( final Spot spot : lGraph.vertexSet() )
 		{
-			final BreadthFirstIterator< Spot, DefaultWeightedEdge > i = new BreadthFirstIterator< >( lGraph );
-			i.addTraversalListener( new MyTraversalListener() );
+			final TrackNode node = vertexToNode.get( spot );
+			if ( null == node )
+				continue;
 
-			while ( i.hasNext() )
+			final TrackNode root = node.find();
+			if ( null == root.id )
 			{
-				i.next();
+				root.id = IDcounter++;
+				connectedVertexSets.put( root.id, new HashSet< >() );
+				connectedEdgeSets.put( root.id, new HashSet< >() );
+				visibility.put( root.id, DEFAULT_VISIBILITY );
+				names.put( root.id, nameGenerator.next() );
 			}
+			connectedVertexSets.get( root.id ).add( spot );
+			vertexToNode.put( spot, root );
+		}
+
+		for ( final DefaultWeightedEdge edge : lGraph.edgeSet() )
+		{
+			final TrackNode root = edgeToNode.get( edge ).find();
+			connectedEdgeSets.get( root.id ).add( edge );
+			edgeToNode.put( edge, root );
 		}
 	}
 
@@ -809,77 +1069,6 @@ public class TrackModel
 	 * Inner Classes
 	 */
 
-	private class MyTraversalListener implements TraversalListener< Spot, DefaultWeightedEdge >
-	{
-		private Set< Spot > currentConnectedVertexSet;
-
-		private Set< DefaultWeightedEdge > currentConnectedEdgeSet;
-
-		private Integer ID;
-
-		/**
-		 * Called when after traversing a connected set. Stores it, gives it
-		 * default visibility, and a default name. Discard sets made of 1
-		 * vertices or 0 edges.
-		 */
-		@Override
-		public void connectedComponentFinished( final ConnectedComponentTraversalEvent event )
-		{
-			if ( currentConnectedVertexSet.size() <= 1 || currentConnectedEdgeSet.size() == 0 )
-			{
-				// Forget them
-				for ( final DefaultWeightedEdge e : currentConnectedEdgeSet )
-				{
-					edgeToID.remove( e );
-				}
-				for ( final Spot v : currentConnectedVertexSet )
-				{
-					vertexToID.remove( v );
-				}
-				return;
-			}
-			// Adds them
-			connectedVertexSets.put( ID, currentConnectedVertexSet );
-			connectedEdgeSets.put( ID, currentConnectedEdgeSet );
-			visibility.put( ID, DEFAULT_VISIBILITY );
-			names.put( ID, nameGenerator.next() );
-		}
-
-		/**
-		 * @see TraversalListenerAdapter#connectedComponentStarted(ConnectedComponentTraversalEvent)
-		 */
-		@Override
-		public void connectedComponentStarted( final ConnectedComponentTraversalEvent e )
-		{
-			currentConnectedVertexSet = new HashSet< >();
-			currentConnectedEdgeSet = new HashSet< >();
-			ID = IDcounter++;
-		}
-
-		/**
-		 * @see TraversalListenerAdapter#vertexTraversed(VertexTraversalEvent)
-		 */
-		@Override
-		public void vertexTraversed( final VertexTraversalEvent< Spot > event )
-		{
-			final Spot v = event.getVertex();
-			currentConnectedVertexSet.add( v );
-			vertexToID.put( v, ID );
-		}
-
-		@Override
-		public void edgeTraversed( final EdgeTraversalEvent< DefaultWeightedEdge > event )
-		{
-			final DefaultWeightedEdge e = event.getEdge();
-			currentConnectedEdgeSet.add( e );
-			edgeToID.put( e, ID );
-		}
-
-		@Override
-		public void vertexFinished( final VertexTraversalEvent< Spot > e )
-		{}
-	}
-
 	/**
 	 * This listener class is made to deal with complex changes in the track
 	 * graph.
@@ -930,10 +1119,10 @@ public class TrackModel
 			if ( null == connectedEdgeSets ) { return; }
 
 			final Spot v = event.getVertex();
-			vertexToID.remove( v );
-			final Integer id = vertexToID.get( v );
+			final Integer id = idOf( vertexToNode.remove( v ) );
 			if ( id != null )
 			{
+				trackChanged( id );
 				final Set< Spot > set = connectedVertexSets.get( id );
 				if ( null == set ) { return; // it was removed when removing the
 												// last edge of a track, most
@@ -968,17 +1157,21 @@ public class TrackModel
 
 			// Was it added to known tracks?
 			final Spot sv = graph.getEdgeSource( e );
-			final Integer sid = vertexToID.get( sv );
+			final TrackNode sn = vertexToNode.get( sv );
 			final Spot tv = graph.getEdgeTarget( e );
-			final Integer tid = vertexToID.get( tv );
+			final TrackNode tn = vertexToNode.get( tv );
 
-			if ( null != tid && null != sid )
+			if ( null != tn && null != sn )
 			{
 				// Case 1: it was added between two existing sets. We connect
 				// them, therefore
 				// and take the id of the largest one. The other id, disappear,
 				// unless they
 				// belonged to the same set.
+				final TrackNode sroot = sn.find();
+				final TrackNode troot = tn.find();
+				final Integer sid = sroot.id;
+				final Integer tid = troot.id;
 
 				// Did they come from the same set?
 				if ( tid.equals( sid ) )
@@ -986,67 +1179,55 @@ public class TrackModel
 					// They come from the same set (equals ID). Not much to do.
 					final Set< DefaultWeightedEdge > ses = connectedEdgeSets.get( sid );
 					ses.add( e );
-					edgeToID.put( e, sid );
+					edgeToNode.put( e, sroot );
+					trackChanged( sid );
 
 				}
 				else
 				{
 					// They come from different sets.
-
-					// Edges:
-					final Set< DefaultWeightedEdge > ses = connectedEdgeSets.get( sid );
-					final Set< DefaultWeightedEdge > tes = connectedEdgeSets.get( tid );
-					final HashSet< DefaultWeightedEdge > nes = new HashSet< >( ses.size() + tes.size() + 1 );
-					nes.addAll( ses );
-					nes.addAll( tes );
-					nes.add( e );
-
-					// Vertices:
 					final Set< Spot > svs = connectedVertexSets.get( sid );
 					final Set< Spot > tvs = connectedVertexSets.get( tid );
-					final HashSet< Spot > nvs = new HashSet< >( ses.size() + tes.size() );
-					nvs.addAll( svs );
-					nvs.addAll( tvs );
+					final Set< DefaultWeightedEdge > ses = connectedEdgeSets.get( sid );
+					final Set< DefaultWeightedEdge > tes = connectedEdgeSets.get( tid );
 
-					Integer nid, rid;
-					if ( nvs.size() > tvs.size() )
+					// The largest set (in vertices) keeps its id.
+					final Integer nid, rid;
+					if ( svs.size() >= tvs.size() )
 					{
 						nid = sid;
 						rid = tid;
-						for ( final Spot v : tvs )
-						{
-							// Vertices of target set change id
-							vertexToID.put( v, nid );
-						}
-						for ( final DefaultWeightedEdge te : tes )
-						{
-							edgeToID.put( te, nid );
-						}
 					}
 					else
 					{
 						nid = tid;
 						rid = sid;
-						for ( final Spot v : svs )
-						{
-							// Vertices of source set change id
-							vertexToID.put( v, nid );
-						}
-						for ( final DefaultWeightedEdge se : ses )
-						{
-							edgeToID.put( se, nid );
-						}
 					}
-					edgeToID.put( e, nid );
-					connectedVertexSets.put( nid, nvs );
+
+					/*
+					 * The smallest sets are added to the largest ones, in
+					 * place. The ids of their content are changed by linking
+					 * the two roots of the disjoint-set forest, so we do not
+					 * have to iterate over them.
+					 */
+					final Set< Spot > nvs = merge( svs, tvs );
+					final Set< DefaultWeightedEdge > nes = merge( ses, tes );
+					nes.add( e );
+					final TrackNode root = sroot.union( troot );
+					root.id = nid;
+					edgeToNode.put( e, root );
+
 					connectedVertexSets.remove( rid );
-					connectedEdgeSets.put( nid, nes );
+					connectedVertexSets.put( nid, nvs );
 					connectedEdgeSets.remove( rid );
+					connectedEdgeSets.put( nid, nes );
 
 					// Transaction: we signal that the large id is to be
 					// updated, and forget about the small one
 					tracksUpdated.add( nid );
 					tracksUpdated.remove( rid );
+					trackChanged( nid );
+					trackChanged( rid );
 
 					// Visibility: if at least one is visible, the new set is
 					// made visible.
@@ -1059,7 +1240,7 @@ public class TrackModel
 				}
 
 			}
-			else if ( null == sid && null == tid )
+			else if ( null == sn && null == tn )
 			{
 				// Case 4: the edge was added between two lonely vertices.
 				// Create a new set id from this
@@ -1071,11 +1252,12 @@ public class TrackModel
 				nes.add( e );
 
 				final int nid = IDcounter++;
+				final TrackNode root = new TrackNode( nid );
 				connectedEdgeSets.put( nid, nes );
 				connectedVertexSets.put( nid, nvs );
-				vertexToID.put( sv, nid );
-				vertexToID.put( tv, nid );
-				edgeToID.put( e, nid );
+				vertexToNode.put( sv, root );
+				vertexToNode.put( tv, root );
+				edgeToNode.put( e, root );
 
 				// Give it visibility
 				visibility.put( nid, Boolean.TRUE );
@@ -1083,34 +1265,41 @@ public class TrackModel
 				names.put( nid, nameGenerator.next() );
 				// Transaction: we mark the new track as updated
 				tracksUpdated.add( nid );
+				trackChanged( nid );
 
 			}
-			else if ( null == sid )
+			else if ( null == sn )
 			{
 				// Case 2: the edge was added to the target set. No source set,
 				// but there is a source vertex.
 				// Add it, with the source vertex, to the target id.
+				final TrackNode root = tn.find();
+				final Integer tid = root.id;
 				connectedEdgeSets.get( tid ).add( e );
-				edgeToID.put( e, tid );
+				edgeToNode.put( e, root );
 				connectedVertexSets.get( tid ).add( sv );
-				vertexToID.put( sv, tid );
+				vertexToNode.put( sv, root );
 				// We do not change the visibility, nor the name.
 				// Transaction: we mark the mother track as updated
 				tracksUpdated.add( tid );
+				trackChanged( tid );
 
 			}
-			else if ( null == tid )
+			else if ( null == tn )
 			{
 				// Case 3: the edge was added to the source set. No target set,
 				// but there is a target vertex.
 				// Add it, with the target vertex, to the source id.
+				final TrackNode root = sn.find();
+				final Integer sid = root.id;
 				connectedEdgeSets.get( sid ).add( e );
-				edgeToID.put( e, sid );
+				edgeToNode.put( e, root );
 				connectedVertexSets.get( sid ).add( tv );
-				vertexToID.put( tv, sid );
+				vertexToNode.put( tv, root );
 				// We do not change the visibility, nor the name.
 				// Transaction: we mark the mother track as updated
 				tracksUpdated.add( sid );
+				trackChanged( sid );
 
 			}
 
@@ -1125,7 +1314,7 @@ public class TrackModel
 			// To maintain connected sets coherence
 
 			final DefaultWeightedEdge e = event.getEdge();
-			final Integer id = edgeToID.get( e );
+			final Integer id = idOf( edgeToNode.get( e ) );
 			if ( null == id ) { throw new RuntimeException( "Edge is unkown to this model: " + e ); }
 			final Set< DefaultWeightedEdge > set = connectedEdgeSets.get( id );
 			if ( null == set ) { throw new RuntimeException( "Unknown set ID: " + id ); }
@@ -1134,7 +1323,8 @@ public class TrackModel
 			final boolean removed = set.remove( e );
 			if ( !removed ) { throw new RuntimeException( "Could not removed edge " + e + " from set with ID: " + id ); }
 			// Forget about edge.
-			edgeToID.remove( e );
+			edgeToNode.remove( e );
+			trackChanged( id );
 
 			/*
 			 * Ok the trouble is that now we might be left with 2 sets if the
@@ -1153,7 +1343,7 @@ public class TrackModel
 				// Forget the vertices were in a set
 				for ( final Spot spot : vertexSet )
 				{
-					vertexToID.remove( spot );
+					vertexToNode.remove( spot );
 				}
 				// Forget the vertex set
 				connectedVertexSets.remove( id );
@@ -1164,165 +1354,202 @@ public class TrackModel
 				 * list of tracks to update.
 				 */
 				tracksUpdated.remove( id );
-
+				return;
 			}
-			else
+
+			/*
+			 * So there are some edges remaining in the set. We explore the
+			 * graph from the source and the target of the edge in lockstep,
+			 * one spot at a time. If the two explorations meet, the edge was
+			 * an "internal" edge: because there is another path that connect
+			 * its source and target, removing it did NOT split the track in 2.
+			 * Otherwise, the first exploration to complete has found the
+			 * smallest of the two pieces. Only this one is traversed
+			 * completely, and moved to a new set, so that breaking a small
+			 * piece from a large track does not cost more than the size of
+			 * the small piece.
+			 */
+			final ComponentSearch sourceSearch = new ComponentSearch( graph.getEdgeSource( e ) );
+			final ComponentSearch targetSearch = new ComponentSearch( graph.getEdgeTarget( e ) );
+			final ComponentSearch smallest;
+			while ( true )
 			{
-				// So there are some edges remaining in the set.
-				// Look at the connected component of its source and target.
-				// Source
-				final HashSet< Spot > sourceVCS = new HashSet< >();
-				final HashSet< DefaultWeightedEdge > sourceECS = new HashSet< >();
+				if ( sourceSearch.isComplete() )
 				{
-					final Spot source = graph.getEdgeSource( e );
-					// Get its connected set
-					final BreadthFirstIterator< Spot, DefaultWeightedEdge > i = new BreadthFirstIterator< >( graph, source );
-					while ( i.hasNext() )
-					{
-						final Spot sv = i.next();
-						sourceVCS.add( sv );
-						sourceECS.addAll( graph.edgesOf( sv ) );
-					}
+					smallest = sourceSearch;
+					break;
 				}
-				// Target
-				final HashSet< Spot > targetVCS = new HashSet< >();
-				final HashSet< DefaultWeightedEdge > targetECS = new HashSet< >();
+				if ( sourceSearch.step( targetSearch ) )
 				{
-					final Spot target = graph.getEdgeTarget( e );
-					// Get its connected set
-					final BreadthFirstIterator< Spot, DefaultWeightedEdge > i = new BreadthFirstIterator< >( graph, target );
-					while ( i.hasNext() )
-					{
-						final Spot sv = i.next();
-						targetVCS.add( sv );
-						targetECS.addAll( graph.edgesOf( sv ) );
-					}
+					tracksUpdated.add( id );
+					return;
 				}
-
-				/*
-				 * If the two connected components are the same, it means that
-				 * the edge was an "internal" edge: Because there is another
-				 * path that connect its source and target, removing it did NOT
-				 * split the track in 2. We therefore need not to re-attribute
-				 * it.
-				 */
-				if ( targetVCS.equals( sourceVCS ) )
+				if ( targetSearch.isComplete() )
+				{
+					smallest = targetSearch;
+					break;
+				}
+				if ( targetSearch.step( sourceSearch ) )
 				{
 					tracksUpdated.add( id );
-					connectedEdgeSets.get( id ).remove( e );
 					return;
 				}
+			}
 
+			/*
+			 * The largest piece keeps the original id and name. We remove the
+			 * smallest piece from its sets.
+			 */
+			final Set< Spot > smallVCS = smallest.visited;
+			final Set< DefaultWeightedEdge > smallECS = new HashSet< >();
+			for ( final Spot v : smallVCS )
+				smallECS.addAll( graph.edgesOf( v ) );
+
+			connectedVertexSets.get( id ).removeAll( smallVCS );
+			set.removeAll( smallECS );
+			tracksUpdated.add( id ); // old track has changed
+
+			if ( smallECS.isEmpty() )
+			{
 				/*
-				 * Re-attribute the found connected sets to the model. The
-				 * largest one (in vertices) gets the original id, the other
-				 * gets a new id. As for names: the largest one keeps its name,
-				 * the small one gets a new name.
+				 * Nothing remains from the smallest part. The remaining
+				 * solitary vertex has no right to be called a track.
 				 */
+				for ( final Spot solitary : smallVCS )
+					vertexToNode.remove( solitary );
+				return;
+			}
 
-				if ( targetVCS.size() > sourceVCS.size() )
-				{
+			// The smaller part is still a track and gets a new id.
+			final int newid = IDcounter++;
+			final TrackNode root = new TrackNode( newid );
+			connectedEdgeSets.put( newid, smallECS );
+			for ( final DefaultWeightedEdge se : smallECS )
+				edgeToNode.put( se, root );
+			connectedVertexSets.put( newid, smallVCS );
+			for ( final Spot sv : smallVCS )
+				vertexToNode.put( sv, root );
+			final Boolean targetVisibility = visibility.get( id );
+			visibility.put( newid, targetVisibility );
+			names.put( newid, nameGenerator.next() );
+			// Transaction: both children tracks are marked for update.
+			tracksUpdated.add( newid );
+			trackChanged( newid );
+		}
 
-					connectedEdgeSets.put( id, targetECS );
-					connectedVertexSets.put( id, targetVCS ); // they already
-																// have the
-																// right id in
-																// #vertexToId
-					tracksUpdated.add( id ); // old track has changed
+	}
 
-					if ( sourceECS.size() > 0 )
-					{
-						// the smaller part is still a track
-						final int newid = IDcounter++;
-						connectedEdgeSets.put( newid, sourceECS ); // otherwise
-																	// forget it
-						for ( final DefaultWeightedEdge te : sourceECS )
-						{
-							edgeToID.put( te, newid );
-						}
-						connectedVertexSets.put( newid, sourceVCS );
-						for ( final Spot tv : sourceVCS )
-						{
-							vertexToID.put( tv, newid );
-						}
-						final Boolean targetVisibility = visibility.get( id );
-						visibility.put( newid, targetVisibility );
-						names.put( newid, nameGenerator.next() );
-						// Transaction: both children tracks are marked for
-						// update.
-						tracksUpdated.add( newid );
+	/**
+	 * Adds the content of the smallest of the two specified sets to the
+	 * largest one, and returns the largest one.
+	 */
+	private static < E > Set< E > merge( final Set< E > s1, final Set< E > s2 )
+	{
+		if ( s1.size() >= s2.size() )
+		{
+			s1.addAll( s2 );
+			return s1;
+		}
+		s2.addAll( s1 );
+		return s2;
+	}
 
-					}
-					else
-					{
-						/*
-						 * Nothing remains from the smallest part. The remaining
-						 * solitary vertex has no right to be called a track.
-						 */
-						final Spot solitary = sourceVCS.iterator().next();
-						vertexToID.remove( solitary );
-					}
+	/**
+	 * A breadth-first exploration of the graph that can be advanced one spot at
+	 * a time, and that stops when it reaches a spot visited by another
+	 * exploration.
+	 */
+	private final class ComponentSearch
+	{
 
-				}
-				else
-				{
+		private final HashSet< Spot > visited = new HashSet< >();
 
-					if ( sourceECS.size() > 0 )
-					{
-						// There are still some pieces left. It is worth noting
-						// it.
-						connectedEdgeSets.put( id, sourceECS );
-						connectedVertexSets.put( id, sourceVCS );
-						tracksUpdated.add( id );
-
-						if ( targetECS.size() > 0 )
-						{
-							// the small part is still a track
-							final int newid = IDcounter++;
-							connectedEdgeSets.put( newid, targetECS );
-							for ( final DefaultWeightedEdge te : targetECS )
-							{
-								edgeToID.put( te, newid );
-							}
-							connectedVertexSets.put( newid, targetVCS );
-							for ( final Spot v : targetVCS )
-							{
-								vertexToID.put( v, newid );
-							}
-							final Boolean targetVisibility = visibility.get( id );
-							visibility.put( newid, targetVisibility );
-							names.put( newid, nameGenerator.next() );
-							// Transaction: both children tracks are marked for
-							// update.
-							tracksUpdated.add( newid );
-						}
-						else
-						{
-							/*
-							 * Nothing remains from the smallest part. The
-							 * remaining solitary vertex has no right to be
-							 * called a track.
-							 */
-							final Spot solitary = targetVCS.iterator().next();
-							vertexToID.remove( solitary );
-						}
+		private final ArrayDeque< Spot > queue = new ArrayDeque< >();
 
-					}
-					else
-					{
-						// Nothing remains (maybe a solitary vertex) -> forget
-						// about it all.
-						connectedEdgeSets.remove( id );
-						connectedVertexSets.remove( id );
-						names.remove( id );
-						visibility.remove( id );
-						tracksUpdated.remove( id );
-					}
+		private ComponentSearch( final Spot start )
+		{
+			visited.add( start );
+			queue.add( start );
+		}
 
-				}
+		/**
+		 * Returns <code>true</code> if this exploration has visited its whole
+		 * connected component.
+		 */
+		private boolean isComplete()
+		{
+			return queue.isEmpty();
+		}
+
+		/**
+		 * Visits the neighbors of the next spot in the queue. Returns
+		 * <code>true</code> if one of them was visited by the other
+		 * exploration.
+		 */
+		private boolean step( final ComponentSearch other )
+		{
+			final Spot v = queue.poll();
+			for ( final DefaultWeightedEdge edge : graph.edgesOf( v ) )
+			{
+				final Spot w = Graphs.getOppositeVertex( graph, edge, v );
+				if ( other.visited.contains( w ) )
+					return true;
+				if ( visited.add( w ) )
+					queue.add( w );
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A node of the disjoint-set forest that maps spots and edges to track IDs.
+	 * Merging two tracks is done by linking the root of the smallest tree to
+	 * the root of the largest one (union by size), and finding the root of a
+	 * node compresses the path to it. Only the ID of a root node is
+	 * meaningful.
+	 */
+	private static final class TrackNode
+	{
+
+		private TrackNode parent = this;
+
+		private int size = 1;
+
+		private Integer id;
+
+		private TrackNode( final Integer id )
+		{
+			this.id = id;
+		}
+
+		private TrackNode find()
+		{
+			TrackNode node = this;
+			while ( node.parent != node )
+			{
+				// Path halving.
+				node.parent = node.parent.parent;
+				node = node.parent;
 			}
+			return node;
 		}
 
+		/**
+		 * Links the trees of this root and of the specified root, and returns
+		 * the root of the merged tree.
+		 */
+		private TrackNode union( final TrackNode other )
+		{
+			if ( size >= other.size )
+			{
+				other.parent = this;
+				size += other.size;
+				return this;
+			}
+			parent = other;
+			other.size += size;
+			return other;
+		}
 	}
 
 	private static class DefaultNameGenerator implements Iterator< String >
@@ -0,0 +1,161 @@
+package fiji.plugin.trackmate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+/**
+ * An immutable view of the tracks of a {@link TrackModel} at a given version.
+ * <p>
+ * Snapshots are obtained from {@link Model#getTrackSnapshot()}. They can be
+ * held and iterated without locking while the model is being edited: they
+ * are not affected by later changes. A new snapshot shares the content of the
+ * previous one for all the tracks that did not change in between, so taking
+ * a snapshot after each modification only costs the size of the modified
+ * tracks.
+ * <p>
+ * Note that spots are not copied: their features are those of the live
+ * spots.
+ */
+public final class TrackSnapshot
+{
+
+	private final long version;
+
+	final Map< Integer, Track > tracks;
+
+	private final List< Integer > allIDs;
+
+	private final List< Integer > visibleIDs;
+
+	TrackSnapshot( final long version, final Map< Integer, Track > tracks, final Integer[] allIDs, final Integer[] visibleIDs )
+	{
+		this.version = version;
+		this.tracks = tracks;
+		this.allIDs = Collections.unmodifiableList( Arrays.asList( allIDs ) );
+		this.visibleIDs = Collections.unmodifiableList( Arrays.asList( visibleIDs ) );
+	}
+
+	/**
+	 * Returns the version of the track model this snapshot was taken from.
+	 * Versions increase with every change of the tracks.
+	 *
+	 * @return the version.
+	 */
+	public long version()
+	{
+		return version;
+	}
+
+	/**
+	 * Returns the IDs of the tracks in this snapshot, ordered by track names
+	 * (alpha-numerically sorted), as in {@link TrackModel#trackIDs(boolean)}.
+	 *
+	 * @param visibleOnly
+	 *            if <code>true</code>, only the IDs of visible tracks are
+	 *            returned.
+	 * @return an unmodifiable list of track IDs.
+	 */
+	public List< Integer > trackIDs( final boolean visibleOnly )
+	{
+		return visibleOnly ? visibleIDs : allIDs;
+	}
+
+	/**
+	 * Returns the number of tracks in this snapshot.
+	 *
+	 * @param visibleOnly
+	 *            if <code>true</code>, only visible tracks are counted.
+	 * @return the number of tracks.
+	 */
+	public int nTracks( final boolean visibleOnly )
+	{
+		return trackIDs( visibleOnly ).size();
+	}
+
+	/**
+	 * Returns the track with the specified ID, or <code>null</code> if there
+	 * is no such track in this snapshot.
+	 *
+	 * @param trackID
+	 *            the track ID.
+	 * @return the track.
+	 */
+	public Track track( final Integer trackID )
+	{
+		return tracks.get( trackID );
+	}
+
+	/**
+	 * The edges and spots of one track, stored in arrays. Edge
+	 * <code>i</code> links {@link #source(int)} to {@link #target(int)}.
+	 */
+	public static final class Track
+	{
+
+		private final DefaultWeightedEdge[] edges;
+
+		private final Spot[] sources;
+
+		private final Spot[] targets;
+
+		private final List< Spot > spots;
+
+		Track( final DefaultWeightedEdge[] edges, final Spot[] sources, final Spot[] targets, final Set< Spot > spots )
+		{
+			this.edges = edges;
+			this.sources = sources;
+			this.targets = targets;
+			this.spots = Collections.unmodifiableList( Arrays.asList( spots.toArray( new Spot[ spots.size() ] ) ) );
+		}
+
+		/**
+		 * Returns the number of edges in this track.
+		 *
+		 * @return the number of edges.
+		 */
+		public int nEdges()
+		{
+			return edges.length;
+		}
+
+		public DefaultWeightedEdge edge( final int i )
+		{
+			return edges[ i ];
+		}
+
+		public Spot source( final int i )
+		{
+			return sources[ i ];
+		}
+
+		public Spot target( final int i )
+		{
+			return targets[ i ];
+		}
+
+		/**
+		 * Returns the edges of this track.
+		 *
+		 * @return an unmodifiable list of edges.
+		 */
+		public List< DefaultWeightedEdge > edges()
+		{
+			return Collections.unmodifiableList( Arrays.asList( edges ) );
+		}
+
+		/**
+		 * Returns the spots of this track, in no particular order.
+		 *
+		 * @return an unmodifiable list of spots.
+		 */
+		public List< Spot > spots()
+		{
+			return spots;
+		}
+	}
+}
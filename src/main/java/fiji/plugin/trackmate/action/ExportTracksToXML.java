@@ -5,6 +5,7 @@ import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.TrackMate;
+import fiji.plugin.trackmate.TrackSnapshot;
 import fiji.plugin.trackmate.gui.TrackMateGUIController;
 import fiji.plugin.trackmate.gui.TrackMateWizard;
 import fiji.plugin.trackmate.io.IOUtils;
@@ -14,7 +15,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Set;
+import java.util.List;
 import java.util.TreeSet;
 
 import javax.swing.ImageIcon;
@@ -135,18 +136,20 @@ public class ExportTracksToXML extends AbstractTMAction {
 		logger.setStatus("Marshalling...");
 		final Element content = new Element(CONTENT_KEY);
 
-		content.setAttribute(NTRACKS_ATT, ""+model.getTrackModel().nTracks(true));
+		// Immutable, so the model can be edited while we export.
+		final TrackSnapshot snapshot = model.getTrackSnapshot();
+		final int ntracks = snapshot.nTracks(true);
+		content.setAttribute(NTRACKS_ATT, ""+ntracks);
 		content.setAttribute(PHYSUNIT_ATT, model.getSpaceUnits());
 		content.setAttribute(FRAMEINTERVAL_ATT, ""+settings.dt);
 		content.setAttribute(FRAMEINTERVALUNIT_ATT, ""+model.getTimeUnits());
 		content.setAttribute(DATE_ATT, TMUtils.getCurrentTimeString());
 		content.setAttribute(FROM_ATT, TrackMate.PLUGIN_NAME_STR + " v" + TrackMate.PLUGIN_NAME_VERSION);
 
-		final Set<Integer> trackIDs = model.getTrackModel().trackIDs(true);
 		int i = 0;
-		for (final Integer trackID : trackIDs) {
+		for (final Integer trackID : snapshot.trackIDs(true)) {
 
-			final Set<Spot> track = model.getTrackModel().trackSpots(trackID);
+			final List<Spot> track = snapshot.track(trackID).spots();
 
 			final Element trackElement = new Element(TRACK_KEY);
 			trackElement.setAttribute(NSPOTS_ATT, ""+track.size());
@@ -169,7 +172,7 @@ public class ExportTracksToXML extends AbstractTMAction {
 				trackElement.addContent(spotElement);
 			}
 			content.addContent(trackElement);
-			logger.setProgress(i++ / (0d + model.getTrackModel().nTracks(true)));
+			logger.setProgress(i++ / (0d + ntracks));
 		}
 
 		logger.setStatus("");
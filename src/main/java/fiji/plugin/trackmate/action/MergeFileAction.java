@@ -101,12 +101,20 @@ public class MergeFileAction extends AbstractTMAction
 				for ( final Spot oldSpot : spots )
 				{
 					/*
-					 * An awkward way to avoid spot ID conflicts after loading
-					 * two files
+					 * Keep the spot as is if its ID is not used in the target
+					 * model. Otherwise copy it to a new spot to avoid spot ID
+					 * conflicts after loading two files.
 					 */
-					newSpot = new Spot( oldSpot );
-					for ( final String feature : oldSpot.getFeatures().keySet() )
-						newSpot.putFeature( feature, oldSpot.getFeature( feature ) );
+					if ( null == model.getSpot( oldSpot.ID() ) )
+					{
+						newSpot = oldSpot;
+					}
+					else
+					{
+						newSpot = new Spot( oldSpot );
+						for ( final String feature : oldSpot.getFeatures().keySet() )
+							newSpot.putFeature( feature, oldSpot.getFeature( feature ) );
+					}
 
 					mapOldToNew.put( oldSpot, newSpot );
 					model.addSpotTo( newSpot, oldSpot.getFeature( Spot.FRAME ).intValue() );
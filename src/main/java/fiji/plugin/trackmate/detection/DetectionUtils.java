@@ -1,13 +1,9 @@
 package fiji.plugin.trackmate.detection;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 import fiji.plugin.trackmate.Logger;
@@ -16,22 +12,17 @@ import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.TrackMate;
-import fiji.plugin.trackmate.detection.util.MedianFilter2D;
+import fiji.plugin.trackmate.detection.util.LocalMaxima;
+import fiji.plugin.trackmate.detection.util.MedianFilter3x3;
 import ij.ImagePlus;
 import net.imagej.ImgPlus;
 import net.imagej.axis.Axes;
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
-import net.imglib2.Point;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.algorithm.localextrema.LocalExtrema;
-import net.imglib2.algorithm.localextrema.LocalExtrema.LocalNeighborhoodCheck;
-import net.imglib2.algorithm.localextrema.RefinedPeak;
-import net.imglib2.algorithm.localextrema.SubpixelLocalization;
-import net.imglib2.algorithm.neighborhood.RectangleShape;
 import net.imglib2.converter.RealFloatConverter;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
@@ -44,8 +35,6 @@ import net.imglib2.type.NativeType;
 import net.imglib2.type.Type;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
-import net.imglib2.util.Intervals;
-import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
 
 public class DetectionUtils
@@ -85,6 +74,50 @@ public class DetectionUtils
 			final Logger logger,
 			final Consumer< Boolean > buttonEnabler
 			)
+	{
+		preview( model, settings, detectorFactory, detectorSettings, frame, logger, buttonEnabler, null );
+	}
+
+	/**
+	 * Preview a detection results, reusing the filtered image of a previous
+	 * preview if possible.
+	 * <p>
+	 * For {@link FilteringSpotDetector}s, the filtered image of the frame is
+	 * stored in the specified cache, and is reused by the next previews as
+	 * long as only the parameters of the spot extraction change, typically
+	 * the quality threshold.
+	 *
+	 * @param model
+	 *            the model to write detection results in.
+	 * @param settings
+	 *            the settings to use for the image input and the ROI input.
+	 * @param detectorFactory
+	 *            the detector factory to use for detection.
+	 * @param detectorSettings
+	 *            the settings for the detection, specific to the detector
+	 *            factory/
+	 * @param frame
+	 *            the frame (0-based) to execute the detection in.
+	 * @param logger
+	 *            a logger to write results and error messages to.
+	 * @param buttonEnabler
+	 *            a consumer that will receive <code>false</code> at the
+	 *            beginning of the preview, and <code>true</code> at its end.
+	 *            Can be used to disable GUI elements.
+	 * @param cache
+	 *            the cache of filtered images, or <code>null</code> to always
+	 *            filter the frame.
+	 */
+	public static final void preview(
+			final Model model,
+			final Settings settings,
+			final SpotDetectorFactoryBase< ? > detectorFactory,
+			final Map< String, Object > detectorSettings,
+			final int frame,
+			final Logger logger,
+			final Consumer< Boolean > buttonEnabler,
+			final FilteredImageCache cache
+			)
 	{
 		buttonEnabler.accept( false );
 		new Thread( "TrackMate preview detection thread" )
@@ -106,6 +139,7 @@ public class DetectionUtils
 
 					final TrackMate trackmate = new TrackMate( lSettings );
 					trackmate.getModel().setLogger( logger );
+					trackmate.setFilteredImageCache( cache );
 
 					final boolean detectionOk = trackmate.execDetection();
 					if ( !detectionOk )
@@ -126,7 +160,7 @@ public class DetectionUtils
 					model.getSpots().put( frame, spotsToCopy );
 					// Make them visible
 					for ( final Spot spot : spotsToCopy )
-						spot.putFeature( SpotCollection.VISIBILITY, SpotCollection.ONE );
+						model.getSpots().setVisible( spot, true );
 
 					// Generate event for listener to reflect changes.
 					model.setSpots( model.getSpots(), true );
@@ -255,6 +289,24 @@ public class DetectionUtils
 	public static final < T extends RealType< T > > Img< FloatType > copyToFloatImg( final RandomAccessible< T > img, final Interval interval, final ImgFactory< FloatType > factory )
 	{
 		final Img< FloatType > output = factory.create( interval );
+		copyToFloatImg( img, interval, output );
+		return output;
+	}
+
+	/**
+	 * Copies an interval of the specified source image on a float image,
+	 * overwriting its content.
+	 *
+	 * @param img
+	 *            the source image.
+	 * @param interval
+	 *            the interval in the source image to copy.
+	 * @param output
+	 *            the float image to copy into. Must have the dimensions of
+	 *            the interval.
+	 */
+	public static final < T extends RealType< T > > void copyToFloatImg( final RandomAccessible< T > img, final Interval interval, final Img< FloatType > output )
+	{
 		final RandomAccess< T > in = Views.zeroMin( Views.interval( img, interval ) ).randomAccess();
 		final Cursor< FloatType > out = output.cursor();
 		final RealFloatConverter< T > c = new RealFloatConverter<>();
@@ -265,7 +317,6 @@ public class DetectionUtils
 			in.setPosition( out );
 			c.convert( in.get(), out.get() );
 		}
-		return output;
 	}
 
 	/**
@@ -307,151 +358,66 @@ public class DetectionUtils
 	 */
 	public static final < R extends RealType< R > & NativeType< R > > Img< R > applyMedianFilter( final RandomAccessibleInterval< R > image )
 	{
-		final MedianFilter2D< R > medFilt = new MedianFilter2D<>( image, 1 );
-		if ( !medFilt.checkInput() || !medFilt.process() )
-		{ return null; }
-		return medFilt.getResult();
+		return applyMedianFilter( image, 1 );
 	}
 
-	public static final List< Spot > findLocalMaxima( final RandomAccessibleInterval< FloatType > source, final double threshold, final double[] calibration, final double radius, final boolean doSubPixelLocalization, final int numThreads )
+	/**
+	 * Apply a simple 3x3 median filter to the target image, slice by slice for
+	 * 3D images, with several threads.
+	 * <p>
+	 * The detectors always filter 3D images slice by slice, so that their
+	 * results do not change. The 3x3x3 median filter is only available as API,
+	 * through {@link MedianFilter3x3#filter(RandomAccessibleInterval, boolean, int)}.
+	 *
+	 * @param image
+	 *            the image to filter, 1D, 2D or 3D.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 * @return a new filtered image with a min at 0, or <code>null</code> if
+	 *         the image could not be filtered.
+	 */
+	public static final < R extends RealType< R > & NativeType< R > > Img< R > applyMedianFilter( final RandomAccessibleInterval< R > image, final int numThreads )
 	{
-		/*
-		 * Find maxima.
-		 */
-
-		final FloatType val = new FloatType();
-		val.setReal( threshold );
-		final LocalNeighborhoodCheck< Point, FloatType > localNeighborhoodCheck = new LocalExtrema.MaximumCheck<>( val );
-		final IntervalView< FloatType > dogWithBorder = Views.interval( Views.extendMirrorSingle( source ), Intervals.expand( source, 1 ) );
-		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
-		List< Point > peaks;
-		try
-		{
-			peaks = LocalExtrema.findLocalExtrema( dogWithBorder, localNeighborhoodCheck, new RectangleShape( 1, true ), service, numThreads );
-		}
-		catch ( InterruptedException | ExecutionException e )
-		{
-			e.printStackTrace();
-			peaks = Collections.emptyList();
-		}
-		service.shutdown();
-
-		if ( peaks.isEmpty() )
-		{ return Collections.emptyList(); }
-
-		final List< Spot > spots;
-		if ( doSubPixelLocalization )
-		{
-
-			/*
-			 * Sub-pixel localize them.
-			 */
-
-			final SubpixelLocalization< Point, FloatType > spl = new SubpixelLocalization<>( source.numDimensions() );
-			spl.setNumThreads( numThreads );
-			spl.setReturnInvalidPeaks( true );
-			spl.setCanMoveOutside( true );
-			spl.setAllowMaximaTolerance( true );
-			spl.setMaxNumMoves( 10 );
-			final ArrayList< RefinedPeak< Point > > refined = spl.process( peaks, dogWithBorder, source );
-
-			spots = new ArrayList<>( refined.size() );
-			final RandomAccess< FloatType > ra = source.randomAccess();
-
-			/*
-			 * Deal with different dimensionality manually. Profound comment:
-			 * this is the proof that this part of the code is sloppy. ImgLib2
-			 * is supposed to be dimension-generic. I just did not use properly
-			 * here.
-			 */
-
-			if ( source.numDimensions() > 2 )
-			{ // 3D
-				for ( final RefinedPeak< Point > refinedPeak : refined )
-				{
-					ra.setPosition( refinedPeak.getOriginalPeak() );
-					final double quality = ra.get().getRealDouble();
-					final double x = refinedPeak.getDoublePosition( 0 ) * calibration[ 0 ];
-					final double y = refinedPeak.getDoublePosition( 1 ) * calibration[ 1 ];
-					final double z = refinedPeak.getDoublePosition( 2 ) * calibration[ 2 ];
-					final Spot spot = new Spot( x, y, z, radius, quality );
-					spots.add( spot );
-				}
-			}
-			else if ( source.numDimensions() > 1 )
-			{ // 2D
-				final double z = 0;
-				for ( final RefinedPeak< Point > refinedPeak : refined )
-				{
-					ra.setPosition( refinedPeak.getOriginalPeak() );
-					final double quality = ra.get().getRealDouble();
-					final double x = refinedPeak.getDoublePosition( 0 ) * calibration[ 0 ];
-					final double y = refinedPeak.getDoublePosition( 1 ) * calibration[ 1 ];
-					final Spot spot = new Spot( x, y, z, radius, quality );
-					spots.add( spot );
-				}
-			}
-			else
-			{ // 1D
-				final double z = 0;
-				final double y = 0;
-				for ( final RefinedPeak< Point > refinedPeak : refined )
-				{
-					ra.setPosition( refinedPeak.getOriginalPeak() );
-					final double quality = ra.get().getRealDouble();
-					final double x = refinedPeak.getDoublePosition( 0 ) * calibration[ 0 ];
-					final Spot spot = new Spot( x, y, z, radius, quality );
-					spots.add( spot );
-				}
+		if ( image.numDimensions() > 3 )
+			return null;
+		return MedianFilter3x3.filter( image, false, numThreads );
+	}
 
-			}
-		}
-		else
+	/**
+	 * Finds the local maxima of the specified filtered image, and returns them
+	 * as spots of the specified radius, with the filtered value as quality.
+	 *
+	 * @param source
+	 *            the filtered image.
+	 * @param threshold
+	 *            the quality under which spots are discarded.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param radius
+	 *            the radius of the spots.
+	 * @param doSubPixelLocalization
+	 *            if <code>true</code>, the spot positions are refined by a
+	 *            quadratic fit.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 * @return a new list of spots, or <code>null</code> if the maxima could
+	 *         not be found.
+	 * @see LocalMaxima
+	 */
+	public static final List< Spot > findLocalMaxima( final RandomAccessibleInterval< FloatType > source, final double threshold, final double[] calibration, final double radius, final boolean doSubPixelLocalization, final int numThreads )
+	{
+		final LocalMaxima.Peaks peaks = LocalMaxima.find( source, threshold, doSubPixelLocalization, numThreads );
+		if ( null == peaks )
+			return null;
+		final int n = source.numDimensions();
+		final List< Spot > spots = new ArrayList<>( peaks.size() );
+		final double[] pos = new double[ 3 ];
+		for ( int i = 0; i < peaks.size(); i++ )
 		{
-			spots = new ArrayList<>( peaks.size() );
-			final RandomAccess< FloatType > ra = source.randomAccess();
-			if ( source.numDimensions() > 2 )
-			{ // 3D
-				for ( final Point peak : peaks )
-				{
-					ra.setPosition( peak );
-					final double quality = ra.get().getRealDouble();
-					final double x = peak.getDoublePosition( 0 ) * calibration[ 0 ];
-					final double y = peak.getDoublePosition( 1 ) * calibration[ 1 ];
-					final double z = peak.getDoublePosition( 2 ) * calibration[ 2 ];
-					final Spot spot = new Spot( x, y, z, radius, quality );
-					spots.add( spot );
-				}
-			}
-			else if ( source.numDimensions() > 1 )
-			{ // 2D
-				final double z = 0;
-				for ( final Point peak : peaks )
-				{
-					ra.setPosition( peak );
-					final double quality = ra.get().getRealDouble();
-					final double x = peak.getDoublePosition( 0 ) * calibration[ 0 ];
-					final double y = peak.getDoublePosition( 1 ) * calibration[ 1 ];
-					final Spot spot = new Spot( x, y, z, radius, quality );
-					spots.add( spot );
-				}
-			}
-			else
-			{ // 1D
-				final double z = 0;
-				final double y = 0;
-				for ( final Point peak : peaks )
-				{
-					ra.setPosition( peak );
-					final double quality = ra.get().getRealDouble();
-					final double x = peak.getDoublePosition( 0 ) * calibration[ 0 ];
-					final Spot spot = new Spot( x, y, z, radius, quality );
-					spots.add( spot );
-				}
-
-			}
+			for ( int d = 0; d < n; d++ )
+				pos[ d ] = peaks.position( i, d ) * calibration[ d ];
+			spots.add( new Spot( pos[ 0 ], pos[ 1 ], pos[ 2 ], radius, peaks.value( i ) ) );
 		}
-
 		return spots;
 	}
 
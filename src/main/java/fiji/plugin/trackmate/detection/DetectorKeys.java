@@ -42,6 +42,7 @@ public class DetectorKeys
 	 * <li> {@link DogDetector}
 	 * <li> {@link DownsampleLogDetector}
 	 * <li> {@link ManualDetectorFactory}
+	 * <li> {@link MultiScaleLogDetector}, as the smallest radius searched.
 	 * </ul>
 	 */
 	public static final String KEY_RADIUS = "RADIUS";
@@ -49,6 +50,31 @@ public class DetectorKeys
 	/** A default value for the {@link #KEY_RADIUS} parameter. */
 	public static final double DEFAULT_RADIUS = 5d;
 
+	/**
+	 * The key identifying the parameter that sets the largest radius searched
+	 * by multi-scale detectors. Expected values are {@link Double}s larger
+	 * than the {@link #KEY_RADIUS} parameter.
+	 * <p>
+	 * Currently used by {@link MultiScaleLogDetector}
+	 */
+	public static final String KEY_MAX_RADIUS = "MAX_RADIUS";
+
+	/** A default value for the {@link #KEY_MAX_RADIUS} parameter. */
+	public static final double DEFAULT_MAX_RADIUS = 10d;
+
+	/**
+	 * The key identifying the parameter that sets the number of scales
+	 * searched by multi-scale detectors, between the {@link #KEY_RADIUS} and
+	 * the {@link #KEY_MAX_RADIUS} parameters. Expected values are
+	 * {@link Integer}s greater than 1.
+	 * <p>
+	 * Currently used by {@link MultiScaleLogDetector}
+	 */
+	public static final String KEY_N_SCALES = "N_SCALES";
+
+	/** A default value for the {@link #KEY_N_SCALES} parameter. */
+	public static final int DEFAULT_N_SCALES = 5;
+
 	/**
 	 * The key identifying the parameter that sets the threshold for the LoG
 	 * detector. Spot found with a filtered value lowered than this threshold
@@ -109,4 +135,33 @@ public class DetectorKeys
 	/** A default value for the {@link #KEY_DO_SUBPIXEL_LOCALIZATION} parameter. */
 	public static final boolean DEFAULT_DO_SUBPIXEL_LOCALIZATION = true;
 
+	/**
+	 * The key identifying the optional parameter that sets how the LoG or DoG
+	 * filter is computed. Accepted values are {@link String}s:
+	 * <ul>
+	 * <li>{@link #FILTER_ENGINE_CONVOLUTION}: FFT convolution for the LoG,
+	 * Gaussian convolution for the DoG.
+	 * <li>{@link #FILTER_ENGINE_RECURSIVE}: recursive Gaussian filters, whose
+	 * cost does not depend on the spot radius.
+	 * <li>{@link #FILTER_ENGINE_AUTO}: the fastest of the two for the image
+	 * size and spot radius, measured once per detection run.
+	 * </ul>
+	 * <p>
+	 * Currently used by:
+	 * <ul>
+	 * <li> {@link LogDetector}
+	 * <li> {@link DogDetector}
+	 * </ul>
+	 */
+	public static final String KEY_FILTER_ENGINE = "FILTER_ENGINE";
+
+	public static final String FILTER_ENGINE_CONVOLUTION = "CONVOLUTION";
+
+	public static final String FILTER_ENGINE_RECURSIVE = "RECURSIVE";
+
+	public static final String FILTER_ENGINE_AUTO = "AUTO";
+
+	/** A default value for the {@link #KEY_FILTER_ENGINE} parameter. */
+	public static final String DEFAULT_FILTER_ENGINE = FILTER_ENGINE_CONVOLUTION;
+
 }
@@ -0,0 +1,157 @@
+package fiji.plugin.trackmate.detection;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Interval;
+
+/**
+ * Producer stage of the streaming detection: creates the detectors of
+ * successive frames and, for {@link PrefetchableSpotDetector}s, reads their
+ * data ahead, while the detection threads process the previous frames.
+ * <p>
+ * Prefetched detectors wait in a bounded queue, so that the number of frames
+ * held in memory ahead of processing stays constant, whatever the movie
+ * length. The {@link #run()} method is meant to be executed by a single
+ * producer thread, and {@link #next()} by the detection threads.
+ */
+public class DetectorPrefetcher implements Runnable
+{
+
+	/** How often waiting threads check for cancellation, in ms. */
+	private static final long POLL_PERIOD = 100;
+
+	private final SpotDetectorFactory< ? > factory;
+
+	private final Interval interval;
+
+	private final int tstart;
+
+	private final int tend;
+
+	private final BlockingQueue< Prefetched > queue;
+
+	private volatile boolean done = false;
+
+	private volatile boolean cancelled = false;
+
+	private volatile String errorMessage;
+
+	/**
+	 * Creates a new prefetcher.
+	 *
+	 * @param factory
+	 *            the factory used to create the detectors.
+	 * @param interval
+	 *            the interval to process in each frame.
+	 * @param tstart
+	 *            the first frame to process.
+	 * @param tend
+	 *            the last frame to process, inclusive.
+	 * @param capacity
+	 *            the maximal number of prefetched frames waiting to be
+	 *            processed.
+	 */
+	public DetectorPrefetcher( final SpotDetectorFactory< ? > factory, final Interval interval, final int tstart, final int tend, final int capacity )
+	{
+		this.factory = factory;
+		this.interval = interval;
+		this.tstart = tstart;
+		this.tend = tend;
+		this.queue = new ArrayBlockingQueue<>( Math.max( 1, capacity ) );
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			for ( int frame = tstart; frame <= tend && !cancelled; frame++ )
+			{
+				final SpotDetector< ? > detector = factory.getDetector( interval, frame );
+				if ( detector instanceof PrefetchableSpotDetector )
+					( ( PrefetchableSpotDetector< ? > ) detector ).prefetch();
+
+				final Prefetched prefetched = new Prefetched( frame, detector );
+				while ( !queue.offer( prefetched, POLL_PERIOD, TimeUnit.MILLISECONDS ) )
+					if ( cancelled )
+						return;
+			}
+		}
+		catch ( final InterruptedException e )
+		{
+			cancelled = true;
+		}
+		catch ( final RuntimeException e )
+		{
+			errorMessage = "Failed to prepare detection: " + e.getMessage();
+			cancelled = true;
+			throw e;
+		}
+		finally
+		{
+			if ( cancelled )
+				queue.clear();
+			done = true;
+		}
+	}
+
+	/**
+	 * Returns the next frame to process and its detector, waiting for it to
+	 * be prefetched if needed.
+	 *
+	 * @return the next frame to process, or <code>null</code> if all frames
+	 *         were handed out or if the prefetcher was cancelled.
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted while waiting.
+	 */
+	public Prefetched next() throws InterruptedException
+	{
+		while ( true )
+		{
+			final Prefetched prefetched = queue.poll( POLL_PERIOD, TimeUnit.MILLISECONDS );
+			if ( null != prefetched )
+				return prefetched;
+			if ( done && queue.isEmpty() )
+				return null;
+		}
+	}
+
+	/**
+	 * Stops the prefetching. The frames waiting in the queue are discarded,
+	 * and {@link #next()} returns <code>null</code> shortly after.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+		queue.clear();
+	}
+
+	/**
+	 * Returns the error that stopped the prefetching, if any.
+	 *
+	 * @return the error message, or <code>null</code> if there was no error.
+	 */
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	/**
+	 * A frame and the detector that will process it.
+	 */
+	public static final class Prefetched
+	{
+
+		public final int frame;
+
+		public final SpotDetector< ? > detector;
+
+		private Prefetched( final int frame, final SpotDetector< ? > detector )
+		{
+			this.frame = frame;
+			this.detector = detector;
+		}
+	}
+}
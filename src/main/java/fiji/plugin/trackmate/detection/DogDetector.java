@@ -1,13 +1,20 @@
 package fiji.plugin.trackmate.detection;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import fiji.plugin.trackmate.detection.util.RecursiveGaussian;
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.dog.DifferenceOfGaussian;
 import net.imglib2.algorithm.gauss3.Gauss3;
 import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
@@ -37,39 +44,121 @@ public class DogDetector< T extends RealType< T > & NativeType< T >> extends Log
 	 * METHODS
 	 */
 
+	/**
+	 * Copies the processed interval of the source image in memory, and
+	 * processes this copy instead of the source image.
+	 */
+	@Override
+	public boolean prefetch()
+	{
+		final RandomAccessibleInterval< T > view = Views.interval( img, interval );
+		final Img< T > copy = Util.getArrayOrCellImgFactory( interval, Util.getTypeFromInterval( view ) ).create( interval );
+		final Cursor< T > out = copy.cursor();
+		final RandomAccess< T > in = Views.zeroMin( view ).randomAccess();
+		while ( out.hasNext() )
+		{
+			out.fwd();
+			in.setPosition( out );
+			out.get().set( in.get() );
+		}
+		final long[] min = new long[ interval.numDimensions() ];
+		interval.min( min );
+		img = Views.translate( copy, min );
+		return true;
+	}
+
+	/**
+	 * The halo covers the largest of the two Gaussian kernels.
+	 */
+	@Override
+	protected long[] getTileHalo()
+	{
+		final int ndims = interval.numDimensions();
+		return TiledDetection.halo( radius / Math.sqrt( ndims ) * 1.1, calibration, ndims, doMedianFilter ? 1 : 0 );
+	}
+
+	@Override
+	protected < R extends RealType< R > & NativeType< R > > LogDetector< R > createTileDetector( final RandomAccessible< R > source, final Interval tile )
+	{
+		final DogDetector< R > detector = new DogDetector<>( source, tile, calibration, radius, threshold, doSubPixelLocalization, doMedianFilter );
+		detector.setRecursiveFiltering( recursiveFiltering );
+		return detector;
+	}
+
 	@Override
 	public boolean process()
 	{
 
 		final long start = System.currentTimeMillis();
 
+		if ( TiledDetection.isTiled( interval, tileSize ) )
+			return processTiles( start );
+
+		final RandomAccessibleInterval< FloatType > dog = filter();
+		if ( null == dog )
+			return false;
+
+		spots = DetectionUtils.findLocalMaxima( dog, threshold, calibration, radius, doSubPixelLocalization, numThreads );
+		if ( null == spots )
+		{
+			errorMessage = baseErrorMessage + "Failed to find the local maxima.";
+			return false;
+		}
+
+		final long end = System.currentTimeMillis();
+		processingTime = end - start;
+
+		return true;
+	}
+
+	/**
+	 * Returns the DoG filtered image of the whole interval, ignoring the tile
+	 * size.
+	 */
+	@Override
+	public RandomAccessibleInterval< FloatType > filter()
+	{
 		RandomAccessibleInterval< T > view = Views.interval( img, interval );
 
 		/*
 		 * Do median filtering (or not).
 		 */
 
+		// We need to shift coordinates by -min[] to have the correct location.
+		final long[] min = new long[ interval.numDimensions() ];
+		interval.min( min );
+
 		if ( doMedianFilter )
 		{
-			view = DetectionUtils.applyMedianFilter( view );
-			if ( null == view )
+			final Img< T > filtered = DetectionUtils.applyMedianFilter( view, numThreads );
+			if ( null == filtered )
 			{
 				errorMessage = BASE_ERROR_MESSAGE + "Failed to apply median filter.";
-				return false;
+				return null;
 			}
+			// The filtered image has a min at 0: move it back to the interval.
+			view = Views.translate( filtered, min );
 		}
 
 		/*
 		 * Do DoG computation.
 		 */
-
-		final RandomAccessible< T > extended = Views.extendMirrorSingle( view );
-		// We need to shift coordinates by -min[] to have the correct location.
-		final long[] min = new long[ interval.numDimensions() ];
-		interval.min( min );
 		final FloatType type = new FloatType();
-		final RandomAccessibleInterval< FloatType > dog = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
-		final RandomAccessibleInterval< FloatType > dog2 = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
+		final RandomAccessibleInterval< FloatType > dog;
+		final RandomAccessibleInterval< FloatType > dog2;
+		if ( recursiveFiltering )
+		{
+			// Recursive filters work in place on float copies.
+			final ImgFactory< FloatType > factory = Util.getArrayOrCellImgFactory( interval, type );
+			final RandomAccessibleInterval< T > source = Views.zeroMin( view );
+			dog = Views.translate( DetectionUtils.copyToFloatImg( source, source, factory ), min );
+			dog2 = Views.translate( DetectionUtils.copyToFloatImg( source, source, factory ), min );
+		}
+		else
+		{
+			dog = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
+			dog2 = Views.translate( Util.getArrayOrCellImgFactory( interval, type ).create( interval ), min );
+		}
 
 		final double sigma1 = radius / Math.sqrt( interval.numDimensions() ) * 0.9;
 		final double sigma2 = radius / Math.sqrt( interval.numDimensions() ) * 1.1;
@@ -83,15 +172,30 @@ public class DogDetector< T extends RealType< T > & NativeType< T >> extends Log
 		for ( int d = 0; d < cal.length; d++ )
 			cal[ d ] = calibration[ d ];
 		final double[][] sigmas = DifferenceOfGaussian.computeSigmas( 0.5, 2, cal, sigma1, sigma2 );
+		// One thread pool for both Gaussians.
+		final ExecutorService service = Executors.newFixedThreadPool( Math.max( 1, numThreads ) );
 		try
 		{
-			Gauss3.gauss( sigmas[ 1 ], extended, dog2, numThreads );
-			Gauss3.gauss( sigmas[ 0 ], extended, dog, numThreads );
+			if ( recursiveFiltering )
+			{
+				RecursiveGaussian.gauss( sigmas[ 1 ], dog2, service, numThreads );
+				RecursiveGaussian.gauss( sigmas[ 0 ], dog, service, numThreads );
+			}
+			else
+			{
+				final RandomAccessible< T > extended = Views.extendMirrorSingle( view );
+				Gauss3.gauss( sigmas[ 1 ], extended, dog2, service );
+				Gauss3.gauss( sigmas[ 0 ], extended, dog, service );
+			}
 		}
 		catch ( final IncompatibleTypeException e )
 		{
 			e.printStackTrace();
 		}
+		finally
+		{
+			service.shutdown();
+		}
 
 		final IterableInterval< FloatType > dogIterable = Views.iterable( dog );
 		final IterableInterval< FloatType > tmpIterable = Views.iterable( dog2 );
@@ -100,11 +204,6 @@ public class DogDetector< T extends RealType< T > & NativeType< T >> extends Log
 		while ( dogCursor.hasNext() )
 			dogCursor.next().sub( tmpCursor.next() );
 
-		spots = DetectionUtils.findLocalMaxima( dog, threshold, calibration, radius, doSubPixelLocalization, numThreads );
-
-		final long end = System.currentTimeMillis();
-		processingTime = end - start;
-
-		return true;
+		return dog;
 	}
 }
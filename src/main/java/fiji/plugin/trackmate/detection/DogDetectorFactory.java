@@ -50,6 +50,8 @@ public class DogDetectorFactory< T extends RealType< T > & NativeType< T >> exte
 		final RandomAccessible< T > imFrame = prepareFrameImg( frame );
 		final DogDetector< T > detector = new DogDetector<>( imFrame, interval, calibration, radius, threshold, doSubpixel, doMedian );
 		detector.setNumThreads( 1 );
+		detector.setRecursiveFiltering( useRecursiveFiltering( interval,
+				() -> ( source, itv ) -> new DogDetector<>( source, itv, calibration, radius, Double.POSITIVE_INFINITY, false, doMedian ) ) );
 		return detector;
 	}
 
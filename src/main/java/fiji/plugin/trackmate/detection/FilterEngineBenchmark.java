@@ -0,0 +1,101 @@
+package fiji.plugin.trackmate.detection;
+
+import java.util.Random;
+import java.util.function.BiFunction;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * Measures whether a {@link LogDetector} or {@link DogDetector} is faster with
+ * recursive filters or with convolutions, for a given frame size and spot
+ * radius.
+ * <p>
+ * The convolutions are faster for small radii, and the recursive filters,
+ * whose cost does not depend on the radius, for large ones. Where the switch
+ * happens depends on the image size, on the FFT padding and on the machine,
+ * so it is measured: both engines are timed on a noise image of the frame
+ * size, or on a smaller one with the same aspect ratio for large frames.
+ * <p>
+ * Both engines are timed in the state they are in during a detection run:
+ * each one is run once before timing, so that the JIT compilation and the
+ * one-time setup, such as the Fourier transform of the kernel when the
+ * detectors share a {@link LogKernelCache}, are not counted.
+ */
+public class FilterEngineBenchmark
+{
+
+	/** The maximal number of pixels of the benchmark image. */
+	private static final long MAX_PIXELS = 1l << 22;
+
+	/** Each engine is timed this many times, and the best time is kept. */
+	private static final int N_RUNS = 2;
+
+	private FilterEngineBenchmark()
+	{}
+
+	/**
+	 * Returns <code>true</code> if the detectors created by the specified
+	 * factory run faster with recursive filters than with convolutions.
+	 *
+	 * @param interval
+	 *            the interval the detectors will process.
+	 * @param detectorFactory
+	 *            creates a detector for the specified image and interval.
+	 *            Its threshold should be high enough for no spot to be found.
+	 *            LoG detectors should share a kernel cache, as they do in a
+	 *            detection run.
+	 * @return <code>true</code> if recursive filtering is the fastest.
+	 */
+	public static boolean isRecursiveFaster( final Interval interval, final BiFunction< RandomAccessible< FloatType >, Interval, LogDetector< FloatType > > detectorFactory )
+	{
+		final Interval size = benchmarkInterval( DetectionUtils.squeeze( interval ) );
+		final Img< FloatType > img = Util.getArrayOrCellImgFactory( size, new FloatType() ).create( size );
+		final Random ran = new Random( 1l );
+		for ( final FloatType pixel : img )
+			pixel.setReal( ran.nextFloat() );
+
+		// Warm up.
+		time( detectorFactory, img, size, false );
+		time( detectorFactory, img, size, true );
+
+		long convolution = Long.MAX_VALUE;
+		long recursive = Long.MAX_VALUE;
+		for ( int i = 0; i < N_RUNS; i++ )
+		{
+			convolution = Math.min( convolution, time( detectorFactory, img, size, false ) );
+			recursive = Math.min( recursive, time( detectorFactory, img, size, true ) );
+		}
+		return recursive < convolution;
+	}
+
+	private static long time( final BiFunction< RandomAccessible< FloatType >, Interval, LogDetector< FloatType > > detectorFactory, final Img< FloatType > img, final Interval interval, final boolean recursiveFiltering )
+	{
+		final LogDetector< FloatType > detector = detectorFactory.apply( img, interval );
+		detector.setRecursiveFiltering( recursiveFiltering );
+		detector.setNumThreads( 1 );
+		final long start = System.nanoTime();
+		detector.process();
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Shrinks the specified interval, if needed, to at most
+	 * {@link #MAX_PIXELS}, keeping its aspect ratio.
+	 */
+	private static Interval benchmarkInterval( final Interval interval )
+	{
+		final int n = interval.numDimensions();
+		final long nPixels = Intervals.numElements( interval );
+		final double scale = ( nPixels <= MAX_PIXELS ) ? 1. : Math.pow( ( double ) MAX_PIXELS / nPixels, 1. / n );
+		final long[] dims = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+			dims[ d ] = Math.max( 2l, ( long ) ( interval.dimension( d ) * scale ) );
+		return new FinalInterval( dims );
+	}
+}
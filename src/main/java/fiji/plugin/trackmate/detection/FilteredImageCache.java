@@ -0,0 +1,122 @@
+package fiji.plugin.trackmate.detection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Keeps the filtered image of the last frame processed by a
+ * {@link FilteringSpotDetector}, so that it is not computed again when only
+ * the parameters of the spot extraction change.
+ * <p>
+ * The filtered image is reused if the frame, the interval, the detector and
+ * its settings are the same, except for the settings declared as extraction
+ * settings. A cache is meant to be used for a single source image, such as
+ * the one of a detector configuration panel previews.
+ */
+public class FilteredImageCache
+{
+
+	private final Set< String > extractionKeys;
+
+	private List< Object > key;
+
+	private RandomAccessibleInterval< FloatType > filtered;
+
+	/**
+	 * Creates a new empty cache.
+	 *
+	 * @param extractionKeys
+	 *            the keys of the detector settings that do not affect the
+	 *            filtered image, such as the quality threshold.
+	 */
+	public FilteredImageCache( final String... extractionKeys )
+	{
+		this.extractionKeys = new HashSet<>( Arrays.asList( extractionKeys ) );
+	}
+
+	/**
+	 * Runs the specified detector, reusing the cached filtered image if it was
+	 * computed with the same parameters.
+	 *
+	 * @param detector
+	 *            the detector.
+	 * @param frame
+	 *            the frame it processes.
+	 * @param interval
+	 *            the interval it processes.
+	 * @param detectorKey
+	 *            the key of its factory.
+	 * @param detectorSettings
+	 *            the settings it was created with.
+	 * @return <code>true</code> if detection was successful.
+	 */
+	public boolean process( final FilteringSpotDetector< ? > detector, final int frame, final Interval interval, final String detectorKey, final Map< String, Object > detectorSettings )
+	{
+		if ( !detector.checkInput() )
+			return false;
+
+		final List< Object > lKey = key( frame, interval, detectorKey, detectorSettings );
+		final RandomAccessibleInterval< FloatType > lFiltered;
+		synchronized ( this )
+		{
+			if ( null == filtered || !lKey.equals( key ) )
+			{
+				filtered = null;
+				key = null;
+				final RandomAccessibleInterval< FloatType > img = detector.filter();
+				if ( null == img )
+					return false;
+				filtered = img;
+				key = lKey;
+			}
+			lFiltered = filtered;
+		}
+		return detector.extractSpots( lFiltered );
+	}
+
+	/**
+	 * Returns the filtered image of the last frame processed.
+	 *
+	 * @return the filtered image, or <code>null</code> if none was computed.
+	 */
+	public synchronized RandomAccessibleInterval< FloatType > getFilteredImage()
+	{
+		return filtered;
+	}
+
+	/**
+	 * Empties this cache.
+	 */
+	public synchronized void clear()
+	{
+		filtered = null;
+		key = null;
+	}
+
+	private List< Object > key( final int frame, final Interval interval, final String detectorKey, final Map< String, Object > detectorSettings )
+	{
+		final long[] min = new long[ interval.numDimensions() ];
+		final long[] max = new long[ interval.numDimensions() ];
+		interval.min( min );
+		interval.max( max );
+		final Map< String, Object > filterSettings = new TreeMap<>( detectorSettings );
+		filterSettings.keySet().removeAll( extractionKeys );
+
+		final List< Object > lKey = new ArrayList<>();
+		lKey.add( Integer.valueOf( frame ) );
+		lKey.add( Arrays.toString( min ) );
+		lKey.add( Arrays.toString( max ) );
+		lKey.add( detectorKey );
+		lKey.add( filterSettings );
+		return lKey;
+	}
+}
@@ -0,0 +1,39 @@
+package fiji.plugin.trackmate.detection;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Interface for {@link SpotDetector}s that work in two steps: they first
+ * filter the image, and then extract spots from the filtered image.
+ * <p>
+ * The filtered image only depends on some of the detector parameters. When
+ * only the other ones change, typically the quality threshold, the filtered
+ * image can be reused and only the extraction step run again, as in
+ * interactive previews.
+ */
+public interface FilteringSpotDetector< T extends RealType< T > & NativeType< T > > extends SpotDetector< T >
+{
+
+	/**
+	 * Computes the filtered image the spots are extracted from. It is not
+	 * modified by {@link #extractSpots(RandomAccessibleInterval)}.
+	 *
+	 * @return a new filtered image, or <code>null</code> if an error occurred.
+	 *         The error message is then returned by {@link #getErrorMessage()}.
+	 */
+	public RandomAccessibleInterval< FloatType > filter();
+
+	/**
+	 * Extracts the spots from a filtered image. The spots are then returned
+	 * by {@link #getResult()}.
+	 *
+	 * @param filtered
+	 *            the image returned by {@link #filter()}, for this detector or
+	 *            for another one with the same filtering parameters.
+	 * @return <code>true</code> if extraction was successful.
+	 */
+	public boolean extractSpots( RandomAccessibleInterval< FloatType > filtered );
+}
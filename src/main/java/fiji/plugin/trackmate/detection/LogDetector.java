@@ -4,10 +4,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
 
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.util.RecursiveGaussian;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.fft2.FFTConvolution;
 import net.imglib2.img.Img;
@@ -18,10 +21,9 @@ import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
-import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
 
-public class LogDetector< T extends RealType< T > & NativeType< T >> implements SpotDetector< T >, MultiThreaded
+public class LogDetector< T extends RealType< T > & NativeType< T >> implements PrefetchableSpotDetector< T >, TileableSpotDetector< T >, FilteringSpotDetector< T >, MultiThreaded
 {
 
 	/*
@@ -57,6 +59,30 @@ public class LogDetector< T extends RealType< T > & NativeType< T >> implements
 
 	protected final double[] calibration;
 
+	/**
+	 * The cache of kernels and convolvers shared with the other detectors of
+	 * the run. If <code>null</code>, they are created for this detector only.
+	 */
+	protected LogKernelCache kernelCache;
+
+	/**
+	 * The float copy of the image made by {@link #prefetch()}, consumed by
+	 * {@link #process()}.
+	 */
+	protected Img< FloatType > prefetched;
+
+	/**
+	 * The size of the tiles the interval is processed in. If <code>0</code>,
+	 * the interval is processed in one piece.
+	 */
+	protected long tileSize = 0;
+
+	/**
+	 * If <code>true</code>, the LoG is computed with recursive Gaussian
+	 * filters instead of an FFT convolution.
+	 */
+	protected boolean recursiveFiltering = false;
+
 	/*
 	 * CONSTRUCTORS
 	 */
@@ -78,6 +104,50 @@ public class LogDetector< T extends RealType< T > & NativeType< T >> implements
 	 * METHODS
 	 */
 
+	/**
+	 * Sets the cache from which this detector gets its LoG kernel and FFT
+	 * convolution, instead of creating them.
+	 *
+	 * @param kernelCache
+	 *            the cache, built for the radius and calibration of this
+	 *            detector. Can be <code>null</code>.
+	 */
+	public void setKernelCache( final LogKernelCache kernelCache )
+	{
+		this.kernelCache = kernelCache;
+	}
+
+	/**
+	 * Sets whether the filter is computed with recursive Gaussian filters,
+	 * whose cost does not depend on the radius, instead of a convolution,
+	 * whose cost grows with the radius.
+	 *
+	 * @param recursiveFiltering
+	 *            whether to use recursive filters.
+	 */
+	public void setRecursiveFiltering( final boolean recursiveFiltering )
+	{
+		this.recursiveFiltering = recursiveFiltering;
+	}
+
+	@Override
+	public void setTileSize( final long tileSize )
+	{
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Copies the source image to float, so that {@link #process()} does not
+	 * access it.
+	 */
+	@Override
+	public boolean prefetch()
+	{
+		final ImgFactory< FloatType > factory = Util.getArrayOrCellImgFactory( interval, new FloatType() );
+		prefetched = DetectionUtils.copyToFloatImg( img, interval, factory );
+		return true;
+	}
+
 	@Override
 	public boolean checkInput()
 	{
@@ -99,12 +169,126 @@ public class LogDetector< T extends RealType< T > & NativeType< T >> implements
 	{
 		final long start = System.currentTimeMillis();
 
+		if ( TiledDetection.isTiled( interval, tileSize ) )
+			return processTiles( start );
+
+		// The filtered image does not outlive this method: filter in place in
+		// the buffer of the shared convolver.
+		final LogKernelCache.Convolver convolver = acquireConvolver();
+		try
+		{
+			final RandomAccessibleInterval< FloatType > filtered = filter( convolver, null == convolver ? null : convolver.buffer() );
+			if ( null == filtered )
+				return false;
+			spots = DetectionUtils.findLocalMaxima( filtered, threshold, calibration, radius, doSubPixelLocalization, numThreads );
+			if ( null == spots )
+			{
+				errorMessage = baseErrorMessage + "Failed to find the local maxima.";
+				return false;
+			}
+		}
+		finally
+		{
+			if ( null != convolver )
+				kernelCache.release( convolver );
+		}
+
+		final long end = System.currentTimeMillis();
+		this.processingTime = end - start;
+
+		return true;
+	}
+
+	/**
+	 * Returns the LoG filtered image of the whole interval, ignoring the tile
+	 * size.
+	 */
+	@Override
+	public RandomAccessibleInterval< FloatType > filter()
+	{
+		final LogKernelCache.Convolver convolver = acquireConvolver();
+		try
+		{
+			return filter( convolver, null );
+		}
+		finally
+		{
+			if ( null != convolver )
+				kernelCache.release( convolver );
+		}
+	}
+
+	@Override
+	public boolean extractSpots( final RandomAccessibleInterval< FloatType > filtered )
+	{
+		final long start = System.currentTimeMillis();
+		spots = DetectionUtils.findLocalMaxima( filtered, threshold, calibration, radius, doSubPixelLocalization, numThreads );
+		if ( null == spots )
+		{
+			errorMessage = baseErrorMessage + "Failed to find the local maxima.";
+			return false;
+		}
+		final long end = System.currentTimeMillis();
+		this.processingTime = end - start;
+		return true;
+	}
+
+	/**
+	 * Returns a convolver of the kernel cache for the interval, or
+	 * <code>null</code> if there is no cache or if recursive filtering is
+	 * used.
+	 */
+	private LogKernelCache.Convolver acquireConvolver()
+	{
+		return ( null == kernelCache || recursiveFiltering ) ? null : kernelCache.acquire( interval, getNDims() );
+	}
+
+	/**
+	 * Returns the number of non-singleton dimensions of the interval.
+	 */
+	private int getNDims()
+	{
+		int ndims = interval.numDimensions();
+		for ( int d = 0; d < interval.numDimensions(); d++ )
+			if ( interval.dimension( d ) <= 1 )
+				ndims--;
+		return ndims;
+	}
+
+	/**
+	 * Copies the interval to float and filters it in place.
+	 *
+	 * @param convolver
+	 *            the convolver to use, or <code>null</code> to create one or
+	 *            to use recursive filters.
+	 * @param buffer
+	 *            the image to copy the interval in, or <code>null</code> to
+	 *            create a new one.
+	 * @return the filtered image, with the min of the interval, or
+	 *         <code>null</code> if an error occurred.
+	 */
+	private RandomAccessibleInterval< FloatType > filter( final LogKernelCache.Convolver convolver, final Img< FloatType > buffer )
+	{
 		/*
 		 * Copy to float for convolution.
 		 */
 
-		final ImgFactory< FloatType > factory = Util.getArrayOrCellImgFactory( interval, new FloatType() );
-		Img< FloatType > floatImg = DetectionUtils.copyToFloatImg( img, interval, factory );
+		Img< FloatType > floatImg;
+		if ( null != prefetched )
+		{
+			floatImg = prefetched;
+			prefetched = null;
+		}
+		else if ( null != buffer )
+		{
+			floatImg = buffer;
+			DetectionUtils.copyToFloatImg( img, interval, floatImg );
+		}
+		else
+		{
+			final ImgFactory< FloatType > factory = Util.getArrayOrCellImgFactory( interval, new FloatType() );
+			floatImg = DetectionUtils.copyToFloatImg( img, interval, factory );
+		}
 
 		/*
 		 * Do median filtering (or not).
@@ -112,21 +296,102 @@ public class LogDetector< T extends RealType< T > & NativeType< T >> implements
 
 		if ( doMedianFilter )
 		{
-			floatImg = DetectionUtils.applyMedianFilter( floatImg );
+			floatImg = DetectionUtils.applyMedianFilter( floatImg, numThreads );
 			if ( null == floatImg )
 			{
 				errorMessage = BASE_ERROR_MESSAGE + "Failed to apply median filter.";
-				return false;
+				return null;
 			}
 		}
 
+		if ( recursiveFiltering )
+		{
+			RecursiveGaussian.laplacianOfGaussian( radius, calibration, floatImg, numThreads );
+		}
+		else if ( null != convolver )
+		{
+			convolver.convolve( floatImg, numThreads );
+		}
+		else
+		{
+			convolve( floatImg, getNDims() );
+		}
 
-		// Squeeze singleton dimensions
-		int ndims = interval.numDimensions();
-		for ( int d = 0; d < interval.numDimensions(); d++ )
-			if ( interval.dimension( d ) <= 1 )
-				ndims--;
+		final long[] minopposite = new long[ interval.numDimensions() ];
+		interval.min( minopposite );
+		return Views.translate( floatImg, minopposite );
+	}
+
+	/**
+	 * Processes the interval tile by tile, with one detector per tile.
+	 */
+	protected boolean processTiles( final long start )
+	{
+		final Function< Interval, SpotDetector< ? > > tileDetectorFactory;
+		if ( null != prefetched )
+		{
+			final long[] min = new long[ interval.numDimensions() ];
+			interval.min( min );
+			final RandomAccessible< FloatType > source = Views.translate( prefetched, min );
+			prefetched = null;
+			tileDetectorFactory = tile -> createTileDetector( source, tile );
+		}
+		else
+		{
+			tileDetectorFactory = tile -> createTileDetector( img, tile );
+		}
 
+		// Tiles all share the same kernel.
+		if ( null == kernelCache )
+			kernelCache = new LogKernelCache( radius, calibration );
+
+		final TiledDetection tiled = new TiledDetection( interval, tileSize, getTileHalo(), calibration, tileDetectorFactory );
+		if ( !tiled.process( numThreads ) )
+		{
+			errorMessage = baseErrorMessage + tiled.getErrorMessage();
+			return false;
+		}
+		spots = tiled.getResult();
+
+		final long end = System.currentTimeMillis();
+		this.processingTime = end - start;
+		return true;
+	}
+
+	/**
+	 * Returns the halo to add around tiles, in pixels, so that the LoG
+	 * filtered values are not affected by the tile borders.
+	 *
+	 * @return the halo, per dimension.
+	 */
+	protected long[] getTileHalo()
+	{
+		final int ndims = interval.numDimensions();
+		return TiledDetection.halo( radius / Math.sqrt( ndims ), calibration, ndims, doMedianFilter ? 1 : 0 );
+	}
+
+	/**
+	 * Creates the detector that processes one tile of the interval.
+	 *
+	 * @param source
+	 *            the image to read the tile from.
+	 * @param tile
+	 *            the tile interval, halo included.
+	 * @return a new detector, not tiled.
+	 */
+	protected < R extends RealType< R > & NativeType< R > > LogDetector< R > createTileDetector( final RandomAccessible< R > source, final Interval tile )
+	{
+		final LogDetector< R > detector = new LogDetector<>( source, tile, calibration, radius, threshold, doSubPixelLocalization, doMedianFilter );
+		detector.setKernelCache( kernelCache );
+		detector.setRecursiveFiltering( recursiveFiltering );
+		return detector;
+	}
+
+	/**
+	 * Convolves in place the specified image by a new LoG kernel.
+	 */
+	private void convolve( final Img< FloatType > floatImg, final int ndims )
+	{
 		final Img< FloatType > kernel = DetectionUtils.createLoGKernel( radius, ndims, calibration );
 		final FFTConvolution< FloatType > fftconv = new FFTConvolution<>( floatImg, kernel );
 
@@ -144,16 +409,6 @@ public class LogDetector< T extends RealType< T > & NativeType< T >> implements
 
 		fftconv.convolve();
 		service.shutdown();
-
-		final long[] minopposite = new long[ interval.numDimensions() ];
-		interval.min( minopposite );
-		final IntervalView< FloatType > to = Views.translate( floatImg, minopposite );
-		spots = DetectionUtils.findLocalMaxima( to, threshold, calibration, radius, doSubPixelLocalization, numThreads );
-
-		final long end = System.currentTimeMillis();
-		this.processingTime = end - start;
-
-		return true;
 	}
 
 	@Override
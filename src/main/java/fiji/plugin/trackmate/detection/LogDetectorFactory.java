@@ -5,14 +5,20 @@ import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_DO_SUBPIXEL_L
 import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_RADIUS;
 import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_TARGET_CHANNEL;
 import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_THRESHOLD;
+import static fiji.plugin.trackmate.detection.DetectorKeys.FILTER_ENGINE_AUTO;
+import static fiji.plugin.trackmate.detection.DetectorKeys.FILTER_ENGINE_CONVOLUTION;
+import static fiji.plugin.trackmate.detection.DetectorKeys.FILTER_ENGINE_RECURSIVE;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_MEDIAN_FILTERING;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_SUBPIXEL_LOCALIZATION;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_FILTER_ENGINE;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_RADIUS;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_TARGET_CHANNEL;
 import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_THRESHOLD;
 import static fiji.plugin.trackmate.io.IOUtils.readBooleanAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.readDoubleAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.readIntegerAttribute;
+import static fiji.plugin.trackmate.io.IOUtils.readStringAttribute;
+import static fiji.plugin.trackmate.io.IOUtils.writeAttribute;
 import static fiji.plugin.trackmate.io.IOUtils.writeDoMedian;
 import static fiji.plugin.trackmate.io.IOUtils.writeDoSubPixel;
 import static fiji.plugin.trackmate.io.IOUtils.writeRadius;
@@ -25,6 +31,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import javax.swing.ImageIcon;
 
@@ -42,6 +52,7 @@ import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.view.Views;
 
 @Plugin( type = SpotDetectorFactory.class )
@@ -72,6 +83,18 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 
 	protected String errorMessage;
 
+	/**
+	 * The LoG kernel and FFT convolutions shared by the detectors of the
+	 * current run. Reset when the target changes.
+	 */
+	private LogKernelCache kernelCache;
+
+	/**
+	 * Measures whether recursive filtering is the fastest for the current
+	 * run, or <code>null</code> if no detector asked for it yet.
+	 */
+	private FutureTask< Boolean > engineBenchmark;
+
 	/*
 	 * METHODS
 	 */
@@ -81,6 +104,11 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 	{
 		this.img = img;
 		this.settings = settings;
+		synchronized ( this )
+		{
+			kernelCache = null;
+			engineBenchmark = null;
+		}
 		return checkSettings( settings );
 	}
 	
@@ -137,9 +165,94 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 
 		final LogDetector< T > detector = new LogDetector<>( imFrame, interval, calibration, radius, threshold, doSubpixel, doMedian );
 		detector.setNumThreads( 1 );
+		detector.setKernelCache( getKernelCache( radius, calibration ) );
+
+		// The benchmarked convolutions reuse their kernel, as in the run.
+		detector.setRecursiveFiltering( useRecursiveFiltering( interval, () -> {
+			final LogKernelCache benchmarkCache = new LogKernelCache( radius, calibration );
+			return ( source, itv ) -> {
+				final LogDetector< FloatType > benchmarked = new LogDetector<>( source, itv, calibration, radius, Double.POSITIVE_INFINITY, false, doMedian );
+				benchmarked.setKernelCache( benchmarkCache );
+				return benchmarked;
+			};
+		} ) );
 		return detector;
 	}
 
+	/**
+	 * Returns whether the detectors of the current run should use recursive
+	 * filtering, as set by the {@link DetectorKeys#KEY_FILTER_ENGINE}
+	 * parameter. In automatic mode, both engines are benchmarked on the first
+	 * call of the run. The benchmark does not hold the lock of this factory;
+	 * other callers wait for its result.
+	 *
+	 * @param interval
+	 *            the interval processed by the detectors.
+	 * @param benchmarkDetectorFactory
+	 *            supplies the function that creates the detectors to
+	 *            benchmark, that find no spots. It is only called when the
+	 *            benchmark is set up, once per run.
+	 * @return <code>true</code> to use recursive filtering.
+	 */
+	protected boolean useRecursiveFiltering( final Interval interval, final Supplier< BiFunction< RandomAccessible< FloatType >, Interval, LogDetector< FloatType > > > benchmarkDetectorFactory )
+	{
+		final Object engine = settings.get( KEY_FILTER_ENGINE );
+		if ( FILTER_ENGINE_RECURSIVE.equals( engine ) )
+			return true;
+		if ( !FILTER_ENGINE_AUTO.equals( engine ) )
+			return false;
+
+		final FutureTask< Boolean > benchmark;
+		final boolean first;
+		synchronized ( this )
+		{
+			first = ( null == engineBenchmark );
+			if ( first )
+			{
+				final BiFunction< RandomAccessible< FloatType >, Interval, LogDetector< FloatType > > factory = benchmarkDetectorFactory.get();
+				engineBenchmark = new FutureTask<>( () -> FilterEngineBenchmark.isRecursiveFaster( interval, factory ) );
+			}
+			benchmark = engineBenchmark;
+		}
+		if ( first )
+			benchmark.run();
+
+		try
+		{
+			return benchmark.get();
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			throw new RuntimeException( cause );
+		}
+		catch ( final InterruptedException e )
+		{
+			// Detection is being cancelled, any engine will do.
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the kernel cache for the current run, creating it if needed or
+	 * if the radius or calibration changed.
+	 *
+	 * @param radius
+	 *            the spot radius.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @return the kernel cache.
+	 */
+	protected synchronized LogKernelCache getKernelCache( final double radius, final double[] calibration )
+	{
+		if ( null == kernelCache || !kernelCache.matches( radius, calibration ) )
+			kernelCache = new LogKernelCache( radius, calibration );
+		return kernelCache;
+	}
+
 	@Override
 	public String getKey()
 	{
@@ -162,13 +275,17 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 		ok = ok & checkParameter( lSettings, KEY_THRESHOLD, Double.class, errorHolder );
 		ok = ok & checkParameter( lSettings, KEY_DO_MEDIAN_FILTERING, Boolean.class, errorHolder );
 		ok = ok & checkParameter( lSettings, KEY_DO_SUBPIXEL_LOCALIZATION, Boolean.class, errorHolder );
+		if ( lSettings.containsKey( KEY_FILTER_ENGINE ) )
+			ok = ok & checkFilterEngine( lSettings, errorHolder );
 		final List< String > mandatoryKeys = new ArrayList<>();
 		mandatoryKeys.add( KEY_TARGET_CHANNEL );
 		mandatoryKeys.add( KEY_RADIUS );
 		mandatoryKeys.add( KEY_THRESHOLD );
 		mandatoryKeys.add( KEY_DO_MEDIAN_FILTERING );
 		mandatoryKeys.add( KEY_DO_SUBPIXEL_LOCALIZATION );
-		ok = ok & checkMapKeys( lSettings, mandatoryKeys, null, errorHolder );
+		final List< String > optionalKeys = new ArrayList<>();
+		optionalKeys.add( KEY_FILTER_ENGINE );
+		ok = ok & checkMapKeys( lSettings, mandatoryKeys, optionalKeys, errorHolder );
 		if ( !ok )
 		{
 			errorMessage = errorHolder.toString();
@@ -176,11 +293,23 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 		return ok;
 	}
 
+	private static boolean checkFilterEngine( final Map< String, Object > lSettings, final StringBuilder errorHolder )
+	{
+		if ( !checkParameter( lSettings, KEY_FILTER_ENGINE, String.class, errorHolder ) )
+			return false;
+		final Object engine = lSettings.get( KEY_FILTER_ENGINE );
+		if ( FILTER_ENGINE_CONVOLUTION.equals( engine ) || FILTER_ENGINE_RECURSIVE.equals( engine ) || FILTER_ENGINE_AUTO.equals( engine ) )
+			return true;
+		errorHolder.append( "Unknown value for parameter " + KEY_FILTER_ENGINE + ": " + engine + ".\n" );
+		return false;
+	}
+
 	@Override
 	public boolean marshall( final Map< String, Object > lSettings, final Element element )
 	{
 		final StringBuilder errorHolder = new StringBuilder();
-		final boolean ok = writeTargetChannel( lSettings, element, errorHolder ) && writeRadius( lSettings, element, errorHolder ) && writeThreshold( lSettings, element, errorHolder ) && writeDoMedian( lSettings, element, errorHolder ) && writeDoSubPixel( lSettings, element, errorHolder );
+		final boolean ok = writeTargetChannel( lSettings, element, errorHolder ) && writeRadius( lSettings, element, errorHolder ) && writeThreshold( lSettings, element, errorHolder ) && writeDoMedian( lSettings, element, errorHolder ) && writeDoSubPixel( lSettings, element, errorHolder )
+				&& ( !lSettings.containsKey( KEY_FILTER_ENGINE ) || writeAttribute( lSettings, element, KEY_FILTER_ENGINE, String.class, errorHolder ) );
 		if ( !ok )
 		{
 			errorMessage = errorHolder.toString();
@@ -199,6 +328,8 @@ public class LogDetectorFactory< T extends RealType< T > & NativeType< T >> impl
 		ok = ok & readBooleanAttribute( element, lSettings, KEY_DO_SUBPIXEL_LOCALIZATION, errorHolder );
 		ok = ok & readBooleanAttribute( element, lSettings, KEY_DO_MEDIAN_FILTERING, errorHolder );
 		ok = ok & readIntegerAttribute( element, lSettings, KEY_TARGET_CHANNEL, errorHolder );
+		if ( null != element.getAttributeValue( KEY_FILTER_ENGINE ) )
+			ok = ok & readStringAttribute( element, lSettings, KEY_FILTER_ENGINE, errorHolder );
 		if ( !ok )
 		{
 			errorMessage = errorHolder.toString();
@@ -0,0 +1,209 @@
+package fiji.plugin.trackmate.detection;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Interval;
+import net.imglib2.algorithm.fft2.FFTConvolution;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * Cache of the LoG kernel and of the FFT convolution machinery built on it,
+ * shared by the {@link LogDetector}s of a detection run.
+ * <p>
+ * The kernel only depends on the radius, calibration and dimensionality, so it
+ * is computed once and shared read-only by all detectors. The FFT
+ * convolutions are pooled by frame size: a detector borrows one for the
+ * duration of its processing and returns it afterwards. A pooled convolution
+ * keeps its float image buffer, the Fourier transform of its kernel and its
+ * executor service, so they are computed once per detection thread instead of
+ * once per frame.
+ */
+public class LogKernelCache
+{
+
+	private final double radius;
+
+	private final double[] calibration;
+
+	/** The kernels, per dimensionality. */
+	private final Map< Integer, Img< FloatType > > kernels = new ConcurrentHashMap<>();
+
+	/** The idle convolvers, per frame size. */
+	private final Map< List< Long >, Queue< Convolver > > idle = new ConcurrentHashMap<>();
+
+	public LogKernelCache( final double radius, final double[] calibration )
+	{
+		this.radius = radius;
+		this.calibration = calibration.clone();
+	}
+
+	/**
+	 * Returns <code>true</code> if this cache can serve detectors configured
+	 * with the specified radius and calibration.
+	 *
+	 * @param lRadius
+	 *            the spot radius.
+	 * @param lCalibration
+	 *            the pixel sizes.
+	 * @return <code>true</code> if the kernel of this cache matches.
+	 */
+	public boolean matches( final double lRadius, final double[] lCalibration )
+	{
+		return radius == lRadius && Arrays.equals( calibration, lCalibration );
+	}
+
+	/**
+	 * Returns the LoG kernel for the specified dimensionality. The kernel is
+	 * shared and must not be modified.
+	 *
+	 * @param nDims
+	 *            the number of non-singleton dimensions.
+	 * @return the kernel.
+	 */
+	public Img< FloatType > getKernel( final int nDims )
+	{
+		return kernels.computeIfAbsent( nDims, n -> DetectionUtils.createLoGKernel( radius, n, calibration ) );
+	}
+
+	/**
+	 * Borrows a convolver for images of the size of the specified interval.
+	 * It must be given back with {@link #release(Convolver)} when done.
+	 *
+	 * @param interval
+	 *            the interval to process.
+	 * @param nDims
+	 *            the number of non-singleton dimensions of the interval.
+	 * @return a convolver, used by the caller only.
+	 */
+	Convolver acquire( final Interval interval, final int nDims )
+	{
+		final List< Long > key = key( interval );
+		final Convolver convolver = idle.computeIfAbsent( key, k -> new ConcurrentLinkedQueue<>() ).poll();
+		if ( null != convolver )
+			return convolver;
+		return new Convolver( key, interval, getKernel( nDims ) );
+	}
+
+	/**
+	 * Gives back a convolver acquired from this cache.
+	 *
+	 * @param convolver
+	 *            the convolver.
+	 */
+	void release( final Convolver convolver )
+	{
+		idle.get( convolver.key ).add( convolver );
+	}
+
+	private static List< Long > key( final Interval interval )
+	{
+		final Long[] dims = new Long[ interval.numDimensions() ];
+		for ( int d = 0; d < dims.length; d++ )
+			dims[ d ] = interval.dimension( d );
+		return Arrays.asList( dims );
+	}
+
+	/**
+	 * A float image buffer and the FFT convolution of its content by a LoG
+	 * kernel. Not thread-safe.
+	 */
+	static final class Convolver
+	{
+
+		private static final AtomicInteger threadCounter = new AtomicInteger( 0 );
+
+		private final List< Long > key;
+
+		private final Interval interval;
+
+		private final Img< FloatType > kernel;
+
+		private Img< FloatType > buffer;
+
+		private FFTConvolution< FloatType > fftconv;
+
+		private ThreadPoolExecutor service;
+
+		private Convolver( final List< Long > key, final Interval interval, final Img< FloatType > kernel )
+		{
+			this.key = key;
+			this.interval = interval;
+			this.kernel = kernel;
+		}
+
+		/**
+		 * Returns the float image buffer of this convolver, with the size of
+		 * the frames it processes. Its content is overwritten by each
+		 * detector.
+		 *
+		 * @return the buffer.
+		 */
+		Img< FloatType > buffer()
+		{
+			if ( null == buffer )
+				buffer = Util.getArrayOrCellImgFactory( interval, new FloatType() ).create( interval );
+			return buffer;
+		}
+
+		/**
+		 * Convolves in place the specified image, which must have the size of
+		 * the buffer. The FFT of the kernel is computed on first call only.
+		 *
+		 * @param img
+		 *            the image to convolve.
+		 * @param numThreads
+		 *            the number of threads to use.
+		 */
+		void convolve( final Img< FloatType > img, final int numThreads )
+		{
+			final int nThreads = Math.max( 1, numThreads );
+			if ( null == service || service.getMaximumPoolSize() != nThreads )
+			{
+				// Idle threads die, so that the cache needs not be shut down.
+				service = new ThreadPoolExecutor( nThreads, nThreads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+					final Thread thread = new Thread( r, "TrackMate LoG convolution thread " + threadCounter.incrementAndGet() );
+					thread.setDaemon( true );
+					return thread;
+				} );
+				service.allowCoreThreadTimeOut( true );
+			}
+
+			if ( null == fftconv )
+			{
+				fftconv = new FFTConvolution<>( img, kernel );
+
+				/*
+				 * Determine the right img factory for FFT calculation.
+				 */
+				Interval fftinterval = img;
+				for ( int d = 0; d < kernel.numDimensions(); d++ )
+					fftinterval = Intervals.expand( fftinterval, kernel.dimension( d ), d );
+				final ImgFactory< ComplexFloatType > imgFactory = Util.getArrayOrCellImgFactory( fftinterval, new ComplexFloatType() );
+				fftconv.setFFTImgFactory( imgFactory );
+				// The image FFT is not reused, no need to copy it.
+				fftconv.setKeepImgFFT( false );
+			}
+			else
+			{
+				fftconv.setImg( img );
+				fftconv.setOutput( img );
+			}
+			fftconv.setExecutorService( service );
+			fftconv.convolve();
+		}
+	}
+}
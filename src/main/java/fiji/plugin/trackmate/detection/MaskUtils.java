@@ -9,6 +9,7 @@ import java.util.concurrent.Executors;
 
 import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.SpotRoi;
+import fiji.plugin.trackmate.detection.util.ComponentStats;
 import ij.ImagePlus;
 import ij.gui.PolygonRoi;
 import ij.measure.Measurements;
@@ -27,9 +28,6 @@ import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.roi.labeling.ImgLabeling;
-import net.imglib2.roi.labeling.LabelRegion;
-import net.imglib2.roi.labeling.LabelRegionCursor;
-import net.imglib2.roi.labeling.LabelRegions;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
@@ -183,6 +181,27 @@ public class MaskUtils
 		return labeling;
 	}
 
+	/**
+	 * Creates spots from the connected components of a thresholded image,
+	 * with a quality of 1. Each spot is at the centroid of its component, and
+	 * has the radius of the sphere (or disk in 2D) of the same volume.
+	 * <p>
+	 * Components are computed in a single streaming pass, and no label image
+	 * is created.
+	 *
+	 * @param input
+	 *            the image to threshold.
+	 * @param interval
+	 *            the interval to process.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param threshold
+	 *            the value above which pixels belong to objects.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 * @return a new list of spots, or <code>null</code> if the connected
+	 *         components could not be computed.
+	 */
 	public static < T extends RealType< T >, R extends RealType< R > > List< Spot > toSpots(
 			final RandomAccessible< T > input,
 			final Interval interval,
@@ -190,50 +209,33 @@ public class MaskUtils
 			final double threshold,
 			final int numThreads )
 	{
-		final double quality = 1.;
-
-		// Get labeling from mask.
-		final ImgLabeling< Integer, IntType > labeling = toLabeling( input, interval, threshold, numThreads );
-
-		// Parse each component.
-		final LabelRegions< Integer > regions = new LabelRegions<>( labeling );
-		final Iterator< LabelRegion< Integer > > iterator = regions.iterator();
-		final List< Spot > spots = new ArrayList<>( regions.getExistingLabels().size() );
-		while ( iterator.hasNext() )
-		{
-			final LabelRegion< Integer > region = iterator.next();
-			final LabelRegionCursor cursor = region.localizingCursor();
-			final int[] cursorPos = new int[ labeling.numDimensions() ];
-			final long[] sum = new long[ 3 ];
-			while ( cursor.hasNext() )
-			{
-				cursor.fwd();
-				cursor.localize( cursorPos );
-				for ( int d = 0; d < sum.length; d++ )
-					sum[ d ] += cursorPos[ d ];
-			}
-
-			final double[] pos = new double[ 3 ];
-			for ( int d = 0; d < pos.length; d++ )
-				pos[ d ] = sum[ d ] / ( double ) region.size();
-
-			final double x = calibration[ 0 ] * ( interval.min( 0 ) + pos[ 0 ] );
-			final double y = calibration[ 1 ] * ( interval.min( 1 ) + pos[ 1 ] );
-			final double z = calibration[ 2 ] * ( interval.min( 2 ) + pos[ 2 ] );
-
-			double volume = region.size();
-			for ( int d = 0; d < calibration.length; d++ )
-				if ( calibration[ d ] > 0 )
-					volume *= calibration[ d ];
-			final double radius = ( labeling.numDimensions() == 2 )
-					? Math.sqrt( volume / Math.PI )
-					: Math.pow( 3. * volume / ( 4. * Math.PI ), 1. / 3. );
-			spots.add( new Spot( x, y, z, radius, quality ) );
-		}
-
-		return spots;
+		final ComponentStats components = ComponentStats.compute( Views.interval( input, interval ), threshold, null, numThreads );
+		if ( null == components )
+			return null;
+		return toSpots( components, calibration, false );
 	}
 
+	/**
+	 * Creates spots from the connected components of a thresholded image,
+	 * with the maximum of a quality image over each component as quality.
+	 *
+	 * @param mask
+	 *            the image to threshold.
+	 * @param interval
+	 *            the interval to process.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param threshold
+	 *            the value above which pixels belong to objects.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 * @param qualityImage
+	 *            the image to take the quality from. Must contain the
+	 *            interval.
+	 * @return a new list of spots, or <code>null</code> if the connected
+	 *         components could not be computed.
+	 * @see #toSpots(RandomAccessible, Interval, double[], double, int)
+	 */
 	public static < T extends RealType< T >, R extends RealType< R > > List< Spot > toSpots(
 			final RandomAccessible< T > mask,
 			final Interval interval,
@@ -242,60 +244,32 @@ public class MaskUtils
 			final int numThreads,
 			final RandomAccessibleInterval< R > qualityImage )
 	{
-		// Get labeling from mask.
-		final ImgLabeling< Integer, IntType > labeling = toLabeling( mask, interval, threshold, numThreads );
-
-		// Crop of the quality image.
-		final IntervalView< R > cropQuality = Views.interval( qualityImage, interval );
-		final IntervalView< R > inQuality = Views.zeroMin( cropQuality );
-		final RandomAccess< R > raQuality = inQuality.randomAccess( inQuality );
-
-		// Parse each component.
-		final LabelRegions< Integer > regions = new LabelRegions<>( labeling );
-		final Iterator< LabelRegion< Integer > > iterator = regions.iterator();
-		final List< Spot > spots = new ArrayList<>( regions.getExistingLabels().size() );
-		while ( iterator.hasNext() )
-		{
-			final LabelRegion< Integer > region = iterator.next();
-			final LabelRegionCursor cursor = region.localizingCursor();
-			final int[] cursorPos = new int[ labeling.numDimensions() ];
-			final long[] sum = new long[ 3 ];
-			double quality = Double.NEGATIVE_INFINITY;
-			while ( cursor.hasNext() )
-			{
-				cursor.fwd();
-
-				// Position.
-				cursor.localize( cursorPos );
-				for ( int d = 0; d < sum.length; d++ )
-					sum[ d ] += cursorPos[ d ];
-
-				// Quality
-				raQuality.setPosition( cursor );
-				final double q = raQuality.get().getRealDouble();
-				if ( q > quality )
-					quality = q;
-			}
+		final ComponentStats components = ComponentStats.compute( Views.interval( mask, interval ), threshold, qualityImage, numThreads );
+		if ( null == components )
+			return null;
+		return toSpots( components, calibration, true );
+	}
 
+	private static List< Spot > toSpots( final ComponentStats components, final double[] calibration, final boolean useQuality )
+	{
+		final int n = components.numDimensions();
+		final List< Spot > spots = new ArrayList<>( components.size() );
+		for ( int i = 0; i < components.size(); i++ )
+		{
 			final double[] pos = new double[ 3 ];
-			for ( int d = 0; d < pos.length; d++ )
-				pos[ d ] = sum[ d ] / ( double ) region.size();
+			for ( int d = 0; d < n; d++ )
+				pos[ d ] = calibration[ d ] * components.centroid( i, d );
 
-			final double x = calibration[ 0 ] * ( interval.min( 0 ) + pos[ 0 ] );
-			final double y = calibration[ 1 ] * ( interval.min( 1 ) + pos[ 1 ] );
-			final double z = calibration[ 2 ] * ( interval.min( 2 ) + pos[ 2 ] );
-
-			double volume = region.size();
-			for ( int d = 0; d < calibration.length; d++ )
+			double volume = components.count( i );
+			for ( int d = 0; d < n; d++ )
 				if ( calibration[ d ] > 0 )
 					volume *= calibration[ d ];
-
-			final double radius = ( labeling.numDimensions() == 2 )
+			final double radius = ( n == 2 )
 					? Math.sqrt( volume / Math.PI )
 					: Math.pow( 3. * volume / ( 4. * Math.PI ), 1. / 3. );
-			spots.add( new Spot( x, y, z, radius, quality ) );
+			final double quality = useQuality ? components.quality( i ) : 1.;
+			spots.add( new Spot( pos[ 0 ], pos[ 1 ], pos[ 2 ], radius, quality ) );
 		}
-
 		return spots;
 	}
 
@@ -0,0 +1,665 @@
+package fiji.plugin.trackmate.detection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fiji.plugin.trackmate.Spot;
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.gauss3.Gauss3;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * A LoG detector that searches spots over a range of radii, and estimates the
+ * radius of each spot.
+ * <p>
+ * The image is filtered by scale-normalized LoG filters, for radii
+ * geometrically spaced between the minimal and maximal radius. The Gaussian
+ * scale-space is built incrementally: each level is obtained by smoothing the
+ * previous one with the small Gaussian that brings it to the next scale,
+ * instead of smoothing the source image with the full Gaussian, and the
+ * Laplacian is then a finite-difference stencil. Only three LoG levels are
+ * kept in memory, and the maxima over space and scale of the middle one are
+ * searched as soon as the next level is computed. A spot is a pixel of a level
+ * larger than its neighbors in this level and in the two adjacent ones. Its
+ * radius is set from the scale of this level, and its quality is the
+ * scale-normalized LoG value.
+ * <p>
+ * This is much cheaper than running a {@link LogDetector} per radius, and
+ * spots found at several radii are only reported at their best one.
+ */
+public class MultiScaleLogDetector< T extends RealType< T > & NativeType< T > > extends LogDetector< T >
+{
+
+	/*
+	 * CONSTANTS
+	 */
+
+	public final static String BASE_ERROR_MESSAGE = "MultiScaleLogDetector: ";
+
+	/*
+	 * FIELDS
+	 */
+
+	protected final double maxRadius;
+
+	protected final int nScales;
+
+	/*
+	 * CONSTRUCTOR
+	 */
+
+	/**
+	 * Creates a new multi-scale LoG detector.
+	 *
+	 * @param img
+	 *            the image to process.
+	 * @param interval
+	 *            the interval to process.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param minRadius
+	 *            the smallest spot radius searched, in image units.
+	 * @param maxRadius
+	 *            the largest spot radius searched, in image units.
+	 * @param nScales
+	 *            the number of radii searched, including the smallest and
+	 *            the largest ones.
+	 * @param threshold
+	 *            the quality threshold under which spots are discarded.
+	 * @param doSubPixelLocalization
+	 *            whether to refine the spot positions and radii by quadratic
+	 *            interpolation.
+	 * @param doMedianFilter
+	 *            whether to apply a 3x3 median filter before detection.
+	 */
+	public MultiScaleLogDetector( final RandomAccessible< T > img, final Interval interval, final double[] calibration, final double minRadius, final double maxRadius, final int nScales, final double threshold, final boolean doSubPixelLocalization, final boolean doMedianFilter )
+	{
+		super( img, interval, calibration, minRadius, threshold, doSubPixelLocalization, doMedianFilter );
+		this.maxRadius = maxRadius;
+		this.nScales = nScales;
+		this.baseErrorMessage = BASE_ERROR_MESSAGE;
+	}
+
+	/*
+	 * METHODS
+	 */
+
+	@Override
+	public boolean prefetch()
+	{
+		prefetched = copy();
+		return true;
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( !super.checkInput() )
+			return false;
+		if ( radius <= 0 || maxRadius < radius )
+		{
+			errorMessage = baseErrorMessage + "Radius range is invalid: [" + radius + ", " + maxRadius + "].";
+			return false;
+		}
+		if ( nScales < 1 )
+		{
+			errorMessage = baseErrorMessage + "Number of scales must be at least 1, got " + nScales + ".";
+			return false;
+		}
+		if ( Intervals.numElements( interval ) > Integer.MAX_VALUE )
+		{
+			errorMessage = baseErrorMessage + "Image is too large to be processed in one piece; use tiled detection.";
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean process()
+	{
+		final long start = System.currentTimeMillis();
+
+		if ( TiledDetection.isTiled( interval, tileSize ) )
+			return processTiles( start );
+
+		final Img< FloatType > source = prepareSource();
+		if ( null == source )
+			return false;
+
+		final List< Spot > lSpots = execute( service -> new ScaleSpace( source ).process( null, service ) );
+		if ( null == lSpots )
+			return false;
+		spots = lSpots;
+
+		final long end = System.currentTimeMillis();
+		this.processingTime = end - start;
+		return true;
+	}
+
+	/**
+	 * Returns the LoG levels of the whole interval, ignoring the tile size, as
+	 * an image with one more dimension than the interval, along which the
+	 * scales are stacked. Unlike {@link #process()}, all the levels are kept
+	 * in memory.
+	 */
+	@Override
+	public RandomAccessibleInterval< FloatType > filter()
+	{
+		final Img< FloatType > source = prepareSource();
+		if ( null == source )
+			return null;
+
+		final int n = interval.numDimensions();
+		final long[] dims = new long[ n + 1 ];
+		interval.dimensions( dims );
+		dims[ n ] = nScales;
+		final Img< FloatType > stack = Util.getArrayOrCellImgFactory( new FinalDimensions( dims ), new FloatType() ).create( dims );
+		final Boolean ok = execute( service -> {
+			new ScaleSpace( source ).write( stack, service );
+			return Boolean.TRUE;
+		} );
+		if ( null == ok )
+			return null;
+
+		final long[] min = new long[ n + 1 ];
+		interval.min( min );
+		return Views.translate( stack, min );
+	}
+
+	@Override
+	public boolean extractSpots( final RandomAccessibleInterval< FloatType > filtered )
+	{
+		final long start = System.currentTimeMillis();
+
+		final RandomAccessibleInterval< FloatType > stack = Views.zeroMin( filtered );
+		final List< Spot > lSpots = execute( service -> new ScaleSpace( null ).process( stack, service ) );
+		if ( null == lSpots )
+			return false;
+		spots = lSpots;
+
+		final long end = System.currentTimeMillis();
+		this.processingTime = end - start;
+		return true;
+	}
+
+	/**
+	 * Returns the interval copied in an array image, filtered by the median
+	 * filter if required, or <code>null</code> if an error occurred.
+	 */
+	private Img< FloatType > prepareSource()
+	{
+		Img< FloatType > source = ( prefetched instanceof ArrayImg ) ? prefetched : copy();
+		prefetched = null;
+		if ( doMedianFilter )
+		{
+			source = DetectionUtils.applyMedianFilter( source, numThreads );
+			if ( null == source )
+			{
+				errorMessage = baseErrorMessage + "Failed to apply median filter.";
+				return null;
+			}
+			if ( !( source instanceof ArrayImg ) )
+			{
+				final Img< FloatType > filtered = source;
+				source = ArrayImgs.floats( Intervals.dimensionsAsLongArray( filtered ) );
+				DetectionUtils.copyToFloatImg( filtered, filtered, source );
+			}
+		}
+		return source;
+	}
+
+	/**
+	 * Runs the specified task with an executor of the detector threads. All
+	 * the parallel steps of the task, including the Gaussian smoothing of
+	 * each scale, share this executor.
+	 *
+	 * @return the task result, or <code>null</code> if an error occurred.
+	 */
+	private < R > R execute( final ScaleSpaceTask< R > task )
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( Math.max( 1, numThreads ) );
+		try
+		{
+			return task.run( service );
+		}
+		catch ( final IncompatibleTypeException | ExecutionException e )
+		{
+			errorMessage = baseErrorMessage + e.getMessage();
+			return null;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			errorMessage = baseErrorMessage + "Detection was interrupted.";
+			return null;
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * The halo covers the Gaussian of the largest scale, plus the Laplacian
+	 * stencil.
+	 */
+	@Override
+	protected long[] getTileHalo()
+	{
+		final int ndims = interval.numDimensions();
+		final double[] sigmas = getSigmas();
+		final long[] halo = TiledDetection.halo( sigmas[ sigmas.length - 1 ], calibration, ndims, doMedianFilter ? 1 : 0 );
+		for ( int d = 0; d < ndims; d++ )
+			halo[ d ]++;
+		return halo;
+	}
+
+	@Override
+	protected < R extends RealType< R > & NativeType< R > > LogDetector< R > createTileDetector( final RandomAccessible< R > source, final Interval tile )
+	{
+		return new MultiScaleLogDetector<>( source, tile, calibration, radius, maxRadius, nScales, threshold, doSubPixelLocalization, doMedianFilter );
+	}
+
+	/**
+	 * Returns the sigmas of the scale-space levels, in image units.
+	 * <p>
+	 * The scale-normalized LoG response to a Gaussian blob of sigma
+	 * <code>s</code> in <code>n</code> dimensions peaks at the scale
+	 * <code>s * sqrt(2/n)</code>, and the radius of such a blob is
+	 * <code>s * sqrt(n)</code>, hence the radius maps to the sigma
+	 * <code>radius * sqrt(2) / n</code>.
+	 *
+	 * @return a new array of <code>nScales</code> sigmas.
+	 */
+	protected double[] getSigmas()
+	{
+		final double[] sigmas = new double[ nScales ];
+		for ( int i = 0; i < nScales; i++ )
+		{
+			final double r = ( nScales == 1 ) ? radius : radius * Math.pow( maxRadius / radius, ( double ) i / ( nScales - 1 ) );
+			sigmas[ i ] = r * Math.sqrt( 2. ) / interval.numDimensions();
+		}
+		return sigmas;
+	}
+
+	private ArrayImg< FloatType, ? > copy()
+	{
+		final ArrayImg< FloatType, FloatArray > output = ArrayImgs.floats( Intervals.dimensionsAsLongArray( interval ) );
+		DetectionUtils.copyToFloatImg( img, interval, output );
+		return output;
+	}
+
+	private static float[] data( final Img< FloatType > img )
+	{
+		@SuppressWarnings( "unchecked" )
+		final ArrayImg< FloatType, FloatArray > arrayImg = ( ArrayImg< FloatType, FloatArray > ) img;
+		return arrayImg.update( null ).getCurrentStorageArray();
+	}
+
+	/**
+	 * The scale-space of one image, processed on flat arrays seen as 3D
+	 * images, with singleton dimensions for 1D and 2D images.
+	 */
+	private final class ScaleSpace
+	{
+
+		private final int nx;
+
+		private final int ny;
+
+		private final int nz;
+
+		/** Squared inverse pixel sizes, 0 along singleton dimensions. */
+		private final double[] weights = new double[ 3 ];
+
+		/** Offsets to the spatial neighbors, in the x, y, z order. */
+		private final int[][] offsets;
+
+		private final double[] sigmas = getSigmas();
+
+		/**
+		 * The current Gaussian level, initially the source image, and the
+		 * buffer the next level is computed in. Both are <code>null</code>
+		 * when the LoG levels are read from a stack.
+		 */
+		private Img< FloatType > gaussian;
+
+		private Img< FloatType > gaussianBuffer;
+
+		/**
+		 * Creates the scale-space of the specified image.
+		 *
+		 * @param source
+		 *            the image, in an array image, or <code>null</code> if the
+		 *            LoG levels are read from a stack.
+		 */
+		private ScaleSpace( final Img< FloatType > source )
+		{
+			final int n = interval.numDimensions();
+			this.nx = ( int ) interval.dimension( 0 );
+			this.ny = n > 1 ? ( int ) interval.dimension( 1 ) : 1;
+			this.nz = n > 2 ? ( int ) interval.dimension( 2 ) : 1;
+			for ( int d = 0; d < n; d++ )
+				weights[ d ] = 1. / calibration[ d ] / calibration[ d ];
+
+			final List< int[] > list = new ArrayList<>();
+			for ( int dz = ( nz > 1 ? -1 : 0 ); dz <= ( nz > 1 ? 1 : 0 ); dz++ )
+				for ( int dy = ( ny > 1 ? -1 : 0 ); dy <= ( ny > 1 ? 1 : 0 ); dy++ )
+					for ( int dx = -1; dx <= 1; dx++ )
+						if ( dx != 0 || dy != 0 || dz != 0 )
+							list.add( new int[] { dx, dy, dz } );
+			this.offsets = list.toArray( new int[ list.size() ][] );
+
+			this.gaussian = source;
+			this.gaussianBuffer = ( null == source ) ? null : ArrayImgs.floats( Intervals.dimensionsAsLongArray( source ) );
+		}
+
+		/**
+		 * Finds the spots of the scale-space.
+		 *
+		 * @param stack
+		 *            the LoG levels stacked along the last dimension, as
+		 *            written by {@link #write(Img, ExecutorService)}, or
+		 *            <code>null</code> to compute them from the source image.
+		 */
+		private List< Spot > process( final RandomAccessibleInterval< FloatType > stack, final ExecutorService service ) throws IncompatibleTypeException, InterruptedException, ExecutionException
+		{
+			// Rotating LoG levels: level i is stored in levels[ i % 3 ].
+			final float[][] levels = new float[ Math.min( 3, nScales ) ][];
+			final List< Spot > lSpots = new ArrayList<>();
+			for ( int i = 0; i <= nScales; i++ )
+			{
+				if ( i < nScales )
+				{
+					final int slot = i % 3;
+					if ( null == levels[ slot ] )
+						levels[ slot ] = new float[ nx * ny * nz ];
+					if ( null == stack )
+						computeLevel( i, levels[ slot ], service );
+					else
+						read( stack, i, levels[ slot ] );
+				}
+
+				// Level i is available: search the maxima of level i - 1.
+				if ( i > 0 )
+				{
+					final float[] previous = ( i > 1 ) ? levels[ ( i - 2 ) % 3 ] : null;
+					final float[] next = ( i < nScales ) ? levels[ i % 3 ] : null;
+					lSpots.addAll( findMaxima( i - 1, previous, levels[ ( i - 1 ) % 3 ], next, service ) );
+				}
+			}
+			return lSpots;
+		}
+
+		/**
+		 * Computes all the LoG levels and writes them in the specified stack,
+		 * along its last dimension.
+		 */
+		private void write( final Img< FloatType > stack, final ExecutorService service ) throws IncompatibleTypeException, InterruptedException, ExecutionException
+		{
+			final float[] level = new float[ nx * ny * nz ];
+			for ( int i = 0; i < nScales; i++ )
+			{
+				computeLevel( i, level, service );
+				final Cursor< FloatType > cursor = Views.flatIterable( Views.hyperSlice( stack, stack.numDimensions() - 1, i ) ).cursor();
+				int index = 0;
+				while ( cursor.hasNext() )
+					cursor.next().set( level[ index++ ] );
+			}
+		}
+
+		/**
+		 * Reads the LoG level <code>i</code> from the specified stack.
+		 */
+		private void read( final RandomAccessibleInterval< FloatType > stack, final int i, final float[] level )
+		{
+			final Cursor< FloatType > cursor = Views.flatIterable( Views.hyperSlice( stack, stack.numDimensions() - 1, i ) ).cursor();
+			int index = 0;
+			while ( cursor.hasNext() )
+				level[ index++ ] = cursor.next().get();
+		}
+
+		/**
+		 * Computes the LoG level <code>i</code>, from the Gaussian level of
+		 * the previous scale.
+		 */
+		private void computeLevel( final int i, final float[] level, final ExecutorService service ) throws IncompatibleTypeException, InterruptedException, ExecutionException
+		{
+			smooth( i, service );
+			laplacian( data( gaussian ), level, sigmas[ i ], service );
+		}
+
+		/**
+		 * Brings the Gaussian level to scale <code>i</code>, by smoothing the
+		 * previous level, or the source image for the first scale.
+		 */
+		private void smooth( final int i, final ExecutorService service ) throws IncompatibleTypeException
+		{
+			final double s2 = ( i == 0 ) ? sigmas[ 0 ] * sigmas[ 0 ] : sigmas[ i ] * sigmas[ i ] - sigmas[ i - 1 ] * sigmas[ i - 1 ];
+			if ( s2 <= 0 )
+				return;
+
+			final double[] pixelSigmas = new double[ interval.numDimensions() ];
+			for ( int d = 0; d < pixelSigmas.length; d++ )
+				pixelSigmas[ d ] = Math.sqrt( s2 ) / calibration[ d ];
+			Gauss3.gauss( pixelSigmas, Views.extendMirrorSingle( gaussian ), gaussianBuffer, service );
+
+			final Img< FloatType > tmp = gaussianBuffer;
+			gaussianBuffer = gaussian;
+			gaussian = tmp;
+		}
+
+		/**
+		 * Computes the scale-normalized LoG <code>-sigma^2 Laplacian( L )</code> of the
+		 * specified Gaussian level, with mirror boundary conditions.
+		 */
+		private void laplacian( final float[] l, final float[] target, final double sigma, final ExecutorService service ) throws InterruptedException, ExecutionException
+		{
+			final double norm = -sigma * sigma;
+			final int sy = nx;
+			final int sz = nx * ny;
+			forEachRow( service, ( y, z ) -> {
+				final int base = ( z * ny + y ) * nx;
+				final int ym = y > 0 ? -sy : sy;
+				final int yp = y < ny - 1 ? sy : -sy;
+				final int zm = z > 0 ? -sz : sz;
+				final int zp = z < nz - 1 ? sz : -sz;
+				for ( int x = 0; x < nx; x++ )
+				{
+					final int index = base + x;
+					final double c2 = 2. * l[ index ];
+					double sum = 0.;
+					if ( nx > 1 )
+					{
+						final int xm = x > 0 ? -1 : 1;
+						final int xp = x < nx - 1 ? 1 : -1;
+						sum += ( l[ index + xm ] + l[ index + xp ] - c2 ) * weights[ 0 ];
+					}
+					if ( ny > 1 )
+						sum += ( l[ index + ym ] + l[ index + yp ] - c2 ) * weights[ 1 ];
+					if ( nz > 1 )
+						sum += ( l[ index + zm ] + l[ index + zp ] - c2 ) * weights[ 2 ];
+					target[ index ] = ( float ) ( norm * sum );
+				}
+				return null;
+			} );
+		}
+
+		/**
+		 * Finds the maxima of the LoG level <code>i</code> over space and
+		 * scale.
+		 *
+		 * @param previous
+		 *            the LoG level <code>i-1</code>, or <code>null</code> for
+		 *            the first level.
+		 * @param next
+		 *            the LoG level <code>i+1</code>, or <code>null</code> for
+		 *            the last level.
+		 */
+		private List< Spot > findMaxima( final int i, final float[] previous, final float[] current, final float[] next, final ExecutorService service ) throws InterruptedException, ExecutionException
+		{
+			return forEachRow( service, ( y, z ) -> {
+				List< Spot > found = null;
+				final int base = ( z * ny + y ) * nx;
+				X: for ( int x = 0; x < nx; x++ )
+				{
+					final float v = current[ base + x ];
+					if ( v <= threshold )
+						continue;
+
+					for ( final int[] o : offsets )
+						if ( current[ index( x, y, z, o[ 0 ], o[ 1 ], o[ 2 ] ) ] > v )
+							continue X;
+					if ( ( null != previous && !isAbove( v, previous, x, y, z ) ) || ( null != next && !isAbove( v, next, x, y, z ) ) )
+						continue;
+
+					if ( null == found )
+						found = new ArrayList<>();
+					found.add( createSpot( i, x, y, z, previous, current, next ) );
+				}
+				return found;
+			} );
+		}
+
+		/**
+		 * Returns <code>true</code> if the value is strictly larger than the
+		 * 3x3x3 neighborhood of the specified pixel in the specified level.
+		 */
+		private boolean isAbove( final float v, final float[] level, final int x, final int y, final int z )
+		{
+			if ( level[ index( x, y, z, 0, 0, 0 ) ] >= v )
+				return false;
+			for ( final int[] o : offsets )
+				if ( level[ index( x, y, z, o[ 0 ], o[ 1 ], o[ 2 ] ) ] >= v )
+					return false;
+			return true;
+		}
+
+		private Spot createSpot( final int i, final int x, final int y, final int z, final float[] previous, final float[] current, final float[] next )
+		{
+			final int index = index( x, y, z, 0, 0, 0 );
+			final double[] pos = new double[] { x, y, z };
+			double scale = i;
+			if ( doSubPixelLocalization )
+			{
+				if ( nx > 1 )
+					pos[ 0 ] += peakOffset( current[ index( x, y, z, -1, 0, 0 ) ], current[ index ], current[ index( x, y, z, 1, 0, 0 ) ] );
+				if ( ny > 1 )
+					pos[ 1 ] += peakOffset( current[ index( x, y, z, 0, -1, 0 ) ], current[ index ], current[ index( x, y, z, 0, 1, 0 ) ] );
+				if ( nz > 1 )
+					pos[ 2 ] += peakOffset( current[ index( x, y, z, 0, 0, -1 ) ], current[ index ], current[ index( x, y, z, 0, 0, 1 ) ] );
+				if ( null != previous && null != next )
+					scale += peakOffset( previous[ index ], current[ index ], next[ index ] );
+			}
+
+			// Scales are geometrically spaced: interpolate in log space.
+			final int i0 = Math.min( ( int ) Math.floor( scale ), nScales - 1 );
+			final double sigma = ( i0 == nScales - 1 ) ? sigmas[ i0 ] : sigmas[ i0 ] * Math.pow( sigmas[ i0 + 1 ] / sigmas[ i0 ], scale - i0 );
+			final double spotRadius = sigma * interval.numDimensions() / Math.sqrt( 2. );
+
+			final int n = interval.numDimensions();
+			final double[] coords = new double[ 3 ];
+			for ( int d = 0; d < n; d++ )
+				coords[ d ] = ( interval.min( d ) + pos[ d ] ) * calibration[ d ];
+			return new Spot( coords[ 0 ], coords[ 1 ], coords[ 2 ], spotRadius, current[ index ] );
+		}
+
+		/**
+		 * Returns the index of the neighbor at the specified offset of a
+		 * pixel, mirrored at the borders.
+		 */
+		private int index( final int x, final int y, final int z, final int dx, final int dy, final int dz )
+		{
+			return ( mirror( z + dz, nz ) * ny + mirror( y + dy, ny ) ) * nx + mirror( x + dx, nx );
+		}
+
+		/**
+		 * Runs the specified task on all the rows of the image, split in
+		 * chunks over the executor, and collects the results.
+		 */
+		private < R > List< R > forEachRow( final ExecutorService service, final RowTask< List< R > > task ) throws InterruptedException, ExecutionException
+		{
+			final int nRows = ny * nz;
+			final int nChunks = Math.max( 1, Math.min( nRows, 4 * numThreads ) );
+			final List< Future< List< R > > > futures = new ArrayList<>( nChunks );
+			for ( int c = 0; c < nChunks; c++ )
+			{
+				final int from = ( int ) ( ( long ) nRows * c / nChunks );
+				final int to = ( int ) ( ( long ) nRows * ( c + 1 ) / nChunks );
+				final Callable< List< R > > chunk = () -> {
+					final List< R > results = new ArrayList<>();
+					for ( int row = from; row < to; row++ )
+					{
+						final List< R > rowResults = task.run( row % ny, row / ny );
+						if ( null != rowResults )
+							results.addAll( rowResults );
+					}
+					return results;
+				};
+				futures.add( service.submit( chunk ) );
+			}
+
+			final List< R > results = new ArrayList<>();
+			for ( final Future< List< R > > future : futures )
+				results.addAll( future.get() );
+			return results;
+		}
+	}
+
+	@FunctionalInterface
+	private static interface ScaleSpaceTask< R >
+	{
+		public R run( ExecutorService service ) throws IncompatibleTypeException, InterruptedException, ExecutionException;
+	}
+
+	@FunctionalInterface
+	private static interface RowTask< R >
+	{
+		public R run( int y, int z );
+	}
+
+	/**
+	 * Mirrors the specified coordinate at the borders of a dimension of the
+	 * specified size, without repeating the border pixel.
+	 */
+	private static int mirror( final int c, final int size )
+	{
+		if ( c < 0 )
+			return size > 1 ? 1 : 0;
+		if ( c >= size )
+			return size > 1 ? size - 2 : 0;
+		return c;
+	}
+
+	/**
+	 * Returns the position, relative to the center sample, of the maximum of
+	 * the parabola through three equally spaced samples, within half a sample.
+	 */
+	static double peakOffset( final double before, final double center, final double after )
+	{
+		final double curvature = before - 2. * center + after;
+		if ( curvature >= 0. )
+			return 0.;
+		final double offset = 0.5 * ( before - after ) / curvature;
+		return Math.max( -0.5, Math.min( 0.5, offset ) );
+	}
+}
@@ -0,0 +1,188 @@
+package fiji.plugin.trackmate.detection;
+
+import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_MAX_RADIUS;
+import static fiji.plugin.trackmate.detection.DetectorKeys.DEFAULT_N_SCALES;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_MEDIAN_FILTERING;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_SUBPIXEL_LOCALIZATION;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_MAX_RADIUS;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_N_SCALES;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_RADIUS;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_TARGET_CHANNEL;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_THRESHOLD;
+import static fiji.plugin.trackmate.io.IOUtils.readBooleanAttribute;
+import static fiji.plugin.trackmate.io.IOUtils.readDoubleAttribute;
+import static fiji.plugin.trackmate.io.IOUtils.readIntegerAttribute;
+import static fiji.plugin.trackmate.io.IOUtils.writeAttribute;
+import static fiji.plugin.trackmate.io.IOUtils.writeDoMedian;
+import static fiji.plugin.trackmate.io.IOUtils.writeDoSubPixel;
+import static fiji.plugin.trackmate.io.IOUtils.writeRadius;
+import static fiji.plugin.trackmate.io.IOUtils.writeTargetChannel;
+import static fiji.plugin.trackmate.io.IOUtils.writeThreshold;
+import static fiji.plugin.trackmate.util.TMUtils.checkMapKeys;
+import static fiji.plugin.trackmate.util.TMUtils.checkParameter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jdom2.Element;
+import org.scijava.plugin.Plugin;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.gui.ConfigurationPanel;
+import fiji.plugin.trackmate.gui.panels.detector.MultiScaleLogDetectorConfigurationPanel;
+import fiji.plugin.trackmate.util.TMUtils;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+@Plugin( type = SpotDetectorFactory.class )
+public class MultiScaleLogDetectorFactory< T extends RealType< T > & NativeType< T >> extends LogDetectorFactory< T >
+{
+
+	/*
+	 * CONSTANTS
+	 */
+
+	/** A string key identifying this factory. */
+	public static final String THIS_DETECTOR_KEY = "MULTI_SCALE_LOG_DETECTOR";
+
+	/** The pretty name of the target detector. */
+	public static final String THIS_NAME = "Multi-scale LoG detector";
+
+	/** An html information text. */
+	public static final String THIS_INFO_TEXT = "<html>" + "This detector searches for blobs of different sizes, with <br>" + "scale-normalized LoG filters spanning a range of diameters. <br>" + "The scales are computed in one pass, each from the previous one. <br>" + "A spot is a maximum over space and scale, and its radius is <br>" + "set from the scale where it is the strongest. A quadratic fitting <br>" + "scheme allows to do sub-pixel localization and to refine the radius. " + "</html>";
+
+	/*
+	 * METHODS
+	 */
+
+	@Override
+	public SpotDetector< T > getDetector( final Interval interval, final int frame )
+	{
+		final double minRadius = ( Double ) settings.get( KEY_RADIUS );
+		final double maxRadius = ( Double ) settings.get( KEY_MAX_RADIUS );
+		final int nScales = ( Integer ) settings.get( KEY_N_SCALES );
+		final double threshold = ( Double ) settings.get( KEY_THRESHOLD );
+		final boolean doMedian = ( Boolean ) settings.get( KEY_DO_MEDIAN_FILTERING );
+		final boolean doSubpixel = ( Boolean ) settings.get( KEY_DO_SUBPIXEL_LOCALIZATION );
+		final double[] calibration = TMUtils.getSpatialCalibration( img );
+
+		final RandomAccessible< T > imFrame = prepareFrameImg( frame );
+		final MultiScaleLogDetector< T > detector = new MultiScaleLogDetector<>( imFrame, interval, calibration, minRadius, maxRadius, nScales, threshold, doSubpixel, doMedian );
+		detector.setNumThreads( 1 );
+		return detector;
+	}
+
+	@Override
+	public boolean checkSettings( final Map< String, Object > lSettings )
+	{
+		boolean ok = true;
+		final StringBuilder errorHolder = new StringBuilder();
+		ok = ok & checkParameter( lSettings, KEY_TARGET_CHANNEL, Integer.class, errorHolder );
+		ok = ok & checkParameter( lSettings, KEY_RADIUS, Double.class, errorHolder );
+		ok = ok & checkParameter( lSettings, KEY_MAX_RADIUS, Double.class, errorHolder );
+		ok = ok & checkParameter( lSettings, KEY_N_SCALES, Integer.class, errorHolder );
+		ok = ok & checkParameter( lSettings, KEY_THRESHOLD, Double.class, errorHolder );
+		ok = ok & checkParameter( lSettings, KEY_DO_MEDIAN_FILTERING, Boolean.class, errorHolder );
+		ok = ok & checkParameter( lSettings, KEY_DO_SUBPIXEL_LOCALIZATION, Boolean.class, errorHolder );
+		final List< String > mandatoryKeys = new ArrayList<>();
+		mandatoryKeys.add( KEY_TARGET_CHANNEL );
+		mandatoryKeys.add( KEY_RADIUS );
+		mandatoryKeys.add( KEY_MAX_RADIUS );
+		mandatoryKeys.add( KEY_N_SCALES );
+		mandatoryKeys.add( KEY_THRESHOLD );
+		mandatoryKeys.add( KEY_DO_MEDIAN_FILTERING );
+		mandatoryKeys.add( KEY_DO_SUBPIXEL_LOCALIZATION );
+		ok = ok & checkMapKeys( lSettings, mandatoryKeys, null, errorHolder );
+		if ( ok )
+		{
+			if ( ( Double ) lSettings.get( KEY_MAX_RADIUS ) < ( Double ) lSettings.get( KEY_RADIUS ) )
+			{
+				errorHolder.append( "Parameter " + KEY_MAX_RADIUS + " must not be smaller than " + KEY_RADIUS + ".\n" );
+				ok = false;
+			}
+			if ( ( Integer ) lSettings.get( KEY_N_SCALES ) < 1 )
+			{
+				errorHolder.append( "Parameter " + KEY_N_SCALES + " must be at least 1.\n" );
+				ok = false;
+			}
+		}
+		if ( !ok )
+		{
+			errorMessage = errorHolder.toString();
+		}
+		return ok;
+	}
+
+	@Override
+	public boolean marshall( final Map< String, Object > lSettings, final Element element )
+	{
+		final StringBuilder errorHolder = new StringBuilder();
+		final boolean ok = writeTargetChannel( lSettings, element, errorHolder ) && writeRadius( lSettings, element, errorHolder )
+				&& writeAttribute( lSettings, element, KEY_MAX_RADIUS, Double.class, errorHolder ) && writeAttribute( lSettings, element, KEY_N_SCALES, Integer.class, errorHolder )
+				&& writeThreshold( lSettings, element, errorHolder ) && writeDoMedian( lSettings, element, errorHolder ) && writeDoSubPixel( lSettings, element, errorHolder );
+		if ( !ok )
+		{
+			errorMessage = errorHolder.toString();
+		}
+		return ok;
+	}
+
+	@Override
+	public boolean unmarshall( final Element element, final Map< String, Object > lSettings )
+	{
+		lSettings.clear();
+		final StringBuilder errorHolder = new StringBuilder();
+		boolean ok = true;
+		ok = ok & readDoubleAttribute( element, lSettings, KEY_RADIUS, errorHolder );
+		ok = ok & readDoubleAttribute( element, lSettings, KEY_MAX_RADIUS, errorHolder );
+		ok = ok & readIntegerAttribute( element, lSettings, KEY_N_SCALES, errorHolder );
+		ok = ok & readDoubleAttribute( element, lSettings, KEY_THRESHOLD, errorHolder );
+		ok = ok & readBooleanAttribute( element, lSettings, KEY_DO_SUBPIXEL_LOCALIZATION, errorHolder );
+		ok = ok & readBooleanAttribute( element, lSettings, KEY_DO_MEDIAN_FILTERING, errorHolder );
+		ok = ok & readIntegerAttribute( element, lSettings, KEY_TARGET_CHANNEL, errorHolder );
+		if ( !ok )
+		{
+			errorMessage = errorHolder.toString();
+			return false;
+		}
+		return checkSettings( lSettings );
+	}
+
+	@Override
+	public Map< String, Object > getDefaultSettings()
+	{
+		final Map< String, Object > lSettings = super.getDefaultSettings();
+		lSettings.put( KEY_MAX_RADIUS, DEFAULT_MAX_RADIUS );
+		lSettings.put( KEY_N_SCALES, DEFAULT_N_SCALES );
+		return lSettings;
+	}
+
+	@Override
+	public String getKey()
+	{
+		return THIS_DETECTOR_KEY;
+	}
+
+	@Override
+	public String getName()
+	{
+		return THIS_NAME;
+	}
+
+	@Override
+	public String getInfoText()
+	{
+		return THIS_INFO_TEXT;
+	}
+
+	@Override
+	public ConfigurationPanel getDetectorConfigurationPanel( final Settings lSettings, final Model model )
+	{
+		return new MultiScaleLogDetectorConfigurationPanel( lSettings, model, THIS_INFO_TEXT, THIS_NAME );
+	}
+
+}
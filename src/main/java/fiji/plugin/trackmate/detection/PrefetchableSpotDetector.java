@@ -0,0 +1,26 @@
+package fiji.plugin.trackmate.detection;
+
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Interface for {@link SpotDetector}s that can read the image data they need
+ * ahead of processing.
+ * <p>
+ * {@link #prefetch()} is called before {@link #process()}, possibly from
+ * another thread, while other frames are being processed. It is meant to
+ * perform all the accesses to the source image, which can be slow for virtual
+ * stacks, so that {@link #process()} only deals with data in memory.
+ */
+public interface PrefetchableSpotDetector< T extends RealType< T > & NativeType< T > > extends SpotDetector< T >
+{
+
+	/**
+	 * Reads and stores in memory the image data this detector will process.
+	 *
+	 * @return <code>true</code> if the data was prefetched. If
+	 *         <code>false</code>, {@link #process()} will read the source
+	 *         image itself.
+	 */
+	public boolean prefetch();
+}
@@ -103,6 +103,11 @@ public class ThresholdDetector< T extends RealType< T > & NativeType< T > > impl
 			 * 3D: We create spots of the same volume that of the region.
 			 */
 			spots = MaskUtils.toSpots( input, interval, calibration, threshold, numThreads );
+			if ( null == spots )
+			{
+				errorMessage = baseErrorMessage + "Failed to compute the connected components.";
+				return false;
+			}
 		}
 		else
 		{
@@ -0,0 +1,28 @@
+package fiji.plugin.trackmate.detection;
+
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Interface for {@link SpotDetector}s that can process their interval block
+ * by block.
+ * <p>
+ * When a tile size is set, the interval is split in tiles that are processed
+ * independently and in parallel, so that the memory used by the detector is
+ * bounded by the tile size rather than by the frame size, and so that a
+ * single large frame can be processed with all the threads the detector is
+ * given.
+ */
+public interface TileableSpotDetector< T extends RealType< T > & NativeType< T > > extends SpotDetector< T >
+{
+
+	/**
+	 * Sets the size of the tiles the interval is split into.
+	 *
+	 * @param tileSize
+	 *            the size of the tiles along each dimension, in pixels, not
+	 *            including their overlap. If <code>0</code> or negative, the
+	 *            interval is processed in one piece.
+	 */
+	public void setTileSize( final long tileSize );
+}
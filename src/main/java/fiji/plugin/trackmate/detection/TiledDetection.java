@@ -0,0 +1,253 @@
+package fiji.plugin.trackmate.detection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import fiji.plugin.trackmate.Spot;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.algorithm.MultiThreaded;
+import net.imglib2.util.Intervals;
+
+/**
+ * Block-wise detection: splits an interval in tiles, runs a detector on each
+ * tile extended by a halo, and merges their results.
+ * <p>
+ * The halo must be large enough for the filtered values in the tile core and
+ * its immediate neighborhood to be the same as if the whole interval had been
+ * filtered. A spot is kept only by the tile whose core contains the pixel
+ * closest to the spot, so that the spots found in the halo of several tiles
+ * are reported once.
+ */
+public class TiledDetection
+{
+
+	/**
+	 * Extra halo, in pixels, for the local maxima search and the sub-pixel
+	 * localization around the pixels of the tile core.
+	 */
+	private static final int MAXIMA_MARGIN = 2;
+
+	private final Interval interval;
+
+	private final long tileSize;
+
+	private final long[] halo;
+
+	private final double[] calibration;
+
+	private final Function< Interval, SpotDetector< ? > > detectorFactory;
+
+	private List< Spot > spots;
+
+	private String errorMessage;
+
+	/**
+	 * Creates a new tiled detection.
+	 *
+	 * @param interval
+	 *            the interval to process, without singleton dimensions.
+	 * @param tileSize
+	 *            the size of the tile cores along each dimension, in pixels.
+	 * @param halo
+	 *            the halo added around each tile core, in pixels, per
+	 *            dimension.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param detectorFactory
+	 *            creates the detector for a tile, from the tile interval,
+	 *            halo included.
+	 */
+	public TiledDetection( final Interval interval, final long tileSize, final long[] halo, final double[] calibration, final Function< Interval, SpotDetector< ? > > detectorFactory )
+	{
+		this.interval = interval;
+		this.tileSize = tileSize;
+		this.halo = halo;
+		this.calibration = calibration;
+		this.detectorFactory = detectorFactory;
+	}
+
+	/**
+	 * Returns the halo needed around tiles filtered by a Gaussian-like kernel
+	 * of the specified sigma, truncated as in
+	 * {@link DetectionUtils#createLoGKernel(double, int, double[])}.
+	 *
+	 * @param sigma
+	 *            the largest sigma of the filter, in image units.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param nDims
+	 *            the number of dimensions of the processed interval.
+	 * @param extra
+	 *            an additional halo, in pixels, for instance for a median
+	 *            filter applied before.
+	 * @return the halo, in pixels, per dimension.
+	 */
+	public static long[] halo( final double sigma, final double[] calibration, final int nDims, final int extra )
+	{
+		final long[] halo = new long[ nDims ];
+		for ( int d = 0; d < nDims; d++ )
+		{
+			final int hksize = Math.max( 2, ( int ) ( 3 * sigma / calibration[ d ] + 0.5 ) + 1 );
+			halo[ d ] = 1 + hksize + MAXIMA_MARGIN + extra;
+		}
+		return halo;
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified interval is split in more
+	 * than one tile of the specified size.
+	 *
+	 * @param interval
+	 *            the interval.
+	 * @param tileSize
+	 *            the tile size, in pixels.
+	 * @return <code>true</code> if tiling has an effect.
+	 */
+	public static boolean isTiled( final Interval interval, final long tileSize )
+	{
+		if ( tileSize <= 0 )
+			return false;
+		for ( int d = 0; d < interval.numDimensions(); d++ )
+			if ( interval.dimension( d ) > tileSize )
+				return true;
+		return false;
+	}
+
+	/**
+	 * Runs the detection on all tiles.
+	 *
+	 * @param numThreads
+	 *            the number of tiles processed simultaneously. Each tile
+	 *            detector is given a single thread.
+	 * @return <code>true</code> if all tiles were processed successfully.
+	 */
+	public boolean process( final int numThreads )
+	{
+		final List< Interval > cores = split( interval, tileSize );
+		final ExecutorService service = Executors.newFixedThreadPool( Math.max( 1, Math.min( numThreads, cores.size() ) ) );
+		final List< Future< List< Spot > > > futures = new ArrayList<>( cores.size() );
+		for ( final Interval core : cores )
+			futures.add( service.submit( () -> processTile( core ) ) );
+
+		spots = new ArrayList<>();
+		try
+		{
+			for ( final Future< List< Spot > > future : futures )
+				spots.addAll( future.get() );
+		}
+		catch ( final ExecutionException e )
+		{
+			errorMessage = e.getCause().getMessage();
+			spots = null;
+			return false;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			errorMessage = "Tiled detection was interrupted.";
+			spots = null;
+			return false;
+		}
+		finally
+		{
+			service.shutdownNow();
+		}
+		return true;
+	}
+
+	public List< Spot > getResult()
+	{
+		return spots;
+	}
+
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	private List< Spot > processTile( final Interval core )
+	{
+		final Interval tile = Intervals.intersect( Intervals.expand( core, halo ), interval );
+		final SpotDetector< ? > detector = detectorFactory.apply( tile );
+		if ( detector instanceof MultiThreaded )
+			( ( MultiThreaded ) detector ).setNumThreads( 1 );
+		if ( !detector.checkInput() || !detector.process() )
+			throw new RuntimeException( detector.getErrorMessage() );
+
+		/*
+		 * Only keep the spots whose closest pixel is in the core of this
+		 * tile.
+		 */
+
+		final List< Spot > detected = detector.getResult();
+		final List< Spot > kept = new ArrayList<>( detected.size() );
+		for ( final Spot spot : detected )
+			if ( isInCore( spot, core ) )
+				kept.add( spot );
+		return kept;
+	}
+
+	private boolean isInCore( final Spot spot, final Interval core )
+	{
+		for ( int d = 0; d < core.numDimensions(); d++ )
+		{
+			long p = Math.round( spot.getDoublePosition( d ) / calibration[ d ] );
+			// Spots localized outside the interval belong to the border tiles.
+			p = Math.max( interval.min( d ), Math.min( interval.max( d ), p ) );
+			if ( p < core.min( d ) || p > core.max( d ) )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Splits the specified interval in adjacent tiles of at most the specified
+	 * size along each dimension.
+	 *
+	 * @param interval
+	 *            the interval to split.
+	 * @param tileSize
+	 *            the tile size, in pixels.
+	 * @return a new list of non-overlapping intervals covering the interval.
+	 */
+	static List< Interval > split( final Interval interval, final long tileSize )
+	{
+		final int n = interval.numDimensions();
+		final long[] nTiles = new long[ n ];
+		long total = 1;
+		for ( int d = 0; d < n; d++ )
+		{
+			nTiles[ d ] = ( interval.dimension( d ) + tileSize - 1 ) / tileSize;
+			total *= nTiles[ d ];
+		}
+
+		final List< Interval > tiles = new ArrayList<>( ( int ) total );
+		final long[] index = new long[ n ];
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( long t = 0; t < total; t++ )
+		{
+			for ( int d = 0; d < n; d++ )
+			{
+				min[ d ] = interval.min( d ) + index[ d ] * tileSize;
+				max[ d ] = Math.min( interval.max( d ), min[ d ] + tileSize - 1 );
+			}
+			tiles.add( new FinalInterval( min, max ) );
+
+			// Next tile index.
+			for ( int d = 0; d < n; d++ )
+			{
+				if ( ++index[ d ] < nTiles[ d ] )
+					break;
+				index[ d ] = 0;
+			}
+		}
+		return tiles;
+	}
+}
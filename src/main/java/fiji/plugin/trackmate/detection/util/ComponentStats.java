@@ -0,0 +1,531 @@
+package fiji.plugin.trackmate.detection.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * The statistics of the connected components of a thresholded image: pixel
+ * count, centroid, bounding box and maximal quality, computed in a single
+ * raster scan without a label image.
+ * <p>
+ * Pixels strictly above the threshold are foreground, and are connected to
+ * their face neighbors (4-connectivity in 2D, 6-connectivity in 3D). The image
+ * is split in stripes along its last dimension, scanned in parallel. Each
+ * stripe labels its pixels with a union-find forest, keeping only the labels
+ * of the current and previous lines or planes, and accumulates the statistics
+ * of each provisional label. The labels of the first and last planes of each
+ * stripe are kept to merge the components across the stripe seams. The
+ * results are stored in primitive arrays, and no object is created per pixel
+ * or per component.
+ */
+public class ComponentStats
+{
+
+	private final int n;
+
+	private final long[] min;
+
+	private final Accumulator acc;
+
+	private ComponentStats( final int n, final long[] min, final Accumulator acc )
+	{
+		this.n = n;
+		this.min = min;
+		this.acc = acc;
+	}
+
+	/**
+	 * Computes the connected components of the specified mask.
+	 *
+	 * @param mask
+	 *            the image to threshold, 1D, 2D or 3D.
+	 * @param threshold
+	 *            the value above which pixels are foreground.
+	 * @param quality
+	 *            the image to take the quality of each component from, its
+	 *            maximum over the component. Must contain the interval of the
+	 *            mask. If <code>null</code>, the quality is not computed.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 * @return the components, ordered by their first pixel in the stripes, or
+	 *         <code>null</code> if the computation failed or was interrupted.
+	 * @throws IllegalArgumentException
+	 *             if the mask has more than 3 dimensions.
+	 */
+	public static < T extends RealType< T >, R extends RealType< R > > ComponentStats compute( final RandomAccessibleInterval< T > mask, final double threshold, final RandomAccessibleInterval< R > quality, final int numThreads )
+	{
+		final int n = mask.numDimensions();
+		if ( n > 3 )
+			throw new IllegalArgumentException( "Can only operate on 1D, 2D or 3D images. Got " + n + "D." );
+
+		final long[] min = new long[ n ];
+		mask.min( min );
+		final RandomAccessibleInterval< T > in = Views.zeroMin( mask );
+		final RandomAccessibleInterval< R > inQuality = ( null == quality ) ? null : Views.zeroMin( Views.interval( quality, mask ) );
+
+		final int size = n > 1 ? ( int ) mask.dimension( n - 1 ) : 1;
+		final int nStripes = Math.max( 1, Math.min( size, numThreads ) );
+		final List< Stripe< T, R > > stripes = new ArrayList<>( nStripes );
+		for ( int s = 0; s < nStripes; s++ )
+			stripes.add( new Stripe<>( in, threshold, inQuality, ( int ) ( ( long ) size * s / nStripes ), ( int ) ( ( long ) size * ( s + 1 ) / nStripes ) ) );
+
+		if ( nStripes == 1 )
+		{
+			stripes.get( 0 ).call();
+			return new ComponentStats( n, min, stripes.get( 0 ).acc );
+		}
+
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< Future< Void > > futures = new ArrayList<>( nStripes );
+			for ( final Stripe< T, R > stripe : stripes )
+				futures.add( service.submit( stripe ) );
+			for ( final Future< Void > future : futures )
+				future.get();
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			e.printStackTrace();
+			return null;
+		}
+		finally
+		{
+			service.shutdown();
+		}
+		return new ComponentStats( n, min, mergeStripes( stripes ) );
+	}
+
+	/**
+	 * Merges the components of the stripes that touch across their seams.
+	 */
+	private static < T extends RealType< T >, R extends RealType< R > > Accumulator mergeStripes( final List< Stripe< T, R > > stripes )
+	{
+		final int[] offsets = new int[ stripes.size() ];
+		int total = 0;
+		for ( int s = 0; s < stripes.size(); s++ )
+		{
+			offsets[ s ] = total;
+			total += stripes.get( s ).acc.size;
+		}
+
+		final UnionFind forest = new UnionFind( total );
+		forest.size = total;
+		for ( int s = 0; s < stripes.size() - 1; s++ )
+		{
+			final int[] last = stripes.get( s ).lastPlane;
+			final int[] first = stripes.get( s + 1 ).firstPlane;
+			for ( int i = 0; i < last.length; i++ )
+				if ( last[ i ] > 0 && first[ i ] > 0 )
+					forest.union( offsets[ s ] + last[ i ] - 1, offsets[ s + 1 ] + first[ i ] - 1 );
+		}
+
+		final Accumulator merged = new Accumulator( total );
+		final int[] index = new int[ total ];
+		Arrays.fill( index, -1 );
+		for ( int s = 0; s < stripes.size(); s++ )
+		{
+			final Accumulator acc = stripes.get( s ).acc;
+			for ( int c = 0; c < acc.size; c++ )
+			{
+				final int root = forest.find( offsets[ s ] + c );
+				if ( index[ root ] < 0 )
+					index[ root ] = merged.add();
+				merged.merge( index[ root ], acc, c );
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the number of dimensions of the mask.
+	 *
+	 * @return the number of dimensions.
+	 */
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Returns the number of components.
+	 *
+	 * @return the number of components.
+	 */
+	public int size()
+	{
+		return acc.size;
+	}
+
+	/**
+	 * Returns the number of pixels of a component.
+	 *
+	 * @param i
+	 *            the component index.
+	 * @return the number of pixels.
+	 */
+	public long count( final int i )
+	{
+		return acc.counts[ i ];
+	}
+
+	/**
+	 * Returns the centroid of a component along a dimension, in pixel
+	 * coordinates of the mask.
+	 *
+	 * @param i
+	 *            the component index.
+	 * @param d
+	 *            the dimension.
+	 * @return the centroid position.
+	 */
+	public double centroid( final int i, final int d )
+	{
+		return min[ d ] + ( double ) acc.sums[ 3 * i + axis( d ) ] / acc.counts[ i ];
+	}
+
+	/**
+	 * Returns the min of the bounding box of a component along a dimension,
+	 * in pixel coordinates of the mask.
+	 *
+	 * @param i
+	 *            the component index.
+	 * @param d
+	 *            the dimension.
+	 * @return the min position.
+	 */
+	public long min( final int i, final int d )
+	{
+		return min[ d ] + acc.mins[ 3 * i + axis( d ) ];
+	}
+
+	/**
+	 * Returns the max of the bounding box of a component along a dimension,
+	 * in pixel coordinates of the mask.
+	 *
+	 * @param i
+	 *            the component index.
+	 * @param d
+	 *            the dimension.
+	 * @return the max position.
+	 */
+	public long max( final int i, final int d )
+	{
+		return min[ d ] + acc.maxs[ 3 * i + axis( d ) ];
+	}
+
+	/**
+	 * Returns the maximal value of the quality image over a component.
+	 *
+	 * @param i
+	 *            the component index.
+	 * @return the quality, or {@link Double#NEGATIVE_INFINITY} if no quality
+	 *         image was specified.
+	 */
+	public double quality( final int i )
+	{
+		return acc.qualities[ i ];
+	}
+
+	/**
+	 * Maps a dimension of the mask to an axis of the stripes, in which 2D
+	 * images are seen as a stack of lines along Z.
+	 */
+	private int axis( final int d )
+	{
+		return ( n == 2 && d == 1 ) ? 2 : d;
+	}
+
+	/**
+	 * Labels a range of planes along the last dimension. The image is seen as
+	 * a 3D image of size <code>nx x ny x nz</code>, 2D images being stacks of
+	 * lines along Z.
+	 */
+	private static final class Stripe< T extends RealType< T >, R extends RealType< R > > implements Callable< Void >
+	{
+
+		private final RandomAccess< T > ra;
+
+		private final RandomAccess< R > raQuality;
+
+		private final double threshold;
+
+		private final int n;
+
+		private final int nx;
+
+		private final int ny;
+
+		private final int from;
+
+		private final int to;
+
+		private final UnionFind forest = new UnionFind( 64 );
+
+		/** The statistics of the components, once labeled. */
+		private Accumulator acc;
+
+		/** Component indices + 1 of the first and last planes, 0 for background. */
+		private int[] firstPlane;
+
+		private int[] lastPlane;
+
+		private Stripe( final RandomAccessibleInterval< T > mask, final double threshold, final RandomAccessibleInterval< R > quality, final int from, final int to )
+		{
+			this.ra = mask.randomAccess();
+			this.raQuality = ( null == quality ) ? null : quality.randomAccess();
+			this.threshold = threshold;
+			this.n = mask.numDimensions();
+			this.nx = ( int ) mask.dimension( 0 );
+			this.ny = n > 2 ? ( int ) mask.dimension( 1 ) : 1;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Void call()
+		{
+			final int planeSize = nx * ny;
+			int[] previous = new int[ planeSize ];
+			int[] current = new int[ planeSize ];
+			int[] first = null;
+			final Accumulator labels = new Accumulator( 64 );
+
+			for ( int z = from; z < to; z++ )
+			{
+				final int[] tmp = previous;
+				previous = current;
+				current = tmp;
+
+				for ( int y = 0; y < ny; y++ )
+				{
+					setPosition( ra, y, z );
+					if ( null != raQuality )
+						setPosition( raQuality, y, z );
+					final int base = y * nx;
+					for ( int x = 0; x < nx; x++ )
+					{
+						final int i = base + x;
+						if ( ra.get().getRealDouble() <= threshold )
+						{
+							current[ i ] = 0;
+						}
+						else
+						{
+							int label = 0;
+							if ( x > 0 && current[ i - 1 ] > 0 )
+								label = current[ i - 1 ];
+							if ( y > 0 && current[ i - nx ] > 0 )
+								label = ( label == 0 ) ? current[ i - nx ] : forest.union( label - 1, current[ i - nx ] - 1 ) + 1;
+							if ( z > from && previous[ i ] > 0 )
+								label = ( label == 0 ) ? previous[ i ] : forest.union( label - 1, previous[ i ] - 1 ) + 1;
+							if ( label == 0 )
+							{
+								label = labels.add() + 1;
+								forest.add();
+							}
+							current[ i ] = label;
+							labels.add( label - 1, x, y, z, null == raQuality ? Double.NEGATIVE_INFINITY : raQuality.get().getRealDouble() );
+						}
+						ra.fwd( 0 );
+						if ( null != raQuality )
+							raQuality.fwd( 0 );
+					}
+				}
+
+				if ( z == from )
+					first = current.clone();
+			}
+
+			// Resolve the provisional labels to components.
+			acc = new Accumulator( labels.size );
+			final int[] index = new int[ labels.size ];
+			Arrays.fill( index, -1 );
+			for ( int l = 0; l < labels.size; l++ )
+			{
+				final int root = forest.find( l );
+				if ( index[ root ] < 0 )
+					index[ root ] = acc.add();
+				acc.merge( index[ root ], labels, l );
+			}
+			firstPlane = resolve( first, index );
+			lastPlane = resolve( to > from ? current : null, index );
+			return null;
+		}
+
+		private int[] resolve( final int[] plane, final int[] index )
+		{
+			if ( null == plane )
+				return new int[ nx * ny ];
+			final int[] resolved = new int[ plane.length ];
+			for ( int i = 0; i < plane.length; i++ )
+				resolved[ i ] = plane[ i ] > 0 ? index[ forest.find( plane[ i ] - 1 ) ] + 1 : 0;
+			return resolved;
+		}
+
+		private void setPosition( final RandomAccess< ? > access, final int y, final int z )
+		{
+			access.setPosition( 0, 0 );
+			if ( n == 2 )
+				access.setPosition( z, 1 );
+			else if ( n == 3 )
+			{
+				access.setPosition( y, 1 );
+				access.setPosition( z, 2 );
+			}
+		}
+	}
+
+	/**
+	 * A union-find forest over integer ids, with path halving. The root of a
+	 * union is the smallest id, so that components keep their first label.
+	 */
+	private static final class UnionFind
+	{
+
+		private int[] parents;
+
+		private int size;
+
+		private UnionFind( final int capacity )
+		{
+			this.parents = new int[ Math.max( 1, capacity ) ];
+			for ( int i = 0; i < parents.length; i++ )
+				parents[ i ] = i;
+		}
+
+		private void add()
+		{
+			if ( size == parents.length )
+			{
+				final int oldLength = parents.length;
+				parents = Arrays.copyOf( parents, 2 * oldLength );
+				for ( int i = oldLength; i < parents.length; i++ )
+					parents[ i ] = i;
+			}
+			size++;
+		}
+
+		private int find( int i )
+		{
+			while ( parents[ i ] != i )
+			{
+				parents[ i ] = parents[ parents[ i ] ];
+				i = parents[ i ];
+			}
+			return i;
+		}
+
+		private int union( final int a, final int b )
+		{
+			final int ra = find( a );
+			final int rb = find( b );
+			if ( ra < rb )
+			{
+				parents[ rb ] = ra;
+				return ra;
+			}
+			parents[ ra ] = rb;
+			return rb;
+		}
+	}
+
+	/**
+	 * Growable primitive arrays of component statistics, in stripe
+	 * coordinates.
+	 */
+	private static final class Accumulator
+	{
+
+		private int size;
+
+		private long[] counts;
+
+		private long[] sums;
+
+		private int[] mins;
+
+		private int[] maxs;
+
+		private double[] qualities;
+
+		private Accumulator( final int capacity )
+		{
+			final int c = Math.max( 1, capacity );
+			this.counts = new long[ c ];
+			this.sums = new long[ 3 * c ];
+			this.mins = new int[ 3 * c ];
+			this.maxs = new int[ 3 * c ];
+			this.qualities = new double[ c ];
+		}
+
+		/**
+		 * Adds an empty component and returns its index.
+		 */
+		private int add()
+		{
+			if ( size == counts.length )
+			{
+				final int c = 2 * counts.length;
+				counts = Arrays.copyOf( counts, c );
+				sums = Arrays.copyOf( sums, 3 * c );
+				mins = Arrays.copyOf( mins, 3 * c );
+				maxs = Arrays.copyOf( maxs, 3 * c );
+				qualities = Arrays.copyOf( qualities, c );
+			}
+			counts[ size ] = 0;
+			Arrays.fill( sums, 3 * size, 3 * size + 3, 0l );
+			Arrays.fill( mins, 3 * size, 3 * size + 3, Integer.MAX_VALUE );
+			Arrays.fill( maxs, 3 * size, 3 * size + 3, Integer.MIN_VALUE );
+			qualities[ size ] = Double.NEGATIVE_INFINITY;
+			return size++;
+		}
+
+		/**
+		 * Adds a pixel to a component.
+		 */
+		private void add( final int c, final int x, final int y, final int z, final double quality )
+		{
+			counts[ c ]++;
+			final int o = 3 * c;
+			sums[ o ] += x;
+			sums[ o + 1 ] += y;
+			sums[ o + 2 ] += z;
+			mins[ o ] = Math.min( mins[ o ], x );
+			mins[ o + 1 ] = Math.min( mins[ o + 1 ], y );
+			mins[ o + 2 ] = Math.min( mins[ o + 2 ], z );
+			maxs[ o ] = Math.max( maxs[ o ], x );
+			maxs[ o + 1 ] = Math.max( maxs[ o + 1 ], y );
+			maxs[ o + 2 ] = Math.max( maxs[ o + 2 ], z );
+			if ( quality > qualities[ c ] )
+				qualities[ c ] = quality;
+		}
+
+		/**
+		 * Merges the statistics of a component of another accumulator into a
+		 * component of this one.
+		 */
+		private void merge( final int c, final Accumulator other, final int oc )
+		{
+			counts[ c ] += other.counts[ oc ];
+			for ( int d = 0; d < 3; d++ )
+			{
+				sums[ 3 * c + d ] += other.sums[ 3 * oc + d ];
+				mins[ 3 * c + d ] = Math.min( mins[ 3 * c + d ], other.mins[ 3 * oc + d ] );
+				maxs[ 3 * c + d ] = Math.max( maxs[ 3 * c + d ], other.maxs[ 3 * oc + d ] );
+			}
+			qualities[ c ] = Math.max( qualities[ c ], other.qualities[ oc ] );
+		}
+	}
+}
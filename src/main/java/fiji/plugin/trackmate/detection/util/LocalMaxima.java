@@ -0,0 +1,460 @@
+package fiji.plugin.trackmate.detection.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Finds the local maxima of an image, and optionally refines their position
+ * by a quadratic fit, in a single pass.
+ * <p>
+ * A pixel is a maximum if its value is larger than or equal to the threshold
+ * and to all its 3<sup>n</sup> - 1 neighbors, the image being extended by
+ * mirroring at its borders. The image is swept line by line along X, block by
+ * block along its last dimension. For each line, the 3<sup>n-1</sup> lines
+ * of its neighborhood are kept in float buffers, that are rolled along Y, so
+ * that each line is read about once per neighborhood in the other dimensions.
+ * The quadratic fit uses the gradient and the Hessian estimated by finite
+ * differences on the same buffers. The peaks are written in primitive arrays,
+ * and no object is created per pixel or per peak.
+ */
+public class LocalMaxima
+{
+
+	private LocalMaxima()
+	{}
+
+	/**
+	 * Finds the local maxima of the specified image.
+	 *
+	 * @param source
+	 *            the image.
+	 * @param threshold
+	 *            the value under which maxima are discarded.
+	 * @param doSubPixelLocalization
+	 *            if <code>true</code>, the maxima positions are refined by
+	 *            fitting a quadratic to their neighborhood.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 * @return the maxima, in the coordinates of the source image, or
+	 *         <code>null</code> if the search failed or was interrupted.
+	 */
+	public static Peaks find( final RandomAccessibleInterval< FloatType > source, final double threshold, final boolean doSubPixelLocalization, final int numThreads )
+	{
+		final int n = source.numDimensions();
+		final int last = n - 1;
+		final long size = n > 1 ? source.dimension( last ) : 1;
+		final int nBlocks = ( int ) Math.max( 1, Math.min( size, numThreads <= 1 ? 1 : 4 * numThreads ) );
+		if ( nBlocks == 1 )
+			return new Block( source, threshold, doSubPixelLocalization, 0, size ).call();
+
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< Future< Peaks > > futures = new ArrayList<>( nBlocks );
+			for ( int b = 0; b < nBlocks; b++ )
+				futures.add( service.submit( new Block( source, threshold, doSubPixelLocalization, size * b / nBlocks, size * ( b + 1 ) / nBlocks ) ) );
+
+			final Peaks peaks = new Peaks( n );
+			for ( final Future< Peaks > future : futures )
+				peaks.addAll( future.get() );
+			return peaks;
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			e.printStackTrace();
+			return null;
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * A growable list of peaks, stored as primitive arrays.
+	 */
+	public static final class Peaks
+	{
+
+		private final int n;
+
+		private int size = 0;
+
+		private double[] positions;
+
+		private float[] values;
+
+		private Peaks( final int n )
+		{
+			this.n = n;
+			this.positions = new double[ 16 * n ];
+			this.values = new float[ 16 ];
+		}
+
+		/**
+		 * Returns the number of peaks.
+		 *
+		 * @return the number of peaks.
+		 */
+		public int size()
+		{
+			return size;
+		}
+
+		/**
+		 * Returns the position of a peak along a dimension, in pixel
+		 * coordinates of the source image.
+		 *
+		 * @param i
+		 *            the peak index.
+		 * @param d
+		 *            the dimension.
+		 * @return the position.
+		 */
+		public double position( final int i, final int d )
+		{
+			return positions[ i * n + d ];
+		}
+
+		/**
+		 * Returns the image value at the pixel of a peak.
+		 *
+		 * @param i
+		 *            the peak index.
+		 * @return the value.
+		 */
+		public float value( final int i )
+		{
+			return values[ i ];
+		}
+
+		private void add( final long[] pixel, final double[] offset, final float value )
+		{
+			if ( size == values.length )
+			{
+				values = Arrays.copyOf( values, 2 * size );
+				positions = Arrays.copyOf( positions, 2 * size * n );
+			}
+			for ( int d = 0; d < n; d++ )
+				positions[ size * n + d ] = pixel[ d ] + offset[ d ];
+			values[ size++ ] = value;
+		}
+
+		private void addAll( final Peaks other )
+		{
+			if ( size + other.size > values.length )
+			{
+				values = Arrays.copyOf( values, size + other.size );
+				positions = Arrays.copyOf( positions, ( size + other.size ) * n );
+			}
+			System.arraycopy( other.values, 0, values, size, other.size );
+			System.arraycopy( other.positions, 0, positions, size * n, other.size * n );
+			size += other.size;
+		}
+	}
+
+	/**
+	 * Processes the pixels whose coordinate along the last dimension is in a
+	 * range, or the whole image in 1D.
+	 */
+	private static final class Block implements Callable< Peaks >
+	{
+
+		private final RandomAccessibleInterval< FloatType > source;
+
+		private final float threshold;
+
+		private final boolean doSubPixelLocalization;
+
+		private final int n;
+
+		private final int width;
+
+		/**
+		 * The neighborhood lines, padded by one pixel on each side. The line
+		 * with offsets <code>(o1, ..., om)</code> in <code>{-1, 0, 1}</code>
+		 * along dimensions 1 to m is at index
+		 * <code>sum( (ok + 1) * 3^(k-1) )</code>.
+		 */
+		private final float[][] lines;
+
+		private final int center;
+
+		/** The strides of dimensions 1 to n-1 in the line index. */
+		private final int[] strides;
+
+		private final long[] min;
+
+		private final long[] max;
+
+		private final long[] pixel;
+
+		private final Peaks peaks;
+
+		private final RandomAccess< FloatType > ra;
+
+		private final double[] hessian;
+
+		private final double[] offset;
+
+		private Block( final RandomAccessibleInterval< FloatType > source, final double threshold, final boolean doSubPixelLocalization, final long from, final long to )
+		{
+			this.source = source;
+			this.threshold = ( float ) threshold;
+			this.doSubPixelLocalization = doSubPixelLocalization;
+			this.n = source.numDimensions();
+			this.width = ( int ) source.dimension( 0 );
+
+			int nLines = 1;
+			this.strides = new int[ n ];
+			for ( int d = 1; d < n; d++ )
+			{
+				strides[ d ] = nLines;
+				nLines *= 3;
+			}
+			this.lines = new float[ nLines ][ width + 2 ];
+			this.center = ( nLines - 1 ) / 2;
+
+			// Pixel ranges, relative to the source min.
+			this.min = new long[ n ];
+			this.max = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+				max[ d ] = source.dimension( d ) - 1;
+			if ( n > 1 )
+			{
+				min[ n - 1 ] = from;
+				max[ n - 1 ] = to - 1;
+			}
+
+			this.pixel = new long[ n ];
+			this.peaks = new Peaks( n );
+			this.ra = source.randomAccess();
+			this.hessian = new double[ n * ( n + 1 ) ];
+			this.offset = new double[ n ];
+		}
+
+		@Override
+		public Peaks call()
+		{
+			if ( n == 1 )
+			{
+				readLine( 0 );
+				processLine();
+				return peaks;
+			}
+			if ( min[ n - 1 ] > max[ n - 1 ] )
+				return peaks;
+
+			// Iterate over dimensions 2 to n-1, then sweep along Y.
+			for ( int d = 1; d < n; d++ )
+				pixel[ d ] = min[ d ];
+			while ( true )
+			{
+				for ( pixel[ 1 ] = min[ 1 ]; pixel[ 1 ] <= max[ 1 ]; pixel[ 1 ]++ )
+				{
+					if ( pixel[ 1 ] == min[ 1 ] )
+					{
+						for ( int li = 0; li < lines.length; li++ )
+							readLine( li );
+					}
+					else
+					{
+						// Roll the lines along Y and read the new ones.
+						for ( int li = 0; li < lines.length; li += 3 )
+						{
+							final float[] tmp = lines[ li ];
+							lines[ li ] = lines[ li + 1 ];
+							lines[ li + 1 ] = lines[ li + 2 ];
+							lines[ li + 2 ] = tmp;
+							readLine( li + 2 );
+						}
+					}
+					processLine();
+				}
+
+				int d = 2;
+				while ( d < n && ++pixel[ d ] > max[ d ] )
+				{
+					pixel[ d ] = min[ d ];
+					d++;
+				}
+				if ( d >= n )
+					break;
+			}
+			return peaks;
+		}
+
+		/**
+		 * Reads the neighborhood line of the specified index for the current
+		 * pixel, mirroring coordinates at the image borders.
+		 */
+		private void readLine( final int li )
+		{
+			ra.setPosition( source.min( 0 ), 0 );
+			int rem = li;
+			for ( int d = 1; d < n; d++ )
+			{
+				final long c = mirror( pixel[ d ] + ( rem % 3 ) - 1, source.dimension( d ) );
+				ra.setPosition( source.min( d ) + c, d );
+				rem /= 3;
+			}
+			final float[] line = lines[ li ];
+			for ( int x = 1; x <= width; x++ )
+			{
+				line[ x ] = ra.get().get();
+				ra.fwd( 0 );
+			}
+			line[ 0 ] = width > 1 ? line[ 2 ] : line[ 1 ];
+			line[ width + 1 ] = width > 1 ? line[ width - 1 ] : line[ width ];
+		}
+
+		private void processLine()
+		{
+			final float[] c = lines[ center ];
+			X: for ( int x = 1; x <= width; x++ )
+			{
+				final float v = c[ x ];
+				if ( v < threshold || c[ x - 1 ] > v || c[ x + 1 ] > v )
+					continue;
+				for ( int li = 0; li < lines.length; li++ )
+				{
+					if ( li == center )
+						continue;
+					final float[] line = lines[ li ];
+					if ( line[ x - 1 ] > v || line[ x ] > v || line[ x + 1 ] > v )
+						continue X;
+				}
+
+				pixel[ 0 ] = x - 1;
+				if ( doSubPixelLocalization )
+					fit( x );
+				else
+					Arrays.fill( offset, 0. );
+				for ( int d = 0; d < n; d++ )
+					pixel[ d ] += source.min( d );
+				peaks.add( pixel, offset, v );
+				for ( int d = 0; d < n; d++ )
+					pixel[ d ] -= source.min( d );
+			}
+		}
+
+		/**
+		 * Fits a quadratic to the neighborhood of the pixel at index
+		 * <code>x</code> of the center line, and stores the position of its
+		 * maximum relative to the pixel in {@link #offset}. The offset is 0 if
+		 * the quadratic has no maximum within one pixel.
+		 */
+		private void fit( final int x )
+		{
+			// Augmented matrix [ H | -g ], row-major with n + 1 columns.
+			final int cols = n + 1;
+			final float v = lines[ center ][ x ];
+			for ( int j = 0; j < n; j++ )
+			{
+				for ( int k = j; k < n; k++ )
+				{
+					final double h;
+					if ( j == k )
+						h = value( j, 1, x ) - 2. * v + value( j, -1, x );
+					else
+						h = ( value( j, 1, k, 1, x ) - value( j, 1, k, -1, x ) - value( j, -1, k, 1, x ) + value( j, -1, k, -1, x ) ) / 4.;
+					hessian[ j * cols + k ] = h;
+					hessian[ k * cols + j ] = h;
+				}
+				hessian[ j * cols + n ] = -( value( j, 1, x ) - value( j, -1, x ) ) / 2.;
+			}
+
+			// Gaussian elimination with partial pivoting.
+			for ( int j = 0; j < n; j++ )
+			{
+				int pivot = j;
+				for ( int i = j + 1; i < n; i++ )
+					if ( Math.abs( hessian[ i * cols + j ] ) > Math.abs( hessian[ pivot * cols + j ] ) )
+						pivot = i;
+				if ( Math.abs( hessian[ pivot * cols + j ] ) < 1e-12 )
+				{
+					Arrays.fill( offset, 0. );
+					return;
+				}
+				if ( pivot != j )
+				{
+					for ( int k = j; k < cols; k++ )
+					{
+						final double tmp = hessian[ j * cols + k ];
+						hessian[ j * cols + k ] = hessian[ pivot * cols + k ];
+						hessian[ pivot * cols + k ] = tmp;
+					}
+				}
+				for ( int i = j + 1; i < n; i++ )
+				{
+					final double f = hessian[ i * cols + j ] / hessian[ j * cols + j ];
+					for ( int k = j; k < cols; k++ )
+						hessian[ i * cols + k ] -= f * hessian[ j * cols + k ];
+				}
+			}
+			for ( int j = n - 1; j >= 0; j-- )
+			{
+				double s = hessian[ j * cols + n ];
+				for ( int k = j + 1; k < n; k++ )
+					s -= hessian[ j * cols + k ] * offset[ k ];
+				offset[ j ] = s / hessian[ j * cols + j ];
+			}
+
+			for ( int d = 0; d < n; d++ )
+			{
+				if ( !( Math.abs( offset[ d ] ) <= 1. ) )
+				{
+					Arrays.fill( offset, 0. );
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Returns the value at the specified offset along dimension
+		 * <code>j</code> from the pixel at index <code>x</code> of the center
+		 * line.
+		 */
+		private double value( final int j, final int oj, final int x )
+		{
+			if ( j == 0 )
+				return lines[ center ][ x + oj ];
+			return lines[ center + oj * strides[ j ] ][ x ];
+		}
+
+		/**
+		 * Returns the value at the specified offsets along dimensions
+		 * <code>j</code> and <code>k &gt; j</code> from the pixel at index
+		 * <code>x</code> of the center line.
+		 */
+		private double value( final int j, final int oj, final int k, final int ok, final int x )
+		{
+			if ( j == 0 )
+				return lines[ center + ok * strides[ k ] ][ x + oj ];
+			return lines[ center + oj * strides[ j ] + ok * strides[ k ] ][ x ];
+		}
+	}
+
+	/**
+	 * Mirrors the specified coordinate at the borders of a dimension of the
+	 * specified size, without repeating the border pixel.
+	 */
+	private static long mirror( final long c, final long size )
+	{
+		if ( c < 0 )
+			return size > 1 ? 1 : 0;
+		if ( c >= size )
+			return size > 1 ? size - 2 : 0;
+		return c;
+	}
+}
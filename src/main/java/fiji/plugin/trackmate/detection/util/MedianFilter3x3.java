@@ -0,0 +1,333 @@
+package fiji.plugin.trackmate.detection.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * A fast median filter over 3x3 neighborhoods, or 3x3x3 neighborhoods in 3D,
+ * for 1D, 2D or 3D images. The image is extended with zeros at its borders,
+ * like for {@link MedianFilter2D}.
+ * <p>
+ * The image is swept line by line along X. The lines of the neighborhood are
+ * read once in buffers rolled along Y. For each X position, the neighborhood
+ * column (the 3 or 9 values across the Y and Z neighbors) is sorted once by a
+ * sorting network, and the median of a pixel is selected from the sorted
+ * columns of its left neighbor, itself and its right neighbor. No
+ * neighborhood is sorted, and no object is created per pixel. Lines are split
+ * in blocks processed in parallel.
+ * <p>
+ * Values are processed as <code>double</code>s and written back in the type
+ * of the source image, which is exact for all integer types up to 32 bits.
+ */
+public class MedianFilter3x3
+{
+
+	/** Sorting network for 3 values, as pairs of indices to compare. */
+	private static final int[] NETWORK_3 = new int[] { 0, 1, 1, 2, 0, 1 };
+
+	/** Sorting network for 9 values, with 25 comparators. */
+	private static final int[] NETWORK_9 = new int[] {
+			0, 3, 1, 7, 2, 5, 4, 8,
+			0, 7, 2, 4, 3, 8, 5, 6,
+			0, 2, 1, 3, 4, 5, 7, 8,
+			1, 4, 3, 6, 5, 7,
+			0, 1, 2, 4, 3, 5, 6, 8,
+			2, 3, 4, 5, 6, 7,
+			1, 2, 3, 4, 5, 6 };
+
+	private MedianFilter3x3()
+	{}
+
+	/**
+	 * Filters the specified image.
+	 *
+	 * @param source
+	 *            the image, 1D, 2D or 3D.
+	 * @param filterZ
+	 *            if <code>true</code>, 3D images are filtered with 3x3x3
+	 *            neighborhoods. Otherwise, each XY slice is filtered
+	 *            independently with 3x3 neighborhoods.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 * @return a new image of the source type, with a min at 0.
+	 * @throws IllegalArgumentException
+	 *             if the source has more than 3 dimensions.
+	 */
+	public static < T extends RealType< T > & NativeType< T > > Img< T > filter( final RandomAccessibleInterval< T > source, final boolean filterZ, final int numThreads )
+	{
+		final int n = source.numDimensions();
+		if ( n > 3 )
+			throw new IllegalArgumentException( "Can only operate on 1D, 2D or 3D images. Got " + n + "D." );
+
+		final T type = Util.getTypeFromInterval( source ).createVariable();
+		final Img< T > output = Util.getArrayOrCellImgFactory( source, type ).create( source );
+		final RandomAccessibleInterval< T > input = Views.zeroMin( source );
+
+		final int ny = n > 1 ? ( int ) source.dimension( 1 ) : 1;
+		final int nz = n > 2 ? ( int ) source.dimension( 2 ) : 1;
+		final long nLines = ( long ) ny * nz;
+		final int nBlocks = ( int ) Math.max( 1, Math.min( nLines, numThreads <= 1 ? 1 : 4 * numThreads ) );
+		if ( nBlocks == 1 )
+		{
+			new Block<>( input, output, filterZ, 0, nLines ).call();
+			return output;
+		}
+
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< Future< Void > > futures = new ArrayList<>( nBlocks );
+			for ( int b = 0; b < nBlocks; b++ )
+				futures.add( service.submit( new Block<>( input, output, filterZ, nLines * b / nBlocks, nLines * ( b + 1 ) / nBlocks ) ) );
+			for ( final Future< Void > future : futures )
+				future.get();
+			return output;
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			e.printStackTrace();
+			return null;
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Filters a range of lines, indexed by <code>z * ny + y</code>.
+	 */
+	private static final class Block< T extends RealType< T > > implements Callable< Void >
+	{
+
+		private final RandomAccess< T > in;
+
+		private final RandomAccess< T > out;
+
+		private final int n;
+
+		private final int nx;
+
+		private final int ny;
+
+		private final int nz;
+
+		private final long from;
+
+		private final long to;
+
+		/** Number of neighbor lines along Y and along Z. */
+		private final int spanY;
+
+		private final int spanZ;
+
+		/** Number of values in a neighborhood column. */
+		private final int columnSize;
+
+		/**
+		 * The neighborhood lines, indexed by <code>dz * spanY + dy</code>,
+		 * with one padding zero at each end.
+		 */
+		private final double[][] lines;
+
+		/**
+		 * The sorted neighborhood columns, including the padding ones, each
+		 * followed by an infinite sentinel.
+		 */
+		private final double[] columns;
+
+		private final int stride;
+
+		private final double[] zeros;
+
+		private Block( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output, final boolean filterZ, final long from, final long to )
+		{
+			this.in = input.randomAccess();
+			this.out = output.randomAccess();
+			this.n = input.numDimensions();
+			this.nx = ( int ) input.dimension( 0 );
+			this.ny = n > 1 ? ( int ) input.dimension( 1 ) : 1;
+			this.nz = n > 2 ? ( int ) input.dimension( 2 ) : 1;
+			this.from = from;
+			this.to = to;
+			this.spanY = n > 1 ? 3 : 1;
+			this.spanZ = ( n > 2 && filterZ ) ? 3 : 1;
+			this.columnSize = spanY * spanZ;
+			this.lines = new double[ columnSize ][];
+			for ( int i = 0; i < columnSize; i++ )
+				lines[ i ] = new double[ nx + 2 ];
+			this.stride = columnSize + 1;
+			this.columns = new double[ ( nx + 2 ) * stride ];
+			for ( int x = 0; x < nx + 2; x++ )
+				columns[ x * stride + columnSize ] = Double.POSITIVE_INFINITY;
+			this.zeros = new double[ nx + 2 ];
+		}
+
+		@Override
+		public Void call()
+		{
+			final int k = ( 3 * columnSize - 1 ) / 2;
+			int previousY = -2;
+			int previousZ = -2;
+			for ( long line = from; line < to; line++ )
+			{
+				final int y = ( int ) ( line % ny );
+				final int z = ( int ) ( line / ny );
+
+				if ( z == previousZ && y == previousY + 1 && spanY == 3 )
+				{
+					// Roll the lines along Y and read the new ones only.
+					for ( int dz = 0; dz < spanZ; dz++ )
+					{
+						final int base = dz * spanY;
+						final double[] recycled = lines[ base ];
+						lines[ base ] = lines[ base + 1 ];
+						lines[ base + 1 ] = lines[ base + 2 ];
+						lines[ base + 2 ] = recycled;
+						read( y + 1, z + dz - spanZ / 2, recycled );
+					}
+				}
+				else
+				{
+					for ( int dz = 0; dz < spanZ; dz++ )
+						for ( int dy = 0; dy < spanY; dy++ )
+							read( y + dy - spanY / 2, z + dz - spanZ / 2, lines[ dz * spanY + dy ] );
+				}
+				previousY = y;
+				previousZ = z;
+
+				sortColumns();
+
+				out.setPosition( 0, 0 );
+				if ( n > 1 )
+					out.setPosition( y, 1 );
+				if ( n > 2 )
+					out.setPosition( z, 2 );
+				for ( int x = 0; x < nx; x++ )
+				{
+					out.get().setReal( columnSize == 3 ? median9( x * stride ) : select( x * stride, k ) );
+					out.fwd( 0 );
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Reads the specified line in the buffer, after a padding zero, or
+		 * fills it with zeros if it is out of the image.
+		 */
+		private void read( final int y, final int z, final double[] buffer )
+		{
+			if ( y < 0 || y >= ny || z < 0 || z >= nz )
+			{
+				System.arraycopy( zeros, 0, buffer, 0, buffer.length );
+				return;
+			}
+			in.setPosition( 0, 0 );
+			if ( n > 1 )
+				in.setPosition( y, 1 );
+			if ( n > 2 )
+				in.setPosition( z, 2 );
+			for ( int x = 1; x <= nx; x++ )
+			{
+				buffer[ x ] = in.get().getRealDouble();
+				in.fwd( 0 );
+			}
+		}
+
+		/**
+		 * Sorts the neighborhood column of each X position, with a sorting
+		 * network, so that there is no data-dependent branch.
+		 */
+		private void sortColumns()
+		{
+			final int[] network = columnSize == 9 ? NETWORK_9 : NETWORK_3;
+			for ( int x = 0; x < nx + 2; x++ )
+			{
+				final int offset = x * stride;
+				for ( int i = 0; i < columnSize; i++ )
+					columns[ offset + i ] = lines[ i ][ x ];
+				if ( columnSize == 1 )
+					continue;
+
+				for ( int c = 0; c < network.length; c += 2 )
+				{
+					final int i = offset + network[ c ];
+					final int j = offset + network[ c + 1 ];
+					final double a = columns[ i ];
+					final double b = columns[ j ];
+					columns[ i ] = Math.min( a, b );
+					columns[ j ] = Math.max( a, b );
+				}
+			}
+		}
+
+		/**
+		 * Returns the <code>k</code>th smallest value of the three consecutive
+		 * sorted columns starting at the specified offset, by merging them.
+		 * The sentinels stop the merge at the end of each column.
+		 */
+		private double select( final int offset, final int k )
+		{
+			int i0 = offset;
+			int i1 = offset + stride;
+			int i2 = offset + 2 * stride;
+			double v = 0.;
+			for ( int i = 0; i <= k; i++ )
+			{
+				final double v0 = columns[ i0 ];
+				final double v1 = columns[ i1 ];
+				final double v2 = columns[ i2 ];
+				if ( v0 <= v1 && v0 <= v2 )
+				{
+					v = v0;
+					i0++;
+				}
+				else if ( v1 <= v2 )
+				{
+					v = v1;
+					i1++;
+				}
+				else
+				{
+					v = v2;
+					i2++;
+				}
+			}
+			return v;
+		}
+
+		/**
+		 * Returns the median of the three consecutive sorted columns of 3
+		 * values starting at the specified offset: the median of the largest
+		 * minimum, the median of medians and the smallest maximum.
+		 */
+		private double median9( final int offset )
+		{
+			final int o1 = offset + stride;
+			final int o2 = o1 + stride;
+			final double lo = Math.max( columns[ offset ], Math.max( columns[ o1 ], columns[ o2 ] ) );
+			final double mid = median3( columns[ offset + 1 ], columns[ o1 + 1 ], columns[ o2 + 1 ] );
+			final double hi = Math.min( columns[ offset + 2 ], Math.min( columns[ o1 + 2 ], columns[ o2 + 2 ] ) );
+			return median3( lo, mid, hi );
+		}
+
+		private static double median3( final double a, final double b, final double c )
+		{
+			return Math.max( Math.min( a, b ), Math.min( Math.max( a, b ), c ) );
+		}
+	}
+}
@@ -0,0 +1,426 @@
+package fiji.plugin.trackmate.detection.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.iterator.IntervalIterator;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Recursive (IIR) Gaussian filtering, after Young and van Vliet, "Recursive
+ * implementation of the Gaussian filter", Signal Processing 44 (1995), with
+ * the poles and scaling of Young, van Vliet and van Ginkel, "Recursive Gabor
+ * filtering", IEEE Transactions on Signal Processing 50 (2002).
+ * <p>
+ * A line is filtered by a causal and an anti-causal third-order recursion, so
+ * the cost per pixel does not depend on sigma, and no padding is needed.
+ * Lines are extended by their border values: the causal pass starts in its
+ * steady state, and the anti-causal pass starts from the exact response to
+ * the constant extension, as proposed by Triggs and Sdika, "Boundary
+ * conditions for Young-van Vliet recursive filtering", IEEE Transactions on
+ * Signal Processing 54 (2006). The 3x3 matrix that gives it is computed
+ * numerically when the filter is created.
+ * <p>
+ * The impulse response has exactly the requested variance. It deviates from
+ * the Gaussian by about 1% of its peak value for sigmas larger than 3 pixels,
+ * and by up to 4% for sigmas around 1 pixel.
+ */
+public class RecursiveGaussian
+{
+
+	/*
+	 * The poles of the third-order filter for sigma = 2: a complex conjugate
+	 * pair, given as modulus and argument, and a real pole.
+	 */
+
+	private static final double POLE_MOD = Math.hypot( 1.41650, 1.00829 );
+
+	private static final double POLE_ARG = Math.atan2( 1.00829, 1.41650 );
+
+	private static final double POLE_REAL = 1.86543;
+
+	private final double b;
+
+	private final double a1;
+
+	private final double a2;
+
+	private final double a3;
+
+	/** Maps the causal state at the line end to the anti-causal one. */
+	private final double[][] m;
+
+	/**
+	 * Creates a recursive Gaussian filter.
+	 *
+	 * @param sigma
+	 *            the sigma of the Gaussian, in pixels. Must be at least 0.5.
+	 */
+	public RecursiveGaussian( final double sigma )
+	{
+		/*
+		 * The poles of the filter for sigma = 2 are scaled by the power 1/q,
+		 * with q tuned so that the variance of the impulse response is
+		 * exactly sigma^2.
+		 */
+		double qmin = 0.;
+		double qmax = sigma + 1.;
+		for ( int i = 0; i < 100; i++ )
+		{
+			final double q = 0.5 * ( qmin + qmax );
+			if ( variance( q ) < sigma * sigma )
+				qmin = q;
+			else
+				qmax = q;
+		}
+		final double q = 0.5 * ( qmin + qmax );
+
+		/*
+		 * Feedback coefficients from the inverse poles: the recursion
+		 * denominator is (1 - r1 z)(1 - r2 z)(1 - r3 z), with r2 the
+		 * conjugate of r1.
+		 */
+		final double mod = Math.pow( POLE_MOD, -1. / q );
+		final double re = mod * Math.cos( -POLE_ARG / q );
+		final double r1r2 = mod * mod;
+		final double r3 = Math.pow( POLE_REAL, -1. / q );
+		this.a1 = 2. * re + r3;
+		this.a2 = -( r1r2 + 2. * re * r3 );
+		this.a3 = r1r2 * r3;
+		this.b = 1. - ( a1 + a2 + a3 );
+		this.m = boundaryMatrix( ( int ) ( 50 * sigma ) + 100 );
+	}
+
+	/**
+	 * Returns the variance of the impulse response for the specified scale,
+	 * that is 2 d / (d - 1)^2 summed over the poles d.
+	 */
+	private static double variance( final double q )
+	{
+		final double mod = Math.pow( POLE_MOD, 1. / q );
+		final double arg = POLE_ARG / q;
+		final double re = mod * Math.cos( arg );
+		final double im = mod * Math.sin( arg );
+		// Complex pole: 2 * Re( d / (d - 1)^2 ), counted twice.
+		final double dre = re - 1.;
+		final double sqre = dre * dre - im * im;
+		final double sqim = 2. * dre * im;
+		final double norm = sqre * sqre + sqim * sqim;
+		final double complex = 2. * ( re * sqre + im * sqim ) / norm;
+		final double d3 = Math.pow( POLE_REAL, 1. / q );
+		final double real = d3 / ( d3 - 1. ) / ( d3 - 1. );
+		return 2. * ( complex + real );
+	}
+
+	/**
+	 * Filters a line in place.
+	 *
+	 * @param line
+	 *            the line values.
+	 * @param n
+	 *            the number of values in the line, at least 1.
+	 * @param work
+	 *            a work array of length at least <code>n</code>.
+	 */
+	public void filter( final double[] line, final int n, final double[] work )
+	{
+		// Causal pass, in its steady state before the line start.
+		final double first = line[ 0 ];
+		double w1 = first;
+		double w2 = first;
+		double w3 = first;
+		for ( int i = 0; i < n; i++ )
+		{
+			final double w = b * line[ i ] + a1 * w1 + a2 * w2 + a3 * w3;
+			work[ i ] = w;
+			w3 = w2;
+			w2 = w1;
+			w1 = w;
+		}
+
+		// Anti-causal pass, started from the response to the line end.
+		final double last = line[ n - 1 ];
+		final double u0 = w1 - last;
+		final double u1 = w2 - last;
+		final double u2 = w3 - last;
+		double y1 = last + m[ 0 ][ 0 ] * u0 + m[ 0 ][ 1 ] * u1 + m[ 0 ][ 2 ] * u2;
+		double y2 = last + m[ 1 ][ 0 ] * u0 + m[ 1 ][ 1 ] * u1 + m[ 1 ][ 2 ] * u2;
+		double y3 = last + m[ 2 ][ 0 ] * u0 + m[ 2 ][ 1 ] * u1 + m[ 2 ][ 2 ] * u2;
+		line[ n - 1 ] = y1;
+		for ( int i = n - 2; i >= 0; i-- )
+		{
+			final double y = b * work[ i ] + a1 * y1 + a2 * y2 + a3 * y3;
+			line[ i ] = y;
+			y3 = y2;
+			y2 = y1;
+			y1 = y;
+		}
+	}
+
+	/**
+	 * Computes the matrix that gives the first 3 values of the anti-causal
+	 * pass, at the line end and beyond, from the last 3 values of the causal
+	 * pass, both relative to the line end value. The filter is run on the
+	 * constant extension of the line until its response vanished.
+	 */
+	private double[][] boundaryMatrix( final int length )
+	{
+		final double[][] matrix = new double[ 3 ][ 3 ];
+		final double[] w = new double[ length + 3 ];
+		final double[] y = new double[ length + 3 ];
+		for ( int k = 0; k < 3; k++ )
+		{
+			// w[ 2 ] is the line end, w[ 1 ] and w[ 0 ] the values before.
+			w[ 0 ] = w[ 1 ] = w[ 2 ] = 0.;
+			w[ 2 - k ] = 1.;
+			for ( int i = 3; i < w.length; i++ )
+				w[ i ] = a1 * w[ i - 1 ] + a2 * w[ i - 2 ] + a3 * w[ i - 3 ];
+
+			y[ length ] = y[ length + 1 ] = y[ length + 2 ] = 0.;
+			for ( int i = length - 1; i >= 2; i-- )
+				y[ i ] = b * w[ i ] + a1 * y[ i + 1 ] + a2 * y[ i + 2 ] + a3 * y[ i + 3 ];
+
+			for ( int j = 0; j < 3; j++ )
+				matrix[ j ][ k ] = y[ 2 + j ];
+		}
+		return matrix;
+	}
+
+	/*
+	 * STATIC METHODS
+	 */
+
+	/**
+	 * Filters in place the specified image with a recursive Gaussian filter.
+	 *
+	 * @param sigmas
+	 *            the sigmas along each dimension, in pixels. Dimensions with
+	 *            a sigma of 0 are not filtered.
+	 * @param img
+	 *            the image to filter.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 */
+	public static void gauss( final double[] sigmas, final RandomAccessibleInterval< FloatType > img, final int numThreads )
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( Math.max( 1, numThreads ) );
+		try
+		{
+			gauss( sigmas, img, service, numThreads );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Filters in place the specified image with a recursive Gaussian filter,
+	 * running on the specified executor. This lets callers that filter
+	 * several images reuse a single thread pool.
+	 *
+	 * @param sigmas
+	 *            the sigmas along each dimension, in pixels. Dimensions with
+	 *            a sigma of 0 are not filtered.
+	 * @param img
+	 *            the image to filter.
+	 * @param service
+	 *            the executor to run the filter on.
+	 * @param numTasks
+	 *            the number of tasks the lines are split into, typically the
+	 *            number of threads of the executor.
+	 */
+	public static void gauss( final double[] sigmas, final RandomAccessibleInterval< FloatType > img, final ExecutorService service, final int numTasks )
+	{
+		final RandomAccessibleInterval< FloatType > source = Views.zeroMin( img );
+		for ( int d = 0; d < source.numDimensions(); d++ )
+		{
+			if ( source.dimension( d ) < 2 || sigmas[ d ] <= 0. )
+				continue;
+			final RecursiveGaussian gauss = new RecursiveGaussian( sigmas[ d ] );
+			processLines( source, source, d, false, gauss::filter, service, numTasks );
+		}
+	}
+
+	/**
+	 * Filters in place the specified image with a Laplacian of Gaussian
+	 * computed with recursive Gaussian filters, and finite differences for
+	 * the Laplacian.
+	 * <p>
+	 * The output has the same normalization as the convolution by the kernel
+	 * of {@link fiji.plugin.trackmate.detection.DetectionUtils#createLoGKernel(double, int, double[])},
+	 * so that detection thresholds are the same with both methods.
+	 *
+	 * @param radius
+	 *            the blob radius (in image unit).
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param img
+	 *            the image to filter, without singleton dimensions.
+	 * @param numThreads
+	 *            the number of threads to use.
+	 */
+	public static void laplacianOfGaussian( final double radius, final double[] calibration, final RandomAccessibleInterval< FloatType > img, final int numThreads )
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( Math.max( 1, numThreads ) );
+		try
+		{
+			laplacianOfGaussian( radius, calibration, img, service, numThreads );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Filters in place the specified image with a Laplacian of Gaussian,
+	 * running on the specified executor.
+	 *
+	 * @param radius
+	 *            the blob radius (in image unit).
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @param img
+	 *            the image to filter, without singleton dimensions.
+	 * @param service
+	 *            the executor to run the filter on.
+	 * @param numTasks
+	 *            the number of tasks the lines are split into, typically the
+	 *            number of threads of the executor.
+	 * @see #laplacianOfGaussian(double, double[], RandomAccessibleInterval,
+	 *      int)
+	 */
+	public static void laplacianOfGaussian( final double radius, final double[] calibration, final RandomAccessibleInterval< FloatType > img, final ExecutorService service, final int numTasks )
+	{
+		final RandomAccessibleInterval< FloatType > source = Views.zeroMin( img );
+		final int nDims = source.numDimensions();
+		final double sigma = radius / Math.sqrt( nDims );
+		final double[] sigmaPixels = new double[ nDims ];
+		for ( int d = 0; d < nDims; d++ )
+			sigmaPixels[ d ] = sigma / calibration[ d ];
+		gauss( sigmaPixels, source, service, numTasks );
+
+		/*
+		 * Sum the second derivatives along all dimensions.
+		 */
+
+		final Img< FloatType > laplacian = Util.getArrayOrCellImgFactory( source, new FloatType() ).create( source );
+		for ( int d = 0; d < nDims; d++ )
+			processLines( source, laplacian, d, d > 0, RecursiveGaussian::secondDerivative, service, numTasks );
+
+		/*
+		 * Scale as the LoG kernel, which is the Laplacian of a Gaussian of
+		 * peak value 1, multiplied by -1 / pi / sigmaPixels[0]^2.
+		 */
+
+		double scale = -1. / Math.PI / sigmaPixels[ 0 ] / sigmaPixels[ 0 ];
+		for ( int d = 0; d < nDims; d++ )
+			scale *= Math.sqrt( 2. * Math.PI ) * sigmaPixels[ d ];
+
+		final Cursor< FloatType > cursor = laplacian.localizingCursor();
+		final RandomAccess< FloatType > ra = source.randomAccess();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			ra.setPosition( cursor );
+			ra.get().setReal( scale * cursor.get().getRealDouble() );
+		}
+	}
+
+	/**
+	 * Replaces a line by its second derivative, with mirror boundaries.
+	 */
+	private static void secondDerivative( final double[] line, final int n, final double[] work )
+	{
+		if ( n < 2 )
+		{
+			line[ 0 ] = 0.;
+			return;
+		}
+		System.arraycopy( line, 0, work, 0, n );
+		line[ 0 ] = 2. * ( work[ 1 ] - work[ 0 ] );
+		for ( int i = 1; i < n - 1; i++ )
+			line[ i ] = work[ i - 1 ] - 2. * work[ i ] + work[ i + 1 ];
+		line[ n - 1 ] = 2. * ( work[ n - 2 ] - work[ n - 1 ] );
+	}
+
+	private static interface LineFilter
+	{
+		public void filter( double[] line, int n, double[] work );
+	}
+
+	/**
+	 * Reads the lines of the source along the specified dimension, filters
+	 * them and writes them in the target, in parallel. Source and target
+	 * must have the same zero-min interval, and can be the same image.
+	 */
+	private static void processLines( final RandomAccessibleInterval< FloatType > source, final RandomAccessibleInterval< FloatType > target, final int d, final boolean accumulate, final LineFilter filter, final ExecutorService service, final int numTasks )
+	{
+		final int n = ( int ) source.dimension( d );
+		final long[] max = Intervals.maxAsLongArray( source );
+		max[ d ] = 0;
+		final long nLines = Intervals.numElements( source ) / n;
+		final int nTasks = ( int ) Math.max( 1, Math.min( numTasks, nLines ) );
+
+		final List< Future< ? > > futures = new ArrayList<>( nTasks );
+		for ( int t = 0; t < nTasks; t++ )
+		{
+			final long start = nLines * t / nTasks;
+			final long end = nLines * ( t + 1 ) / nTasks;
+			futures.add( service.submit( () -> {
+				final IntervalIterator lines = new IntervalIterator( new long[ max.length ], max );
+				lines.jumpFwd( start );
+				final RandomAccess< FloatType > in = source.randomAccess();
+				final RandomAccess< FloatType > out = target.randomAccess();
+				final double[] line = new double[ n ];
+				final double[] work = new double[ n ];
+				for ( long l = start; l < end; l++ )
+				{
+					lines.fwd();
+					in.setPosition( lines );
+					for ( int i = 0; i < n; i++ )
+					{
+						line[ i ] = in.get().getRealDouble();
+						in.fwd( d );
+					}
+
+					filter.filter( line, n, work );
+
+					out.setPosition( lines );
+					for ( int i = 0; i < n; i++ )
+					{
+						final FloatType value = out.get();
+						value.setReal( accumulate ? value.getRealDouble() + line[ i ] : line[ i ] );
+						out.fwd( d );
+					}
+				}
+			} ) );
+		}
+
+		try
+		{
+			for ( final Future< ? > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+	}
+}
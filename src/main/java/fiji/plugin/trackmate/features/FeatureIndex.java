@@ -0,0 +1,249 @@
+package fiji.plugin.trackmate.features;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import fiji.plugin.trackmate.FeatureModel;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.ModelChangeEvent;
+import fiji.plugin.trackmate.ModelChangeListener;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackModel;
+import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings.TrackMateObject;
+
+/**
+ * Caches the values of spot, edge and track features of a {@link Model} as
+ * {@link FeatureValues}, sorted primitive arrays with their min, max and
+ * histograms.
+ * <p>
+ * Values are collected on first request and kept until they are stale. Each
+ * feature of each type of object has its own cache entry, with the values
+ * over all the objects and over the visible ones, which are discarded
+ * separately:
+ * <ul>
+ * <li>Feature calculators and the {@link FeatureModel} discard the entry of
+ * each feature they write, with {@link #invalidate(TrackMateObject, String)},
+ * so that computing some features leaves the values of the others in place.
+ * <li>Changes of visibility only discard the values over the visible objects,
+ * for all the features of the objects concerned:
+ * {@link ModelChangeEvent#SPOTS_FILTERED} for spots,
+ * {@link ModelChangeEvent#TRACKS_VISIBILITY_CHANGED} for edges and tracks.
+ * <li>Changes of the set of objects discard all the values of the objects
+ * concerned: {@link ModelChangeEvent#SPOTS_COMPUTED} for spots,
+ * {@link ModelChangeEvent#TRACKS_COMPUTED} for edges and tracks, and
+ * {@link ModelChangeEvent#MODEL_MODIFIED} for spots if spots were changed, and
+ * for edges and tracks if edges were changed.
+ * </ul>
+ * The model passes all its {@link ModelChangeEvent}s to its index, whether
+ * listeners are notified or not.
+ */
+public class FeatureIndex implements ModelChangeListener
+{
+
+	private final Model model;
+
+	private final Map< TrackMateObject, Map< String, Entry > > entries = new EnumMap<>( TrackMateObject.class );
+
+	public FeatureIndex( final Model model )
+	{
+		this.model = model;
+	}
+
+	/**
+	 * Returns the values of the specified feature over the specified objects
+	 * of the model. Missing and NaN values are not included.
+	 *
+	 * @param target
+	 *            the type of object the feature is defined on.
+	 * @param feature
+	 *            the feature key.
+	 * @param visibleOnly
+	 *            if <code>true</code>, only visible objects are considered.
+	 * @return the feature values.
+	 */
+	public synchronized FeatureValues get( final TrackMateObject target, final String feature, final boolean visibleOnly )
+	{
+		if ( target == TrackMateObject.DEFAULT )
+			return FeatureValues.EMPTY;
+
+		final Entry entry = entries
+				.computeIfAbsent( target, t -> new HashMap<>() )
+				.computeIfAbsent( feature, f -> new Entry() );
+		if ( visibleOnly )
+		{
+			if ( null == entry.visible )
+				entry.visible = collect( target, feature, true );
+			return entry.visible;
+		}
+		if ( null == entry.all )
+			entry.all = collect( target, feature, false );
+		return entry.all;
+	}
+
+	/**
+	 * Discards all the cached values.
+	 */
+	public synchronized void invalidate()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Discards the cached values of all the features of the specified type of
+	 * objects.
+	 *
+	 * @param target
+	 *            the type of objects.
+	 * @param visibleOnly
+	 *            if <code>true</code>, only the values collected over visible
+	 *            objects are discarded.
+	 */
+	public synchronized void invalidate( final TrackMateObject target, final boolean visibleOnly )
+	{
+		final Map< String, Entry > map = entries.get( target );
+		if ( null == map )
+			return;
+		if ( !visibleOnly )
+		{
+			map.clear();
+			return;
+		}
+		for ( final Entry entry : map.values() )
+			entry.visible = null;
+	}
+
+	/**
+	 * Discards the cached values of the specified feature, over all and over
+	 * visible objects. Must be called when the values of this feature are
+	 * changed.
+	 *
+	 * @param target
+	 *            the type of objects the feature is defined on.
+	 * @param feature
+	 *            the feature key.
+	 */
+	public synchronized void invalidate( final TrackMateObject target, final String feature )
+	{
+		final Map< String, Entry > map = entries.get( target );
+		if ( null != map )
+			map.remove( feature );
+	}
+
+	@Override
+	public void modelChanged( final ModelChangeEvent event )
+	{
+		switch ( event.getEventID() )
+		{
+		case ModelChangeEvent.SPOTS_FILTERED:
+			invalidate( TrackMateObject.SPOTS, true );
+			break;
+
+		case ModelChangeEvent.SPOTS_COMPUTED:
+			invalidate( TrackMateObject.SPOTS, false );
+			break;
+
+		case ModelChangeEvent.TRACKS_VISIBILITY_CHANGED:
+			invalidate( TrackMateObject.EDGES, true );
+			invalidate( TrackMateObject.TRACKS, true );
+			break;
+
+		case ModelChangeEvent.TRACKS_COMPUTED:
+			invalidate( TrackMateObject.EDGES, false );
+			invalidate( TrackMateObject.TRACKS, false );
+			break;
+
+		case ModelChangeEvent.MODEL_MODIFIED:
+			if ( !event.getSpots().isEmpty() )
+				invalidate( TrackMateObject.SPOTS, false );
+			if ( !event.getEdges().isEmpty() || ( null != event.getTrackUpdated() && !event.getTrackUpdated().isEmpty() ) )
+			{
+				invalidate( TrackMateObject.EDGES, false );
+				invalidate( TrackMateObject.TRACKS, false );
+			}
+			break;
+
+		case ModelChangeEvent.FEATURES_COMPUTED:
+			// Feature values were discarded one by one as they were written.
+			break;
+
+		default:
+			invalidate();
+			break;
+		}
+	}
+
+	private FeatureValues collect( final TrackMateObject target, final String feature, final boolean visibleOnly )
+	{
+		final FeatureModel fm = model.getFeatureModel();
+		final TrackModel trackModel = model.getTrackModel();
+		switch ( target )
+		{
+		case EDGES:
+		{
+			final ValueBuffer buffer = new ValueBuffer( trackModel.edgeSet().size() );
+			for ( final Integer trackID : trackModel.unsortedTrackIDs( visibleOnly ) )
+				for ( final DefaultWeightedEdge edge : trackModel.trackEdges( trackID ) )
+					buffer.add( fm.getEdgeFeature( edge, feature ) );
+			return buffer.toValues();
+		}
+		case SPOTS:
+		{
+			final ValueBuffer buffer = new ValueBuffer( model.getSpots().getNSpots( visibleOnly ) );
+			for ( final Spot spot : model.getSpots().iterable( visibleOnly ) )
+				buffer.add( spot.getFeature( feature ) );
+			return buffer.toValues();
+		}
+		case TRACKS:
+		{
+			final ValueBuffer buffer = new ValueBuffer( trackModel.nTracks( visibleOnly ) );
+			for ( final Integer trackID : trackModel.unsortedTrackIDs( visibleOnly ) )
+				buffer.add( fm.getTrackFeature( trackID, feature ) );
+			return buffer.toValues();
+		}
+		default:
+			throw new IllegalArgumentException( "Unknown object type: " + target );
+		}
+	}
+
+	/**
+	 * The cached values of one feature. A <code>null</code> field is stale.
+	 */
+	private static final class Entry
+	{
+
+		private FeatureValues all;
+
+		private FeatureValues visible;
+	}
+
+	private static final class ValueBuffer
+	{
+
+		private double[] values;
+
+		private int n = 0;
+
+		private ValueBuffer( final int capacity )
+		{
+			this.values = new double[ Math.max( 16, capacity ) ];
+		}
+
+		private void add( final Double val )
+		{
+			if ( null == val || val.isNaN() )
+				return;
+			if ( n == values.length )
+				values = Arrays.copyOf( values, 2 * n );
+			values[ n++ ] = val.doubleValue();
+		}
+
+		private FeatureValues toValues()
+		{
+			return FeatureValues.wrap( values, n );
+		}
+	}
+}
@@ -361,18 +361,10 @@ public class FeatureUtils
 		case SPOTS:
 		case TRACKS:
 		{
-			final double[] values = collectFeatureValues( feature, type, model, settings, true );
-			double min = Double.POSITIVE_INFINITY;
-			double max = Double.NEGATIVE_INFINITY;
-			for ( final double val : values )
-			{
-				if ( val < min )
-					min = val;
-
-				if ( val > max )
-					max = val;
-			}
-			return new double[] { min, max };
+			final FeatureValues values = model.getFeatureIndex().get( type, feature, true );
+			if ( values.isEmpty() )
+				return new double[] { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+			return new double[] { values.min(), values.max() };
 		}
 
 		default:
@@ -0,0 +1,269 @@
+package fiji.plugin.trackmate.features;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fiji.plugin.trackmate.util.SortedArrays;
+import fiji.plugin.trackmate.util.TMUtils;
+
+/**
+ * The values of a feature over a set of TrackMate objects, stored sorted in a
+ * primitive array. Missing and NaN values are not included.
+ * <p>
+ * Because values are sorted, the min, max and percentiles are read directly,
+ * and the number of values above or below a threshold is found by binary
+ * search. Histograms are computed by binary search over the bin edges and
+ * cached by number of bins.
+ * <p>
+ * Instances are immutable, and are typically obtained from the
+ * {@link FeatureIndex} of a model.
+ */
+public class FeatureValues
+{
+
+	public static final FeatureValues EMPTY = new FeatureValues( new double[ 0 ], 0 );
+
+	private final double[] sorted;
+
+	private final ConcurrentHashMap< Integer, int[] > histograms = new ConcurrentHashMap<>();
+
+	private FeatureValues( final double[] values, final int n )
+	{
+		Arrays.sort( values, 0, n );
+		this.sorted = ( n == values.length ) ? values : Arrays.copyOf( values, n );
+	}
+
+	/**
+	 * Creates a new instance from the specified values. NaN values are
+	 * discarded. The array is copied.
+	 *
+	 * @param values
+	 *            the values.
+	 * @return a new {@link FeatureValues}.
+	 */
+	public static FeatureValues of( final double[] values )
+	{
+		final double[] copy = new double[ values.length ];
+		int n = 0;
+		for ( final double val : values )
+			if ( !Double.isNaN( val ) )
+				copy[ n++ ] = val;
+		return new FeatureValues( copy, n );
+	}
+
+	/**
+	 * Creates a new instance from the first <code>n</code> elements of the
+	 * specified array, which is sorted in place and must not contain NaN, and
+	 * must not be modified afterwards.
+	 */
+	static FeatureValues wrap( final double[] values, final int n )
+	{
+		return new FeatureValues( values, n );
+	}
+
+	/**
+	 * Returns the number of values.
+	 *
+	 * @return the number of values.
+	 */
+	public int size()
+	{
+		return sorted.length;
+	}
+
+	public boolean isEmpty()
+	{
+		return sorted.length == 0;
+	}
+
+	/**
+	 * Returns the smallest value, or {@link Double#NaN} if there are no values.
+	 *
+	 * @return the min.
+	 */
+	public double min()
+	{
+		return isEmpty() ? Double.NaN : sorted[ 0 ];
+	}
+
+	/**
+	 * Returns the largest value, or {@link Double#NaN} if there are no values.
+	 *
+	 * @return the max.
+	 */
+	public double max()
+	{
+		return isEmpty() ? Double.NaN : sorted[ sorted.length - 1 ];
+	}
+
+	/**
+	 * Returns the sorted values. The returned array is shared and must not be
+	 * modified.
+	 *
+	 * @return the sorted values.
+	 */
+	public double[] values()
+	{
+		return sorted;
+	}
+
+	/**
+	 * Returns a copy of the sorted values.
+	 *
+	 * @return a new array.
+	 */
+	public double[] toArray()
+	{
+		return sorted.clone();
+	}
+
+	/**
+	 * Returns the number of values greater than or equal to the threshold.
+	 *
+	 * @param threshold
+	 *            the threshold.
+	 * @return the number of values above the threshold.
+	 */
+	public int countAbove( final double threshold )
+	{
+		return sorted.length - SortedArrays.lowerBound( sorted, sorted.length, threshold );
+	}
+
+	/**
+	 * Returns the number of values smaller than or equal to the threshold.
+	 *
+	 * @param threshold
+	 *            the threshold.
+	 * @return the number of values below the threshold.
+	 */
+	public int countBelow( final double threshold )
+	{
+		return SortedArrays.upperBound( sorted, sorted.length, threshold );
+	}
+
+	/**
+	 * Returns the number of values that pass the specified filter, if it
+	 * applies to the feature of these values.
+	 *
+	 * @param filter
+	 *            the filter.
+	 * @return the number of values that pass the filter.
+	 */
+	public int count( final FeatureFilter filter )
+	{
+		return filter.isAbove ? countAbove( filter.value ) : countBelow( filter.value );
+	}
+
+	/**
+	 * Returns an estimate of the <code>p</code>th percentile of the values,
+	 * with the same definition as in
+	 * {@link TMUtils#getPercentile(double[], double)}.
+	 *
+	 * @param p
+	 *            the percentile, in ]0, 1].
+	 * @return the percentile value.
+	 */
+	public double percentile( final double p )
+	{
+		final int size = sorted.length;
+		if ( ( p > 1 ) || ( p <= 0 ) )
+			throw new IllegalArgumentException( "invalid quantile value: " + p );
+		if ( size == 0 )
+			return Double.NaN;
+		if ( size == 1 )
+			return sorted[ 0 ];
+		final double pos = p * ( size + 1 );
+		final double fpos = Math.floor( pos );
+		final int intPos = ( int ) fpos;
+		final double dif = pos - fpos;
+		if ( pos < 1 )
+			return sorted[ 0 ];
+		if ( pos >= size )
+			return sorted[ size - 1 ];
+		final double lower = sorted[ intPos - 1 ];
+		final double upper = sorted[ intPos ];
+		return lower + dif * ( upper - lower );
+	}
+
+	/**
+	 * Returns the optimal bin number for a histogram of these values, using
+	 * the Freedman and Diaconis rule, as in
+	 * {@link TMUtils#getNBins(double[], int, int)}.
+	 *
+	 * @param minBinNumber
+	 *            the min number of bins.
+	 * @param maxBinNumber
+	 *            the max number of bins.
+	 * @return the number of bins.
+	 */
+	public int nBins( final int minBinNumber, final int maxBinNumber )
+	{
+		final double iqr = percentile( 0.75 ) - percentile( 0.25 );
+		final double binWidth = 2 * iqr * Math.pow( sorted.length, -0.33 );
+		int nBin = ( int ) ( ( max() - min() ) / binWidth + 1 );
+
+		if ( nBin > maxBinNumber )
+			nBin = maxBinNumber;
+		else if ( nBin < minBinNumber )
+			nBin = minBinNumber;
+
+		return nBin;
+	}
+
+	/**
+	 * Returns the histogram of these values over <code>nBins</code> bins of
+	 * equal width spanning <code>[min, max]</code>. The last bin includes the
+	 * max.
+	 *
+	 * @param nBins
+	 *            the number of bins.
+	 * @return a new array containing the histogram counts.
+	 */
+	public int[] histogram( final int nBins )
+	{
+		return histograms.computeIfAbsent( nBins, this::computeHistogram ).clone();
+	}
+
+	/**
+	 * Returns a threshold for these values, using an Otsu histogram
+	 * thresholding method, as in {@link TMUtils#otsuThreshold(double[])}.
+	 *
+	 * @return the threshold, or {@link Double#NaN} if there are no values.
+	 */
+	public double otsuThreshold()
+	{
+		if ( isEmpty() )
+			return Double.NaN;
+		final int nBins = nBins( 8, 256 );
+		final int[] hist = histogram( nBins );
+		final int thresholdIndex = TMUtils.otsuThresholdIndex( hist, sorted.length );
+		final double binWidth = ( max() - min() ) / nBins;
+		return min() + binWidth * thresholdIndex;
+	}
+
+	private int[] computeHistogram( final int nBins )
+	{
+		final int[] hist = new int[ nBins ];
+		final int n = sorted.length;
+		if ( nBins == 0 || n == 0 )
+			return hist;
+
+		final double min = min();
+		final double binWidth = ( max() - min ) / nBins;
+		if ( binWidth == 0. )
+		{
+			hist[ 0 ] = n;
+			return hist;
+		}
+
+		int start = 0;
+		for ( int i = 0; i < nBins - 1; i++ )
+		{
+			final int end = SortedArrays.lowerBound( sorted, n, min + ( i + 1 ) * binWidth );
+			hist[ i ] = end - start;
+			start = end;
+		}
+		hist[ nBins - 1 ] = n - start;
+		return hist;
+	}
+}
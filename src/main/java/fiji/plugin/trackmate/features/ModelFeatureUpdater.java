@@ -75,12 +75,18 @@ public class ModelFeatureUpdater implements ModelChangeListener, MultiThreaded
 
 		// Update spot features
 		spotFeatureCalculator.computeSpotFeatures(sc, false);
+		for (Integer frame : sc.keySet()) {
+			model.getSpots().invalidateIndices(frame);
+		}
 		
 		// Update edge features
 		edgeFeatureCalculator.computeEdgesFeatures(edges, false);
 		
 		// Update track features
 		trackFeatureCalculator.computeTrackFeatures(event.getTrackUpdated(), false);
+
+		// Values cached before the update are stale.
+		model.getFeatureIndex().modelChanged(event);
 	}
 	
 	/**
@@ -18,6 +18,7 @@ import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.SpotCollection;
 import fiji.plugin.trackmate.features.spot.SpotAnalyzer;
 import fiji.plugin.trackmate.features.spot.SpotAnalyzerFactoryBase;
+import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings.TrackMateObject;
 import fiji.plugin.trackmate.util.TMUtils;
 import net.imagej.ImgPlus;
 import net.imglib2.algorithm.MultiThreaded;
@@ -203,6 +204,15 @@ public class SpotFeatureCalculator extends MultiThreadedBenchmarkAlgorithm
 		}
 
 		executorService.shutdown();
+
+		// Feature values changed: sorted indices and filter results are stale.
+		for ( final Integer frame : frameSet )
+			toCompute.invalidateIndices( frame );
+		final FeatureIndex featureIndex = model.getFeatureIndex();
+		for ( final SpotAnalyzerFactoryBase< ? > factory : analyzerFactories )
+			for ( final String feature : factory.getFeatures() )
+				featureIndex.invalidate( TrackMateObject.SPOTS, feature );
+
 		logger.setProgress( 1 );
 		logger.setStatus( "" );
 		final long end = System.currentTimeMillis();
@@ -0,0 +1,846 @@
+package fiji.plugin.trackmate.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+import org.jgrapht.Graph;
+import org.jgrapht.GraphType;
+import org.jgrapht.graph.AbstractGraph;
+import org.jgrapht.graph.DefaultGraphType;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.util.ArrayUnenforcedSet;
+
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * A simple, undirected and weighted graph of spots, with the same semantics
+ * as a {@link org.jgrapht.graph.SimpleWeightedGraph}, but stored in primitive
+ * arrays.
+ * <p>
+ * Spots and edges are given dense indices. The endpoints of the edges and
+ * their weights are stored in <code>int[]</code> and <code>double[]</code>
+ * arrays, and the edges touching a spot are chained in a linked list of
+ * half-edges, also stored in <code>int[]</code> arrays. Spots and edges are
+ * mapped to their index by open-addressing hash tables. This avoids the
+ * per-edge map entries, edge containers and vertex-pair lookup tables of the
+ * JGraphT implementation, which dominate memory for large models. Looking up
+ * the edge between two spots costs the degree of the spots, which is small
+ * for tracks.
+ * <p>
+ * Per edge, the arrays cost 28 bytes (edge reference, two endpoints, two
+ * half-edge links and the weight), and per spot 8 bytes (spot reference and
+ * first half-edge). The two hash tables cost 8 bytes per slot, with 2 to 4
+ * slots per key. On a track, where there is about one spot per edge, this
+ * amounts to about 70 bytes per edge, against about 300 for
+ * {@link org.jgrapht.graph.SimpleWeightedGraph}. The hash tables are the
+ * largest remaining cost. They are needed as long as spots and edges are
+ * arbitrary objects that do not carry their index in this graph. The
+ * {@link DefaultWeightedEdge} instances themselves are not counted: they are
+ * the edge type of the TrackMate API and are kept by callers.
+ * <p>
+ * Removed spots and edges leave holes in the arrays, which are compacted when
+ * they make up for more than half of them. Spots and edges are iterated in
+ * the order they were added.
+ * <p>
+ * Like the JGraphT intrusive edges, removed edges still report their source,
+ * target and weight. They are kept in a weak map for this, so that listeners
+ * notified of their removal can still inspect them.
+ * <p>
+ * The sets returned by {@link #vertexSet()} and {@link #edgeSet()} are
+ * unmodifiable views of the graph. The sets returned by
+ * {@link #edgesOf(Spot)} are unmodifiable copies.
+ */
+public class CompactTrackGraph extends AbstractGraph< Spot, DefaultWeightedEdge >
+{
+
+	private static final int NONE = -1;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/*
+	 * VERTICES.
+	 */
+
+	/** Index to spot, <code>null</code> for removed spots. */
+	private Spot[] vertices;
+
+	/** Index to the first half-edge touching the spot. */
+	private int[] firstHalfEdge;
+
+	/** Number of vertex slots used, including holes. */
+	private int vertexSlots;
+
+	private int nVertices;
+
+	private final IndexMap< Spot > vertexIndex;
+
+	/*
+	 * EDGES. Edge <code>e</code> has two half-edges: <code>2e</code> belongs
+	 * to its source, <code>2e+1</code> to its target.
+	 */
+
+	/** Index to edge, <code>null</code> for removed edges. */
+	private DefaultWeightedEdge[] edges;
+
+	/** Half-edge to the index of the spot it belongs to. */
+	private int[] endpoints;
+
+	/** Half-edge to the next half-edge of the same spot. */
+	private int[] nextHalfEdge;
+
+	private double[] weights;
+
+	/** Number of edge slots used, including holes. */
+	private int edgeSlots;
+
+	private int nEdges;
+
+	private final IndexMap< DefaultWeightedEdge > edgeIndex;
+
+	/**
+	 * The endpoints and weights of the removed edges, for as long as they are
+	 * referenced elsewhere.
+	 */
+	private final Map< DefaultWeightedEdge, RemovedEdge > removedEdges = new WeakHashMap<>();
+
+	/**
+	 * Incremented at each structural change, to detect concurrent
+	 * modifications.
+	 */
+	private int modCount = 0;
+
+	private final Set< Spot > vertexSet = new VertexSet();
+
+	private final Set< DefaultWeightedEdge > edgeSet = new EdgeSet();
+
+	/*
+	 * CONSTRUCTORS
+	 */
+
+	/**
+	 * Creates a new, empty graph.
+	 */
+	public CompactTrackGraph()
+	{
+		this( DEFAULT_CAPACITY, DEFAULT_CAPACITY );
+	}
+
+	/**
+	 * Creates a new, empty graph, with room for the specified number of spots
+	 * and edges.
+	 *
+	 * @param vertexCapacity
+	 *            the expected number of spots.
+	 * @param edgeCapacity
+	 *            the expected number of edges.
+	 */
+	public CompactTrackGraph( final int vertexCapacity, final int edgeCapacity )
+	{
+		final int nv = Math.max( 1, vertexCapacity );
+		final int ne = Math.max( 1, edgeCapacity );
+		this.vertices = new Spot[ nv ];
+		this.firstHalfEdge = new int[ nv ];
+		this.vertexIndex = new IndexMap<>( nv );
+		this.edges = new DefaultWeightedEdge[ ne ];
+		this.endpoints = new int[ 2 * ne ];
+		this.nextHalfEdge = new int[ 2 * ne ];
+		this.weights = new double[ ne ];
+		this.edgeIndex = new IndexMap<>( ne );
+	}
+
+	/**
+	 * Creates a new graph with the spots and edges of the specified graph.
+	 * The edge instances are shared with the source graph, and their weights
+	 * are copied.
+	 *
+	 * @param source
+	 *            the graph to copy.
+	 */
+	public CompactTrackGraph( final Graph< Spot, DefaultWeightedEdge > source )
+	{
+		this( source.vertexSet().size(), source.edgeSet().size() );
+		for ( final Spot spot : source.vertexSet() )
+			addVertex( spot );
+		for ( final DefaultWeightedEdge edge : source.edgeSet() )
+		{
+			final Spot s = source.getEdgeSource( edge );
+			final Spot t = source.getEdgeTarget( edge );
+			addEdge( s, t, edge );
+			setEdgeWeight( edge, source.getEdgeWeight( edge ) );
+		}
+	}
+
+	/*
+	 * GRAPH METHODS
+	 */
+
+	@Override
+	public Set< DefaultWeightedEdge > getAllEdges( final Spot sourceVertex, final Spot targetVertex )
+	{
+		final int s = vertexIndex.get( sourceVertex );
+		final int t = vertexIndex.get( targetVertex );
+		if ( s == NONE || t == NONE )
+			return null;
+
+		final int e = findEdge( s, t );
+		if ( e == NONE )
+			return Collections.emptySet();
+		return Collections.singleton( edges[ e ] );
+	}
+
+	@Override
+	public DefaultWeightedEdge getEdge( final Spot sourceVertex, final Spot targetVertex )
+	{
+		final int s = vertexIndex.get( sourceVertex );
+		final int t = vertexIndex.get( targetVertex );
+		if ( s == NONE || t == NONE )
+			return null;
+
+		final int e = findEdge( s, t );
+		return e == NONE ? null : edges[ e ];
+	}
+
+	@Override
+	public Supplier< Spot > getVertexSupplier()
+	{
+		return null;
+	}
+
+	@Override
+	public Supplier< DefaultWeightedEdge > getEdgeSupplier()
+	{
+		return DefaultWeightedEdge::new;
+	}
+
+	@Override
+	public DefaultWeightedEdge addEdge( final Spot sourceVertex, final Spot targetVertex )
+	{
+		final int s = checkedIndexOf( sourceVertex );
+		final int t = checkedIndexOf( targetVertex );
+		if ( s == t )
+			throw new IllegalArgumentException( "loops not allowed" );
+		if ( findEdge( s, t ) != NONE )
+			return null;
+
+		final DefaultWeightedEdge edge = new DefaultWeightedEdge();
+		insertEdge( edge, s, t );
+		return edge;
+	}
+
+	@Override
+	public boolean addEdge( final Spot sourceVertex, final Spot targetVertex, final DefaultWeightedEdge e )
+	{
+		Objects.requireNonNull( e );
+		if ( edgeIndex.get( e ) != NONE )
+			return false;
+
+		final int s = checkedIndexOf( sourceVertex );
+		final int t = checkedIndexOf( targetVertex );
+		if ( s == t )
+			throw new IllegalArgumentException( "loops not allowed" );
+		if ( findEdge( s, t ) != NONE )
+			return false;
+
+		insertEdge( e, s, t );
+		return true;
+	}
+
+	@Override
+	public Spot addVertex()
+	{
+		throw new UnsupportedOperationException( "The graph contains no vertex supplier" );
+	}
+
+	@Override
+	public boolean addVertex( final Spot v )
+	{
+		Objects.requireNonNull( v );
+		if ( vertexIndex.get( v ) != NONE )
+			return false;
+
+		if ( vertexSlots == vertices.length )
+		{
+			if ( nVertices < vertexSlots / 2 )
+			{
+				compactVertices();
+			}
+			else
+			{
+				final int capacity = grow( vertices.length );
+				vertices = Arrays.copyOf( vertices, capacity );
+				firstHalfEdge = Arrays.copyOf( firstHalfEdge, capacity );
+			}
+		}
+
+		final int index = vertexSlots++;
+		vertices[ index ] = v;
+		firstHalfEdge[ index ] = NONE;
+		vertexIndex.put( v, index );
+		nVertices++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean containsEdge( final DefaultWeightedEdge e )
+	{
+		return edgeIndex.get( e ) != NONE;
+	}
+
+	@Override
+	public boolean containsVertex( final Spot v )
+	{
+		return vertexIndex.get( v ) != NONE;
+	}
+
+	@Override
+	public Set< DefaultWeightedEdge > edgeSet()
+	{
+		return edgeSet;
+	}
+
+	@Override
+	public int degreeOf( final Spot vertex )
+	{
+		int degree = 0;
+		for ( int h = firstHalfEdge[ checkedIndexOf( vertex ) ]; h != NONE; h = nextHalfEdge[ h ] )
+			degree++;
+		return degree;
+	}
+
+	@Override
+	public Set< DefaultWeightedEdge > edgesOf( final Spot vertex )
+	{
+		final int v = checkedIndexOf( vertex );
+		final ArrayUnenforcedSet< DefaultWeightedEdge > set = new ArrayUnenforcedSet<>();
+		for ( int h = firstHalfEdge[ v ]; h != NONE; h = nextHalfEdge[ h ] )
+			set.add( edges[ h >> 1 ] );
+		// Half-edges are chained most recent first.
+		Collections.reverse( set );
+		return Collections.unmodifiableSet( set );
+	}
+
+	@Override
+	public int inDegreeOf( final Spot vertex )
+	{
+		return degreeOf( vertex );
+	}
+
+	@Override
+	public Set< DefaultWeightedEdge > incomingEdgesOf( final Spot vertex )
+	{
+		return edgesOf( vertex );
+	}
+
+	@Override
+	public int outDegreeOf( final Spot vertex )
+	{
+		return degreeOf( vertex );
+	}
+
+	@Override
+	public Set< DefaultWeightedEdge > outgoingEdgesOf( final Spot vertex )
+	{
+		return edgesOf( vertex );
+	}
+
+	@Override
+	public DefaultWeightedEdge removeEdge( final Spot sourceVertex, final Spot targetVertex )
+	{
+		final DefaultWeightedEdge edge = getEdge( sourceVertex, targetVertex );
+		if ( null != edge )
+			removeEdge( edge );
+		return edge;
+	}
+
+	@Override
+	public boolean removeEdge( final DefaultWeightedEdge e )
+	{
+		final int index = edgeIndex.get( e );
+		if ( index == NONE )
+			return false;
+
+		removedEdges.put( e, new RemovedEdge( vertices[ endpoints[ 2 * index ] ], vertices[ endpoints[ 2 * index + 1 ] ], weights[ index ] ) );
+		unchain( endpoints[ 2 * index ], 2 * index );
+		unchain( endpoints[ 2 * index + 1 ], 2 * index + 1 );
+		edgeIndex.remove( e );
+		edges[ index ] = null;
+		nEdges--;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean removeVertex( final Spot v )
+	{
+		final int index = vertexIndex.get( v );
+		if ( index == NONE )
+			return false;
+
+		while ( firstHalfEdge[ index ] != NONE )
+			removeEdge( edges[ firstHalfEdge[ index ] >> 1 ] );
+
+		vertexIndex.remove( v );
+		vertices[ index ] = null;
+		nVertices--;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public Set< Spot > vertexSet()
+	{
+		return vertexSet;
+	}
+
+	@Override
+	public Spot getEdgeSource( final DefaultWeightedEdge e )
+	{
+		final int index = edgeIndex.get( e );
+		if ( index == NONE )
+			return removedEdge( e ).source;
+		return vertices[ endpoints[ 2 * index ] ];
+	}
+
+	@Override
+	public Spot getEdgeTarget( final DefaultWeightedEdge e )
+	{
+		final int index = edgeIndex.get( e );
+		if ( index == NONE )
+			return removedEdge( e ).target;
+		return vertices[ endpoints[ 2 * index + 1 ] ];
+	}
+
+	@Override
+	public GraphType getType()
+	{
+		return DefaultGraphType.simple().asWeighted();
+	}
+
+	@Override
+	public double getEdgeWeight( final DefaultWeightedEdge e )
+	{
+		final int index = edgeIndex.get( e );
+		if ( index == NONE )
+			return removedEdge( e ).weight;
+		return weights[ index ];
+	}
+
+	@Override
+	public void setEdgeWeight( final DefaultWeightedEdge e, final double weight )
+	{
+		weights[ checkedIndexOf( e ) ] = weight;
+	}
+
+	/*
+	 * PRIVATE METHODS
+	 */
+
+	private int checkedIndexOf( final Spot v )
+	{
+		Objects.requireNonNull( v );
+		final int index = vertexIndex.get( v );
+		if ( index == NONE )
+			throw new IllegalArgumentException( "no such vertex in graph: " + v.toString() );
+		return index;
+	}
+
+	private int checkedIndexOf( final DefaultWeightedEdge e )
+	{
+		Objects.requireNonNull( e );
+		final int index = edgeIndex.get( e );
+		if ( index == NONE )
+			throw new IllegalArgumentException( "no such edge in graph: " + e.toString() );
+		return index;
+	}
+
+	private RemovedEdge removedEdge( final DefaultWeightedEdge e )
+	{
+		Objects.requireNonNull( e );
+		final RemovedEdge removed = removedEdges.get( e );
+		if ( null == removed )
+			throw new IllegalArgumentException( "no such edge in graph: " + e.toString() );
+		return removed;
+	}
+
+	/**
+	 * Returns the index of the edge between the spots with the specified
+	 * indices, or {@link #NONE}.
+	 */
+	private int findEdge( final int s, final int t )
+	{
+		for ( int h = firstHalfEdge[ s ]; h != NONE; h = nextHalfEdge[ h ] )
+		{
+			// The other half-edge of the same edge.
+			if ( endpoints[ h ^ 1 ] == t )
+				return h >> 1;
+		}
+		return NONE;
+	}
+
+	private void insertEdge( final DefaultWeightedEdge edge, final int s, final int t )
+	{
+		if ( edgeSlots == edges.length )
+		{
+			if ( nEdges < edgeSlots / 2 )
+			{
+				compactEdges();
+			}
+			else
+			{
+				final int capacity = grow( edges.length );
+				edges = Arrays.copyOf( edges, capacity );
+				weights = Arrays.copyOf( weights, capacity );
+				endpoints = Arrays.copyOf( endpoints, 2 * capacity );
+				nextHalfEdge = Arrays.copyOf( nextHalfEdge, 2 * capacity );
+			}
+		}
+
+		removedEdges.remove( edge );
+		final int index = edgeSlots++;
+		edges[ index ] = edge;
+		weights[ index ] = Graph.DEFAULT_EDGE_WEIGHT;
+		endpoints[ 2 * index ] = s;
+		endpoints[ 2 * index + 1 ] = t;
+		chain( s, 2 * index );
+		chain( t, 2 * index + 1 );
+		edgeIndex.put( edge, index );
+		nEdges++;
+		modCount++;
+	}
+
+	private void chain( final int v, final int h )
+	{
+		nextHalfEdge[ h ] = firstHalfEdge[ v ];
+		firstHalfEdge[ v ] = h;
+	}
+
+	private void unchain( final int v, final int h )
+	{
+		if ( firstHalfEdge[ v ] == h )
+		{
+			firstHalfEdge[ v ] = nextHalfEdge[ h ];
+			return;
+		}
+		int previous = firstHalfEdge[ v ];
+		while ( nextHalfEdge[ previous ] != h )
+			previous = nextHalfEdge[ previous ];
+		nextHalfEdge[ previous ] = nextHalfEdge[ h ];
+	}
+
+	/**
+	 * Removes the holes left by removed spots, preserving their order.
+	 */
+	private void compactVertices()
+	{
+		final int[] newIndex = new int[ vertexSlots ];
+		int n = 0;
+		for ( int i = 0; i < vertexSlots; i++ )
+		{
+			if ( null == vertices[ i ] )
+				continue;
+			newIndex[ i ] = n;
+			vertices[ n ] = vertices[ i ];
+			firstHalfEdge[ n ] = firstHalfEdge[ i ];
+			vertexIndex.put( vertices[ n ], n );
+			n++;
+		}
+		Arrays.fill( vertices, n, vertexSlots, null );
+		vertexSlots = n;
+
+		for ( int h = 0; h < 2 * edgeSlots; h++ )
+			if ( null != edges[ h >> 1 ] )
+				endpoints[ h ] = newIndex[ endpoints[ h ] ];
+	}
+
+	/**
+	 * Removes the holes left by removed edges, preserving their order, and
+	 * rebuilds the half-edge chains.
+	 */
+	private void compactEdges()
+	{
+		int n = 0;
+		for ( int i = 0; i < edgeSlots; i++ )
+		{
+			if ( null == edges[ i ] )
+				continue;
+			edges[ n ] = edges[ i ];
+			weights[ n ] = weights[ i ];
+			endpoints[ 2 * n ] = endpoints[ 2 * i ];
+			endpoints[ 2 * n + 1 ] = endpoints[ 2 * i + 1 ];
+			edgeIndex.put( edges[ n ], n );
+			n++;
+		}
+		Arrays.fill( edges, n, edgeSlots, null );
+		edgeSlots = n;
+
+		Arrays.fill( firstHalfEdge, 0, vertexSlots, NONE );
+		for ( int h = 0; h < 2 * edgeSlots; h++ )
+			chain( endpoints[ h ], h );
+	}
+
+	private static int grow( final int capacity )
+	{
+		return capacity + Math.max( 1, capacity >> 1 );
+	}
+
+	/*
+	 * INNER CLASSES
+	 */
+
+	private abstract class SlotIterator< T > implements Iterator< T >
+	{
+
+		private final int expectedModCount = modCount;
+
+		private int next = -1;
+
+		private SlotIterator()
+		{
+			advance();
+		}
+
+		protected abstract T get( int index );
+
+		private void advance()
+		{
+			next++;
+			while ( next < slots() && null == get( next ) )
+				next++;
+		}
+
+		protected abstract int slots();
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < slots();
+		}
+
+		@Override
+		public T next()
+		{
+			if ( modCount != expectedModCount )
+				throw new ConcurrentModificationException();
+			if ( !hasNext() )
+				throw new NoSuchElementException();
+			final T t = get( next );
+			advance();
+			return t;
+		}
+	}
+
+	private final class VertexSet extends AbstractSet< Spot >
+	{
+
+		@Override
+		public Iterator< Spot > iterator()
+		{
+			return new SlotIterator< Spot >()
+			{
+				@Override
+				protected Spot get( final int index )
+				{
+					return vertices[ index ];
+				}
+
+				@Override
+				protected int slots()
+				{
+					return vertexSlots;
+				}
+			};
+		}
+
+		@Override
+		public int size()
+		{
+			return nVertices;
+		}
+
+		@Override
+		public boolean contains( final Object o )
+		{
+			return o instanceof Spot && containsVertex( ( Spot ) o );
+		}
+	}
+
+	private final class EdgeSet extends AbstractSet< DefaultWeightedEdge >
+	{
+
+		@Override
+		public Iterator< DefaultWeightedEdge > iterator()
+		{
+			return new SlotIterator< DefaultWeightedEdge >()
+			{
+				@Override
+				protected DefaultWeightedEdge get( final int index )
+				{
+					return edges[ index ];
+				}
+
+				@Override
+				protected int slots()
+				{
+					return edgeSlots;
+				}
+			};
+		}
+
+		@Override
+		public int size()
+		{
+			return nEdges;
+		}
+
+		@Override
+		public boolean contains( final Object o )
+		{
+			return o instanceof DefaultWeightedEdge && containsEdge( ( DefaultWeightedEdge ) o );
+		}
+	}
+
+	private static final class RemovedEdge
+	{
+
+		private final Spot source;
+
+		private final Spot target;
+
+		private final double weight;
+
+		private RemovedEdge( final Spot source, final Spot target, final double weight )
+		{
+			this.source = source;
+			this.target = target;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Maps objects to non-negative <code>int</code> indices, with open
+	 * addressing and linear probing.
+	 */
+	private static final class IndexMap< K >
+	{
+
+		private Object[] keys;
+
+		private int[] values;
+
+		private int size;
+
+		private IndexMap( final int expectedSize )
+		{
+			int capacity = 4;
+			while ( capacity < 2 * expectedSize )
+				capacity <<= 1;
+			keys = new Object[ capacity ];
+			values = new int[ capacity ];
+		}
+
+		private int slot( final Object key )
+		{
+			// Spot hash codes are their IDs, so we need to scramble them.
+			final int h = key.hashCode() * 0x9E3779B9;
+			return ( h ^ ( h >>> 16 ) ) & ( keys.length - 1 );
+		}
+
+		private int get( final Object key )
+		{
+			if ( null == key )
+				return NONE;
+			for ( int i = slot( key );; i = ( i + 1 ) & ( keys.length - 1 ) )
+			{
+				final Object k = keys[ i ];
+				if ( null == k )
+					return NONE;
+				if ( k == key || k.equals( key ) )
+					return values[ i ];
+			}
+		}
+
+		private void put( final K key, final int value )
+		{
+			for ( int i = slot( key );; i = ( i + 1 ) & ( keys.length - 1 ) )
+			{
+				final Object k = keys[ i ];
+				if ( null == k )
+				{
+					keys[ i ] = key;
+					values[ i ] = value;
+					if ( ++size > keys.length / 2 )
+						rehash( keys.length << 1 );
+					return;
+				}
+				if ( k == key || k.equals( key ) )
+				{
+					values[ i ] = value;
+					return;
+				}
+			}
+		}
+
+		private void remove( final Object key )
+		{
+			final int mask = keys.length - 1;
+			int i = slot( key );
+			while ( true )
+			{
+				final Object k = keys[ i ];
+				if ( null == k )
+					return;
+				if ( k == key || k.equals( key ) )
+					break;
+				i = ( i + 1 ) & mask;
+			}
+			size--;
+
+			// Shift back the entries of the same probe sequence.
+			int hole = i;
+			int j = i;
+			while ( true )
+			{
+				j = ( j + 1 ) & mask;
+				final Object k = keys[ j ];
+				if ( null == k )
+					break;
+				final int home = slot( k );
+				// Move k if its home slot is not in ]hole, j].
+				if ( ( j > hole ) ? ( home <= hole || home > j ) : ( home <= hole && home > j ) )
+				{
+					keys[ hole ] = k;
+					values[ hole ] = values[ j ];
+					hole = j;
+				}
+			}
+			keys[ hole ] = null;
+		}
+
+		private void rehash( final int capacity )
+		{
+			final Object[] oldKeys = keys;
+			final int[] oldValues = values;
+			keys = new Object[ capacity ];
+			values = new int[ capacity ];
+			size = 0;
+			for ( int i = 0; i < oldKeys.length; i++ )
+			{
+				if ( null == oldKeys[ i ] )
+					continue;
+				@SuppressWarnings( "unchecked" )
+				final K k = ( K ) oldKeys[ i ];
+				put( k, oldValues[ i ] );
+			}
+		}
+	}
+}
@@ -48,7 +48,7 @@ import org.jfree.chart.renderer.xy.StandardXYBarPainter;
 import org.jfree.chart.renderer.xy.XYBarRenderer;
 
 import fiji.plugin.trackmate.features.FeatureFilter;
-import fiji.plugin.trackmate.util.TMUtils;
+import fiji.plugin.trackmate.features.FeatureValues;
 import fiji.util.NumberParser;
 
 /**
@@ -79,7 +79,7 @@ public class FilterPanel extends javax.swing.JPanel
 
 	private double threshold;
 
-	private final Function< String, double[] > valueCollector;
+	private final Function< String, FeatureValues > valueCollector;
 
 	private final XYTextSimpleAnnotation annotation;
 
@@ -98,7 +98,7 @@ public class FilterPanel extends javax.swing.JPanel
 
 	public FilterPanel(
 			final Map< String, String > keyNames,
-			final Function< String, double[] > valueCollector,
+			final Function< String, FeatureValues > valueCollector,
 			final FeatureFilter filter )
 	{
 		this.valueCollector = valueCollector;
@@ -309,10 +309,10 @@ public class FilterPanel extends javax.swing.JPanel
 	{
 		final double old = threshold;
 		final String key = ( String ) cmbboxFeatureKeys.getSelectedItem();
-		final double[] values = valueCollector.apply( key );
+		final FeatureValues values = valueCollector.apply( key );
 
 		final LogHistogramDataset dataset;
-		if ( null == values || 0 == values.length )
+		if ( null == values || values.isEmpty() )
 		{
 			dataset = new LogHistogramDataset();
 			annotation.setLocation( 0.5f, 0.5f );
@@ -320,10 +320,10 @@ public class FilterPanel extends javax.swing.JPanel
 		}
 		else
 		{
-			final int nBins = TMUtils.getNBins( values, 8, 100 );
+			final int nBins = values.nBins( 8, 100 );
 			dataset = new LogHistogramDataset();
 			if ( nBins > 1 )
-				dataset.addSeries( DATA_SERIES_NAME, values, nBins );
+				dataset.addSeries( DATA_SERIES_NAME, values.values(), nBins, values.min(), values.max() );
 		}
 		plot.setDataset( dataset );
 		threshold = old;
@@ -344,10 +344,10 @@ public class FilterPanel extends javax.swing.JPanel
 	private void comboBoxSelectionChanged()
 	{
 		final String key = ( String ) cmbboxFeatureKeys.getSelectedItem();
-		final double[] values = valueCollector.apply( key );
+		final FeatureValues values = valueCollector.apply( key );
 
 		final LogHistogramDataset dataset;
-		if ( null == values || 0 == values.length )
+		if ( null == values || values.isEmpty() )
 		{
 			dataset = new LogHistogramDataset();
 			threshold = Double.NaN;
@@ -357,11 +357,11 @@ public class FilterPanel extends javax.swing.JPanel
 		}
 		else
 		{
-			final int nBins = TMUtils.getNBins( values, 8, 100 );
+			final int nBins = values.nBins( 8, 100 );
 			dataset = new LogHistogramDataset();
 
 			if ( nBins > 1 )
-				dataset.addSeries( DATA_SERIES_NAME, values, nBins );
+				dataset.addSeries( DATA_SERIES_NAME, values.values(), nBins, values.min(), values.max() );
 		}
 		plot.setDataset( dataset );
 		resetAxes();
@@ -371,10 +371,10 @@ public class FilterPanel extends javax.swing.JPanel
 	private void autoThreshold()
 	{
 		final String key = ( String ) cmbboxFeatureKeys.getSelectedItem();
-		final double[] values = valueCollector.apply( key );
-		if ( null != values && values.length > 0 )
+		final FeatureValues values = valueCollector.apply( key );
+		if ( null != values && !values.isEmpty() )
 		{
-			threshold = TMUtils.otsuThreshold( values );
+			threshold = values.otsuThreshold();
 			redrawThresholdMarker();
 		}
 	}
@@ -387,11 +387,6 @@ public class FilterPanel extends javax.swing.JPanel
 
 	private void redrawThresholdMarker()
 	{
-		final String key = ( String ) cmbboxFeatureKeys.getSelectedItem();
-		final double[] values = valueCollector.apply( key );
-		if ( null == values )
-			return;
-
 		if ( rdbtnAbove.isSelected() )
 		{
 			intervalMarker.setStartValue( threshold );
@@ -1,7 +1,6 @@
 package fiji.plugin.trackmate.gui.panels.components;
 
 import static fiji.plugin.trackmate.features.FeatureUtils.collectFeatureKeys;
-import static fiji.plugin.trackmate.features.FeatureUtils.collectFeatureValues;
 import static fiji.plugin.trackmate.features.FeatureUtils.nObjects;
 import static fiji.plugin.trackmate.gui.TrackMateWizard.BIG_FONT;
 import static fiji.plugin.trackmate.gui.TrackMateWizard.SMALL_FONT;
@@ -34,6 +33,7 @@ import javax.swing.event.ChangeListener;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.features.FeatureFilter;
+import fiji.plugin.trackmate.features.FeatureValues;
 import fiji.plugin.trackmate.gui.FeatureDisplaySelector;
 import fiji.plugin.trackmate.gui.TrackMateWizard;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings.TrackMateObject;
@@ -246,7 +246,7 @@ public class FilterGuiPanel extends ActionListenablePanel implements ChangeListe
 	public void addFilterPanel( final FeatureFilter filter )
 	{
 		final Map< String, String > featureNames = collectFeatureKeys( target, model, settings );
-		final Function< String, double[] > valueCollector = ( featureKey ) -> collectFeatureValues( featureKey, target, model, settings, false );
+		final Function< String, FeatureValues > valueCollector = ( featureKey ) -> model.getFeatureIndex().get( target, featureKey, false );
 		final FilterPanel tp = new FilterPanel( featureNames, valueCollector, filter );
 
 		tp.addChangeListener( this );
@@ -30,6 +30,7 @@ import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.detection.DetectionUtils;
+import fiji.plugin.trackmate.detection.FilteredImageCache;
 import fiji.plugin.trackmate.detection.LogDetectorFactory;
 import fiji.plugin.trackmate.detection.SpotDetectorFactory;
 import fiji.plugin.trackmate.gui.ConfigurationPanel;
@@ -38,6 +39,10 @@ import fiji.plugin.trackmate.gui.TrackMateGUIController;
 import fiji.plugin.trackmate.util.JLabelLogger;
 import ij.ImagePlus;
 import ij.measure.Calibration;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.display.imagej.ImageJFunctions;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 /**
  * Configuration panel for spot detectors based on LoG detector.
@@ -58,6 +63,13 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 			+ "get rid of them later."
 			+ "</html>";
 
+	private static final String TOOLTIP_SHOW_FILTERED = "<html>"
+			+ "Show the filtered image of the last preview. "
+			+ "<p>"
+			+ "Spots are the local maxima of this image above <br>"
+			+ "the quality threshold."
+			+ "</html>";
+
 	private static final NumberFormat FORMAT = new DecimalFormat( "#.###" );
 
 	private static final ImageIcon ICON_PREVIEW = new ImageIcon( TrackMateGUIController.class.getResource( "images/flag_checked.png" ) );
@@ -68,12 +80,20 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 
 	protected JFormattedTextField ftfDiameter;
 
+	protected JLabel jLabelEstimDiameter;
+
 	protected JCheckBox jCheckSubPixel;
 
 	protected JSlider sliderChannel;
 
 	private final ImagePlus imp;
 
+	/**
+	 * The filtered image of the last preview, reused when only the quality
+	 * threshold or the sub-pixel localization change.
+	 */
+	private final FilteredImageCache filteredImageCache = new FilteredImageCache( KEY_THRESHOLD, KEY_DO_SUBPIXEL_LOCALIZATION );
+
 	/*
 	 * CONSTRUCTOR
 	 */
@@ -169,7 +189,7 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 		gbcLabelChannel.gridy = 4;
 		add( labelChannel, gbcLabelChannel );
 
-		final JLabel jLabelEstimDiameter = new JLabel();
+		jLabelEstimDiameter = new JLabel();
 		final GridBagConstraints gbc_jLabel2 = new GridBagConstraints();
 		gbc_jLabel2.anchor = GridBagConstraints.EAST;
 		gbc_jLabel2.insets = new Insets( 5, 5, 5, 5 );
@@ -278,6 +298,16 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 		this.add( btnPreview, gbcBtnPreview );
 		btnPreview.setFont( SMALL_FONT );
 
+		final JButton btnShowFiltered = new JButton( "Show filtered" );
+		btnShowFiltered.setToolTipText( TOOLTIP_SHOW_FILTERED );
+		final GridBagConstraints gbcBtnShowFiltered = new GridBagConstraints();
+		gbcBtnShowFiltered.anchor = GridBagConstraints.NORTHWEST;
+		gbcBtnShowFiltered.insets = new Insets( 5, 5, 5, 5 );
+		gbcBtnShowFiltered.gridx = 0;
+		gbcBtnShowFiltered.gridy = 10;
+		this.add( btnShowFiltered, gbcBtnShowFiltered );
+		btnShowFiltered.setFont( SMALL_FONT );
+
 		final JLabelLogger labelLogger = new JLabelLogger();
 		labelLogger.setText( "   " );
 		final GridBagConstraints gbcLabelLogger = new GridBagConstraints();
@@ -323,7 +353,15 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 				getSettings(),
 				settings.imp.getFrame() - 1,
 				localLogger,
-				b -> btnPreview.setEnabled( b ) ) );
+				b -> btnPreview.setEnabled( b ),
+				filteredImageCache ) );
+		btnShowFiltered.addActionListener( e -> {
+			final RandomAccessibleInterval< FloatType > filtered = filteredImageCache.getFilteredImage();
+			if ( null == filtered )
+				localLogger.error( "Run a preview first." );
+			else
+				ImageJFunctions.show( Views.zeroMin( filtered ), "Filtered " + imp.getShortTitle() );
+		} );
 		GuiUtils.selectAllOnFocus( ftfDiameter );
 		GuiUtils.selectAllOnFocus( ftfQualityThreshold );
 	}
@@ -392,5 +430,7 @@ public class LogDetectorConfigurationPanel extends ConfigurationPanel
 
 	@Override
 	public void clean()
-	{}
+	{
+		filteredImageCache.clear();
+	}
 }
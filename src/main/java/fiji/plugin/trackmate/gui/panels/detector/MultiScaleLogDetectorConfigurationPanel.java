@@ -0,0 +1,130 @@
+package fiji.plugin.trackmate.gui.panels.detector;
+
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_MAX_RADIUS;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_N_SCALES;
+import static fiji.plugin.trackmate.gui.TrackMateWizard.SMALL_FONT;
+
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.text.DecimalFormat;
+import java.util.Map;
+
+import javax.swing.JFormattedTextField;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.detection.MultiScaleLogDetectorFactory;
+import fiji.plugin.trackmate.detection.SpotDetectorFactory;
+import fiji.plugin.trackmate.gui.GuiUtils;
+
+/**
+ * Configuration panel for the multi-scale LoG detector. Adds the largest
+ * object diameter and the number of scales to the LoG detector settings, the
+ * diameter of which becomes the smallest one searched.
+ */
+public class MultiScaleLogDetectorConfigurationPanel extends LogDetectorConfigurationPanel
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private final JFormattedTextField ftfMaxDiameter;
+
+	private final JFormattedTextField ftfNScales;
+
+	public MultiScaleLogDetectorConfigurationPanel( final Settings settings, final Model model, final String infoText, final String detectorName )
+	{
+		super( settings, model, infoText, detectorName );
+		jLabelEstimDiameter.setText( "Smallest object diameter:" );
+
+		final JPanel panelScales = new JPanel();
+		final GridBagLayout gblScales = new GridBagLayout();
+		gblScales.columnWeights = new double[] { 0.0, 1.0, 0.0 };
+		panelScales.setLayout( gblScales );
+		final GridBagConstraints gbcPanelScales = new GridBagConstraints();
+		gbcPanelScales.anchor = GridBagConstraints.NORTH;
+		gbcPanelScales.fill = GridBagConstraints.HORIZONTAL;
+		gbcPanelScales.gridwidth = 4;
+		gbcPanelScales.gridx = 0;
+		gbcPanelScales.gridy = 9;
+		add( panelScales, gbcPanelScales );
+
+		final JLabel lblMaxDiameter = new JLabel( "Largest object diameter:" );
+		lblMaxDiameter.setFont( SMALL_FONT );
+		final GridBagConstraints gbcLblMaxDiameter = new GridBagConstraints();
+		gbcLblMaxDiameter.anchor = GridBagConstraints.EAST;
+		gbcLblMaxDiameter.insets = new Insets( 5, 5, 5, 5 );
+		gbcLblMaxDiameter.gridx = 0;
+		gbcLblMaxDiameter.gridy = 0;
+		panelScales.add( lblMaxDiameter, gbcLblMaxDiameter );
+
+		ftfMaxDiameter = new JFormattedTextField( new DecimalFormat( "#.###" ) );
+		ftfMaxDiameter.setHorizontalAlignment( SwingConstants.CENTER );
+		ftfMaxDiameter.setValue( Double.valueOf( 20. ) );
+		ftfMaxDiameter.setFont( SMALL_FONT );
+		final GridBagConstraints gbcFtfMaxDiameter = new GridBagConstraints();
+		gbcFtfMaxDiameter.fill = GridBagConstraints.HORIZONTAL;
+		gbcFtfMaxDiameter.insets = new Insets( 5, 5, 5, 5 );
+		gbcFtfMaxDiameter.gridx = 1;
+		gbcFtfMaxDiameter.gridy = 0;
+		panelScales.add( ftfMaxDiameter, gbcFtfMaxDiameter );
+
+		final JLabel lblMaxDiameterUnit = new JLabel( "pixels" );
+		lblMaxDiameterUnit.setFont( SMALL_FONT );
+		final GridBagConstraints gbcLblMaxDiameterUnit = new GridBagConstraints();
+		gbcLblMaxDiameterUnit.anchor = GridBagConstraints.WEST;
+		gbcLblMaxDiameterUnit.insets = new Insets( 5, 5, 5, 5 );
+		gbcLblMaxDiameterUnit.gridx = 2;
+		gbcLblMaxDiameterUnit.gridy = 0;
+		panelScales.add( lblMaxDiameterUnit, gbcLblMaxDiameterUnit );
+
+		final JLabel lblNScales = new JLabel( "Number of scales:" );
+		lblNScales.setFont( SMALL_FONT );
+		final GridBagConstraints gbcLblNScales = new GridBagConstraints();
+		gbcLblNScales.anchor = GridBagConstraints.EAST;
+		gbcLblNScales.insets = new Insets( 5, 5, 5, 5 );
+		gbcLblNScales.gridx = 0;
+		gbcLblNScales.gridy = 1;
+		panelScales.add( lblNScales, gbcLblNScales );
+
+		ftfNScales = new JFormattedTextField( Integer.valueOf( 5 ) );
+		ftfNScales.setHorizontalAlignment( SwingConstants.CENTER );
+		ftfNScales.setFont( SMALL_FONT );
+		final GridBagConstraints gbcFtfNScales = new GridBagConstraints();
+		gbcFtfNScales.fill = GridBagConstraints.HORIZONTAL;
+		gbcFtfNScales.insets = new Insets( 5, 5, 5, 5 );
+		gbcFtfNScales.gridx = 1;
+		gbcFtfNScales.gridy = 1;
+		panelScales.add( ftfNScales, gbcFtfNScales );
+
+		GuiUtils.selectAllOnFocus( ftfMaxDiameter );
+		GuiUtils.selectAllOnFocus( ftfNScales );
+	}
+
+	@Override
+	public Map< String, Object > getSettings()
+	{
+		final Map< String, Object > lSettings = super.getSettings();
+		lSettings.put( KEY_MAX_RADIUS, ( ( Number ) ftfMaxDiameter.getValue() ).doubleValue() / 2. );
+		lSettings.put( KEY_N_SCALES, ( ( Number ) ftfNScales.getValue() ).intValue() );
+		return lSettings;
+	}
+
+	@Override
+	public void setSettings( final Map< String, Object > settings )
+	{
+		super.setSettings( settings );
+		ftfMaxDiameter.setText( "" + ( 2 * ( Double ) settings.get( KEY_MAX_RADIUS ) ) );
+		ftfNScales.setText( "" + settings.get( KEY_N_SCALES ) );
+	}
+
+	@SuppressWarnings( "rawtypes" )
+	@Override
+	protected SpotDetectorFactory< ? > getDetectorFactory()
+	{
+		return new MultiScaleLogDetectorFactory();
+	}
+}
@@ -57,7 +57,6 @@ import static fiji.plugin.trackmate.io.TmXmlKeys.SETTINGS_ELEMENT_KEY;
 import static fiji.plugin.trackmate.io.TmXmlKeys.SPATIAL_UNITS_ATTRIBUTE_NAME;
 import static fiji.plugin.trackmate.io.TmXmlKeys.SPOT_ANALYSERS_ELEMENT_KEY;
 import static fiji.plugin.trackmate.io.TmXmlKeys.SPOT_COLLECTION_ELEMENT_KEY;
-import static fiji.plugin.trackmate.io.TmXmlKeys.SPOT_COLLECTION_NSPOTS_ATTRIBUTE_NAME;
 import static fiji.plugin.trackmate.io.TmXmlKeys.SPOT_ELEMENT_KEY;
 import static fiji.plugin.trackmate.io.TmXmlKeys.SPOT_FEATURES_ELEMENT_KEY;
 import static fiji.plugin.trackmate.io.TmXmlKeys.SPOT_FILTER_COLLECTION_ELEMENT_KEY;
@@ -86,7 +85,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.jdom2.Attribute;
 import org.jdom2.DataConversionException;
@@ -143,17 +141,6 @@ public class TmXmlReader
 
 	protected final File file;
 
-	/**
-	 * A map of all spots loaded. We need this for performance, since we need to
-	 * recreate both the filtered spot collection and the tracks graph from the
-	 * same spot objects that the main spot collection.. In the file, they are
-	 * referenced by their {@link Spot#ID()}, and parsing them all to retrieve
-	 * the one with the right ID is a drag. We made this cache a
-	 * {@link ConcurrentHashMap} because we hope to load large data in a
-	 * multi-threaded way.
-	 */
-	protected ConcurrentHashMap< Integer, Spot > cache;
-
 	protected StringBuilderLogger logger = new StringBuilderLogger();
 
 	protected final Element root;
@@ -853,12 +840,8 @@ public class TmXmlReader
 	/**
 	 * Read the list of all spots stored in this file.
 	 * <p>
-	 * Internally, this methods also builds the cache field, which will be
-	 * required by the other methods.
-	 *
-	 * It is therefore sensible to call this method first, just after parsing
-	 * the file. If not called, this method will be called anyway by the other
-	 * methods to build the cache.
+	 * The returned collection indexes its spots by ID, which is what the other
+	 * methods use to resolve the spots referenced by edges.
 	 *
 	 * @param modelElement
 	 *            the {@link Element} in which the model content was written.
@@ -872,22 +855,7 @@ public class TmXmlReader
 		// Retrieve children elements for each frame
 		final List< Element > frameContent = spotCollection.getChildren( SPOT_FRAME_COLLECTION_ELEMENT_KEY );
 
-		// Determine total number of spots
-		int nspots = readIntAttribute( spotCollection, SPOT_COLLECTION_NSPOTS_ATTRIBUTE_NAME, Logger.VOID_LOGGER );
-		if ( nspots == 0 )
-		{
-			/*
-			 * Could not find it or read it. Determine it by quick sweeping
-			 * through children element.
-			 */
-			for ( final Element currentFrameContent : frameContent )
-				nspots += currentFrameContent.getChildren( SPOT_ELEMENT_KEY ).size();
-		}
-
-		// Instantiate cache
-		cache = new ConcurrentHashMap<>( nspots );
-
-		// Load collection and build cache
+		// Load collection
 		int currentFrame = 0;
 		final Map< Integer, Set< Spot > > content = new HashMap<>( frameContent.size() );
 		for ( final Element currentFrameContent : frameContent )
@@ -900,7 +868,6 @@ public class TmXmlReader
 			{
 				final Spot spot = createSpotFrom( spotElement );
 				spotSet.add( spot );
-				cache.put( spot.ID(), spot );
 			}
 			content.put( currentFrame, spotSet );
 		}
@@ -953,9 +920,9 @@ public class TmXmlReader
 				final int sourceID = readIntAttribute( edgeElement, EdgeTargetAnalyzer.SPOT_SOURCE_ID, logger );
 				final int targetID = readIntAttribute( edgeElement, EdgeTargetAnalyzer.SPOT_TARGET_ID, logger );
 
-				// Get matching spots from the cache
-				final Spot sourceSpot = cache.get( sourceID );
-				final Spot targetSpot = cache.get( targetID );
+				// Get matching spots from the spot collection ID index
+				final Spot sourceSpot = model.getSpot( sourceID );
+				final Spot targetSpot = model.getSpot( targetID );
 
 				// Get weight
 				double weight = 0;
@@ -233,4 +233,37 @@ public class TrackerKeys
 
 	/** A default value for the {@value #KEY_BLOCKING_VALUE} parameter. */
 	public static final double DEFAULT_BLOCKING_VALUE = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Key for the parameter that selects the solver of the linear assignment
+	 * problems of the sparse LAP trackers. Expected values are
+	 * {@link String}s, among {@value #LAP_SOLVER_AUTO},
+	 * {@value #LAP_SOLVER_JONKER_VOLGENANT} and {@value #LAP_SOLVER_AUCTION}.
+	 * This parameter is optional.
+	 */
+	public static final String KEY_LAP_SOLVER = "LAP_SOLVER";
+
+	/**
+	 * Value of the {@value #KEY_LAP_SOLVER} parameter that selects the solver
+	 * depending on the size and density of each cost matrix.
+	 */
+	public static final String LAP_SOLVER_AUTO = "AUTO";
+
+	/**
+	 * Value of the {@value #KEY_LAP_SOLVER} parameter that selects the
+	 * Jonker-Volgenant solver.
+	 */
+	public static final String LAP_SOLVER_JONKER_VOLGENANT = "JONKER_VOLGENANT";
+
+	/**
+	 * Value of the {@value #KEY_LAP_SOLVER} parameter that selects the
+	 * parallel auction solver.
+	 */
+	public static final String LAP_SOLVER_AUCTION = "AUCTION";
+
+	/**
+	 * A default value for the {@value #KEY_LAP_SOLVER} parameter. The auction
+	 * solver is only used if selected explicitly.
+	 */
+	public static final String DEFAULT_LAP_SOLVER = LAP_SOLVER_JONKER_VOLGENANT;
 }
@@ -0,0 +1,31 @@
+package fiji.plugin.trackmate.tracking.sparselap.costmatrix;
+
+import java.util.function.Consumer;
+
+/**
+ * Interface for a search of the targets a source can be linked to. It is used
+ * by cost matrix creators to skip the source-target pairs whose cost is known
+ * to be above the cost threshold, without computing it.
+ *
+ * @param <K>
+ *            the type of the sources.
+ * @param <J>
+ *            the type of the targets.
+ */
+public interface CandidateSearch< K, J >
+{
+
+	/**
+	 * Passes to the specified action the targets that can be linked to a
+	 * source with a cost below the cost threshold. Some of them may still have
+	 * a cost above the threshold, but no target with a lower cost may be
+	 * missed. Each target is passed at most once.
+	 *
+	 * @param source
+	 *            the source.
+	 * @param action
+	 *            the action to run on each candidate target.
+	 */
+	public void forEachCandidate( K source, Consumer< J > action );
+
+}
@@ -0,0 +1,245 @@
+package fiji.plugin.trackmate.tracking.sparselap.costmatrix;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.CostFunction;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.FeaturePenaltyCostFunction;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.SquareDistCostFunction;
+import net.imglib2.RealLocalizable;
+
+/**
+ * A {@link CandidateSearch} that returns the targets within a search radius of
+ * the source, using a uniform grid over the targets.
+ * <p>
+ * The targets are binned in cubic cells whose size is at least the search
+ * radius, so that the candidates of a source are in the 3x3x3 cells around
+ * it. The targets are sorted by cell, and the targets of a row of 3 cells are
+ * found by binary search, so that the search costs <code>O(log M)</code> plus
+ * the number of targets in the neighboring cells, instead of
+ * <code>O(M)</code>.
+ * <p>
+ * It suits cost functions that are never smaller than the square distance
+ * between the source and the target, with a cost threshold equal to the
+ * square of the search radius, such as the square distance. See
+ * {@link #isBoundedBySquareDistance(CostFunction, Map, Iterable)}.
+ *
+ * @param <K>
+ *            the type of the sources.
+ * @param <J>
+ *            the type of the targets.
+ */
+public class GridCandidateSearch< K extends RealLocalizable, J extends RealLocalizable > implements CandidateSearch< K, J >
+{
+
+	/**
+	 * Max number of cells along a dimension. Cells are made larger than the
+	 * search radius if the targets span more.
+	 */
+	private static final int MAX_CELLS = 1 << 10;
+
+	private final int n;
+
+	private final double radius2;
+
+	private final double[] min = new double[ 3 ];
+
+	private final double cellSize;
+
+	private final int[] nCells = new int[] { 1, 1, 1 };
+
+	/** The targets, sorted by cell. */
+	private final Object[] targets;
+
+	/** The cell keys of the sorted targets, in ascending order. */
+	private final int[] keys;
+
+	/** The positions of the sorted targets, 3 per target. */
+	private final double[] positions;
+
+	/**
+	 * Creates a search over the specified targets.
+	 *
+	 * @param targets
+	 *            the targets. They must have at most 3 dimensions.
+	 * @param radius
+	 *            the search radius. Only the targets not farther than this
+	 *            distance from a source are returned.
+	 */
+	public GridCandidateSearch( final Collection< J > targets, final double radius )
+	{
+		this.radius2 = radius * radius;
+		this.n = targets.isEmpty() ? 0 : Math.min( 3, targets.iterator().next().numDimensions() );
+
+		final double[] max = new double[ 3 ];
+		Arrays.fill( min, Double.POSITIVE_INFINITY );
+		Arrays.fill( max, Double.NEGATIVE_INFINITY );
+		for ( final J target : targets )
+		{
+			for ( int d = 0; d < n; d++ )
+			{
+				final double x = target.getDoublePosition( d );
+				min[ d ] = Math.min( min[ d ], x );
+				max[ d ] = Math.max( max[ d ], x );
+			}
+		}
+
+		double extent = 0.;
+		for ( int d = 0; d < n; d++ )
+			extent = Math.max( extent, max[ d ] - min[ d ] );
+		final double size = Math.max( radius, extent / MAX_CELLS );
+		this.cellSize = ( size > 0 && !Double.isNaN( size ) ) ? size : Double.POSITIVE_INFINITY;
+		for ( int d = 0; d < n; d++ )
+			nCells[ d ] = Math.min( MAX_CELLS, cell( max[ d ], d ) + 1 );
+
+		// Sort the targets by cell key, with their index in the low bits.
+		final Object[] input = targets.toArray();
+		final long[] sorted = new long[ input.length ];
+		for ( int i = 0; i < input.length; i++ )
+			sorted[ i ] = ( ( long ) key( ( RealLocalizable ) input[ i ] ) << 32 ) | i;
+		Arrays.sort( sorted );
+
+		this.targets = new Object[ input.length ];
+		this.keys = new int[ input.length ];
+		this.positions = new double[ 3 * input.length ];
+		for ( int i = 0; i < sorted.length; i++ )
+		{
+			final RealLocalizable target = ( RealLocalizable ) input[ ( int ) sorted[ i ] ];
+			this.targets[ i ] = target;
+			this.keys[ i ] = ( int ) ( sorted[ i ] >>> 32 );
+			for ( int d = 0; d < n; d++ )
+				positions[ 3 * i + d ] = target.getDoublePosition( d );
+		}
+	}
+
+	@Override
+	public void forEachCandidate( final K source, final Consumer< J > action )
+	{
+		final double[] pos = new double[ 3 ];
+		final int[] c = new int[ 3 ];
+		for ( int d = 0; d < n; d++ )
+		{
+			pos[ d ] = source.getDoublePosition( d );
+			c[ d ] = cell( pos[ d ], d );
+		}
+
+		final int x0 = Math.max( 0, c[ 0 ] - 1 );
+		final int x1 = Math.min( nCells[ 0 ] - 1, c[ 0 ] + 1 );
+		final int y0 = Math.max( 0, c[ 1 ] - 1 );
+		final int y1 = Math.min( nCells[ 1 ] - 1, c[ 1 ] + 1 );
+		final int z0 = Math.max( 0, c[ 2 ] - 1 );
+		final int z1 = Math.min( nCells[ 2 ] - 1, c[ 2 ] + 1 );
+		if ( z0 > z1 )
+			return;
+
+		for ( int cx = x0; cx <= x1; cx++ )
+		{
+			for ( int cy = y0; cy <= y1; cy++ )
+			{
+				// Cells along Z are contiguous in the key order.
+				final int rowKey = ( cx * nCells[ 1 ] + cy ) * nCells[ 2 ];
+				for ( int i = lowerBound( rowKey + z0 ); i < keys.length && keys[ i ] <= rowKey + z1; i++ )
+				{
+					double d2 = 0.;
+					for ( int d = 0; d < n; d++ )
+					{
+						final double dx = positions[ 3 * i + d ] - pos[ d ];
+						d2 += dx * dx;
+					}
+					if ( d2 <= radius2 )
+					{
+						@SuppressWarnings( "unchecked" )
+						final J target = ( J ) targets[ i ];
+						action.accept( target );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified cost function is never
+	 * smaller than the square distance between the specified spots, so that
+	 * this search does not miss any link with a cost below the square of its
+	 * radius.
+	 * <p>
+	 * This is the case of the square distance. This is also the case of the
+	 * square distance penalized with non-negative factors, if the penalized
+	 * feature values are not negative: the normalized difference of a feature
+	 * is negative when the sum of its two values is negative, and the penalty
+	 * could then make the cost smaller than the square distance.
+	 *
+	 * @param costFunction
+	 *            the cost function.
+	 * @param featurePenalties
+	 *            the feature penalties of the cost function, possibly
+	 *            <code>null</code>.
+	 * @param spots
+	 *            all the sources and targets the cost function will be
+	 *            evaluated on.
+	 * @return <code>true</code> if the search can be used with this cost
+	 *         function.
+	 */
+	public static boolean isBoundedBySquareDistance( final CostFunction< ?, ? > costFunction, final Map< String, Double > featurePenalties, final Iterable< Spot > spots )
+	{
+		if ( costFunction.getClass() == SquareDistCostFunction.class )
+			return true;
+		if ( costFunction.getClass() != FeaturePenaltyCostFunction.class || null == featurePenalties )
+			return false;
+		for ( final Double factor : featurePenalties.values() )
+			if ( null == factor || factor < 0. )
+				return false;
+		for ( final Spot spot : spots )
+		{
+			for ( final String feature : featurePenalties.keySet() )
+			{
+				// NaN values are ignored by the cost function.
+				final Double val = spot.getFeature( feature );
+				if ( null == val || val < 0. )
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the cell of a position along a dimension, possibly outside of
+	 * the grid.
+	 */
+	private int cell( final double x, final int d )
+	{
+		final double c = Math.floor( ( x - min[ d ] ) / cellSize );
+		// Clamp far away positions, their neighbor cells are still outside.
+		return ( int ) Math.max( -2, Math.min( MAX_CELLS + 1, c ) );
+	}
+
+	private int key( final RealLocalizable target )
+	{
+		int key = 0;
+		for ( int d = 0; d < 3; d++ )
+			key = key * nCells[ d ] + ( d < n ? Math.min( nCells[ d ] - 1, cell( target.getDoublePosition( d ), d ) ) : 0 );
+		return key;
+	}
+
+	/**
+	 * Returns the index of the first sorted target whose key is not smaller
+	 * than the specified key.
+	 */
+	private int lowerBound( final int key )
+	{
+		int lo = 0;
+		int hi = keys.length;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( keys[ mid ] < key )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
@@ -46,7 +46,37 @@ public class JaqamanLinkingCostMatrixCreator< K extends Comparable< K >, J exten
 
 	private final double percentile;
 
+	private final CandidateSearch< K, J > candidateSearch;
+
 	public JaqamanLinkingCostMatrixCreator( final Iterable< K > sources, final Iterable< J > targets, final CostFunction< K, J > costFunction, final double costThreshold, final double alternativeCostFactor, final double percentile )
+	{
+		this( sources, targets, costFunction, costThreshold, alternativeCostFactor, percentile, null );
+	}
+
+	/**
+	 * Creates a cost matrix creator that only computes the cost of the
+	 * source-target pairs returned by a candidate search.
+	 *
+	 * @param sources
+	 *            the sources.
+	 * @param targets
+	 *            the targets.
+	 * @param costFunction
+	 *            the cost function.
+	 * @param costThreshold
+	 *            the cost above which links are rejected.
+	 * @param alternativeCostFactor
+	 *            the factor of the alternative cost.
+	 * @param percentile
+	 *            the percentile of the accepted costs the alternative cost is
+	 *            computed from.
+	 * @param candidateSearch
+	 *            the search of the targets each source can be linked to. It
+	 *            must not miss targets with a cost below the threshold. If
+	 *            <code>null</code>, all the source-target pairs are
+	 *            evaluated.
+	 */
+	public JaqamanLinkingCostMatrixCreator( final Iterable< K > sources, final Iterable< J > targets, final CostFunction< K, J > costFunction, final double costThreshold, final double alternativeCostFactor, final double percentile, final CandidateSearch< K, J > candidateSearch )
 	{
 		this.sources = sources;
 		this.targets = targets;
@@ -54,6 +84,7 @@ public class JaqamanLinkingCostMatrixCreator< K extends Comparable< K >, J exten
 		this.costThreshold = costThreshold;
 		this.alternativeCostFactor = alternativeCostFactor;
 		this.percentile = percentile;
+		this.candidateSearch = candidateSearch;
 	}
 
 	@Override
@@ -83,6 +114,20 @@ public class JaqamanLinkingCostMatrixCreator< K extends Comparable< K >, J exten
 
 		for ( final K source : sources )
 		{
+			if ( null != candidateSearch )
+			{
+				candidateSearch.forEachCandidate( source, target -> {
+					final double cost = costFunction.linkingCost( source, target );
+					if ( cost < costThreshold )
+					{
+						accSources.add( source );
+						accTargets.add( target );
+						costs.add( cost );
+					}
+				} );
+				continue;
+			}
+
 			for ( final J target : targets )
 			{
 
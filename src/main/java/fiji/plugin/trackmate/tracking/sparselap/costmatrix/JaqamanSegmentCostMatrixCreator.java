@@ -9,6 +9,7 @@ import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_CUTOFF_PERCENTILE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_DISTANCE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_FRAME_GAP;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LAP_SOLVER;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_FEATURE_PENALTIES;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_MAX_DISTANCE;
 import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_FEATURE_PENALTIES;
@@ -22,12 +23,17 @@ import fiji.plugin.trackmate.tracking.sparselap.costfunction.SquareDistCostFunct
 import fiji.plugin.trackmate.tracking.sparselap.linker.SparseCostMatrix;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 
 import net.imglib2.algorithm.MultiThreaded;
 import org.jgrapht.Graph;
@@ -120,7 +126,8 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		final int maxFrameInterval = ( Integer ) settings.get( KEY_GAP_CLOSING_MAX_FRAME_GAP );
 		final double gcMaxDistance = ( Double ) settings.get( KEY_GAP_CLOSING_MAX_DISTANCE );
 		final double gcCostThreshold = gcMaxDistance * gcMaxDistance;
-		final boolean allowGapClosing = ( Boolean ) settings.get( KEY_ALLOW_GAP_CLOSING );
+		// No frame can be reached if the max frame gap is smaller than 1.
+		final boolean allowGapClosing = ( Boolean ) settings.get( KEY_ALLOW_GAP_CLOSING ) && maxFrameInterval >= 1;
 
 		// Merging
 		@SuppressWarnings( "unchecked" )
@@ -181,162 +188,84 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 			allMiddles = Collections.emptyList();
 		}
 
-		final Object lock = new Object();
-
 		/*
-		 * Sources and targets.
+		 * Index the targets by frame, then by position within each frame.
 		 */
-		final ArrayList< Spot > sources = new ArrayList< >();
-		final ArrayList< Spot > targets = new ArrayList< >();
-		// Corresponding costs.
-		final ResizableDoubleArray linkCosts = new ResizableDoubleArray();
+
+		final TreeMap< Integer, CandidateSearch< Spot, Spot > > gcStarts = allowGapClosing ? index( segmentStarts, gcMaxDistance, gcCostFunction, gcFeaturePenalties, graph.vertexSet() ) : null;
+		final TreeMap< Integer, CandidateSearch< Spot, Spot > > mMiddles = allowMerging ? index( allMiddles, mMaxDistance, mCostFunction, mFeaturePenalties, graph.vertexSet() ) : null;
+		final TreeMap< Integer, CandidateSearch< Spot, Spot > > sStarts = allowSplitting ? index( segmentStarts, sMaxDistance, sCostFunction, sFeaturePenalties, graph.vertexSet() ) : null;
 
 		/*
-		 * A. We iterate over all segment ends, targeting 1st the segment starts
-		 * (gap-closing) then the segment middles (merging).
+		 * Sources, targets and corresponding costs, collected per block of
+		 * sources.
 		 */
+		final List< LinkBuffer > buffers = new ArrayList<>();
 
-		final ExecutorService executorGCM = Executors.newFixedThreadPool( numThreads );
-		for ( final Spot source : segmentEnds )
+		try
 		{
-			executorGCM.submit( new Runnable()
+			/*
+			 * A. Segment ends targeting segment starts in the next frames -
+			 * GAP-CLOSING.
+			 */
+			if ( allowGapClosing )
 			{
-				@Override
-				public void run()
-				{
+				buffers.addAll( collect( segmentEnds, ( source, buffer ) -> {
 					final int sourceFrame = source.getFeature( Spot.FRAME ).intValue();
+					for ( final CandidateSearch< Spot, Spot > search : gcStarts.subMap( sourceFrame + 1, true, sourceFrame + maxFrameInterval, true ).values() )
+						search.forEachCandidate( source, target -> buffer.add( source, target, gcCostFunction.linkingCost( source, target ), gcCostThreshold ) );
+				} ) );
+			}
 
-					/*
-					 * Iterate over segment starts - GAP-CLOSING.
-					 */
-
-					if ( allowGapClosing )
-					{
-						for ( final Spot target : segmentStarts )
-						{
-							// Check frame interval, must be within user
-							// specification.
-							final int targetFrame = target.getFeature( Spot.FRAME ).intValue();
-							final int tdiff = targetFrame - sourceFrame;
-							if ( tdiff < 1 || tdiff > maxFrameInterval )
-							{
-								continue;
-							}
-
-							// Check max distance
-							final double cost = gcCostFunction.linkingCost( source, target );
-							if ( cost > gcCostThreshold )
-							{
-								continue;
-							}
-
-							synchronized ( lock )
-							{
-								sources.add( source );
-								targets.add( target );
-								linkCosts.add( cost );
-							}
-						}
-					}
-
-					/*
-					 * Iterate over middle points - MERGING.
-					 */
-
-					if ( allowMerging )
-					{
-						for ( final Spot target : allMiddles )
-						{
-							// Check frame interval, must be 1.
-							final int targetFrame = target.getFeature( Spot.FRAME ).intValue();
-							final int tdiff = targetFrame - sourceFrame;
-							if ( tdiff != 1 )
-							{
-								continue;
-							}
-
-							// Check max distance
-							final double cost = mCostFunction.linkingCost( source, target );
-							if ( cost > mCostThreshold )
-							{
-								continue;
-							}
-
-							synchronized ( lock )
-							{
-								sources.add( source );
-								targets.add( target );
-								linkCosts.add( cost );
-							}
-						}
-					}
-				}
-			} );
-		}
-		executorGCM.shutdown();
-		try
-		{
-			executorGCM.awaitTermination( 1, TimeUnit.DAYS );
+			/*
+			 * B. Segment ends targeting middle points in the next frame -
+			 * MERGING.
+			 */
+			if ( allowMerging )
+			{
+				buffers.addAll( collect( segmentEnds, ( source, buffer ) -> {
+					final CandidateSearch< Spot, Spot > search = mMiddles.get( source.getFeature( Spot.FRAME ).intValue() + 1 );
+					if ( null != search )
+						search.forEachCandidate( source, target -> buffer.add( source, target, mCostFunction.linkingCost( source, target ), mCostThreshold ) );
+				} ) );
+			}
+
+			/*
+			 * C. Middle points targeting segment starts in the next frame -
+			 * SPLITTING.
+			 */
+			if ( allowSplitting )
+			{
+				buffers.addAll( collect( allMiddles, ( source, buffer ) -> {
+					final CandidateSearch< Spot, Spot > search = sStarts.get( source.getFeature( Spot.FRAME ).intValue() + 1 );
+					if ( null != search )
+						search.forEachCandidate( source, target -> buffer.add( source, target, sCostFunction.linkingCost( source, target ), sCostThreshold ) );
+				} ) );
+			}
 		}
-		catch ( final InterruptedException e )
+		catch ( InterruptedException | ExecutionException e )
 		{
 			errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
 			return false;
 		}
 
-		/*
-		 * Iterate over middle points targeting segment starts - SPLITTING
-		 */
-		if ( allowSplitting )
+		// Merge the buffers.
+		int nLinks = 0;
+		for ( final LinkBuffer buffer : buffers )
+			nLinks += buffer.size;
+		final List< Spot > sources = new ArrayList<>( nLinks );
+		final List< Spot > targets = new ArrayList<>( nLinks );
+		final double[] linkCosts = new double[ nLinks ];
+		int index = 0;
+		for ( final LinkBuffer buffer : buffers )
 		{
-			final ExecutorService executorS = Executors.newFixedThreadPool( numThreads );
-			for ( final Spot source : allMiddles )
-			{
-				executorS.submit( new Runnable()
-				{
-					@Override
-					public void run()
-					{
-						final int sourceFrame = source.getFeature( Spot.FRAME ).intValue();
-						for ( final Spot target : segmentStarts )
-						{
-							// Check frame interval, must be 1.
-							final int targetFrame = target.getFeature( Spot.FRAME ).intValue();
-							final int tdiff = targetFrame - sourceFrame;
-
-							if ( tdiff != 1 )
-							{
-								continue;
-							}
-
-							// Check max distance
-							final double cost = sCostFunction.linkingCost( source, target );
-							if ( cost > sCostThreshold )
-							{
-								continue;
-							}
-							synchronized ( lock )
-							{
-								sources.add( source );
-								targets.add( target );
-								linkCosts.add( cost );
-							}
-						}
-					}
-				}
-						);
-			}
-			executorS.shutdown();
-			try
-			{
-				executorS.awaitTermination( 1, TimeUnit.DAYS );
-			}
-			catch ( final InterruptedException e )
+			for ( int i = 0; i < buffer.size; i++ )
 			{
-				errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
+				sources.add( buffer.sources[ i ] );
+				targets.add( buffer.targets[ i ] );
+				linkCosts[ index++ ] = buffer.costs[ i ];
 			}
 		}
-		linkCosts.trimToSize();
 
 		/*
 		 * Build a sparse cost matrix from this. If the accepted costs are not
@@ -356,7 +285,7 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		else
 		{
 
-			final DefaultCostMatrixCreator< Spot, Spot > creator = new DefaultCostMatrixCreator< >( sources, targets, linkCosts.data, alternativeCostFactor, percentile );
+			final DefaultCostMatrixCreator< Spot, Spot > creator = new DefaultCostMatrixCreator< >( sources, targets, linkCosts, alternativeCostFactor, percentile );
 			if ( !creator.checkInput() || !creator.process() )
 			{
 				errorMessage = "Linking track segments: " + creator.getErrorMessage();
@@ -377,6 +306,75 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		return true;
 	}
 
+	/**
+	 * Groups the specified spots by frame, and indexes the spots of each
+	 * frame for the search of the candidates within the specified distance.
+	 * If the cost function may be smaller than the square distance between
+	 * any of the specified linked spots, all the spots of a frame are
+	 * candidates.
+	 */
+	private static TreeMap< Integer, CandidateSearch< Spot, Spot > > index( final List< Spot > spots, final double maxDistance, final CostFunction< Spot, Spot > costFunction, final Map< String, Double > featurePenalties, final Iterable< Spot > linked )
+	{
+		final Map< Integer, List< Spot > > frames = new HashMap<>();
+		for ( final Spot spot : spots )
+			frames.computeIfAbsent( spot.getFeature( Spot.FRAME ).intValue(), frame -> new ArrayList<>() ).add( spot );
+
+		final boolean useGrid = GridCandidateSearch.isBoundedBySquareDistance( costFunction, featurePenalties, linked );
+		final TreeMap< Integer, CandidateSearch< Spot, Spot > > index = new TreeMap<>();
+		for ( final Integer frame : frames.keySet() )
+		{
+			final List< Spot > frameSpots = frames.get( frame );
+			index.put( frame, useGrid
+					? new GridCandidateSearch<>( frameSpots, maxDistance )
+					: ( source, action ) -> frameSpots.forEach( action ) );
+		}
+		return index;
+	}
+
+	/**
+	 * Finds the links of the specified sources, in blocks processed in
+	 * parallel.
+	 *
+	 * @return the links found, one buffer per block, in the order of the
+	 *         sources.
+	 */
+	private List< LinkBuffer > collect( final List< Spot > sources, final BiConsumer< Spot, LinkBuffer > linker ) throws InterruptedException, ExecutionException
+	{
+		final int nBlocks = Math.max( 1, Math.min( sources.size(), numThreads <= 1 ? 1 : 4 * numThreads ) );
+		final List< LinkBuffer > buffers = new ArrayList<>( nBlocks );
+		if ( nBlocks == 1 )
+		{
+			final LinkBuffer buffer = new LinkBuffer();
+			for ( final Spot source : sources )
+				linker.accept( source, buffer );
+			buffers.add( buffer );
+			return buffers;
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< Future< LinkBuffer > > futures = new ArrayList<>( nBlocks );
+			for ( int b = 0; b < nBlocks; b++ )
+			{
+				final List< Spot > block = sources.subList( sources.size() * b / nBlocks, sources.size() * ( b + 1 ) / nBlocks );
+				futures.add( executor.submit( () -> {
+					final LinkBuffer buffer = new LinkBuffer();
+					for ( final Spot source : block )
+						linker.accept( source, buffer );
+					return buffer;
+				} ) );
+			}
+			for ( final Future< LinkBuffer > future : futures )
+				buffers.add( future.get() );
+			return buffers;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
 	protected CostFunction< Spot, Spot > getCostFunctionFor( final Map< String, Double > featurePenalties )
 	{
 		// Link Nick Perry original non sparse LAP framework.
@@ -469,11 +467,48 @@ public class JaqamanSegmentCostMatrixCreator implements CostMatrixCreator< Spot,
 		optionalKeys.add( KEY_GAP_CLOSING_FEATURE_PENALTIES );
 		optionalKeys.add( KEY_SPLITTING_FEATURE_PENALTIES );
 		optionalKeys.add( KEY_MERGING_FEATURE_PENALTIES );
+		optionalKeys.add( KEY_LAP_SOLVER );
 		ok = ok & checkMapKeys( settings, mandatoryKeys, optionalKeys, str );
 
 		return ok;
 	}
 
+	/**
+	 * The links found by a block of sources, with their costs in a primitive
+	 * array.
+	 */
+	private static final class LinkBuffer
+	{
+
+		private Spot[] sources = new Spot[ 16 ];
+
+		private Spot[] targets = new Spot[ 16 ];
+
+		private double[] costs = new double[ 16 ];
+
+		private int size;
+
+		/**
+		 * Adds the specified link, if its cost is not above the threshold.
+		 */
+		private void add( final Spot source, final Spot target, final double cost, final double costThreshold )
+		{
+			if ( cost > costThreshold )
+				return;
+
+			if ( size == costs.length )
+			{
+				sources = Arrays.copyOf( sources, 2 * size );
+				targets = Arrays.copyOf( targets, 2 * size );
+				costs = Arrays.copyOf( costs, 2 * size );
+			}
+			sources[ size ] = source;
+			targets[ size ] = target;
+			costs[ size ] = cost;
+			size++;
+		}
+	}
+
 	@Override
 	public void setNumThreads()
 	{
@@ -0,0 +1,353 @@
+package fiji.plugin.trackmate.tracking.sparselap.linker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.imglib2.algorithm.MultiThreaded;
+
+/**
+ * Solves linear assignment problems with the auction algorithm of Bertsekas,
+ * with epsilon scaling, directly on the arrays of a {@link SparseCostMatrix}.
+ * <p>
+ * Unassigned rows bid for their best column, raising its price by the
+ * difference between the value of their best and second best columns, plus
+ * <code>epsilon</code>. All the unassigned rows bid at the same time (Jacobi
+ * auction), so that the bids of a round are computed in parallel. Each column
+ * then goes to its highest bidder, ties going to the row of lowest index, so
+ * that the result does not depend on the number of threads. Epsilon is
+ * decreased between rounds of auctions, keeping the prices, until it is small
+ * enough for the total cost to be within <code>1e-6</code> times the cost
+ * range of the optimum. For integer costs smaller than <code>1e6</code>, the
+ * assignment found is optimal.
+ * <p>
+ * The cost matrix must be square, and must admit a complete assignment, which
+ * is the case of the matrices built by the {@link JaqamanLinker}. On large and
+ * sparse problems, bidding scales with the number of threads, whereas
+ * {@link LAPJV} augments paths one after the other.
+ *
+ * @see <a href="https://doi.org/10.1007/BF02186476">D. P. Bertsekas, "The
+ *      auction algorithm: A distributed relaxation method for the assignment
+ *      problem", Annals of Operations Research (1988) vol. 14 pp. 105-123</a>
+ */
+public class AuctionLAP implements LinearAssignmentSolver, MultiThreaded
+{
+
+	private static final String BASE_ERROR_MESSAGE = "[AuctionLAP] ";
+
+	/** The factor by which epsilon is divided between rounds of auctions. */
+	private static final double EPSILON_SCALING = 5.;
+
+	/** Below this number of bidders, bids are computed in a single thread. */
+	static final int MIN_PARALLEL_BIDDERS = 1024;
+
+	private final SparseCostMatrix cm;
+
+	private int[] output;
+
+	private double[] costs;
+
+	private String errorMessage;
+
+	private long processingTime;
+
+	private int numThreads;
+
+	/**
+	 * Instantiates a new auction algorithm for the specified sparse cost
+	 * matrix.
+	 *
+	 * @param cm
+	 *            the cost matrix of the linear assignment problem to solve.
+	 *            It must be square.
+	 */
+	public AuctionLAP( final SparseCostMatrix cm )
+	{
+		this.cm = cm;
+		setNumThreads();
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( cm.nRows != cm.nCols )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "This solver only accepts square cost matrices. Found " + cm.nRows + " rows and " + cm.nCols + " columns.";
+			return false;
+		}
+		for ( final double cost : cm.cc )
+		{
+			if ( Double.isNaN( cost ) || Double.isInfinite( cost ) )
+			{
+				errorMessage = BASE_ERROR_MESSAGE + "This solver only accepts finite costs. Found " + cost + ".";
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean process()
+	{
+		final long start = System.currentTimeMillis();
+
+		final int n = cm.nRows;
+		final int[] colOfRow = new int[ n ];
+		// Where the cost of the assignment of each row is in the cost array.
+		final int[] kOfRow = new int[ n ];
+		final int[] rowOfCol = new int[ n ];
+		final double[] prices = new double[ n ];
+
+		double minCost = Double.POSITIVE_INFINITY;
+		double maxCost = Double.NEGATIVE_INFINITY;
+		for ( final double cost : cm.cc )
+		{
+			minCost = Math.min( minCost, cost );
+			maxCost = Math.max( maxCost, cost );
+		}
+		final double range = n == 0 ? 0. : maxCost - minCost;
+		final double finalEpsilon = range > 0. ? 1e-6 * range / n : 1.;
+		double epsilon = Math.max( finalEpsilon, range / 4. );
+		final double[] startPrices = new double[ n ];
+
+		// Bids of a round, one per bidder.
+		int[] bidders = new int[ n ];
+		int[] nextBidders = new int[ n ];
+		final int[] bidCols = new int[ n ];
+		final int[] bidKs = new int[ n ];
+		final double[] bidPrices = new double[ n ];
+		// Best bid for each column.
+		final int[] bestBid = new int[ n ];
+		Arrays.fill( bestBid, -1 );
+		final int[] biddenCols = new int[ n ];
+
+		final ExecutorService executor = numThreads > 1 && n >= MIN_PARALLEL_BIDDERS ? Executors.newFixedThreadPool( numThreads ) : null;
+		try
+		{
+			while ( true )
+			{
+				/*
+				 * New round of auctions, keeping the prices. In a feasible
+				 * problem, prices cannot rise by more than a bound, beyond
+				 * which no complete assignment exists.
+				 */
+				System.arraycopy( prices, 0, startPrices, 0, n );
+				double minPrice = 0.;
+				double maxPrice = 0.;
+				for ( final double price : prices )
+				{
+					minPrice = Math.min( minPrice, price );
+					maxPrice = Math.max( maxPrice, price );
+				}
+				final double maxRise = ( maxPrice - minPrice ) + 2. * ( n + 1. ) * ( range + epsilon );
+
+				Arrays.fill( colOfRow, -1 );
+				Arrays.fill( rowOfCol, -1 );
+				int nBidders = n;
+				for ( int i = 0; i < n; i++ )
+					bidders[ i ] = i;
+
+				while ( nBidders > 0 )
+				{
+					/*
+					 * Bidding.
+					 */
+
+					if ( null == executor || nBidders < MIN_PARALLEL_BIDDERS )
+					{
+						bid( bidders, 0, nBidders, prices, epsilon, range, bidCols, bidKs, bidPrices );
+					}
+					else
+					{
+						final int nBlocks = Math.min( nBidders / ( MIN_PARALLEL_BIDDERS / 4 ), 4 * numThreads );
+						final List< Future< Void > > futures = new ArrayList<>( nBlocks );
+						final int[] lBidders = bidders;
+						final double lEpsilon = epsilon;
+						final int lNBidders = nBidders;
+						for ( int b = 0; b < nBlocks; b++ )
+						{
+							final int from = ( int ) ( ( long ) lNBidders * b / nBlocks );
+							final int to = ( int ) ( ( long ) lNBidders * ( b + 1 ) / nBlocks );
+							futures.add( executor.submit( new Callable< Void >()
+							{
+								@Override
+								public Void call()
+								{
+									bid( lBidders, from, to, prices, lEpsilon, range, bidCols, bidKs, bidPrices );
+									return null;
+								}
+							} ) );
+						}
+						for ( final Future< Void > future : futures )
+							future.get();
+					}
+
+					/*
+					 * Assignment: each column goes to its highest bidder.
+					 */
+
+					int nBiddenCols = 0;
+					for ( int k = 0; k < nBidders; k++ )
+					{
+						final int j = bidCols[ k ];
+						final int best = bestBid[ j ];
+						if ( best < 0 )
+						{
+							bestBid[ j ] = k;
+							biddenCols[ nBiddenCols++ ] = j;
+						}
+						else if ( bidPrices[ k ] > bidPrices[ best ] || ( bidPrices[ k ] == bidPrices[ best ] && bidders[ k ] < bidders[ best ] ) )
+						{
+							bestBid[ j ] = k;
+						}
+					}
+
+					int nNextBidders = 0;
+					for ( int k = 0; k < nBidders; k++ )
+					{
+						if ( bestBid[ bidCols[ k ] ] != k )
+							nextBidders[ nNextBidders++ ] = bidders[ k ];
+					}
+					for ( int c = 0; c < nBiddenCols; c++ )
+					{
+						final int j = biddenCols[ c ];
+						final int k = bestBid[ j ];
+						bestBid[ j ] = -1;
+
+						final double price = bidPrices[ k ];
+						if ( price - startPrices[ j ] > maxRise )
+						{
+							errorMessage = BASE_ERROR_MESSAGE + "The cost matrix does not admit a complete assignment.";
+							return false;
+						}
+						prices[ j ] = price;
+
+						final int previous = rowOfCol[ j ];
+						if ( previous >= 0 )
+						{
+							colOfRow[ previous ] = -1;
+							nextBidders[ nNextBidders++ ] = previous;
+						}
+						final int i = bidders[ k ];
+						rowOfCol[ j ] = i;
+						colOfRow[ i ] = j;
+						kOfRow[ i ] = bidKs[ k ];
+					}
+
+					final int[] tmp = bidders;
+					bidders = nextBidders;
+					nextBidders = tmp;
+					nBidders = nNextBidders;
+				}
+
+				if ( epsilon <= finalEpsilon )
+					break;
+				epsilon = Math.max( finalEpsilon, epsilon / EPSILON_SCALING );
+			}
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
+			return false;
+		}
+		finally
+		{
+			if ( null != executor )
+				executor.shutdown();
+		}
+
+		this.output = colOfRow;
+		this.costs = new double[ n ];
+		for ( int i = 0; i < n; i++ )
+			costs[ i ] = cm.cc[ kOfRow[ i ] ];
+		final long end = System.currentTimeMillis();
+		processingTime = end - start;
+		return true;
+	}
+
+	/**
+	 * Computes the bids of the specified range of bidders. A bidder bids for
+	 * the column of highest value <code>-cost - price</code>, raising its price
+	 * by the difference with the second highest value, plus epsilon. The
+	 * position of the cost of the column in the cost array is stored along.
+	 */
+	private void bid( final int[] bidders, final int from, final int to, final double[] prices, final double epsilon, final double range, final int[] bidCols, final int[] bidKs, final double[] bidPrices )
+	{
+		for ( int k = from; k < to; k++ )
+		{
+			final int i = bidders[ k ];
+			double best = Double.NEGATIVE_INFINITY;
+			double second = Double.NEGATIVE_INFINITY;
+			int bestCol = -1;
+			int bestK = -1;
+			for ( int kj = cm.start[ i ]; kj < cm.start[ i ] + cm.number[ i ]; kj++ )
+			{
+				final int j = cm.kk[ kj ];
+				final double value = -cm.cc[ kj ] - prices[ j ];
+				if ( value > best )
+				{
+					second = best;
+					best = value;
+					bestCol = j;
+					bestK = kj;
+				}
+				else if ( value > second )
+				{
+					second = value;
+				}
+			}
+			// A single column: raise its price enough to stop price wars.
+			final double increment = ( second == Double.NEGATIVE_INFINITY ? range : best - second ) + epsilon;
+			bidCols[ k ] = bestCol;
+			bidKs[ k ] = bestK;
+			bidPrices[ k ] = prices[ bestCol ] + increment;
+		}
+	}
+
+	@Override
+	public int[] getResult()
+	{
+		return output;
+	}
+
+	@Override
+	public double[] getAssignmentCosts()
+	{
+		return costs;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public long getProcessingTime()
+	{
+		return processingTime;
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+}
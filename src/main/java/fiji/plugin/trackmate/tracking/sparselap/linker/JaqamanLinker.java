@@ -1,21 +1,39 @@
 package fiji.plugin.trackmate.tracking.sparselap.linker;
 
+import static fiji.plugin.trackmate.tracking.TrackerKeys.DEFAULT_LAP_SOLVER;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.LAP_SOLVER_AUCTION;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.LAP_SOLVER_AUTO;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.LAP_SOLVER_JONKER_VOLGENANT;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.imglib2.algorithm.BenchmarkAlgorithm;
+import net.imglib2.algorithm.MultiThreaded;
 import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.util.Util;
 import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.tracking.TrackerKeys;
 import fiji.plugin.trackmate.tracking.sparselap.costmatrix.CostMatrixCreator;
 
 /**
  * Links two lists of objects based on the LAP framework described in Jaqaman
  * <i>et al.</i>, Nature Methods, <b>2008</b>.
+ * <p>
+ * The candidate links usually form many small clusters that do not share any
+ * source or target. The cost matrix is split in these independent blocks, each
+ * completed with its alternative costs and solved separately, in parallel.
+ * Blocks made of a single candidate link are solved directly.
  * 
  * @author Jean-Yves Tinevez - 2014
  * 
@@ -24,8 +42,22 @@ import fiji.plugin.trackmate.tracking.sparselap.costmatrix.CostMatrixCreator;
  * @param <J>
  *            the type of the target objects to link.
  */
-public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J > > extends BenchmarkAlgorithm implements OutputAlgorithm< Map< K, J > >
+public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J > > extends BenchmarkAlgorithm implements OutputAlgorithm< Map< K, J > >, MultiThreaded
 {
+	private static final String BASE_ERROR_MESSAGE = "[JaqamanLinker] ";
+
+	/**
+	 * Min number of rows of a cost matrix for the auction solver to be picked
+	 * automatically.
+	 */
+	private static final int AUTO_AUCTION_MIN_SIZE = 20000;
+
+	/**
+	 * Max density of a cost matrix for the auction solver to be picked
+	 * automatically.
+	 */
+	private static final double AUTO_AUCTION_MAX_DENSITY = 1e-3;
+
 	private Map< K, J > assignments;
 
 	private Map< K, Double > costs;
@@ -34,6 +66,10 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 
 	private final Logger logger;
 
+	private int numThreads;
+
+	private String solver = DEFAULT_LAP_SOLVER;
+
 	/**
 	 * Creates a new linker for the specified cost matrix creator. See Jaqaman
 	 * <i>et al.</i>, Nature Methods, <b>2008</b>, Figure 1b.
@@ -47,6 +83,7 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 	{
 		this.costMatrixCreator = costMatrixCreator;
 		this.logger = logger;
+		setNumThreads();
 	}
 
 	public JaqamanLinker( final CostMatrixCreator< K, J > costMatrixCreator )
@@ -83,9 +120,27 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		return costs;
 	}
 
+	/**
+	 * Sets the solver of the linear assignment problems.
+	 *
+	 * @param solver
+	 *            the solver, among {@link TrackerKeys#LAP_SOLVER_AUTO},
+	 *            {@link TrackerKeys#LAP_SOLVER_JONKER_VOLGENANT} and
+	 *            {@link TrackerKeys#LAP_SOLVER_AUCTION}.
+	 */
+	public void setSolver( final String solver )
+	{
+		this.solver = solver;
+	}
+
 	@Override
 	public boolean checkInput()
 	{
+		if ( !LAP_SOLVER_AUTO.equals( solver ) && !LAP_SOLVER_JONKER_VOLGENANT.equals( solver ) && !LAP_SOLVER_AUCTION.equals( solver ) )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "Unknown LAP solver: " + solver + ".";
+			return false;
+		}
 		return true;
 	}
 
@@ -120,7 +175,7 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		}
 
 		/*
-		 * Complement the cost matrix with alternative no linking cost matrix.
+		 * Alternative no linking costs.
 		 */
 
 		logger.setStatus( "Completing the cost matrix..." );
@@ -128,76 +183,133 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		final int nCols = tl.getNCols();
 		final int nRows = tl.getNRows();
 
-		/*
-		 * Top right
-		 */
-
 		final double[] cctr = new double[ nRows ];
-		final int[] kktr = new int[ nRows ];
 		for ( int i = 0; i < nRows; i++ )
-		{
-			kktr[ i ] = i;
 			cctr[ i ] = costMatrixCreator.getAlternativeCostForSource( matrixRows.get( i ) );
-		}
-		final int[] numbertr = new int[ nRows ];
-		Arrays.fill( numbertr, 1 );
-		final SparseCostMatrix tr = new SparseCostMatrix( cctr, kktr, numbertr, nRows );
 
-		/*
-		 * Bottom left
-		 */
 		final double[] ccbl = new double[ nCols ];
-		final int[] kkbl = new int[ nCols ];
-		for ( int i = 0; i < kkbl.length; i++ )
-		{
-			kkbl[ i ] = i;
-			ccbl[ i ] = costMatrixCreator.getAlternativeCostForTarget( matrixCols.get( i ) );
-		}
-		final int[] numberbl = new int[ nCols ];
-		Arrays.fill( numberbl, 1 );
-		final SparseCostMatrix bl = new SparseCostMatrix( ccbl, kkbl, numberbl, nCols );
+		for ( int j = 0; j < nCols; j++ )
+			ccbl[ j ] = costMatrixCreator.getAlternativeCostForTarget( matrixCols.get( j ) );
 
 		/*
-		 * Bottom right.
-		 * 
 		 * Alt. cost is the overall min of alternative costs. This deviate or
 		 * extend a bit the u-track code.
 		 */
 		final double minCost = Math.min( Util.min( ccbl ), Util.min( cctr ) );
-		final SparseCostMatrix br = tl.transpose();
-		br.fillWith( minCost );
+		if ( Util.min( tl.cc ) <= 0 || minCost <= 0 )
+		{
+			errorMessage = BASE_ERROR_MESSAGE + "The solver only accepts strictly positive costs.";
+			return false;
+		}
 
 		/*
-		 * Stitch them together
+		 * Split the cost matrix in independent blocks.
 		 */
-		final SparseCostMatrix full = ( tl.hcat( tr ) ).vcat( bl.hcat( br ) );
+
+		final Components components = new Components( tl );
 		logger.setProgress( 0.6 );
 
 		/*
-		 * Solve the full cost matrix.
+		 * Solve the blocks, largest first. The blocks solved by a
+		 * multi-threaded auction are solved one after the other, with all the
+		 * threads. The other blocks are solved in parallel, each in a single
+		 * thread, so that no more than numThreads threads are used.
 		 */
+
 		logger.setStatus( "Solving the cost matrix..." );
-		final LAPJV solver = new LAPJV( full );
-		if ( !solver.checkInput() || !solver.process() )
+		final int[] rowAssignments = new int[ nRows ];
+		final double[] rowCosts = new double[ nRows ];
+		final Integer[] order = new Integer[ components.size() ];
+		for ( int c = 0; c < order.length; c++ )
+			order[ c ] = Integer.valueOf( c );
+		Arrays.sort( order, ( c1, c2 ) -> Integer.compare( components.nRows( c2 ), components.nRows( c1 ) ) );
+
+		final List< Integer > serial = new ArrayList<>();
+		final List< Integer > pooled = new ArrayList<>( order.length );
+		for ( final Integer c : order )
+		{
+			if ( isParallelAuction( tl, components, c.intValue(), solver, numThreads ) )
+				serial.add( c );
+			else
+				pooled.add( c );
+		}
+
+		final AtomicInteger next = new AtomicInteger( 0 );
+		final Callable< String > worker = () -> {
+			final int[] localCols = new int[ nCols ];
+			for ( int index = next.getAndIncrement(); index < pooled.size(); index = next.getAndIncrement() )
+			{
+				final String error = solve( tl, components, pooled.get( index ).intValue(), cctr, ccbl, minCost, localCols, rowAssignments, rowCosts, solver, 1 );
+				if ( null != error )
+					return error;
+			}
+			return null;
+		};
+
+		final int nWorkers = Math.max( 1, Math.min( numThreads, pooled.size() ) );
+		try
+		{
+			String error = null;
+			if ( !serial.isEmpty() )
+			{
+				final int[] localCols = new int[ nCols ];
+				for ( final Integer c : serial )
+				{
+					error = solve( tl, components, c.intValue(), cctr, ccbl, minCost, localCols, rowAssignments, rowCosts, solver, numThreads );
+					if ( null != error )
+						break;
+				}
+			}
+			if ( null == error )
+			{
+				if ( nWorkers == 1 )
+				{
+					error = worker.call();
+				}
+				else
+				{
+					final ExecutorService executor = Executors.newFixedThreadPool( nWorkers );
+					try
+					{
+						final List< Future< String > > futures = new ArrayList<>( nWorkers );
+						for ( int w = 0; w < nWorkers; w++ )
+							futures.add( executor.submit( worker ) );
+						for ( final Future< String > future : futures )
+						{
+							final String e = future.get();
+							if ( null == error )
+								error = e;
+						}
+					}
+					finally
+					{
+						executor.shutdown();
+					}
+				}
+			}
+			if ( null != error )
+			{
+				errorMessage = error;
+				return false;
+			}
+		}
+		catch ( final Exception e )
 		{
-			errorMessage = solver.getErrorMessage();
+			errorMessage = BASE_ERROR_MESSAGE + e.getMessage();
 			return false;
 		}
 
-		final int[] assgn = solver.getResult();
 		assignments = new HashMap< >();
 		costs = new HashMap< >();
-		for ( int i = 0; i < assgn.length; i++ )
+		for ( int i = 0; i < nRows; i++ )
 		{
-			final int j = assgn[ i ];
-			if ( i < matrixRows.size() && j < matrixCols.size() )
+			final int j = rowAssignments[ i ];
+			if ( j >= 0 )
 			{
 				final K source = matrixRows.get( i );
 				final J target = matrixCols.get( j );
 				assignments.put( source, target );
-
-				final double cost = full.get( i, j, Double.POSITIVE_INFINITY );
-				costs.put( source, Double.valueOf( cost ) );
+				costs.put( source, Double.valueOf( rowCosts[ i ] ) );
 			}
 		}
 
@@ -209,6 +321,308 @@ public class JaqamanLinker< K extends Comparable< K >, J extends Comparable< J >
 		return true;
 	}
 
+	/**
+	 * Solves the specified independent block of the cost matrix, and stores
+	 * the target and the cost of each of its rows, or <code>-1</code> if a row
+	 * is not linked.
+	 *
+	 * @return an error message, or <code>null</code> if the block was solved.
+	 */
+	private static String solve( final SparseCostMatrix tl, final Components components, final int c, final double[] cctr, final double[] ccbl, final double minCost, final int[] localCols, final int[] rowAssignments, final double[] rowCosts, final String solverKey, final int numThreads )
+	{
+		final int nRows = components.nRows( c );
+		final int nCols = components.nCols( c );
+
+		if ( nRows == 1 && nCols == 1 )
+		{
+			/*
+			 * A single candidate link: it is made if it is cheaper than not
+			 * linking the source and the target. Ties are broken as the
+			 * Jonker-Volgenant solver does on the 2x2 full cost matrix: the
+			 * link is made, unless the alternative cost of the source is the
+			 * smallest alternative cost.
+			 */
+			final int i = components.row( c, 0 );
+			final int j = components.col( c, 0 );
+			final double cost = tl.cc[ tl.start[ i ] ];
+			final double linkRise = cost - ccbl[ j ];
+			final double noLinkRise = cctr[ i ] - minCost;
+			final boolean link = linkRise < noLinkRise || ( linkRise == noLinkRise && noLinkRise > 0 );
+			rowAssignments[ i ] = link ? j : -1;
+			rowCosts[ i ] = link ? cost : Double.NaN;
+			return null;
+		}
+
+		// Extract the block, with the column indices of the block.
+		for ( int lj = 0; lj < nCols; lj++ )
+			localCols[ components.col( c, lj ) ] = lj;
+
+		int cardinality = 0;
+		for ( int li = 0; li < nRows; li++ )
+			cardinality += tl.number[ components.row( c, li ) ];
+		final double[] cc = new double[ cardinality ];
+		final int[] kk = new int[ cardinality ];
+		final int[] number = new int[ nRows ];
+		final double[] altRows = new double[ nRows ];
+		final double[] altCols = new double[ nCols ];
+		int index = 0;
+		for ( int li = 0; li < nRows; li++ )
+		{
+			final int i = components.row( c, li );
+			for ( int k = tl.start[ i ]; k < tl.start[ i ] + tl.number[ i ]; k++ )
+			{
+				cc[ index ] = tl.cc[ k ];
+				kk[ index ] = localCols[ tl.kk[ k ] ];
+				index++;
+			}
+			number[ li ] = tl.number[ i ];
+			altRows[ li ] = cctr[ i ];
+		}
+		for ( int lj = 0; lj < nCols; lj++ )
+			altCols[ lj ] = ccbl[ components.col( c, lj ) ];
+
+		final SparseCostMatrix block = new SparseCostMatrix( cc, kk, number, nCols );
+		final SparseCostMatrix full = complete( block, altRows, altCols, minCost );
+		final LinearAssignmentSolver solver = createSolver( full, solverKey, numThreads );
+		if ( !solver.checkInput() || !solver.process() )
+			return solver.getErrorMessage();
+
+		final int[] assgn = solver.getResult();
+		final double[] assgnCosts = solver.getAssignmentCosts();
+		for ( int li = 0; li < nRows; li++ )
+		{
+			final int i = components.row( c, li );
+			final int lj = assgn[ li ];
+			if ( lj < nCols )
+			{
+				rowAssignments[ i ] = components.col( c, lj );
+				rowCosts[ i ] = assgnCosts[ li ];
+			}
+			else
+			{
+				rowAssignments[ i ] = -1;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the solver for the specified full cost matrix.
+	 */
+	private static LinearAssignmentSolver createSolver( final SparseCostMatrix full, final String solverKey, final int numThreads )
+	{
+		if ( !useAuction( full.nRows, full.cardinality, solverKey, numThreads ) )
+			return new LAPJV( full );
+
+		final AuctionLAP auctionLAP = new AuctionLAP( full );
+		auctionLAP.setNumThreads( numThreads );
+		return auctionLAP;
+	}
+
+	/**
+	 * Returns <code>true</code> if the auction solver is to be used for a full
+	 * cost matrix of the specified size and cardinality. In automatic mode,
+	 * the auction solver is used for the large and sparse matrices, if
+	 * several threads are available, and the Jonker-Volgenant solver
+	 * otherwise.
+	 */
+	private static boolean useAuction( final int n, final int cardinality, final String solverKey, final int numThreads )
+	{
+		if ( !LAP_SOLVER_AUTO.equals( solverKey ) )
+			return LAP_SOLVER_AUCTION.equals( solverKey );
+
+		final double density = ( double ) cardinality / n / n;
+		return numThreads > 1 && n >= AUTO_AUCTION_MIN_SIZE && density <= AUTO_AUCTION_MAX_DENSITY;
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified block is to be solved by an
+	 * auction that bids with several threads.
+	 */
+	private static boolean isParallelAuction( final SparseCostMatrix tl, final Components components, final int c, final String solverKey, final int numThreads )
+	{
+		// The full matrix has the top-left block twice, and 2 diagonals.
+		final int n = components.nRows( c ) + components.nCols( c );
+		if ( numThreads <= 1 || n < AuctionLAP.MIN_PARALLEL_BIDDERS )
+			return false;
+
+		int cardinality = n;
+		for ( int li = 0; li < components.nRows( c ); li++ )
+			cardinality += 2 * tl.number[ components.row( c, li ) ];
+		return useAuction( n, cardinality, solverKey, numThreads );
+	}
+
+	/**
+	 * Complements the specified top-left cost matrix with the alternative no
+	 * linking costs, following Jaqaman <i>et al.</i>, Nature Methods,
+	 * <b>2008</b>, Figure 1b.
+	 */
+	private static SparseCostMatrix complete( final SparseCostMatrix tl, final double[] cctr, final double[] ccbl, final double minCost )
+	{
+		final int nCols = tl.getNCols();
+		final int nRows = tl.getNRows();
+
+		/*
+		 * Top right
+		 */
+
+		final int[] kktr = new int[ nRows ];
+		for ( int i = 0; i < nRows; i++ )
+			kktr[ i ] = i;
+		final int[] numbertr = new int[ nRows ];
+		Arrays.fill( numbertr, 1 );
+		final SparseCostMatrix tr = new SparseCostMatrix( cctr, kktr, numbertr, nRows );
+
+		/*
+		 * Bottom left
+		 */
+		final int[] kkbl = new int[ nCols ];
+		for ( int j = 0; j < nCols; j++ )
+			kkbl[ j ] = j;
+		final int[] numberbl = new int[ nCols ];
+		Arrays.fill( numberbl, 1 );
+		final SparseCostMatrix bl = new SparseCostMatrix( ccbl, kkbl, numberbl, nCols );
+
+		/*
+		 * Bottom right.
+		 */
+		final SparseCostMatrix br = tl.transpose();
+		br.fillWith( minCost );
+
+		/*
+		 * Stitch them together
+		 */
+		return ( tl.hcat( tr ) ).vcat( bl.hcat( br ) );
+	}
+
+	/**
+	 * The connected components of the bipartite graph of the candidate links
+	 * of a cost matrix. Each component is an independent block of the linking
+	 * problem, along with the alternative costs of its rows and columns.
+	 */
+	private static final class Components
+	{
+
+		/** The rows, grouped by component, in ascending order. */
+		private final int[] rows;
+
+		private final int[] rowStart;
+
+		/** The columns, grouped by component, in ascending order. */
+		private final int[] cols;
+
+		private final int[] colStart;
+
+		private Components( final SparseCostMatrix tl )
+		{
+			final int nRows = tl.getNRows();
+			final int nCols = tl.getNCols();
+
+			// Union-find over rows then columns.
+			final int[] parent = new int[ nRows + nCols ];
+			for ( int v = 0; v < parent.length; v++ )
+				parent[ v ] = v;
+			for ( int i = 0; i < nRows; i++ )
+				for ( int k = tl.start[ i ]; k < tl.start[ i ] + tl.number[ i ]; k++ )
+					union( parent, i, nRows + tl.kk[ k ] );
+
+			final int[] label = new int[ parent.length ];
+			Arrays.fill( label, -1 );
+			int nComponents = 0;
+			for ( int v = 0; v < parent.length; v++ )
+			{
+				final int root = find( parent, v );
+				if ( label[ root ] < 0 )
+					label[ root ] = nComponents++;
+				label[ v ] = label[ root ];
+			}
+
+			this.rowStart = new int[ nComponents + 1 ];
+			this.colStart = new int[ nComponents + 1 ];
+			for ( int i = 0; i < nRows; i++ )
+				rowStart[ label[ i ] + 1 ]++;
+			for ( int j = 0; j < nCols; j++ )
+				colStart[ label[ nRows + j ] + 1 ]++;
+			for ( int c = 0; c < nComponents; c++ )
+			{
+				rowStart[ c + 1 ] += rowStart[ c ];
+				colStart[ c + 1 ] += colStart[ c ];
+			}
+
+			this.rows = new int[ nRows ];
+			this.cols = new int[ nCols ];
+			final int[] fill = Arrays.copyOf( rowStart, nComponents );
+			for ( int i = 0; i < nRows; i++ )
+				rows[ fill[ label[ i ] ]++ ] = i;
+			System.arraycopy( colStart, 0, fill, 0, nComponents );
+			for ( int j = 0; j < nCols; j++ )
+				cols[ fill[ label[ nRows + j ] ]++ ] = j;
+		}
+
+		private int size()
+		{
+			return rowStart.length - 1;
+		}
+
+		private int nRows( final int c )
+		{
+			return rowStart[ c + 1 ] - rowStart[ c ];
+		}
+
+		private int nCols( final int c )
+		{
+			return colStart[ c + 1 ] - colStart[ c ];
+		}
+
+		private int row( final int c, final int i )
+		{
+			return rows[ rowStart[ c ] + i ];
+		}
+
+		private int col( final int c, final int j )
+		{
+			return cols[ colStart[ c ] + j ];
+		}
+
+		private static int find( final int[] parent, int v )
+		{
+			while ( parent[ v ] != v )
+			{
+				parent[ v ] = parent[ parent[ v ] ];
+				v = parent[ v ];
+			}
+			return v;
+		}
+
+		private static void union( final int[] parent, final int a, final int b )
+		{
+			final int ra = find( parent, a );
+			final int rb = find( parent, b );
+			if ( ra < rb )
+				parent[ rb ] = ra;
+			else if ( rb < ra )
+				parent[ ra ] = rb;
+		}
+	}
+
+	@Override
+	public void setNumThreads()
+	{
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
 	public String resultToString()
 	{
 		if ( null == assignments ) { return "Not solved yet. Process the algorithm prior to calling this method."; }
@@ -6,8 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import net.imglib2.algorithm.Benchmark;
-import net.imglib2.algorithm.OutputAlgorithm;
 import net.imglib2.util.Util;
 
 /**
@@ -32,6 +30,15 @@ import net.imglib2.util.Util;
  * 0.1% to 70%, the computation time increased by a factor ranging from 1.5 to 7
  * compared to the non-sparse version. For a given density, the comparison
  * depends very weakly on the matrix size.
+ * <p>
+ * The working arrays are taken from a workspace local to the calling thread,
+ * that grows to the size of the largest problem solved in this thread, so that
+ * solving many small problems in a row does not allocate them again. In the
+ * augmentation, the columns of a scanned row are located in the array of
+ * columns to scan by a column-position array, instead of looking up the cost of
+ * every column not scanned yet in the row. The position in the cost array of
+ * each assignment is recorded as it is made, so that costs are never searched
+ * by column.
  *
  *
  * @author Jean-Yves Tinevez - 2014
@@ -41,13 +48,21 @@ import net.imglib2.util.Util;
  *      Volgenant
  *      "Linear and semi-assignment problems: A core oriented approach"</a>
  */
-public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
+public class LAPJV implements LinearAssignmentSolver
 {
 
 	private static final String BASE_ERROR_MESSAGE = "[JonkerVolgenantSparseAlgorithm] ";
 
+	/**
+	 * The working arrays, reused across the problems solved in the same
+	 * thread.
+	 */
+	private static final ThreadLocal< Workspace > WORKSPACE = ThreadLocal.withInitial( Workspace::new );
+
 	private int[] output;
 
+	private double[] costs;
+
 	private String errorMessage;
 
 	private long processingTime;
@@ -71,21 +86,30 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 	{
 		final long start = System.currentTimeMillis();
 
-		final int[] x = new int[ cm.nRows ];
-		final int[] y = new int[ cm.nCols ];
-		final double[] v = new double[ cm.nCols ];
+		final Workspace ws = WORKSPACE.get();
+		ws.ensureCapacity( cm.nRows, cm.nCols );
+
+		final int[] x = ws.x;
+		final int[] y = ws.y;
+		final int[] kx = ws.kx;
+		final int[] ky = ws.ky;
+		final double[] v = ws.v;
+		Arrays.fill( x, 0, cm.nRows, 0 );
+		Arrays.fill( y, 0, cm.nCols, 0 );
 
-		final int[] col = new int[ cm.nCols ];
-		for ( int j = 0; j < col.length; j++ )
+		final int[] col = ws.col;
+		final int[] colIndex = ws.colIndex;
+		for ( int j = 0; j < cm.nCols; j++ )
 		{
 			col[ j ] = j;
+			colIndex[ j ] = j;
 		}
 
 		/*
 		 * Column reduction
 		 */
 
-		Arrays.fill( v, Double.MAX_VALUE );
+		Arrays.fill( v, 0, cm.nCols, Double.MAX_VALUE );
 		for ( int i = 0; i < cm.nRows; i++ )
 		{
 			for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
@@ -95,6 +119,7 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 				{
 					v[ j ] = cm.cc[ k ];
 					y[ j ] = i + 1;
+					ky[ j ] = k;
 				}
 			}
 		}
@@ -105,6 +130,7 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 			if ( x[ i ] == 0 )
 			{
 				x[ i ] = j + 1;
+				kx[ i ] = ky[ j ];
 			}
 			else
 			{
@@ -121,7 +147,7 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 		 */
 
 		int f = 0;
-		final int[] free = new int[ cm.nRows ];
+		final int[] free = ws.free;
 		for ( int i = 0; i < cm.nRows; i++ )
 		{
 			if ( x[ i ] == 0 )
@@ -155,7 +181,7 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 			}
 		}
 
-		if ( f == 0 ) { return true; }
+		if ( f == 0 ) { return terminate( x, kx, start ); }
 
 		/*
 		 * Augmenting row reduction.
@@ -171,6 +197,8 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 				final int i = free[ k++ ];
 				double v0 = Double.MAX_VALUE;
 				int j0 = 0, j1 = -1;
+				// Where the costs of j0 and j1 are in the row.
+				int k0 = -1, k1 = -1;
 				double vj = Double.MAX_VALUE;
 				for ( int kj = cm.start[ i ]; kj < cm.start[ i ] + cm.number[ i ]; kj++ )
 				{
@@ -182,13 +210,16 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 						{
 							vj = h;
 							j1 = j;
+							k1 = kj;
 						}
 						else
 						{
 							vj = v0;
 							v0 = h;
 							j1 = j0;
+							k1 = k0;
 							j0 = j;
+							k0 = kj;
 						}
 					}
 				}
@@ -202,6 +233,7 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 					if ( i0 >= 0 )
 					{
 						j0 = j1;
+						k0 = k1;
 						i0 = y[ j1 ] - 1;
 					}
 				}
@@ -217,7 +249,9 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 					}
 				}
 				x[ i ] = j0 + 1;
+				kx[ i ] = k0;
 				y[ j0 ] = i + 1;
+				ky[ j0 ] = k0;
 			}
 		}
 
@@ -226,19 +260,21 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 		 */
 
 		final int f0 = f;
-		final double[] d = new double[ cm.nCols ];
-		final int[] pred = new int[ cm.nCols ];
+		final double[] d = ws.d;
+		final int[] pred = ws.pred;
+		final int[] kPred = ws.kPred;
 		for ( f = 0; f < f0; f++ )
 		{
 			final int i1 = free[ f ];
 			int low = 0, up = 0;
 			// initialize d- and pred-array
-			Arrays.fill( d, Double.MAX_VALUE );
+			Arrays.fill( d, 0, cm.nCols, Double.MAX_VALUE );
 			for ( int k = cm.start[ i1 ]; k < cm.start[ i1 ] + cm.number[ i1 ]; k++ )
 			{
 				final int j = cm.kk[ k ];
 				d[ j ] = cm.cc[ k ] - v[ j ];
 				pred[ j ] = i1;
+				kPred[ j ] = k;
 			}
 			int last;
 			int i, j = -1;
@@ -262,8 +298,11 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 								up = low;
 								min = h;
 							}
-							col[ k ] = col[ up ];
-							col[ up++ ] = j;
+							final int ju = col[ up ];
+							col[ k ] = ju;
+							colIndex[ ju ] = k;
+							col[ up ] = j;
+							colIndex[ j ] = up++;
 						}
 					}
 					for ( int h = low; h < up; h++ )
@@ -280,19 +319,20 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 				{
 					final int j1 = col[ low++ ];
 					i = y[ j1 ] - 1;
-
-					final int kj1 = Arrays.binarySearch( cm.kk, cm.start[ i ], cm.start[ i ] + cm.number[ i ], j1 );
-					if ( kj1 < 0 )
-					{
-						continue;
-					}
-
+					// The row is assigned to the column.
+					final int kj1 = ky[ j1 ];
+
+					/*
+					 * Only visit the columns of the row, and find where they
+					 * are in the col array with the colIndex array, instead of
+					 * looking up the cost of all the columns not scanned yet.
+					 */
 					final double u1 = cm.cc[ kj1 ] - v[ j1 ] - min;
-					for ( int k = up; k < cm.nCols; k++ )
+					for ( int kj = cm.start[ i ]; kj < cm.start[ i ] + cm.number[ i ]; kj++ )
 					{
-						j = col[ k ];
-						final int kj = Arrays.binarySearch( cm.kk, cm.start[ i ], cm.start[ i ] + cm.number[ i ], j );
-						if ( kj < 0 )
+						j = cm.kk[ kj ];
+						final int k = colIndex[ j ];
+						if ( k < up )
 						{
 							continue;
 						}
@@ -302,14 +342,18 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 						{
 							d[ j ] = h;
 							pred[ j ] = i;
+							kPred[ j ] = kj;
 							if ( h == min )
 							{
 								if ( y[ j ] == 0 )
 								{
 									break LOOP;
 								}
-								col[ k ] = col[ up ];
-								col[ up++ ] = j;
+								final int ju = col[ up ];
+								col[ k ] = ju;
+								colIndex[ ju ] = k;
+								col[ up ] = j;
+								colIndex[ j ] = up++;
 							}
 						}
 					}
@@ -330,21 +374,31 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 			{
 				i = pred[ j ];
 				y[ j ] = i + 1;
+				ky[ j ] = kPred[ j ];
 				final int k = j;
 				j = x[ i ] - 1;
 				x[ i ] = k + 1;
+				kx[ i ] = kPred[ k ];
 			}
 			while ( i1 != i );
 		}
 
-		/*
-		 * Terminate and prepare outputs.
-		 */
+		return terminate( x, kx, start );
+	}
 
-		this.output = new int[ x.length ];
-		for ( int i = 0; i < x.length; i++ )
+	/**
+	 * Terminates and prepares outputs, reading the assignment costs where
+	 * they were recorded during solving.
+	 */
+	private boolean terminate( final int[] x, final int[] kx, final long start )
+	{
+		this.output = new int[ cm.nRows ];
+		this.costs = new double[ cm.nRows ];
+		for ( int i = 0; i < cm.nRows; i++ )
 		{
-			output[ i ] = x[ i ] - 1;
+			final int j = x[ i ] - 1;
+			output[ i ] = j;
+			costs[ i ] = j < 0 ? Double.NaN : cm.cc[ kx[ i ] ];
 		}
 
 		final long end = System.currentTimeMillis();
@@ -398,6 +452,19 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 		return output;
 	}
 
+	/**
+	 * Returns the cost of the assignment of each row, as found in the cost
+	 * matrix.
+	 *
+	 * @return the assignment costs as a <code>double[]</code> array. This
+	 *         array is re-instantiated upon calling {@link #process()}.
+	 */
+	@Override
+	public double[] getAssignmentCosts()
+	{
+		return costs;
+	}
+
 	public String resultToString()
 	{
 		return resultToString( Collections.emptyList(), Collections.emptyList() );
@@ -523,4 +590,59 @@ public class LAPJV implements OutputAlgorithm< int[] >, Benchmark
 
 		return str.toString();
 	}
+
+	/**
+	 * The working arrays of the algorithm, grown to the size of the largest
+	 * problem seen.
+	 */
+	private static final class Workspace
+	{
+
+		private int[] x = new int[ 0 ];
+
+		private int[] free = new int[ 0 ];
+
+		private int[] y = new int[ 0 ];
+
+		/** The index in the cost array of the assignment of each row. */
+		private int[] kx = new int[ 0 ];
+
+		/** The index in the cost array of the assignment of each column. */
+		private int[] ky = new int[ 0 ];
+
+		private double[] v = new double[ 0 ];
+
+		private int[] col = new int[ 0 ];
+
+		/** The position of each column in the col array. */
+		private int[] colIndex = new int[ 0 ];
+
+		private double[] d = new double[ 0 ];
+
+		private int[] pred = new int[ 0 ];
+
+		/** The index in the cost array of the link to each predecessor. */
+		private int[] kPred = new int[ 0 ];
+
+		private void ensureCapacity( final int nRows, final int nCols )
+		{
+			if ( x.length < nRows )
+			{
+				x = new int[ nRows ];
+				kx = new int[ nRows ];
+				free = new int[ nRows ];
+			}
+			if ( y.length < nCols )
+			{
+				y = new int[ nCols ];
+				ky = new int[ nCols ];
+				v = new double[ nCols ];
+				col = new int[ nCols ];
+				colIndex = new int[ nCols ];
+				d = new double[ nCols ];
+				pred = new int[ nCols ];
+				kPred = new int[ nCols ];
+			}
+		}
+	}
 }
@@ -0,0 +1,28 @@
+package fiji.plugin.trackmate.tracking.sparselap.linker;
+
+import net.imglib2.algorithm.Benchmark;
+import net.imglib2.algorithm.OutputAlgorithm;
+
+/**
+ * Interface for solvers of linear assignment problems (LAP) given as a
+ * {@link SparseCostMatrix}.
+ * <p>
+ * The result is an <code>int[]</code> array with one element per row of the
+ * cost matrix, that contains the index of the column the row is assigned to.
+ * The sum of the costs of the assignments is minimal. The cost of each
+ * assignment is returned along with it, so that callers do not have to look
+ * it up in the cost matrix.
+ */
+public interface LinearAssignmentSolver extends OutputAlgorithm< int[] >, Benchmark
+{
+
+	/**
+	 * Returns the cost of the assignment of each row, after
+	 * {@link #process()}.
+	 *
+	 * @return a <code>double[]</code> array with one element per row of the
+	 *         cost matrix, that contains the cost of the link between the row
+	 *         and the column it is assigned to.
+	 */
+	public double[] getAssignmentCosts();
+}
@@ -0,0 +1,202 @@
+package fiji.plugin.trackmate.util;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.DetectorKeys;
+import ij.gui.Roi;
+import ij.process.ImageProcessor;
+
+/**
+ * A rasterized version of a 2D ImageJ {@link Roi}, restricted to a
+ * rectangular crop, for fast point inclusion tests.
+ * <p>
+ * The ROI is rasterized once, and then {@link #contains(long, long)} is a
+ * bounds check followed by an array lookup, whatever the complexity of the
+ * ROI shape. Points are tested against pixels the same way as
+ * {@link Roi#contains(int, int)} does.
+ */
+public class RoiMask
+{
+
+	private final long xmin;
+
+	private final long xmax;
+
+	private final long ymin;
+
+	private final long ymax;
+
+	/** The origin of the mask array, that of the ROI bounds. */
+	private final int x0;
+
+	private final int y0;
+
+	private final int width;
+
+	/** The mask pixels, or <code>null</code> for rectangular ROIs. */
+	private final byte[] mask;
+
+	/**
+	 * Rasterizes the specified ROI, restricted to the specified crop.
+	 *
+	 * @param roi
+	 *            the ROI.
+	 * @param xstart
+	 *            the first column of the crop.
+	 * @param xend
+	 *            the last column of the crop, inclusive.
+	 * @param ystart
+	 *            the first row of the crop.
+	 * @param yend
+	 *            the last row of the crop, inclusive.
+	 */
+	public RoiMask( final Roi roi, final long xstart, final long xend, final long ystart, final long yend )
+	{
+		final Rectangle bounds = roi.getBounds();
+		this.x0 = bounds.x;
+		this.y0 = bounds.y;
+		this.width = bounds.width;
+		this.xmin = Math.max( xstart, bounds.x );
+		this.xmax = Math.min( xend, bounds.x + bounds.width - 1l );
+		this.ymin = Math.max( ystart, bounds.y );
+		this.ymax = Math.min( yend, bounds.y + bounds.height - 1l );
+
+		final ImageProcessor ip = roi.getMask();
+		this.mask = ( null == ip ) ? null : ( byte[] ) ip.getPixels();
+	}
+
+	/**
+	 * Returns <code>true</code> if the mask contains no pixel.
+	 *
+	 * @return <code>true</code> if the ROI does not intersect the crop.
+	 */
+	public boolean isEmpty()
+	{
+		return xmin > xmax || ymin > ymax;
+	}
+
+	public long xmin()
+	{
+		return xmin;
+	}
+
+	public long xmax()
+	{
+		return xmax;
+	}
+
+	public long ymin()
+	{
+		return ymin;
+	}
+
+	public long ymax()
+	{
+		return ymax;
+	}
+
+	/**
+	 * Returns <code>true</code> if the specified pixel is inside the ROI and
+	 * the crop.
+	 *
+	 * @param x
+	 *            the pixel X coordinate.
+	 * @param y
+	 *            the pixel Y coordinate.
+	 * @return <code>true</code> if the pixel is in the mask.
+	 */
+	public boolean contains( final long x, final long y )
+	{
+		if ( x < xmin || x > xmax || y < ymin || y > ymax )
+			return false;
+		if ( null == mask )
+			return true;
+		return mask[ ( int ) ( y - y0 ) * width + ( int ) ( x - x0 ) ] != 0;
+	}
+
+	/**
+	 * Returns <code>true</code> if the pixel closest to the specified spot is
+	 * inside the ROI and the crop.
+	 *
+	 * @param spot
+	 *            the spot.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @return <code>true</code> if the spot is in the mask.
+	 */
+	public boolean contains( final Spot spot, final double[] calibration )
+	{
+		return contains(
+				Math.round( spot.getFeature( Spot.POSITION_X ) / calibration[ 0 ] ),
+				Math.round( spot.getFeature( Spot.POSITION_Y ) / calibration[ 1 ] ) );
+	}
+
+	/**
+	 * Returns the spots whose closest pixel is inside the ROI and the crop.
+	 *
+	 * @param spots
+	 *            the spots to filter.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @return a new list.
+	 */
+	public List< Spot > filter( final Iterable< Spot > spots, final double[] calibration )
+	{
+		final List< Spot > kept = new ArrayList<>();
+		for ( final Spot spot : spots )
+			if ( contains( spot, calibration ) )
+				kept.add( spot );
+		return kept;
+	}
+
+	/**
+	 * Returns the margin, in pixels along X and Y, to read around a ROI so
+	 * that detection filters see the image content there. It spans 3 times
+	 * the spot radius, which covers the LoG and DoG kernels.
+	 *
+	 * @param radius
+	 *            the spot radius, in image units.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @return the margin along X and Y, in pixels.
+	 */
+	public static long[] margin( final double radius, final double[] calibration )
+	{
+		return new long[] {
+				( long ) Math.ceil( 3. * radius / calibration[ 0 ] ),
+				( long ) Math.ceil( 3. * radius / calibration[ 1 ] ) };
+	}
+
+	/**
+	 * Returns the margin, in pixels along X and Y, to read around a ROI for
+	 * the specified detector settings. It is computed from the spot radius, or
+	 * from the largest radius searched by multi-scale detectors.
+	 * <p>
+	 * Detectors that have no radius, such as the threshold and mask
+	 * detectors, do not say how far their objects extend. The margin is then
+	 * unknown and this method returns <code>null</code>: the ROI must not be
+	 * used to crop the image, otherwise objects that extend past its bounds
+	 * would be cut.
+	 *
+	 * @param detectorSettings
+	 *            the detector settings.
+	 * @param calibration
+	 *            the pixel sizes.
+	 * @return the margin along X and Y, in pixels, or <code>null</code> if it
+	 *         is unknown.
+	 */
+	public static long[] margin( final Map< String, Object > detectorSettings, final double[] calibration )
+	{
+		Object radius = detectorSettings.get( DetectorKeys.KEY_MAX_RADIUS );
+		if ( !( radius instanceof Number ) )
+			radius = detectorSettings.get( DetectorKeys.KEY_RADIUS );
+		if ( !( radius instanceof Number ) )
+			return null;
+
+		return margin( ( ( Number ) radius ).doubleValue(), calibration );
+	}
+}
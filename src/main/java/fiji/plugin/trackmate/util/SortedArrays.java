@@ -0,0 +1,162 @@
+package fiji.plugin.trackmate.util;
+
+/**
+ * Static utilities to sort <code>double</code> arrays along with an
+ * <code>int</code> payload, and to search them, without boxing.
+ * <p>
+ * Values are ordered as by {@link Double#compare(double, double)}: -0 before
+ * +0, and {@link Double#NaN} after positive infinity.
+ */
+public class SortedArrays
+{
+
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private SortedArrays()
+	{}
+
+	/**
+	 * Sorts the first <code>n</code> elements of the specified values in
+	 * ascending order, and applies the same permutation to the payload array.
+	 *
+	 * @param values
+	 *            the values to sort.
+	 * @param payload
+	 *            the payload to permute along with the values.
+	 * @param n
+	 *            the number of elements to sort.
+	 */
+	public static void sort( final double[] values, final int[] payload, final int n )
+	{
+		quickSort( values, payload, 0, n - 1 );
+	}
+
+	/**
+	 * Returns the index of the first element in the sorted range
+	 * <code>[0, n)</code> that is not less than the key, or <code>n</code> if
+	 * there is none.
+	 *
+	 * @param values
+	 *            the sorted values.
+	 * @param n
+	 *            the number of values to search.
+	 * @param key
+	 *            the key to search for.
+	 * @return the lower bound index.
+	 */
+	public static int lowerBound( final double[] values, final int n, final double key )
+	{
+		int lo = 0;
+		int hi = n;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( Double.compare( values[ mid ], key ) < 0 )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the index of the first element in the sorted range
+	 * <code>[0, n)</code> that is greater than the key, or <code>n</code> if
+	 * there is none.
+	 *
+	 * @param values
+	 *            the sorted values.
+	 * @param n
+	 *            the number of values to search.
+	 * @param key
+	 *            the key to search for.
+	 * @return the upper bound index.
+	 */
+	public static int upperBound( final double[] values, final int n, final double key )
+	{
+		int lo = 0;
+		int hi = n;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( Double.compare( values[ mid ], key ) <= 0 )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private static void quickSort( final double[] v, final int[] p, int left, int right )
+	{
+		while ( right - left >= INSERTION_SORT_THRESHOLD )
+		{
+			// Median of three pivot.
+			final int mid = ( left + right ) >>> 1;
+			if ( Double.compare( v[ mid ], v[ left ] ) < 0 )
+				swap( v, p, mid, left );
+			if ( Double.compare( v[ right ], v[ left ] ) < 0 )
+				swap( v, p, right, left );
+			if ( Double.compare( v[ right ], v[ mid ] ) < 0 )
+				swap( v, p, right, mid );
+			final double pivot = v[ mid ];
+
+			int i = left;
+			int j = right;
+			while ( i <= j )
+			{
+				while ( Double.compare( v[ i ], pivot ) < 0 )
+					i++;
+				while ( Double.compare( v[ j ], pivot ) > 0 )
+					j--;
+				if ( i <= j )
+				{
+					swap( v, p, i, j );
+					i++;
+					j--;
+				}
+			}
+
+			// Recurse on the smaller part, loop on the larger one.
+			if ( j - left < right - i )
+			{
+				quickSort( v, p, left, j );
+				left = i;
+			}
+			else
+			{
+				quickSort( v, p, i, right );
+				right = j;
+			}
+		}
+		insertionSort( v, p, left, right );
+	}
+
+	private static void insertionSort( final double[] v, final int[] p, final int left, final int right )
+	{
+		for ( int i = left + 1; i <= right; i++ )
+		{
+			final double val = v[ i ];
+			final int pay = p[ i ];
+			int j = i - 1;
+			while ( j >= left && Double.compare( v[ j ], val ) > 0 )
+			{
+				v[ j + 1 ] = v[ j ];
+				p[ j + 1 ] = p[ j ];
+				j--;
+			}
+			v[ j + 1 ] = val;
+			p[ j + 1 ] = pay;
+		}
+	}
+
+	private static void swap( final double[] v, final int[] p, final int i, final int j )
+	{
+		final double tv = v[ i ];
+		v[ i ] = v[ j ];
+		v[ j ] = tv;
+		final int tp = p[ i ];
+		p[ i ] = p[ j ];
+		p[ j ] = tp;
+	}
+}
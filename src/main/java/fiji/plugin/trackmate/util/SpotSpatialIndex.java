@@ -0,0 +1,529 @@
+package fiji.plugin.trackmate.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import fiji.plugin.trackmate.Spot;
+import net.imglib2.RealLocalizable;
+
+/**
+ * A static k-d tree over a collection of spots, offering nearest neighbor,
+ * k-nearest neighbors, radius and box range queries.
+ * <p>
+ * The tree is built once over a snapshot of the spot positions and radii, and
+ * is never modified afterwards, so it can be shared by several threads.
+ * Changes made to the spots after the index is built are not reflected in the
+ * index. The {@link fiji.plugin.trackmate.SpotCollection} builds one lazily
+ * for each frame, and discards it when the frame content changes.
+ * <p>
+ * The tree is stored implicitly in arrays: the median of each range is the
+ * node, and the left and right sub-ranges are its children. Splitting
+ * dimensions cycle over X, Y and Z, or over X and Y only if all the spots have
+ * the same Z coordinate.
+ * <p>
+ * All queries accept a {@link Predicate} to restrict the search to some spots
+ * (for instance the visible ones). It can be <code>null</code> to search
+ * through all the spots.
+ */
+public class SpotSpatialIndex
+{
+
+	private final Spot[] spots;
+
+	/** Spot coordinates, interleaved X, Y, Z. */
+	private final double[] coords;
+
+	private final double[] radii;
+
+	/** Number of splitting dimensions, 2 or 3. */
+	private final int nd;
+
+	private final double maxRadius;
+
+	/**
+	 * Builds a spatial index over the specified spots.
+	 *
+	 * @param spots
+	 *            the spots to index.
+	 */
+	public SpotSpatialIndex( final Collection< Spot > spots )
+	{
+		final int n = spots.size();
+		this.spots = spots.toArray( new Spot[ n ] );
+		this.coords = new double[ 3 * n ];
+		this.radii = new double[ n ];
+		double rmax = 0.;
+		boolean flat = true;
+		for ( int i = 0; i < n; i++ )
+		{
+			final Spot spot = this.spots[ i ];
+			for ( int d = 0; d < 3; d++ )
+				coords[ 3 * i + d ] = spot.getDoublePosition( d );
+			final Double radius = spot.getFeature( Spot.RADIUS );
+			radii[ i ] = ( null == radius ) ? 0. : radius.doubleValue();
+			rmax = Math.max( rmax, radii[ i ] );
+			if ( coords[ 3 * i + 2 ] != coords[ 2 ] )
+				flat = false;
+		}
+		this.maxRadius = rmax;
+		this.nd = flat ? 2 : 3;
+		build( 0, n, 0 );
+	}
+
+	/*
+	 * METHODS
+	 */
+
+	/**
+	 * Returns the number of spots in this index.
+	 *
+	 * @return the number of spots.
+	 */
+	public int size()
+	{
+		return spots.length;
+	}
+
+	/**
+	 * Returns the largest {@link Spot#RADIUS} of the indexed spots.
+	 *
+	 * @return the largest radius.
+	 */
+	public double getMaxRadius()
+	{
+		return maxRadius;
+	}
+
+	/**
+	 * Returns the spot closest to the specified location.
+	 *
+	 * @param location
+	 *            the location to search around. Must have at least 3
+	 *            dimensions.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return the closest spot, or <code>null</code> if no spot passes the
+	 *         filter.
+	 */
+	public Spot nearest( final RealLocalizable location, final Predicate< Spot > filter )
+	{
+		return nearest( position( location ), filter );
+	}
+
+	/**
+	 * Returns the spot closest to the specified position.
+	 *
+	 * @param pos
+	 *            the X, Y, Z position to search around.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return the closest spot, or <code>null</code> if no spot passes the
+	 *         filter.
+	 */
+	public Spot nearest( final double[] pos, final Predicate< Spot > filter )
+	{
+		final KNearest search = new KNearest( 1, Double.POSITIVE_INFINITY );
+		search.search( 0, spots.length, 0, pos, filter );
+		return search.n == 0 ? null : spots[ search.indices[ 0 ] ];
+	}
+
+	/**
+	 * Returns the <code>k</code> spots closest to the specified location,
+	 * sorted by increasing distance.
+	 *
+	 * @param location
+	 *            the location to search around. Must have at least 3
+	 *            dimensions.
+	 * @param k
+	 *            the number of neighbors to return.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return a new list with at most <code>k</code> spots.
+	 */
+	public List< Spot > kNearest( final RealLocalizable location, final int k, final Predicate< Spot > filter )
+	{
+		return kNearest( position( location ), k, filter );
+	}
+
+	/**
+	 * Returns the <code>k</code> spots closest to the specified position,
+	 * sorted by increasing distance.
+	 *
+	 * @param pos
+	 *            the X, Y, Z position to search around.
+	 * @param k
+	 *            the number of neighbors to return.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return a new list with at most <code>k</code> spots.
+	 */
+	public List< Spot > kNearest( final double[] pos, final int k, final Predicate< Spot > filter )
+	{
+		if ( k <= 0 )
+			return Collections.emptyList();
+
+		final KNearest search = new KNearest( k, Double.POSITIVE_INFINITY );
+		search.search( 0, spots.length, 0, pos, filter );
+		return search.sorted();
+	}
+
+	/**
+	 * Returns the spots within the specified distance of a location.
+	 *
+	 * @param location
+	 *            the location to search around. Must have at least 3
+	 *            dimensions.
+	 * @param radius
+	 *            the search radius.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return a new list of spots, in no particular order.
+	 */
+	public List< Spot > withinRadius( final RealLocalizable location, final double radius, final Predicate< Spot > filter )
+	{
+		return withinRadius( position( location ), radius, filter );
+	}
+
+	/**
+	 * Returns the spots within the specified distance of a position.
+	 *
+	 * @param pos
+	 *            the X, Y, Z position to search around.
+	 * @param radius
+	 *            the search radius.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return a new list of spots, in no particular order.
+	 */
+	public List< Spot > withinRadius( final double[] pos, final double radius, final Predicate< Spot > filter )
+	{
+		final List< Spot > out = new ArrayList<>();
+		withinRadius( 0, spots.length, 0, pos, radius * radius, filter, out );
+		return out;
+	}
+
+	/**
+	 * Returns the spots whose position is inside the specified box, bounds
+	 * included.
+	 *
+	 * @param min
+	 *            the lower bounds of the box. If it has only 2 elements, the Z
+	 *            bound is ignored.
+	 * @param max
+	 *            the upper bounds of the box. Must have the same length as
+	 *            <code>min</code>.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return a new list of spots, in no particular order.
+	 */
+	public List< Spot > withinBox( final double[] min, final double[] max, final Predicate< Spot > filter )
+	{
+		final List< Spot > out = new ArrayList<>();
+		withinBox( 0, spots.length, 0, min, max, filter, out );
+		return out;
+	}
+
+	/**
+	 * Returns the closest spot such that the specified location is within its
+	 * radius.
+	 *
+	 * @param location
+	 *            the location to search around. Must have at least 3
+	 *            dimensions.
+	 * @param filter
+	 *            the spots to consider, or <code>null</code> to consider all
+	 *            of them.
+	 * @return the spot, or <code>null</code> if the location is not inside
+	 *         any spot.
+	 */
+	public Spot spotAt( final RealLocalizable location, final Predicate< Spot > filter )
+	{
+		final double[] pos = position( location );
+		final double r2max = maxRadius * maxRadius;
+		final SpotAt search = new SpotAt();
+		search.search( 0, spots.length, 0, pos, r2max, filter );
+		return search.best < 0 ? null : spots[ search.best ];
+	}
+
+	/*
+	 * PRIVATE METHODS
+	 */
+
+	private static double[] position( final RealLocalizable location )
+	{
+		return new double[] {
+				location.getDoublePosition( 0 ),
+				location.getDoublePosition( 1 ),
+				location.getDoublePosition( 2 ) };
+	}
+
+	private double squareDistance( final int i, final double[] pos )
+	{
+		final double dx = coords[ 3 * i ] - pos[ 0 ];
+		final double dy = coords[ 3 * i + 1 ] - pos[ 1 ];
+		final double dz = coords[ 3 * i + 2 ] - pos[ 2 ];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private void build( final int lo, final int hi, final int depth )
+	{
+		if ( hi - lo < 2 )
+			return;
+		final int mid = ( lo + hi ) >>> 1;
+		select( lo, hi - 1, mid, depth % nd );
+		build( lo, mid, depth + 1 );
+		build( mid + 1, hi, depth + 1 );
+	}
+
+	/**
+	 * Quick-select: reorders the range [left, right] so that element k is at
+	 * its sorted position along dimension d. The range is partitioned in three
+	 * parts, smaller than, equal to and larger than the pivot, so that the
+	 * selection stays linear when many spots share a coordinate, as spots on
+	 * a pixel grid or in a single Z plane.
+	 */
+	private void select( int left, int right, final int k, final int d )
+	{
+		while ( right > left )
+		{
+			final double pivot = coords[ 3 * ( ( left + right ) >>> 1 ) + d ];
+			int lt = left;
+			int gt = right;
+			int i = left;
+			while ( i <= gt )
+			{
+				final double c = coords[ 3 * i + d ];
+				if ( c < pivot )
+					swap( lt++, i++ );
+				else if ( c > pivot )
+					swap( i, gt-- );
+				else
+					i++;
+			}
+			if ( k < lt )
+				right = lt - 1;
+			else if ( k > gt )
+				left = gt + 1;
+			else
+				return;
+		}
+	}
+
+	private void swap( final int i, final int j )
+	{
+		if ( i == j )
+			return;
+		final Spot s = spots[ i ];
+		spots[ i ] = spots[ j ];
+		spots[ j ] = s;
+		final double r = radii[ i ];
+		radii[ i ] = radii[ j ];
+		radii[ j ] = r;
+		for ( int d = 0; d < 3; d++ )
+		{
+			final double c = coords[ 3 * i + d ];
+			coords[ 3 * i + d ] = coords[ 3 * j + d ];
+			coords[ 3 * j + d ] = c;
+		}
+	}
+
+	private void withinRadius( final int lo, final int hi, final int depth, final double[] pos, final double r2, final Predicate< Spot > filter, final List< Spot > out )
+	{
+		if ( lo >= hi )
+			return;
+		final int mid = ( lo + hi ) >>> 1;
+		final int d = depth % nd;
+		if ( squareDistance( mid, pos ) <= r2 && ( null == filter || filter.test( spots[ mid ] ) ) )
+			out.add( spots[ mid ] );
+
+		final double diff = pos[ d ] - coords[ 3 * mid + d ];
+		if ( diff <= 0 || diff * diff <= r2 )
+			withinRadius( lo, mid, depth + 1, pos, r2, filter, out );
+		if ( diff >= 0 || diff * diff <= r2 )
+			withinRadius( mid + 1, hi, depth + 1, pos, r2, filter, out );
+	}
+
+	private void withinBox( final int lo, final int hi, final int depth, final double[] min, final double[] max, final Predicate< Spot > filter, final List< Spot > out )
+	{
+		if ( lo >= hi )
+			return;
+		final int mid = ( lo + hi ) >>> 1;
+		final int d = depth % nd;
+
+		boolean inside = true;
+		for ( int k = 0; k < min.length; k++ )
+		{
+			final double c = coords[ 3 * mid + k ];
+			if ( c < min[ k ] || c > max[ k ] )
+			{
+				inside = false;
+				break;
+			}
+		}
+		if ( inside && ( null == filter || filter.test( spots[ mid ] ) ) )
+			out.add( spots[ mid ] );
+
+		final double c = coords[ 3 * mid + d ];
+		final boolean bounded = d < min.length;
+		if ( !bounded || min[ d ] <= c )
+			withinBox( lo, mid, depth + 1, min, max, filter, out );
+		if ( !bounded || max[ d ] >= c )
+			withinBox( mid + 1, hi, depth + 1, min, max, filter, out );
+	}
+
+	/*
+	 * INNER CLASSES
+	 */
+
+	/**
+	 * Bounded k-nearest neighbor search. The current best candidates are
+	 * stored in a max-heap on their square distance.
+	 */
+	private final class KNearest
+	{
+
+		private final int k;
+
+		private final int[] indices;
+
+		private final double[] d2s;
+
+		private int n = 0;
+
+		private final double maxD2;
+
+		private KNearest( final int k, final double maxD2 )
+		{
+			this.k = Math.min( k, Math.max( 1, spots.length ) );
+			this.indices = new int[ this.k ];
+			this.d2s = new double[ this.k ];
+			this.maxD2 = maxD2;
+		}
+
+		private double bound()
+		{
+			return n < k ? maxD2 : d2s[ 0 ];
+		}
+
+		private void search( final int lo, final int hi, final int depth, final double[] pos, final Predicate< Spot > filter )
+		{
+			if ( lo >= hi )
+				return;
+			final int mid = ( lo + hi ) >>> 1;
+			final int d = depth % nd;
+			final double d2 = squareDistance( mid, pos );
+			if ( d2 < bound() && ( null == filter || filter.test( spots[ mid ] ) ) )
+				offer( mid, d2 );
+
+			final double diff = pos[ d ] - coords[ 3 * mid + d ];
+			if ( diff < 0 )
+			{
+				search( lo, mid, depth + 1, pos, filter );
+				if ( diff * diff < bound() )
+					search( mid + 1, hi, depth + 1, pos, filter );
+			}
+			else
+			{
+				search( mid + 1, hi, depth + 1, pos, filter );
+				if ( diff * diff < bound() )
+					search( lo, mid, depth + 1, pos, filter );
+			}
+		}
+
+		private void offer( final int index, final double d2 )
+		{
+			if ( n < k )
+			{
+				// Sift up.
+				int i = n++;
+				while ( i > 0 )
+				{
+					final int parent = ( i - 1 ) >>> 1;
+					if ( d2s[ parent ] >= d2 )
+						break;
+					d2s[ i ] = d2s[ parent ];
+					indices[ i ] = indices[ parent ];
+					i = parent;
+				}
+				d2s[ i ] = d2;
+				indices[ i ] = index;
+			}
+			else
+			{
+				// Replace the root and sift down.
+				int i = 0;
+				while ( true )
+				{
+					int child = 2 * i + 1;
+					if ( child >= n )
+						break;
+					if ( child + 1 < n && d2s[ child + 1 ] > d2s[ child ] )
+						child++;
+					if ( d2s[ child ] <= d2 )
+						break;
+					d2s[ i ] = d2s[ child ];
+					indices[ i ] = indices[ child ];
+					i = child;
+				}
+				d2s[ i ] = d2;
+				indices[ i ] = index;
+			}
+		}
+
+		private List< Spot > sorted()
+		{
+			final Integer[] order = new Integer[ n ];
+			for ( int i = 0; i < n; i++ )
+				order[ i ] = Integer.valueOf( i );
+			Arrays.sort( order, ( a, b ) -> Double.compare( d2s[ a ], d2s[ b ] ) );
+			final List< Spot > out = new ArrayList<>( n );
+			for ( final Integer i : order )
+				out.add( spots[ indices[ i ] ] );
+			return out;
+		}
+	}
+
+	/**
+	 * Finds the closest spot that contains a position within its radius.
+	 */
+	private final class SpotAt
+	{
+
+		private int best = -1;
+
+		private double bestD2 = Double.POSITIVE_INFINITY;
+
+		private void search( final int lo, final int hi, final int depth, final double[] pos, final double r2max, final Predicate< Spot > filter )
+		{
+			if ( lo >= hi )
+				return;
+			final int mid = ( lo + hi ) >>> 1;
+			final int d = depth % nd;
+			final double d2 = squareDistance( mid, pos );
+			final double r = radii[ mid ];
+			if ( d2 < Math.min( bestD2, r * r ) && ( null == filter || filter.test( spots[ mid ] ) ) )
+			{
+				bestD2 = d2;
+				best = mid;
+			}
+
+			final double diff = pos[ d ] - coords[ 3 * mid + d ];
+			final double limit = Math.min( bestD2, r2max );
+			if ( diff <= 0 || diff * diff < limit )
+				search( lo, mid, depth + 1, pos, r2max, filter );
+			if ( diff >= 0 || diff * diff < limit )
+				search( mid + 1, hi, depth + 1, pos, r2max, filter );
+		}
+	}
+}
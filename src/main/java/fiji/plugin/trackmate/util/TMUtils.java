@@ -33,6 +33,7 @@ import net.imglib2.img.ImagePlusAdapter;
 import net.imglib2.img.display.imagej.ImgPlusViews;
 import net.imglib2.type.Type;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 
 /**
@@ -382,7 +383,7 @@ public class TMUtils
 	 *            the number of data items this histogram was built on
 	 * @return the bin index of the histogram that thresholds it
 	 */
-	private static final int otsuThresholdIndex( final int[] hist, final int nPoints )
+	public static final int otsuThresholdIndex( final int[] hist, final int nPoints )
 	{
 		final int total = nPoints;
 
@@ -652,6 +653,51 @@ public class TMUtils
 		return interval;
 	}
 
+	/**
+	 * Restricts the X and Y bounds of the specified interval to the bounds of
+	 * a ROI mask, extended by a margin.
+	 * <p>
+	 * The margin lets filters read the actual image content around the ROI
+	 * instead of a mirrored border, so that spots close to the ROI edges are
+	 * detected as they would be in the full image. Spots found in the margin
+	 * must then be discarded with the mask.
+	 *
+	 * @param interval
+	 *            the interval to crop, as returned by
+	 *            {@link #getInterval(ImgPlus, Settings)} or
+	 *            {@link #getIntervalWithTime(ImgPlus, Settings)}.
+	 * @param img
+	 *            the source image the interval is defined in.
+	 * @param mask
+	 *            the ROI mask. If <code>null</code> or empty, the interval is
+	 *            returned unchanged.
+	 * @param margin
+	 *            the margin along X and Y, in pixels. If <code>null</code>,
+	 *            the margin the detector needs is unknown and the interval is
+	 *            returned unchanged.
+	 * @return a new interval.
+	 * @see RoiMask#margin(Map, double[])
+	 */
+	public static final Interval cropToRoi( final Interval interval, final ImgPlus< ? > img, final RoiMask mask, final long[] margin )
+	{
+		if ( null == mask || mask.isEmpty() || null == margin )
+			return interval;
+
+		final long[] min = Intervals.minAsLongArray( interval );
+		final long[] max = Intervals.maxAsLongArray( interval );
+
+		// X and Y come first, before the dropped dimensions.
+		final int xindex = img.dimensionIndex( Axes.X );
+		min[ xindex ] = Math.max( 0l, mask.xmin() - margin[ 0 ] );
+		max[ xindex ] = Math.min( img.max( xindex ), mask.xmax() + margin[ 0 ] );
+
+		final int yindex = img.dimensionIndex( Axes.Y );
+		min[ yindex ] = Math.max( 0l, mask.ymin() - margin[ 1 ] );
+		max[ yindex ] = Math.min( img.max( yindex ), mask.ymax() + margin[ 1 ] );
+
+		return new FinalInterval( min, max );
+	}
+
 	/** Obtains the SciJava {@link Context} in use by ImageJ. */
 	public static Context getContext() {
 		return ( Context ) IJ.runPlugIn( "org.scijava.Context", "" );
@@ -1,5 +1,7 @@
 package fiji.plugin.trackmate.visualization.hyperstack;
 
+import javax.swing.SwingUtilities;
+
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.ModelChangeEvent;
 import fiji.plugin.trackmate.SelectionChangeEvent;
@@ -93,6 +95,13 @@ public class HyperStackDisplayer extends AbstractTrackMateModelView
 		return imp;
 	}
 
+	@Override
+	public boolean isSynchronous()
+	{
+		// We only repaint the image.
+		return false;
+	}
+
 	@Override
 	public void modelChanged( final ModelChangeEvent event )
 	{
@@ -105,7 +114,8 @@ public class HyperStackDisplayer extends AbstractTrackMateModelView
 		case ModelChangeEvent.SPOTS_COMPUTED:
 		case ModelChangeEvent.TRACKS_VISIBILITY_CHANGED:
 		case ModelChangeEvent.TRACKS_COMPUTED:
-			refresh();
+			// We may be called from the model dispatcher thread.
+			SwingUtilities.invokeLater( () -> refresh() );
 			break;
 		}
 	}
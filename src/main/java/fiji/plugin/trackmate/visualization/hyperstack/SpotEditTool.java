@@ -2,6 +2,7 @@ package fiji.plugin.trackmate.visualization.hyperstack;
 
 import java.awt.MouseInfo;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ComponentEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
@@ -413,14 +414,27 @@ public class SpotEditTool extends AbstractTool implements MouseMotionListener, M
 					final Model model = displayer.getModel();
 					final SelectionModel selectionModel = displayer.getSelectionModel();
 
+					final Collection< Spot > added = new ArrayList<>();
+					final double calibration[] = TMUtils.getSpatialCalibration( lImp );
+
 					final Iterator< Spot > it;
 					if ( IJ.shiftKeyDown() )
+					{
 						it = model.getSpots().iterator( true );
+					}
 					else
-						it = model.getSpots().iterator( frame, true );
-
-					final Collection< Spot > added = new ArrayList<>();
-					final double calibration[] = TMUtils.getSpatialCalibration( lImp );
+					{
+						// Only inspect the spots in the ROI bounds.
+						final Rectangle bounds = roiedit.getBounds();
+						final double[] min = new double[] {
+								( bounds.x - 1 ) * calibration[ 0 ],
+								( bounds.y - 1 ) * calibration[ 1 ] };
+						final double[] max = new double[] {
+								( bounds.x + bounds.width + 1 ) * calibration[ 0 ],
+								( bounds.y + bounds.height + 1 ) * calibration[ 1 ] };
+						final SpotCollection spots = model.getSpots();
+						it = spots.getSpatialIndex( frame ).withinBox( min, max, spots.visibilityFilter() ).iterator();
+					}
 
 					while ( it.hasNext() )
 					{
@@ -476,6 +490,7 @@ public class SpotEditTool extends AbstractTool implements MouseMotionListener, M
 			editedSpot.putFeature( Spot.POSITION_X, x );
 			editedSpot.putFeature( Spot.POSITION_Y, y );
 			editedSpot.putFeature( Spot.POSITION_Z, z );
+			invalidateIndices( displayer, editedSpot );
 			displayer.imp.updateAndDraw();
 			updateStatusBar( editedSpot, lImp.getCalibration().getUnits() );
 		}
@@ -529,6 +544,7 @@ public class SpotEditTool extends AbstractTool implements MouseMotionListener, M
 		quickEditedSpot.putFeature( Spot.POSITION_X, x );
 		quickEditedSpot.putFeature( Spot.POSITION_Y, y );
 		quickEditedSpot.putFeature( Spot.POSITION_Z, z );
+		invalidateIndices( displayer, quickEditedSpot );
 		displayer.imp.updateAndDraw();
 
 	}
@@ -561,6 +577,7 @@ public class SpotEditTool extends AbstractTool implements MouseMotionListener, M
 		}
 
 		editedSpot.putFeature( Spot.RADIUS, radius );
+		invalidateIndices( displayer, editedSpot );
 		displayer.imp.updateAndDraw();
 		e.consume();
 		updateStatusBar( editedSpot, lImp.getCalibration().getUnits() );
@@ -1095,6 +1112,18 @@ public class SpotEditTool extends AbstractTool implements MouseMotionListener, M
 	 * PRIVATE METHODS
 	 */
 
+	/**
+	 * Discards the indices of the frame of a spot that was moved or resized,
+	 * so that spot queries do not use its former position until the model
+	 * features are updated.
+	 */
+	private static void invalidateIndices( final HyperStackDisplayer displayer, final Spot spot )
+	{
+		final Double frame = spot.getFeature( Spot.FRAME );
+		if ( null != frame )
+			displayer.getModel().getSpots().invalidateIndices( frame.intValue() );
+	}
+
 	private void updateStatusBar( final Spot spot, final String units )
 	{
 		if ( null == spot )
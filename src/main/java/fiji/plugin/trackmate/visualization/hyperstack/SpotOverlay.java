@@ -8,6 +8,7 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
@@ -24,6 +25,7 @@ import fiji.plugin.trackmate.SpotRoi;
 import fiji.plugin.trackmate.features.FeatureUtils;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings.TrackDisplayMode;
+import fiji.plugin.trackmate.util.SpotSpatialIndex;
 import fiji.plugin.trackmate.util.TMUtils;
 import fiji.plugin.trackmate.visualization.FeatureColorGenerator;
 import ij.ImagePlus;
@@ -135,7 +137,7 @@ public class SpotOverlay extends Roi
 		else
 		{
 			// Other track displays.
-			for ( final Iterator< Spot > iterator = spots.iterator( frame, true ); iterator.hasNext(); )
+			for ( final Iterator< Spot > iterator = spotsInView( spots, frame ); iterator.hasNext(); )
 			{
 				final Spot spot = iterator.next();
 
@@ -207,6 +209,36 @@ public class SpotOverlay extends Roi
 		g2d.setFont( originalFont );
 	}
 
+	/**
+	 * Returns an iterator over the visible spots of the specified frame that
+	 * can be drawn in the part of the image currently displayed. When spot
+	 * names or ROIs are displayed, the drawing extent of a spot is not bounded
+	 * by its radius, and all the visible spots of the frame are returned.
+	 *
+	 * @param spots
+	 *            the spot collection.
+	 * @param frame
+	 *            the frame.
+	 * @return an iterator over the spots to draw.
+	 */
+	private Iterator< Spot > spotsInView( final SpotCollection spots, final int frame )
+	{
+		if ( displaySettings.isSpotShowName() || displaySettings.isSpotDisplayedAsRoi() )
+			return spots.iterator( frame, true );
+
+		final SpotSpatialIndex index = spots.getSpatialIndex( frame );
+		final Rectangle srcRect = ic.getSrcRect();
+		// Largest drawn radius or out-of-focus dot size, in pixels.
+		final double margin = Math.max( index.getMaxRadius() * displaySettings.getSpotDisplayRadius() / calibration[ 0 ], 2. ) + 1.;
+		final double[] min = new double[] {
+				( srcRect.x - margin ) * calibration[ 0 ],
+				( srcRect.y - margin ) * calibration[ 1 ] };
+		final double[] max = new double[] {
+				( srcRect.x + srcRect.width + margin ) * calibration[ 0 ],
+				( srcRect.y + srcRect.height + margin ) * calibration[ 1 ] };
+		return index.withinBox( min, max, spots.visibilityFilter() ).iterator();
+	}
+
 	/**
 	 * @param g2d
 	 * @param frame
@@ -11,12 +11,12 @@ import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Set;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.TrackSnapshot;
 import fiji.plugin.trackmate.features.FeatureUtils;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings.TrackDisplayMode;
@@ -79,7 +79,9 @@ public class TrackOverlay extends Roi
 		final double maxx = minx + ic.getWidth() / magnification;
 		final double maxy = miny + ic.getHeight() / magnification;
 
-		if ( !displaySettings.isTrackVisible() || model.getTrackModel().nTracks( true ) == 0 )
+		// Immutable, can be iterated while the model is edited.
+		final TrackSnapshot snapshot = model.getTrackSnapshot();
+		if ( !displaySettings.isTrackVisible() || snapshot.nTracks( true ) == 0 )
 			return;
 
 		final boolean doLimitDrawingDepth = displaySettings.isZDrawingDepthLimited();
@@ -96,7 +98,6 @@ public class TrackOverlay extends Roi
 		final int currentFrame = imp.getFrame() - 1;
 		final TrackDisplayMode trackDisplayMode = displaySettings.getTrackDisplayMode();
 		final int trackDisplayDepth = displaySettings.isFadeTracks() ? displaySettings.getFadeTrackRange() : 1_000_000_000;
-		final Set< Integer > filteredTrackKeys = model.getTrackModel().unsortedTrackIDs( true );
 
 		g2d.setStroke( new BasicStroke( ( float ) displaySettings.getLineThickness() ) );
 		if ( trackDisplayMode == TrackDisplayMode.LOCAL )
@@ -159,13 +160,14 @@ public class TrackOverlay extends Roi
 		}
 		case FULL:
 		{
-			for ( final Integer trackID : filteredTrackKeys )
+			for ( final Integer trackID : snapshot.trackIDs( true ) )
 			{
-				final Set< DefaultWeightedEdge > track = new HashSet<>( model.getTrackModel().trackEdges( trackID ) );
-				for ( final DefaultWeightedEdge edge : track )
+				final TrackSnapshot.Track track = snapshot.track( trackID );
+				for ( int i = 0; i < track.nEdges(); i++ )
 				{
-					final Spot source = model.getTrackModel().getEdgeSource( edge );
-					final Spot target = model.getTrackModel().getEdgeTarget( edge );
+					final DefaultWeightedEdge edge = track.edge( i );
+					final Spot source = track.source( i );
+					final Spot target = track.target( i );
 					if ( !isOnClip( source, target, minx, miny, maxx, maxy, calibration ) )
 						continue;
 
@@ -185,22 +187,19 @@ public class TrackOverlay extends Roi
 		case LOCAL_FORWARD:
 		{
 
-			for ( final Integer trackID : filteredTrackKeys )
+			for ( final Integer trackID : snapshot.trackIDs( true ) )
 			{
-				final Set< DefaultWeightedEdge > track;
-				synchronized ( model )
+				final TrackSnapshot.Track track = snapshot.track( trackID );
+				for ( int i = 0; i < track.nEdges(); i++ )
 				{
-					track = new HashSet<>( model.getTrackModel().trackEdges( trackID ) );
-				}
-				for ( final DefaultWeightedEdge edge : track )
-				{
-					final Spot source = model.getTrackModel().getEdgeSource( edge );
+					final DefaultWeightedEdge edge = track.edge( i );
+					final Spot source = track.source( i );
 					final int sourceFrame = source.getFeature( Spot.FRAME ).intValue();
 					if ( sourceFrame < minT || sourceFrame >= maxT )
 						continue;
 
 					final float transparency = ( float ) ( 1 - Math.abs( ( double ) sourceFrame - currentFrame ) / trackDisplayDepth );
-					final Spot target = model.getTrackModel().getEdgeTarget( edge );
+					final Spot target = track.target( i );
 					if ( !isOnClip( source, target, minx, miny, maxx, maxy, calibration ) )
 						continue;
 
@@ -23,6 +23,7 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JTable;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -228,21 +229,37 @@ public class AllSpotsTableView extends JFrame implements TrackMateModelView, Mod
 		repaint();
 	}
 
+	@Override
+	public boolean isSynchronous()
+	{
+		// The tables are rebuilt from the model content.
+		return false;
+	}
+
 	@Override
 	public void modelChanged( final ModelChangeEvent event )
 	{
 		if ( event.getEventID() == ModelChangeEvent.FEATURES_COMPUTED )
 		{
-			refresh();
+			SwingUtilities.invokeLater( () -> refresh() );
 			return;
 		}
 
+		/*
+		 * We may be called from the model dispatcher thread. Collect the
+		 * spots under the model lock, so that no edit happens while we
+		 * iterate, and update the table on the EDT.
+		 */
 		final List< Spot > spots = new ArrayList<>();
-		for ( final Spot spot : model.getSpots().iterable( true ) )
-			spots.add( spot );
-		spotTable.setObjects( spots );
-
-		refresh();
+		synchronized ( model )
+		{
+			for ( final Spot spot : model.getSpots().iterable( true ) )
+				spots.add( spot );
+		}
+		SwingUtilities.invokeLater( () -> {
+			spotTable.setObjects( spots );
+			refresh();
+		} );
 	}
 
 	/*
@@ -26,6 +26,7 @@ import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import javax.swing.JTable;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -381,29 +382,46 @@ public class TrackTableView extends JFrame implements TrackMateModelView, ModelC
 		repaint();
 	}
 
+	@Override
+	public boolean isSynchronous()
+	{
+		// The tables are rebuilt from the model content.
+		return false;
+	}
+
 	@Override
 	public void modelChanged( final ModelChangeEvent event )
 	{
 		if ( event.getEventID() == ModelChangeEvent.FEATURES_COMPUTED )
 		{
-			refresh();
+			SwingUtilities.invokeLater( () -> refresh() );
 			return;
 		}
 
+		/*
+		 * We may be called from the model dispatcher thread. Collect the
+		 * content of the tracks under the model lock, so that no edit happens
+		 * while we iterate, and update the tables on the EDT.
+		 */
 		final List< Spot > spots = new ArrayList<>();
-		for ( final Integer trackID : model.getTrackModel().unsortedTrackIDs( true ) )
-			spots.addAll( model.getTrackModel().trackSpots( trackID ) );
-		spotTable.setObjects( spots );
-
 		final List< DefaultWeightedEdge > edges = new ArrayList<>();
-		for ( final Integer trackID : model.getTrackModel().unsortedTrackIDs( true ) )
-			edges.addAll( model.getTrackModel().trackEdges( trackID ) );
-		edgeTable.setObjects( edges );
-
-		final List< Integer > trackIDs = new ArrayList<>( model.getTrackModel().trackIDs( true ) );
-		trackTable.setObjects( trackIDs );
+		final List< Integer > trackIDs;
+		synchronized ( model )
+		{
+			for ( final Integer trackID : model.getTrackModel().unsortedTrackIDs( true ) )
+			{
+				spots.addAll( model.getTrackModel().trackSpots( trackID ) );
+				edges.addAll( model.getTrackModel().trackEdges( trackID ) );
+			}
+			trackIDs = new ArrayList<>( model.getTrackModel().trackIDs( true ) );
+		}
 
-		refresh();
+		SwingUtilities.invokeLater( () -> {
+			spotTable.setObjects( spots );
+			edgeTable.setObjects( edges );
+			trackTable.setObjects( trackIDs );
+			refresh();
+		} );
 	}
 
 	/*
@@ -0,0 +1,110 @@
+package fiji.plugin.trackmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.junit.Test;
+
+public class ModelChangeDispatcherTest
+{
+
+	@Test
+	public void testCoalescing() throws InterruptedException
+	{
+		final Object source = new Object();
+		final Spot s1 = new Spot( 0d, 0d, 0d, 1d, -1d );
+		final Spot s2 = new Spot( 0d, 0d, 0d, 1d, -1d );
+		final Spot s3 = new Spot( 0d, 0d, 0d, 1d, -1d );
+		final DefaultWeightedEdge e1 = new DefaultWeightedEdge();
+		final DefaultWeightedEdge e2 = new DefaultWeightedEdge();
+
+		// A listener that blocks on the first event, so that the next ones
+		// are queued.
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final List< ModelChangeEvent > received = Collections.synchronizedList( new ArrayList<>() );
+		final ModelChangeListener listener = event -> {
+			received.add( event );
+			try
+			{
+				release.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		};
+		final List< ModelChangeListener > listeners = Arrays.asList( listener );
+
+		final ModelChangeDispatcher dispatcher = new ModelChangeDispatcher( () -> Logger.VOID_LOGGER );
+		dispatcher.dispatch( new ModelChangeEvent( source, ModelChangeEvent.SPOTS_COMPUTED ), listeners );
+
+		// s1 and s2 added, e1 and e2 added.
+		final ModelChangeEvent event1 = new ModelChangeEvent( source, ModelChangeEvent.MODEL_MODIFIED );
+		event1.addAllSpots( Arrays.asList( s1, s2 ) );
+		event1.putSpotFlag( s1, ModelChangeEvent.FLAG_SPOT_ADDED );
+		event1.putSpotFlag( s2, ModelChangeEvent.FLAG_SPOT_ADDED );
+		event1.addAllEdges( Arrays.asList( e1, e2 ) );
+		event1.putEdgeFlag( e1, ModelChangeEvent.FLAG_EDGE_ADDED );
+		event1.putEdgeFlag( e2, ModelChangeEvent.FLAG_EDGE_ADDED );
+		event1.setTracksUpdated( new HashSet<>( Arrays.asList( 0 ) ) );
+		dispatcher.dispatch( event1, listeners );
+
+		// s1 removed, s2 modified, s3 moved, e1 removed.
+		final ModelChangeEvent event2 = new ModelChangeEvent( source, ModelChangeEvent.MODEL_MODIFIED );
+		event2.addAllSpots( Arrays.asList( s1, s2, s3 ) );
+		event2.putSpotFlag( s1, ModelChangeEvent.FLAG_SPOT_REMOVED );
+		event2.putSpotFlag( s2, ModelChangeEvent.FLAG_SPOT_MODIFIED );
+		event2.putSpotFlag( s3, ModelChangeEvent.FLAG_SPOT_FRAME_CHANGED );
+		event2.addEdge( e1 );
+		event2.putEdgeFlag( e1, ModelChangeEvent.FLAG_EDGE_REMOVED );
+		event2.setTracksUpdated( new HashSet<>( Arrays.asList( 1 ) ) );
+		dispatcher.dispatch( event2, listeners );
+
+		// Event1 must not have been modified by the merge.
+		assertEquals( 2, event1.getSpots().size() );
+
+		release.countDown();
+		dispatcher.await();
+		dispatcher.shutdown();
+
+		assertEquals( 2, received.size() );
+		assertEquals( ModelChangeEvent.SPOTS_COMPUTED, received.get( 0 ).getEventID() );
+
+		final ModelChangeEvent merged = received.get( 1 );
+		assertEquals( ModelChangeEvent.MODEL_MODIFIED, merged.getEventID() );
+		assertEquals( new HashSet<>( Arrays.asList( s2, s3 ) ), merged.getSpots() );
+		assertEquals( ModelChangeEvent.FLAG_SPOT_ADDED, merged.getSpotFlag( s2 ).intValue() );
+		assertEquals( ModelChangeEvent.FLAG_SPOT_FRAME_CHANGED, merged.getSpotFlag( s3 ).intValue() );
+		assertEquals( Collections.singleton( e2 ), merged.getEdges() );
+		assertEquals( ModelChangeEvent.FLAG_EDGE_ADDED, merged.getEdgeFlag( e2 ).intValue() );
+		assertTrue( merged.getTrackUpdated().containsAll( Arrays.asList( 0, 1 ) ) );
+	}
+
+	@Test
+	public void testFaultyListener() throws InterruptedException
+	{
+		final Logger.StringBuilderLogger logger = new Logger.StringBuilderLogger();
+		final List< ModelChangeEvent > received = Collections.synchronizedList( new ArrayList<>() );
+		final ModelChangeListener faulty = event -> {
+			throw new IllegalStateException( "Faulty listener." );
+		};
+		final List< ModelChangeListener > listeners = Arrays.asList( faulty, received::add );
+
+		final ModelChangeDispatcher dispatcher = new ModelChangeDispatcher( () -> logger );
+		dispatcher.dispatch( new ModelChangeEvent( new Object(), ModelChangeEvent.SPOTS_COMPUTED ), listeners );
+		dispatcher.await();
+		dispatcher.shutdown();
+
+		// The exception is reported and the next listener is notified.
+		assertEquals( 1, received.size() );
+		assertTrue( logger.toString().contains( "Faulty listener." ) );
+	}
+}
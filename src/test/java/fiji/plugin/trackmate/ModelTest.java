@@ -2,10 +2,13 @@ package fiji.plugin.trackmate;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
@@ -411,6 +414,72 @@ public class ModelTest {
 		model.endUpdate();
 	}
 
+	/**
+	 * Test that tracks can be set in bulk from arrays of links, with a single
+	 * event.
+	 */
+	@Test
+	public void testSetTracksFromLinks() {
+		final Model model = new Model();
+		final int nSpots = 10;
+		final Spot[] spots = new Spot[nSpots];
+		model.beginUpdate();
+		try {
+			for (int i = 0; i < nSpots; i++) {
+				spots[i] = new Spot(0d, 0d, 0d, 1d, -1d);
+				model.addSpotTo(spots[i], i);
+			}
+		} finally {
+			model.endUpdate();
+		}
+
+		// Two tracks: 0-1-2-3-4 and 5-6, with a branch 6-7. Spots 8 & 9 are
+		// not linked.
+		final int[] sources = new int[] { spots[0].ID(), spots[1].ID(), spots[2].ID(), spots[3].ID(), spots[5].ID(), spots[6].ID() };
+		final int[] targets = new int[] { spots[1].ID(), spots[2].ID(), spots[3].ID(), spots[4].ID(), spots[6].ID(), spots[7].ID() };
+		final double[] weights = new double[] { 1., 2., 3., 4., 5., 6. };
+
+		final List<ModelChangeEvent> events = new ArrayList<>();
+		model.addModelChangeListener(events::add);
+		model.setTracks(sources, targets, weights, true);
+
+		assertEquals(1, events.size());
+		assertEquals(ModelChangeEvent.TRACKS_COMPUTED, events.get(0).getEventID());
+
+		final TrackModel tm = model.getTrackModel();
+		assertEquals(2, tm.nTracks(false));
+		assertEquals(6, tm.edgeSet().size());
+		final Integer id1 = tm.trackIDOf(spots[0]);
+		assertEquals(5, tm.trackSpots(id1).size());
+		assertEquals(4, tm.trackEdges(id1).size());
+		final Integer id2 = tm.trackIDOf(spots[5]);
+		assertEquals(3, tm.trackSpots(id2).size());
+		assertEquals(2, tm.trackEdges(id2).size());
+		assertEquals(null, tm.trackIDOf(spots[8]));
+		assertEquals(3., tm.getEdgeWeight(tm.getEdge(spots[2], spots[3])), 0.);
+
+		// A link given twice, in reverse, is rejected and leaves the tracks
+		// unchanged.
+		try {
+			model.setTracks(new int[] { spots[8].ID(), spots[9].ID() }, new int[] { spots[9].ID(), spots[8].ID() }, new double[] { 1., 1. }, true);
+			fail("A duplicate link must be rejected.");
+		} catch (final IllegalArgumentException e) {
+			// Expected.
+		}
+		assertEquals(2, tm.nTracks(false));
+		assertEquals(6, tm.edgeSet().size());
+
+		// The tracks built from links are updated by later edits.
+		model.beginUpdate();
+		try {
+			model.addEdge(spots[8], spots[9], 7.);
+		} finally {
+			model.endUpdate();
+		}
+		assertEquals(3, tm.nTracks(false));
+		assertEquals(tm.trackIDOf(spots[8]), tm.trackIDOf(spots[9]));
+	}
+
 	/*
 	 * EXAMPLE
 	 */
@@ -153,7 +153,7 @@ public class SpotCollectionTest
 			targetSpot = it.next();
 
 		assertNotNull( targetSpot );
-		targetSpot.putFeature( SpotCollection.VISIBILITY, SpotCollection.ONE );
+		sc.setVisible( targetSpot, true );
 		// Test for visibility
 		it = sc.iterator( false );
 		while ( it.hasNext() )
@@ -193,6 +193,52 @@ public class SpotCollectionTest
 		assertEquals( 3 * 5, sc.getNSpots( true ) );
 	}
 
+	@Test
+	public void testRefilter()
+	{
+		final Random ran = new Random( 1l );
+		for ( final Spot spot : sc.iterable( false ) )
+			spot.putFeature( Spot.RADIUS, ran.nextDouble() );
+
+		// Filter once, then drag thresholds one at a time.
+		sc.filter( Arrays.asList(
+				new FeatureFilter( Spot.QUALITY, 20d, true ),
+				new FeatureFilter( Spot.RADIUS, 0.5, false ) ) );
+		for ( int i = 0; i < 20; i++ )
+		{
+			final List< FeatureFilter > filters = Arrays.asList(
+					new FeatureFilter( Spot.QUALITY, ran.nextInt( N_SPOTS ), true ),
+					new FeatureFilter( Spot.RADIUS, ran.nextDouble(), false ) );
+			sc.filter( filters );
+
+			int expected = 0;
+			for ( final Spot spot : sc.iterable( false ) )
+			{
+				boolean passes = true;
+				for ( final FeatureFilter filter : filters )
+				{
+					final double val = spot.getFeature( filter.feature ).doubleValue();
+					passes &= filter.isAbove ? val >= filter.value : val <= filter.value;
+				}
+				assertEquals( passes, sc.isVisible( spot ) );
+				assertEquals( passes, isVisible( spot ) );
+				if ( passes )
+					expected++;
+			}
+			assertEquals( expected, sc.getNSpots( true ) );
+		}
+
+		// Feature changes are seen after invalidation.
+		for ( final Spot spot : sc.iterable( false ) )
+			spot.putFeature( Spot.RADIUS, 0. );
+		for ( final Integer frame : frames )
+			sc.invalidateIndices( frame );
+		sc.filter( Arrays.asList(
+				new FeatureFilter( Spot.QUALITY, 0d, true ),
+				new FeatureFilter( Spot.RADIUS, 0.5, false ) ) );
+		assertEquals( N_SPOTS * N_FRAMES, sc.getNSpots( true ) );
+	}
+
 	@Test
 	public void testGetClosestSpot()
 	{
@@ -299,7 +345,7 @@ public class SpotCollectionTest
 			{
 				final Spot spot = it.next();
 				markedSpots.add( spot );
-				spot.putFeature( SpotCollection.VISIBILITY, SpotCollection.ONE );
+				sc.setVisible( spot, true );
 			}
 		}
 
@@ -345,7 +391,7 @@ public class SpotCollectionTest
 		{
 			final Spot spot = it.next();
 			markedSpots.add( spot );
-			spot.putFeature( SpotCollection.VISIBILITY, SpotCollection.ONE );
+			sc.setVisible( spot, true );
 		}
 		// See if we iterate over them.
 		it = sc.iterator( targetFrame, true );
@@ -403,6 +449,37 @@ public class SpotCollectionTest
 		}
 	}
 
+	@Test
+	public void testSearch()
+	{
+		final Spot spot = new Spot( 0d, 0d, 0d, 1d, -1d );
+		assertNull( sc.search( spot.ID() ) );
+
+		sc.add( spot, 3 );
+		assertEquals( spot, sc.search( spot.ID() ) );
+
+		final Spot other = sc.iterator( 5, false ).next();
+		assertEquals( other, sc.search( other.ID() ) );
+
+		assertTrue( sc.remove( spot, 3 ) );
+		assertNull( sc.search( spot.ID() ) );
+
+		// Replace the content of a frame.
+		final List< Spot > frameContent = new ArrayList<>();
+		sc.iterable( 5, false ).forEach( frameContent::add );
+		sc.put( 5, Arrays.asList( spot ) );
+		assertNull( sc.search( other.ID() ) );
+		assertEquals( spot, sc.search( spot.ID() ) );
+
+		// Crop invisible spots.
+		sc.setVisible( false );
+		sc.add( other, 5 );
+		sc.crop();
+		assertNull( sc.search( spot.ID() ) );
+		assertEquals( other, sc.search( other.ID() ) );
+		assertNull( sc.search( frameContent.get( 1 ).ID() ) );
+	}
+
 	@Test
 	public void testFirstKey()
 	{
@@ -456,4 +533,64 @@ public class SpotCollectionTest
 		return spot.getFeature( SpotCollection.VISIBILITY ).compareTo( SpotCollection.ZERO ) > 0;
 	}
 
+
+	@Test
+	public void testIteratorUnaffectedByEdits()
+	{
+		final int frame = frames.get( 0 );
+		final Iterator< Spot > it = sc.iterator( frame, false );
+		final Spot first = it.next();
+		sc.remove( first, frame );
+		sc.add( new Spot( -1, -1, 0, 1d, -1d ), frame );
+		final Spot second = it.next();
+		sc.setVisible( second, !sc.isVisible( second ) );
+
+		int n = 2;
+		while ( it.hasNext() )
+		{
+			assertNotNull( it.next() );
+			n++;
+		}
+		assertEquals( N_SPOTS, n );
+		assertEquals( N_SPOTS, sc.getNSpots( frame, false ) );
+	}
+
+	@Test
+	public void testIterateWhileEditing() throws InterruptedException
+	{
+		final int frame = frames.get( 0 );
+		final List< Throwable > errors = new ArrayList<>();
+		final Thread editor = new Thread( () -> {
+			try
+			{
+				for ( int i = 0; i < 20000; i++ )
+				{
+					final Spot spot = new Spot( i, i, 0, 1d, -1d );
+					sc.add( spot, frame );
+					sc.setVisible( spot, i % 2 == 0 );
+					sc.remove( spot, frame );
+				}
+			}
+			catch ( final Throwable t )
+			{
+				errors.add( t );
+			}
+		} );
+		editor.start();
+		// Read the frame concurrently, as the overlay and event threads do.
+		while ( editor.isAlive() )
+		{
+			int n = 0;
+			for ( final Spot spot : sc.iterable( frame, false ) )
+			{
+				assertNotNull( spot );
+				n++;
+			}
+			assertTrue( n >= N_SPOTS );
+			sc.getNSpots( frame, false );
+		}
+		editor.join();
+		assertTrue( errors.toString(), errors.isEmpty() );
+		assertEquals( N_SPOTS, sc.getNSpots( frame, false ) );
+	}
 }
@@ -0,0 +1,136 @@
+package fiji.plugin.trackmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpotFeatureStoreTest
+{
+
+	private boolean wasEnabled;
+
+	@Before
+	public void setUp()
+	{
+		wasEnabled = SpotFeatureStore.isEnabled();
+		SpotFeatureStore.setEnabled( true );
+	}
+
+	@After
+	public void tearDown()
+	{
+		SpotFeatureStore.setEnabled( wasEnabled );
+	}
+
+	@Test
+	public void testPositionSlots()
+	{
+		final SpotFeatureStore store = SpotFeatureStore.getInstance();
+		for ( int d = 0; d < 3; d++ )
+			assertEquals( d, store.slot( Spot.POSITION_FEATURES[ d ] ) );
+
+		final Spot spot = new Spot( 1., 2., 3., 4., 5. );
+		assertEquals( 1., spot.getDoublePosition( 0 ), 0. );
+		assertEquals( 2., spot.getDoublePosition( 1 ), 0. );
+		assertEquals( 3., spot.getDoublePosition( 2 ), 0. );
+		assertEquals( 4., spot.getFeature( Spot.RADIUS ), 0. );
+		assertEquals( 5., spot.getFeature( Spot.QUALITY ), 0. );
+
+		spot.putFeature( Spot.POSITION_X, 10. );
+		assertEquals( 10., spot.getDoublePosition( 0 ), 0. );
+
+		final Spot other = new Spot( 10., 2., 5., 1., 1. );
+		assertEquals( 4., spot.squareDistanceTo( other ), 0. );
+	}
+
+	@Test
+	public void testFacade()
+	{
+		final Spot spot = new Spot( 1., 2., 3., 4., 5. );
+		assertNull( spot.getFeature( "NOT_DECLARED" ) );
+
+		spot.putFeature( "NOT_DECLARED", Double.NaN );
+		assertTrue( Double.isNaN( spot.getFeature( "NOT_DECLARED" ) ) );
+
+		final Map< String, Double > map = spot.getFeatures();
+		assertTrue( map.containsKey( "NOT_DECLARED" ) );
+		assertEquals( 6, map.size() );
+
+		map.remove( "NOT_DECLARED" );
+		assertFalse( map.containsKey( "NOT_DECLARED" ) );
+		assertNull( spot.getFeature( "NOT_DECLARED" ) );
+		assertEquals( 5, map.size() );
+
+		// Features of other spots are not affected.
+		final Spot other = new Spot( 1., 2., 3., 4., 5. );
+		other.putFeature( Spot.QUALITY, 20. );
+		assertEquals( 5., spot.getFeature( Spot.QUALITY ), 0. );
+		assertEquals( 20., other.getFeature( Spot.QUALITY ), 0. );
+	}
+
+	@Test
+	public void testManySpots()
+	{
+		final int nSpots = 10000;
+		final Spot[] spots = new Spot[ nSpots ];
+		for ( int i = 0; i < nSpots; i++ )
+			spots[ i ] = new Spot( i, -i, 0., 1., i );
+
+		for ( int i = 0; i < nSpots; i++ )
+		{
+			assertEquals( i, spots[ i ].getDoublePosition( 0 ), 0. );
+			assertEquals( -i, spots[ i ].getDoublePosition( 1 ), 0. );
+			assertEquals( i, spots[ i ].getFeature( Spot.QUALITY ), 0. );
+		}
+	}
+
+	@Test
+	public void testReleasedIndicesAreReused() throws InterruptedException
+	{
+		// A fresh store, not shared with the spots of the other tests.
+		SpotFeatureStore.setEnabled( false );
+		SpotFeatureStore.setEnabled( true );
+		final SpotFeatureStore store = SpotFeatureStore.getInstance();
+
+		final int nSpots = 10000;
+		for ( int i = 0; i < nSpots; i++ )
+			new Spot( i, i, 0., 1., i ).putFeature( "NOT_DECLARED", 1. );
+		assertEquals( nSpots, store.size() );
+
+		// Wait for the discarded spots to be collected.
+		for ( int t = 0; t < 50 && store.nSpots() > 0; t++ )
+		{
+			System.gc();
+			Thread.sleep( 20 );
+			new Spot( 0., 0., 0., 1., 1. );
+		}
+
+		final Spot[] spots = new Spot[ nSpots ];
+		for ( int i = 0; i < nSpots; i++ )
+			spots[ i ] = new Spot( i, i, 0., 1., i );
+		assertTrue( store.size() < 2 * nSpots );
+		for ( int i = 0; i < nSpots; i++ )
+		{
+			// Values of the released spots are cleared.
+			assertNull( spots[ i ].getFeature( "NOT_DECLARED" ) );
+			assertEquals( i, spots[ i ].getFeature( Spot.QUALITY ), 0. );
+		}
+	}
+
+	@Test
+	public void testDisabled()
+	{
+		SpotFeatureStore.setEnabled( false );
+		final Spot spot = new Spot( 1., 2., 3., 4., 5. );
+		assertEquals( 2., spot.getDoublePosition( 1 ), 0. );
+		spot.putFeature( "NOT_DECLARED", 1. );
+		assertEquals( 6, spot.getFeatures().size() );
+	}
+}
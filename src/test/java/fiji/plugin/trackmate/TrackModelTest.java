@@ -10,6 +10,7 @@ import java.util.Random;
 import java.util.Set;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
 import org.junit.Test;
 
 public class TrackModelTest
@@ -253,4 +254,172 @@ public class TrackModelTest
 		assertTrue( model.isVisible( id ) );
 	}
 
+	@Test
+	public void testRandomLinkingAndUnlinking()
+	{
+		final Random ran = new Random( 1l );
+		final TrackModel model = new TrackModel();
+		final List< Spot > spots = new ArrayList< >();
+		for ( int i = 0; i < 200; i++ )
+		{
+			final Spot spot = new Spot( 0d, 0d, 0d, 1d, -1d );
+			model.addSpot( spot );
+			spots.add( spot );
+		}
+
+		final List< DefaultWeightedEdge > edges = new ArrayList< >();
+		for ( int i = 0; i < 2000; i++ )
+		{
+			if ( edges.isEmpty() || ran.nextDouble() < 0.6 )
+			{
+				final Spot source = spots.get( ran.nextInt( spots.size() ) );
+				final Spot target = spots.get( ran.nextInt( spots.size() ) );
+				if ( source == target || model.containsEdge( source, target ) )
+					continue;
+				edges.add( model.addEdge( source, target, 1 ) );
+			}
+			else
+			{
+				model.removeEdge( edges.remove( ran.nextInt( edges.size() ) ) );
+			}
+
+			if ( i % 50 == 0 )
+				assertConnectedComponents( model, spots );
+		}
+		assertConnectedComponents( model, spots );
+	}
+
+	@Test
+	public void testSetGraph()
+	{
+		final Random ran = new Random( 2l );
+		final List< Spot > spots = new ArrayList< >();
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph< >( DefaultWeightedEdge.class );
+		for ( int i = 0; i < 500; i++ )
+		{
+			final Spot spot = new Spot( 0d, 0d, 0d, 1d, -1d );
+			graph.addVertex( spot );
+			spots.add( spot );
+		}
+		for ( int i = 0; i < 400; i++ )
+		{
+			final Spot source = spots.get( ran.nextInt( spots.size() ) );
+			final Spot target = spots.get( ran.nextInt( spots.size() ) );
+			if ( source != target )
+				graph.addEdge( source, target );
+		}
+
+		final TrackModel model = new TrackModel();
+		model.setGraph( graph );
+		assertConnectedComponents( model, spots );
+
+		// Editing must still be possible after the bulk load.
+		final DefaultWeightedEdge edge = model.edgeSet().iterator().next();
+		model.removeEdge( edge );
+		if ( !model.containsEdge( spots.get( 0 ), spots.get( 1 ) ) )
+			model.addEdge( spots.get( 0 ), spots.get( 1 ), 1 );
+		assertConnectedComponents( model, spots );
+	}
+
+	@Test
+	public void testSnapshots()
+	{
+		final TrackModel model = new TrackModel();
+		final Spot[] spots = new Spot[ 6 ];
+		for ( int i = 0; i < spots.length; i++ )
+		{
+			spots[ i ] = new Spot( 0d, 0d, 0d, 1d, -1d );
+			model.addSpot( spots[ i ] );
+		}
+		// Two tracks: 0-1-2 and 3-4.
+		model.addEdge( spots[ 0 ], spots[ 1 ], 1 );
+		model.addEdge( spots[ 1 ], spots[ 2 ], 1 );
+		model.addEdge( spots[ 3 ], spots[ 4 ], 1 );
+
+		final TrackSnapshot s1 = model.snapshot();
+		assertTrue( s1 == model.currentSnapshot() );
+		assertTrue( s1 == model.snapshot() );
+		assertEquals( 2, s1.nTracks( false ) );
+		final Integer idA = model.trackIDOf( spots[ 0 ] );
+		final Integer idB = model.trackIDOf( spots[ 3 ] );
+		assertEquals( 2, s1.track( idA ).nEdges() );
+		assertEquals( 3, s1.track( idA ).spots().size() );
+
+		// Extend the second track only.
+		model.addEdge( spots[ 4 ], spots[ 5 ], 1 );
+		assertEquals( null, model.currentSnapshot() );
+		final TrackSnapshot s2 = model.snapshot();
+		assertTrue( s2.version() > s1.version() );
+
+		// The old snapshot is unchanged.
+		assertEquals( 1, s1.track( idB ).nEdges() );
+		assertEquals( 2, s2.track( idB ).nEdges() );
+		// The unchanged track is shared.
+		assertTrue( s1.track( idA ) == s2.track( idA ) );
+
+		// Hiding a track.
+		model.setVisibility( idA, false );
+		final TrackSnapshot s3 = model.snapshot();
+		assertEquals( 1, s3.nTracks( true ) );
+		assertEquals( idB, s3.trackIDs( true ).get( 0 ) );
+
+		// Splitting a track.
+		model.removeEdge( spots[ 0 ], spots[ 1 ] );
+		final TrackSnapshot s4 = model.snapshot();
+		assertEquals( 2, s4.nTracks( false ) );
+		assertEquals( 1, s4.track( model.trackIDOf( spots[ 1 ] ) ).nEdges() );
+		for ( final Integer id : s4.trackIDs( false ) )
+			assertEquals( model.trackEdges( id ), new HashSet< >( s4.track( id ).edges() ) );
+	}
+
+	/**
+	 * Checks that the tracks of the model are exactly the connected components
+	 * of its graph that have at least one edge.
+	 */
+	private static void assertConnectedComponents( final TrackModel model, final List< Spot > spots )
+	{
+		int nComponents = 0;
+		final Set< Spot > visited = new HashSet< >();
+		for ( final Spot spot : spots )
+		{
+			if ( !visited.add( spot ) )
+				continue;
+
+			final Set< Spot > component = new HashSet< >();
+			final Set< DefaultWeightedEdge > componentEdges = new HashSet< >();
+			final List< Spot > stack = new ArrayList< >();
+			stack.add( spot );
+			component.add( spot );
+			while ( !stack.isEmpty() )
+			{
+				final Spot v = stack.remove( stack.size() - 1 );
+				for ( final DefaultWeightedEdge e : model.edgesOf( v ) )
+				{
+					componentEdges.add( e );
+					final Spot source = model.getEdgeSource( e );
+					final Spot w = ( source == v ) ? model.getEdgeTarget( e ) : source;
+					if ( component.add( w ) )
+						stack.add( w );
+				}
+			}
+			visited.addAll( component );
+
+			if ( componentEdges.isEmpty() )
+			{
+				assertEquals( null, model.trackIDOf( spot ) );
+				continue;
+			}
+
+			nComponents++;
+			final Integer id = model.trackIDOf( spot );
+			assertEquals( component, model.trackSpots( id ) );
+			assertEquals( componentEdges, model.trackEdges( id ) );
+			for ( final Spot v : component )
+				assertEquals( id, model.trackIDOf( v ) );
+			for ( final DefaultWeightedEdge e : componentEdges )
+				assertEquals( id, model.trackIDOf( e ) );
+			assertTrue( null != model.name( id ) );
+		}
+		assertEquals( nComponents, model.nTracks( false ) );
+	}
 }
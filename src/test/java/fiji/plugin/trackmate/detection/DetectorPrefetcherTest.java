@@ -0,0 +1,241 @@
+package fiji.plugin.trackmate.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.ImageIcon;
+
+import org.jdom2.Element;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.gui.ConfigurationPanel;
+import net.imagej.ImgPlus;
+import net.imglib2.Interval;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+public class DetectorPrefetcherTest
+{
+
+	private static final Interval INTERVAL = Intervals.createMinMax( 0, 0, 9, 9 );
+
+	@Test
+	public void testOrder() throws InterruptedException
+	{
+		final DummyFactory factory = new DummyFactory( -1 );
+		final DetectorPrefetcher prefetcher = new DetectorPrefetcher( factory, INTERVAL, 3, 20, 2 );
+		final Thread producer = new Thread( prefetcher );
+		producer.start();
+
+		final List< Integer > frames = new ArrayList<>();
+		DetectorPrefetcher.Prefetched next;
+		while ( null != ( next = prefetcher.next() ) )
+		{
+			frames.add( next.frame );
+			assertEquals( next.frame, ( ( DummyDetector ) next.detector ).frame );
+			assertTrue( ( ( DummyDetector ) next.detector ).prefetched );
+		}
+		producer.join( 5000 );
+
+		assertFalse( producer.isAlive() );
+		assertNull( prefetcher.getErrorMessage() );
+		assertEquals( 18, frames.size() );
+		for ( int i = 0; i < frames.size(); i++ )
+			assertEquals( 3 + i, frames.get( i ).intValue() );
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException
+	{
+		final DummyFactory factory = new DummyFactory( -1 );
+		final DetectorPrefetcher prefetcher = new DetectorPrefetcher( factory, INTERVAL, 0, 10000, 1 );
+		final Thread producer = new Thread( prefetcher );
+		producer.start();
+
+		assertNotNull( prefetcher.next() );
+		assertNotNull( prefetcher.next() );
+		prefetcher.cancel();
+
+		// At most the frame being offered when we cancelled comes out.
+		int remaining = 0;
+		while ( null != prefetcher.next() )
+			remaining++;
+		producer.join( 5000 );
+
+		assertFalse( "The producer must stop when cancelled.", producer.isAlive() );
+		assertTrue( remaining <= 1 );
+		assertTrue( factory.created.get() < 10 );
+	}
+
+	@Test
+	public void testProducerError() throws InterruptedException
+	{
+		final DummyFactory factory = new DummyFactory( 5 );
+		final DetectorPrefetcher prefetcher = new DetectorPrefetcher( factory, INTERVAL, 0, 20, 100 );
+		final Thread producer = new Thread( prefetcher );
+		// The producer rethrows the error, we do not want it printed.
+		producer.setUncaughtExceptionHandler( ( t, e ) -> {} );
+		producer.start();
+		producer.join( 5000 );
+		assertFalse( producer.isAlive() );
+
+		// Consumers do not wait forever, and the error is reported.
+		while ( null != prefetcher.next() )
+			;
+		assertNotNull( prefetcher.getErrorMessage() );
+		assertTrue( prefetcher.getErrorMessage().contains( "Cannot create detector for frame 5." ) );
+	}
+
+	/**
+	 * Creates {@link DummyDetector}s, and fails on the specified frame.
+	 */
+	private static final class DummyFactory implements SpotDetectorFactory< FloatType >
+	{
+
+		private final int failingFrame;
+
+		private final AtomicInteger created = new AtomicInteger( 0 );
+
+		private DummyFactory( final int failingFrame )
+		{
+			this.failingFrame = failingFrame;
+		}
+
+		@Override
+		public SpotDetector< FloatType > getDetector( final Interval interval, final int frame )
+		{
+			if ( frame == failingFrame )
+				throw new IllegalStateException( "Cannot create detector for frame " + frame + "." );
+			created.incrementAndGet();
+			return new DummyDetector( frame );
+		}
+
+		@Override
+		public boolean setTarget( final ImgPlus< FloatType > img, final Map< String, Object > settings )
+		{
+			return true;
+		}
+
+		@Override
+		public String getErrorMessage()
+		{
+			return null;
+		}
+
+		@Override
+		public boolean marshall( final Map< String, Object > settings, final Element element )
+		{
+			return true;
+		}
+
+		@Override
+		public boolean unmarshall( final Element element, final Map< String, Object > settings )
+		{
+			return true;
+		}
+
+		@Override
+		public ConfigurationPanel getDetectorConfigurationPanel( final Settings settings, final Model model )
+		{
+			return null;
+		}
+
+		@Override
+		public Map< String, Object > getDefaultSettings()
+		{
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public boolean checkSettings( final Map< String, Object > settings )
+		{
+			return true;
+		}
+
+		@Override
+		public String getInfoText()
+		{
+			return null;
+		}
+
+		@Override
+		public ImageIcon getIcon()
+		{
+			return null;
+		}
+
+		@Override
+		public String getKey()
+		{
+			return "DUMMY_DETECTOR";
+		}
+
+		@Override
+		public String getName()
+		{
+			return "Dummy detector";
+		}
+	}
+
+	private static final class DummyDetector implements PrefetchableSpotDetector< FloatType >
+	{
+
+		private final int frame;
+
+		private boolean prefetched = false;
+
+		private DummyDetector( final int frame )
+		{
+			this.frame = frame;
+		}
+
+		@Override
+		public boolean prefetch()
+		{
+			prefetched = true;
+			return true;
+		}
+
+		@Override
+		public List< Spot > getResult()
+		{
+			return Collections.emptyList();
+		}
+
+		@Override
+		public boolean checkInput()
+		{
+			return true;
+		}
+
+		@Override
+		public boolean process()
+		{
+			return true;
+		}
+
+		@Override
+		public String getErrorMessage()
+		{
+			return null;
+		}
+
+		@Override
+		public long getProcessingTime()
+		{
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package fiji.plugin.trackmate.detection;
+
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_MEDIAN_FILTERING;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_DO_SUBPIXEL_LOCALIZATION;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_RADIUS;
+import static fiji.plugin.trackmate.detection.DetectorKeys.KEY_THRESHOLD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+public class FilteredImageCacheTest
+{
+
+	private static final double[] CALIBRATION = new double[] { 1., 1. };
+
+	private static final String DETECTOR_KEY = "LOG_DETECTOR";
+
+	@Test
+	public void testReuseAndInvalidation()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 100, 80 );
+		paint( img, new double[][] { { 30, 30, 100 }, { 70, 40, 20 }, { 50, 65, 60 } } );
+		final Interval interval = Intervals.createMinMax( 5, 5, 94, 74 );
+		final FilteredImageCache cache = new FilteredImageCache( KEY_THRESHOLD, KEY_DO_SUBPIXEL_LOCALIZATION );
+
+		final Map< String, Object > settings = new HashMap<>();
+		settings.put( KEY_RADIUS, 4. );
+		settings.put( KEY_THRESHOLD, 1. );
+		settings.put( KEY_DO_SUBPIXEL_LOCALIZATION, true );
+		settings.put( KEY_DO_MEDIAN_FILTERING, false );
+
+		final CountingLogDetector first = run( cache, img, 0, interval, settings );
+		assertEquals( 1, first.nFiltered );
+		final RandomAccessibleInterval< FloatType > filtered = cache.getFilteredImage();
+
+		// Only the extraction settings change: the filtered image is reused.
+		settings.put( KEY_THRESHOLD, 30. );
+		CountingLogDetector detector = run( cache, img, 0, interval, settings );
+		assertEquals( 0, detector.nFiltered );
+		assertSame( filtered, cache.getFilteredImage() );
+		assertSameSpots( process( img, interval, settings ), detector.getResult() );
+
+		settings.put( KEY_DO_SUBPIXEL_LOCALIZATION, false );
+		detector = run( cache, img, 0, interval, settings );
+		assertEquals( 0, detector.nFiltered );
+		assertSame( filtered, cache.getFilteredImage() );
+		assertSameSpots( process( img, interval, settings ), detector.getResult() );
+
+		// Another frame.
+		detector = run( cache, img, 1, interval, settings );
+		assertEquals( 1, detector.nFiltered );
+		assertNotSame( filtered, cache.getFilteredImage() );
+
+		// Another interval.
+		final Interval other = Intervals.createMinMax( 10, 5, 94, 74 );
+		detector = run( cache, img, 1, other, settings );
+		assertEquals( 1, detector.nFiltered );
+		assertSameSpots( process( img, other, settings ), detector.getResult() );
+
+		// Another radius.
+		settings.put( KEY_RADIUS, 5. );
+		detector = run( cache, img, 1, other, settings );
+		assertEquals( 1, detector.nFiltered );
+		assertSameSpots( process( img, other, settings ), detector.getResult() );
+
+		// Median filtering.
+		settings.put( KEY_DO_MEDIAN_FILTERING, true );
+		detector = run( cache, img, 1, other, settings );
+		assertEquals( 1, detector.nFiltered );
+		assertSameSpots( process( img, other, settings ), detector.getResult() );
+
+		// Same settings again.
+		detector = run( cache, img, 1, other, settings );
+		assertEquals( 0, detector.nFiltered );
+
+		cache.clear();
+		detector = run( cache, img, 1, other, settings );
+		assertEquals( 1, detector.nFiltered );
+	}
+
+	@Test
+	public void testFilterThenExtract()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 100, 80 );
+		paint( img, new double[][] { { 30, 30, 100 }, { 70, 40, 20 }, { 50, 65, 60 } } );
+		final Interval interval = Intervals.createMinMax( 5, 5, 94, 74 );
+
+		for ( final boolean dog : new boolean[] { false, true } )
+		{
+			for ( final boolean doMedianFilter : new boolean[] { false, true } )
+			{
+				final LogDetector< FloatType > processing = create( dog, img, interval, doMedianFilter );
+				assertTrue( processing.getErrorMessage(), processing.checkInput() && processing.process() );
+				final List< Spot > expected = processing.getResult();
+				assertFalse( expected.isEmpty() );
+
+				final LogDetector< FloatType > filtering = create( dog, img, interval, doMedianFilter );
+				assertTrue( filtering.getErrorMessage(), filtering.checkInput() );
+				final RandomAccessibleInterval< FloatType > filtered = filtering.filter();
+				assertTrue( filtering.getErrorMessage(), filtering.extractSpots( filtered ) );
+				assertSameSpots( expected, filtering.getResult() );
+			}
+		}
+	}
+
+	private static LogDetector< FloatType > create( final boolean dog, final Img< FloatType > img, final Interval interval, final boolean doMedianFilter )
+	{
+		return dog
+				? new DogDetector<>( img, interval, CALIBRATION, 4., 1., true, doMedianFilter )
+				: new LogDetector<>( img, interval, CALIBRATION, 4., 1., true, doMedianFilter );
+	}
+
+	private static CountingLogDetector run( final FilteredImageCache cache, final Img< FloatType > img, final int frame, final Interval interval, final Map< String, Object > settings )
+	{
+		final CountingLogDetector detector = new CountingLogDetector( img, interval, settings );
+		assertTrue( detector.getErrorMessage(), cache.process( detector, frame, interval, DETECTOR_KEY, settings ) );
+		return detector;
+	}
+
+	private static List< Spot > process( final Img< FloatType > img, final Interval interval, final Map< String, Object > settings )
+	{
+		final CountingLogDetector detector = new CountingLogDetector( img, interval, settings );
+		assertTrue( detector.getErrorMessage(), detector.checkInput() && detector.process() );
+		return detector.getResult();
+	}
+
+	private static void assertSameSpots( final List< Spot > expected, final List< Spot > actual )
+	{
+		assertEquals( expected.size(), actual.size() );
+		for ( int i = 0; i < expected.size(); i++ )
+			for ( final String feature : new String[] { Spot.POSITION_X, Spot.POSITION_Y, Spot.RADIUS, Spot.QUALITY } )
+				assertEquals( expected.get( i ).getFeature( feature ), actual.get( i ).getFeature( feature ), 1e-9 );
+	}
+
+	/**
+	 * Paints Gaussian blobs, specified by their position and amplitude.
+	 */
+	private static void paint( final Img< FloatType > img, final double[][] blobs )
+	{
+		final double sigma = 4. / Math.sqrt( 2. );
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			double val = 0.;
+			for ( final double[] blob : blobs )
+			{
+				final double dx = cursor.getDoublePosition( 0 ) - blob[ 0 ];
+				final double dy = cursor.getDoublePosition( 1 ) - blob[ 1 ];
+				val += blob[ 2 ] * Math.exp( -( dx * dx + dy * dy ) / 2. / sigma / sigma );
+			}
+			cursor.get().setReal( val );
+		}
+	}
+
+	/**
+	 * A LoG detector that counts how many times it filters the image.
+	 */
+	private static final class CountingLogDetector extends LogDetector< FloatType >
+	{
+
+		private int nFiltered = 0;
+
+		private CountingLogDetector( final RandomAccessible< FloatType > img, final Interval interval, final Map< String, Object > settings )
+		{
+			super( img, interval, CALIBRATION,
+					( Double ) settings.get( KEY_RADIUS ),
+					( Double ) settings.get( KEY_THRESHOLD ),
+					( Boolean ) settings.get( KEY_DO_SUBPIXEL_LOCALIZATION ),
+					( Boolean ) settings.get( KEY_DO_MEDIAN_FILTERING ) );
+		}
+
+		@Override
+		public RandomAccessibleInterval< FloatType > filter()
+		{
+			nFiltered++;
+			return super.filter();
+		}
+	}
+}
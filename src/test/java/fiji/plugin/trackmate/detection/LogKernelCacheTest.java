@@ -0,0 +1,148 @@
+package fiji.plugin.trackmate.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.LogKernelCache.Convolver;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+public class LogKernelCacheTest
+{
+
+	private static final double RADIUS = 4.;
+
+	private static final double[] CALIBRATION = new double[] { 1., 1. };
+
+	@Test
+	public void testCachedMatchesUncached()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 120, 100 );
+		paint( img, new double[][] { { 30, 30 }, { 80, 40 }, { 50, 75 } } );
+		final Interval interval = Intervals.createMinMax( 5, 5, 114, 94 );
+
+		final LogDetector< FloatType > uncached = new LogDetector<>( img, interval, CALIBRATION, RADIUS, 1., true, false );
+		assertTrue( uncached.getErrorMessage(), uncached.checkInput() && uncached.process() );
+		final List< Spot > expected = uncached.getResult();
+		assertEquals( 3, expected.size() );
+
+		// Twice, the second detector reuses the convolver of the first.
+		final LogKernelCache cache = new LogKernelCache( RADIUS, CALIBRATION );
+		for ( int i = 0; i < 2; i++ )
+		{
+			final LogDetector< FloatType > cached = new LogDetector<>( img, interval, CALIBRATION, RADIUS, 1., true, false );
+			cached.setKernelCache( cache );
+			assertTrue( cached.getErrorMessage(), cached.checkInput() && cached.process() );
+			final List< Spot > actual = cached.getResult();
+
+			assertEquals( expected.size(), actual.size() );
+			for ( int j = 0; j < expected.size(); j++ )
+				for ( final String feature : new String[] { Spot.POSITION_X, Spot.POSITION_Y, Spot.QUALITY } )
+					assertEquals( expected.get( j ).getFeature( feature ), actual.get( j ).getFeature( feature ), 1e-3 );
+		}
+	}
+
+	@Test
+	public void testKey()
+	{
+		final LogKernelCache cache = new LogKernelCache( RADIUS, CALIBRATION );
+		assertTrue( cache.matches( RADIUS, new double[] { 1., 1. } ) );
+		assertFalse( cache.matches( RADIUS + 0.5, CALIBRATION ) );
+		assertFalse( cache.matches( RADIUS, new double[] { 1., 2. } ) );
+		assertFalse( cache.matches( RADIUS, new double[] { 1., 1., 1. } ) );
+
+		// The cache is not affected by changes to the calibration array.
+		final double[] calibration = CALIBRATION.clone();
+		final LogKernelCache copy = new LogKernelCache( RADIUS, calibration );
+		calibration[ 0 ] = 2.;
+		assertTrue( copy.matches( RADIUS, CALIBRATION ) );
+
+		// Kernels are computed once, per dimensionality.
+		assertSame( cache.getKernel( 2 ), cache.getKernel( 2 ) );
+		final LogKernelCache cache3d = new LogKernelCache( RADIUS, new double[] { 1., 1., 2. } );
+		assertEquals( 2, cache3d.getKernel( 2 ).numDimensions() );
+		assertEquals( 3, cache3d.getKernel( 3 ).numDimensions() );
+
+		// Different radii and calibrations give different kernels.
+		final Img< FloatType > kernel = cache.getKernel( 2 );
+		assertFalse( sameContent( kernel, new LogKernelCache( 2 * RADIUS, CALIBRATION ).getKernel( 2 ) ) );
+		assertFalse( sameContent( kernel, new LogKernelCache( RADIUS, new double[] { 1., 0.5 } ).getKernel( 2 ) ) );
+		assertTrue( sameContent( kernel, new LogKernelCache( RADIUS, CALIBRATION ).getKernel( 2 ) ) );
+	}
+
+	@Test
+	public void testConvolversPerFrameSize()
+	{
+		final LogKernelCache cache = new LogKernelCache( RADIUS, CALIBRATION );
+		final Interval small = Intervals.createMinMax( 0, 0, 49, 49 );
+		final Interval large = Intervals.createMinMax( 10, 10, 109, 109 );
+
+		final Convolver c1 = cache.acquire( small, 2 );
+		// Borrowed convolvers are not shared.
+		final Convolver c2 = cache.acquire( small, 2 );
+		assertNotSame( c1, c2 );
+		cache.release( c1 );
+		cache.release( c2 );
+
+		final Convolver c3 = cache.acquire( large, 2 );
+		assertNotSame( c1, c3 );
+		assertNotSame( c2, c3 );
+		assertEquals( 100, c3.buffer().dimension( 0 ) );
+		cache.release( c3 );
+
+		// Same size, even at another position: reused.
+		final Convolver c4 = cache.acquire( Intervals.createMinMax( 5, 5, 54, 54 ), 2 );
+		assertTrue( c4 == c1 || c4 == c2 );
+	}
+
+	private static boolean sameContent( final Img< FloatType > a, final Img< FloatType > b )
+	{
+		if ( !Intervals.equalDimensions( a, b ) )
+			return false;
+		final Cursor< FloatType > ca = a.cursor();
+		final Cursor< FloatType > cb = b.cursor();
+		while ( ca.hasNext() )
+			if ( ca.next().get() != cb.next().get() )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Paints Gaussian blobs of radius {@link #RADIUS} at the specified
+	 * positions.
+	 */
+	private static void paint( final Img< FloatType > img, final double[][] blobs )
+	{
+		final int n = img.numDimensions();
+		final double sigma = RADIUS / Math.sqrt( n );
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			double val = 0.;
+			for ( final double[] blob : blobs )
+			{
+				double r2 = 0.;
+				for ( int d = 0; d < n; d++ )
+				{
+					final double dx = cursor.getDoublePosition( d ) - blob[ d ];
+					r2 += dx * dx;
+				}
+				val += 100. * Math.exp( -r2 / 2. / sigma / sigma );
+			}
+			cursor.get().setReal( val );
+		}
+	}
+}
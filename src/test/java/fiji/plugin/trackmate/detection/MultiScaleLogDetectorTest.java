@@ -0,0 +1,125 @@
+package fiji.plugin.trackmate.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+public class MultiScaleLogDetectorTest
+{
+
+	@Test
+	public void testRadiusEstimation2D()
+	{
+		final double[][] blobs = new double[][] { { 40, 40, 3 }, { 60, 95, 4.5 }, { 110, 60, 6 }, { 165, 70, 10 } };
+		final Img< FloatType > img = ArrayImgs.floats( 200, 120 );
+		paint( img, blobs, new double[] { 1., 1. } );
+
+		final MultiScaleLogDetector< FloatType > detector = new MultiScaleLogDetector<>( img, img, new double[] { 1., 1. }, 2., 14., 9, 5., true, false );
+		assertTrue( detector.getErrorMessage(), detector.checkInput() && detector.process() );
+		assertBlobsFound( blobs, detector.getResult() );
+	}
+
+	@Test
+	public void testRadiusEstimation3D()
+	{
+		final double[] calibration = new double[] { 1., 1., 2. };
+		final double[][] blobs = new double[][] { { 15, 15, 24, 4 }, { 40, 30, 30, 8 } };
+		final Img< FloatType > img = ArrayImgs.floats( 60, 50, 30 );
+		paint( img, blobs, calibration );
+
+		final MultiScaleLogDetector< FloatType > detector = new MultiScaleLogDetector<>( img, img, calibration, 3., 12., 7, 5., true, false );
+		assertTrue( detector.getErrorMessage(), detector.checkInput() && detector.process() );
+		assertBlobsFound( blobs, detector.getResult() );
+	}
+
+	@Test
+	public void testFilterThenExtract()
+	{
+		final double[][] blobs = new double[][] { { 30, 30, 3 }, { 70, 40, 6 } };
+		final Img< FloatType > img = ArrayImgs.floats( 100, 70 );
+		paint( img, blobs, new double[] { 1., 1. } );
+		final Interval interval = Intervals.createMinMax( 10, 5, 95, 65 );
+
+		final MultiScaleLogDetector< FloatType > detector = new MultiScaleLogDetector<>( img, interval, new double[] { 1., 1. }, 2., 8., 5, 5., true, false );
+		assertTrue( detector.getErrorMessage(), detector.checkInput() && detector.process() );
+		final List< Spot > expected = detector.getResult();
+
+		final MultiScaleLogDetector< FloatType > filtering = new MultiScaleLogDetector<>( img, interval, new double[] { 1., 1. }, 2., 8., 5, 5., true, false );
+		final RandomAccessibleInterval< FloatType > filtered = filtering.filter();
+		assertEquals( 3, filtered.numDimensions() );
+		assertEquals( 5, filtered.dimension( 2 ) );
+		assertTrue( filtering.getErrorMessage(), filtering.extractSpots( filtered ) );
+		final List< Spot > actual = filtering.getResult();
+
+		assertEquals( expected.size(), actual.size() );
+		for ( int i = 0; i < expected.size(); i++ )
+			for ( final String feature : new String[] { Spot.POSITION_X, Spot.POSITION_Y, Spot.RADIUS, Spot.QUALITY } )
+				assertEquals( expected.get( i ).getFeature( feature ), actual.get( i ).getFeature( feature ), 1e-9 );
+	}
+
+	/**
+	 * Paints Gaussian blobs, specified by their position and radius in image
+	 * units.
+	 */
+	private static void paint( final Img< FloatType > img, final double[][] blobs, final double[] calibration )
+	{
+		final int n = img.numDimensions();
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			double val = 0.;
+			for ( final double[] blob : blobs )
+			{
+				final double sigma = blob[ n ] / Math.sqrt( n );
+				double r2 = 0.;
+				for ( int d = 0; d < n; d++ )
+				{
+					final double dx = cursor.getDoublePosition( d ) * calibration[ d ] - blob[ d ];
+					r2 += dx * dx;
+				}
+				val += 100. * Math.exp( -r2 / 2. / sigma / sigma );
+			}
+			cursor.get().setReal( val );
+		}
+	}
+
+	private static void assertBlobsFound( final double[][] blobs, final List< Spot > spots )
+	{
+		assertEquals( blobs.length, spots.size() );
+		for ( final double[] blob : blobs )
+		{
+			final int n = blob.length - 1;
+			Spot closest = null;
+			double minD2 = Double.POSITIVE_INFINITY;
+			for ( final Spot spot : spots )
+			{
+				double d2 = 0.;
+				for ( int d = 0; d < n; d++ )
+				{
+					final double dx = spot.getDoublePosition( d ) - blob[ d ];
+					d2 += dx * dx;
+				}
+				if ( d2 < minD2 )
+				{
+					minD2 = d2;
+					closest = spot;
+				}
+			}
+			assertEquals( 0., Math.sqrt( minD2 ), 0.5 );
+			assertEquals( blob[ n ], closest.getFeature( Spot.RADIUS ), 0.05 * blob[ n ] );
+		}
+	}
+}
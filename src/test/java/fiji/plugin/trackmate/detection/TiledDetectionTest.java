@@ -0,0 +1,134 @@
+package fiji.plugin.trackmate.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+public class TiledDetectionTest
+{
+
+	private static final long TILE_SIZE = 32;
+
+	private static final double[] CALIBRATION = new double[] { 0.5, 0.5 };
+
+	/** Spot radius, in image units: 4 pixels. */
+	private static final double RADIUS = 2.;
+
+	/**
+	 * Blob positions in pixels. Most straddle tile borders, which are between
+	 * pixels 31 and 32, 63 and 64, etc.
+	 */
+	private static final double[][] BLOBS = new double[][] {
+			{ 31.5, 20 }, // on a vertical border
+			{ 50, 32 }, // on the first pixel of a tile
+			{ 63.6, 63.4 }, // on a corner, closer to the first tile
+			{ 96, 64 }, // on a corner
+			{ 80, 31 }, // on the last pixel of a tile
+			{ 15, 80 }, // inside a tile
+			{ 110, 10 } // inside a tile, close to the image border
+	};
+
+	@Test
+	public void testSplit()
+	{
+		final Interval interval = Intervals.createMinMax( 3, 5, 102, 70 );
+		final List< Interval > tiles = TiledDetection.split( interval, TILE_SIZE );
+		assertEquals( 4 * 3, tiles.size() );
+
+		long total = 0;
+		for ( final Interval tile : tiles )
+		{
+			total += Intervals.numElements( tile );
+			assertTrue( Intervals.contains( interval, tile ) );
+			for ( final Interval other : tiles )
+				if ( other != tile )
+					assertTrue( Intervals.isEmpty( Intervals.intersect( tile, other ) ) );
+		}
+		assertEquals( Intervals.numElements( interval ), total );
+	}
+
+	@Test
+	public void testSameSpotsAsUntiled()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 128, 96 );
+		paint( img );
+		final Interval interval = Intervals.createMinMax( 0, 0, 127, 95 );
+
+		final LogDetector< FloatType > untiled = new LogDetector<>( img, interval, CALIBRATION, RADIUS, 1., true, false );
+		assertTrue( untiled.getErrorMessage(), untiled.checkInput() && untiled.process() );
+		final List< Spot > expected = untiled.getResult();
+		assertEquals( BLOBS.length, expected.size() );
+
+		for ( final boolean doMedianFilter : new boolean[] { false, true } )
+		{
+			final LogDetector< FloatType > reference = new LogDetector<>( img, interval, CALIBRATION, RADIUS, 1., true, doMedianFilter );
+			assertTrue( reference.getErrorMessage(), reference.checkInput() && reference.process() );
+
+			final LogDetector< FloatType > tiled = new LogDetector<>( img, interval, CALIBRATION, RADIUS, 1., true, doMedianFilter );
+			tiled.setTileSize( TILE_SIZE );
+			tiled.setNumThreads( 4 );
+			assertTrue( tiled.getErrorMessage(), tiled.checkInput() && tiled.process() );
+			assertSameSpots( reference.getResult(), tiled.getResult() );
+		}
+	}
+
+	/**
+	 * Checks that each expected spot is matched by exactly one actual spot,
+	 * at the same position and with the same quality.
+	 */
+	private static void assertSameSpots( final List< Spot > expected, final List< Spot > actual )
+	{
+		assertEquals( "Tiled detection found duplicate or missing spots.", expected.size(), actual.size() );
+		for ( final Spot e : expected )
+		{
+			int nMatches = 0;
+			for ( final Spot a : actual )
+			{
+				if ( e.squareDistanceTo( a ) > 1e-4 )
+					continue;
+				nMatches++;
+				final double q = e.getFeature( Spot.QUALITY );
+				assertEquals( q, a.getFeature( Spot.QUALITY ), 1e-3 * Math.abs( q ) );
+			}
+			assertEquals( "Spot " + e + " should be found exactly once.", 1, nMatches );
+		}
+	}
+
+	/**
+	 * Paints Gaussian blobs of radius {@link #RADIUS} at the {@link #BLOBS}
+	 * positions.
+	 */
+	private static void paint( final Img< FloatType > img )
+	{
+		final int n = img.numDimensions();
+		final double sigma = RADIUS / Math.sqrt( n ) / CALIBRATION[ 0 ];
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			double val = 0.;
+			for ( final double[] blob : BLOBS )
+			{
+				double r2 = 0.;
+				for ( int d = 0; d < n; d++ )
+				{
+					final double dx = cursor.getDoublePosition( d ) - blob[ d ];
+					r2 += dx * dx;
+				}
+				val += 100. * Math.exp( -r2 / 2. / sigma / sigma );
+			}
+			cursor.get().setReal( val );
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package fiji.plugin.trackmate.detection.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.position.FunctionRandomAccessible;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+public class ComponentStatsTest
+{
+
+	@Test
+	public void testSameAsFloodFill()
+	{
+		final Random ran = new Random( 1l );
+		final long[][] sizes = new long[][] { { 50 }, { 37, 23 }, { 17, 11, 9 } };
+		for ( final long[] size : sizes )
+		{
+			final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( size );
+			for ( final UnsignedByteType pixel : img )
+				pixel.set( ran.nextInt( 10 ) );
+			final long[] offset = new long[ size.length ];
+			offset[ 0 ] = 5;
+
+			final Set< String > expected = floodFill( img, 4, offset );
+			for ( final int numThreads : new int[] { 1, 3 } )
+			{
+				final ComponentStats components = ComponentStats.compute( Views.translate( img, offset ), 4., Views.translate( img, offset ), numThreads );
+				final Set< String > actual = new HashSet<>();
+				for ( int i = 0; i < components.size(); i++ )
+				{
+					final StringBuilder str = new StringBuilder();
+					str.append( components.count( i ) ).append( ' ' );
+					for ( int d = 0; d < size.length; d++ )
+						str.append( String.format( "%.6f %d %d ", components.centroid( i, d ), components.min( i, d ), components.max( i, d ) ) );
+					str.append( components.quality( i ) );
+					actual.add( str.toString() );
+				}
+				assertEquals( expected.size(), components.size() );
+				assertEquals( expected, actual );
+			}
+		}
+	}
+
+	@Test
+	public void testWorkerFailure()
+	{
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( 17, 11, 9 );
+		for ( final UnsignedByteType pixel : img )
+			pixel.set( 5 );
+
+		// A quality image that cannot be read in the last stripe.
+		final RandomAccessibleInterval< UnsignedByteType > quality = Views.interval( new FunctionRandomAccessible<>( 3,
+				( final Localizable pos, final UnsignedByteType t ) -> {
+					if ( pos.getLongPosition( 2 ) > 6 )
+						throw new IllegalStateException( "Cannot read " + pos );
+					t.set( 1 );
+				}, UnsignedByteType::new ), img );
+
+		assertNull( ComponentStats.compute( img, 4., quality, 3 ) );
+	}
+
+	private static Set< String > floodFill( final Img< UnsignedByteType > img, final int threshold, final long[] offset )
+	{
+		final int n = img.numDimensions();
+		final Img< UnsignedByteType > visited = img.factory().create( img );
+		final RandomAccess< UnsignedByteType > ra = img.randomAccess();
+		final RandomAccess< UnsignedByteType > rv = visited.randomAccess();
+		final Set< String > components = new HashSet<>();
+		final Cursor< UnsignedByteType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			rv.setPosition( cursor );
+			if ( cursor.get().get() <= threshold || rv.get().get() > 0 )
+				continue;
+
+			long count = 0;
+			final double[] sum = new double[ n ];
+			final long[] min = new long[ n ];
+			final long[] max = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+			{
+				min[ d ] = Long.MAX_VALUE;
+				max[ d ] = Long.MIN_VALUE;
+			}
+			double quality = Double.NEGATIVE_INFINITY;
+
+			final ArrayDeque< long[] > queue = new ArrayDeque<>();
+			final long[] start = new long[ n ];
+			cursor.localize( start );
+			rv.get().set( 1 );
+			queue.add( start );
+			while ( !queue.isEmpty() )
+			{
+				final long[] pos = queue.poll();
+				ra.setPosition( pos );
+				count++;
+				quality = Math.max( quality, ra.get().get() );
+				for ( int d = 0; d < n; d++ )
+				{
+					sum[ d ] += pos[ d ];
+					min[ d ] = Math.min( min[ d ], pos[ d ] );
+					max[ d ] = Math.max( max[ d ], pos[ d ] );
+				}
+				for ( int d = 0; d < n; d++ )
+				{
+					for ( int step = -1; step <= 1; step += 2 )
+					{
+						final long[] next = pos.clone();
+						next[ d ] += step;
+						if ( next[ d ] < 0 || next[ d ] >= img.dimension( d ) )
+							continue;
+						ra.setPosition( next );
+						rv.setPosition( next );
+						if ( ra.get().get() > threshold && rv.get().get() == 0 )
+						{
+							rv.get().set( 1 );
+							queue.add( next );
+						}
+					}
+				}
+			}
+
+			final StringBuilder str = new StringBuilder();
+			str.append( count ).append( ' ' );
+			for ( int d = 0; d < n; d++ )
+				str.append( String.format( "%.6f %d %d ", offset[ d ] + sum[ d ] / count, offset[ d ] + min[ d ], offset[ d ] + max[ d ] ) );
+			str.append( quality );
+			components.add( str.toString() );
+		}
+		return components;
+	}
+}
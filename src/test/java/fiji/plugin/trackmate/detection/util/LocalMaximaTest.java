@@ -0,0 +1,131 @@
+package fiji.plugin.trackmate.detection.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.position.FunctionRandomAccessible;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class LocalMaximaTest
+{
+
+	@Test
+	public void testSameAsBruteForce()
+	{
+		final Random ran = new Random( 1l );
+		final long[][] sizes = new long[][] { { 50 }, { 1, 1 }, { 37, 23 }, { 17, 11, 9 } };
+		for ( final long[] size : sizes )
+		{
+			final Img< FloatType > img = ArrayImgs.floats( size );
+			for ( final FloatType pixel : img )
+				pixel.set( ran.nextInt( 8 ) );
+			final long[] offset = new long[ size.length ];
+			offset[ 0 ] = 5;
+			final RandomAccessibleInterval< FloatType > source = Views.translate( img, offset );
+
+			final Set< String > expected = bruteForce( source, 3. );
+			for ( final int numThreads : new int[] { 1, 3 } )
+			{
+				final LocalMaxima.Peaks peaks = LocalMaxima.find( source, 3., false, numThreads );
+				final Set< String > actual = new HashSet<>();
+				for ( int i = 0; i < peaks.size(); i++ )
+				{
+					final StringBuilder str = new StringBuilder();
+					for ( int d = 0; d < size.length; d++ )
+						str.append( ( long ) peaks.position( i, d ) ).append( ' ' );
+					actual.add( str.toString() );
+				}
+				assertEquals( peaks.size(), actual.size() );
+				assertEquals( expected, actual );
+			}
+		}
+	}
+
+	@Test
+	public void testWorkerFailure()
+	{
+		// An image that cannot be read in the last blocks.
+		final RandomAccessibleInterval< FloatType > source = Views.interval( new FunctionRandomAccessible<>( 3,
+				( final Localizable pos, final FloatType t ) -> {
+					if ( pos.getLongPosition( 2 ) > 6 )
+						throw new IllegalStateException( "Cannot read " + pos );
+					t.set( pos.getFloatPosition( 0 ) );
+				}, FloatType::new ), new FinalInterval( 17, 11, 9 ) );
+
+		assertNull( LocalMaxima.find( source, 3., false, 3 ) );
+	}
+
+	@Test
+	public void testSubPixelLocalization()
+	{
+		final double[] center = new double[] { 20.3, 14.8, 10.45 };
+		final Img< FloatType > img = ArrayImgs.floats( 40, 30, 20 );
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			double r2 = 0.;
+			for ( int d = 0; d < 3; d++ )
+			{
+				final double dx = cursor.getDoublePosition( d ) - center[ d ];
+				r2 += dx * dx;
+			}
+			cursor.get().setReal( 100. * Math.exp( -r2 / 2. / 9. ) );
+		}
+
+		final LocalMaxima.Peaks peaks = LocalMaxima.find( img, 10., true, 2 );
+		assertEquals( 1, peaks.size() );
+		for ( int d = 0; d < 3; d++ )
+			assertEquals( center[ d ], peaks.position( 0, d ), 0.05 );
+	}
+
+	private static Set< String > bruteForce( final RandomAccessibleInterval< FloatType > source, final double threshold )
+	{
+		final int n = source.numDimensions();
+		final Set< String > maxima = new HashSet<>();
+		final RandomAccess< FloatType > ra = Views.extendMirrorSingle( source ).randomAccess();
+		final Cursor< FloatType > cursor = Views.iterable( source ).localizingCursor();
+		final long[] pos = new long[ n ];
+		int nNeighbors = 1;
+		for ( int d = 0; d < n; d++ )
+			nNeighbors *= 3;
+		A: while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			final float v = cursor.get().get();
+			if ( v < threshold )
+				continue;
+			for ( int k = 0; k < nNeighbors; k++ )
+			{
+				int rem = k;
+				for ( int d = 0; d < n; d++ )
+				{
+					pos[ d ] = cursor.getLongPosition( d ) + rem % 3 - 1;
+					rem /= 3;
+				}
+				ra.setPosition( pos );
+				if ( ra.get().get() > v )
+					continue A;
+			}
+			final StringBuilder str = new StringBuilder();
+			for ( int d = 0; d < n; d++ )
+				str.append( cursor.getLongPosition( d ) ).append( ' ' );
+			maxima.add( str.toString() );
+		}
+		return maxima;
+	}
+}
@@ -0,0 +1,82 @@
+package fiji.plugin.trackmate.detection.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+public class MedianFilter3x3Test
+{
+
+	@Test
+	public void testSameAsBruteForce()
+	{
+		final Random ran = new Random( 1l );
+		final long[][] sizes = new long[][] { { 50 }, { 1, 1 }, { 37, 23 }, { 17, 11, 9 } };
+		for ( final long[] size : sizes )
+		{
+			final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( size );
+			for ( final UnsignedShortType pixel : img )
+				pixel.set( ran.nextInt( 65536 ) );
+			final long[] offset = new long[ size.length ];
+			offset[ 0 ] = 5;
+			final RandomAccessibleInterval< UnsignedShortType > source = Views.translate( img, offset );
+
+			for ( final boolean filterZ : new boolean[] { false, true } )
+			{
+				final Img< UnsignedShortType > expected = bruteForce( img, filterZ );
+				for ( final int numThreads : new int[] { 1, 3 } )
+				{
+					final Img< UnsignedShortType > actual = MedianFilter3x3.filter( source, filterZ, numThreads );
+					final Cursor< UnsignedShortType > ce = expected.cursor();
+					final Cursor< UnsignedShortType > ca = actual.cursor();
+					while ( ce.hasNext() )
+						assertEquals( ce.next().get(), ca.next().get() );
+				}
+			}
+		}
+	}
+
+	private static Img< UnsignedShortType > bruteForce( final Img< UnsignedShortType > source, final boolean filterZ )
+	{
+		final int n = source.numDimensions();
+		final int nFiltered = ( n > 2 && !filterZ ) ? 2 : n;
+		final Img< UnsignedShortType > output = source.factory().create( source );
+		final RandomAccess< UnsignedShortType > ra = Views.extendZero( source ).randomAccess();
+		final Cursor< UnsignedShortType > cursor = output.localizingCursor();
+		int nNeighbors = 1;
+		for ( int d = 0; d < nFiltered; d++ )
+			nNeighbors *= 3;
+		final int[] values = new int[ nNeighbors ];
+		final long[] pos = new long[ n ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			for ( int k = 0; k < nNeighbors; k++ )
+			{
+				cursor.localize( pos );
+				int rem = k;
+				for ( int d = 0; d < nFiltered; d++ )
+				{
+					pos[ d ] += rem % 3 - 1;
+					rem /= 3;
+				}
+				ra.setPosition( pos );
+				values[ k ] = ra.get().get();
+			}
+			Arrays.sort( values );
+			cursor.get().set( values[ ( nNeighbors - 1 ) / 2 ] );
+		}
+		return output;
+	}
+}
@@ -0,0 +1,101 @@
+package fiji.plugin.trackmate.detection.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.detection.DetectionUtils;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class RecursiveGaussianTest
+{
+
+	@Test
+	public void testImpulseResponse()
+	{
+		for ( final double sigma : new double[] { 1.5, 4., 12. } )
+		{
+			final int n = ( int ) ( 20 * sigma );
+			final double[] line = new double[ n ];
+			line[ n / 2 ] = 1.;
+			new RecursiveGaussian( sigma ).filter( line, n, new double[ n ] );
+
+			double sum = 0.;
+			for ( int i = 0; i < n; i++ )
+			{
+				final double x = i - n / 2;
+				final double expected = Math.exp( -x * x / 2. / sigma / sigma ) / Math.sqrt( 2. * Math.PI ) / sigma;
+				// Within 4% of the Gaussian peak value.
+				assertEquals( "sigma = " + sigma + ", x = " + x, expected, line[ i ], 0.04 / Math.sqrt( 2. * Math.PI ) / sigma );
+				sum += line[ i ];
+			}
+			assertEquals( 1., sum, 1e-4 );
+		}
+	}
+
+	@Test
+	public void testBoundaries()
+	{
+		final Random ran = new Random( 1l );
+		final double sigma = 6.;
+		final RecursiveGaussian gauss = new RecursiveGaussian( sigma );
+		for ( final int n : new int[] { 1, 2, 3, 10, 100 } )
+		{
+			final double[] line = new double[ n ];
+			for ( int i = 0; i < n; i++ )
+				line[ i ] = ran.nextDouble();
+
+			// Same line, explicitly extended by its border values.
+			final int pad = ( int ) ( 40 * sigma );
+			final double[] padded = new double[ n + 2 * pad ];
+			for ( int i = 0; i < padded.length; i++ )
+				padded[ i ] = line[ Math.max( 0, Math.min( n - 1, i - pad ) ) ];
+
+			gauss.filter( line, n, new double[ n ] );
+			gauss.filter( padded, padded.length, new double[ padded.length ] );
+			for ( int i = 0; i < n; i++ )
+				assertEquals( padded[ i + pad ], line[ i ], 1e-9 );
+		}
+	}
+
+	@Test
+	public void testLoGNormalization()
+	{
+		final double radius = 8.;
+		final double[] calibration = new double[] { 1., 1. };
+		final int size = 101;
+		final Img< FloatType > img = ArrayImgs.floats( size, size );
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		final double sigma = radius / Math.sqrt( 2. );
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			final double dx = cursor.getDoublePosition( 0 ) - size / 2;
+			final double dy = cursor.getDoublePosition( 1 ) - size / 2;
+			cursor.get().setReal( 100. * Math.exp( -( dx * dx + dy * dy ) / 2. / sigma / sigma ) );
+		}
+
+		// Reference: direct convolution by the LoG kernel, at the center.
+		final Img< FloatType > kernel = DetectionUtils.createLoGKernel( radius, 2, calibration );
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		final Cursor< FloatType > kc = kernel.localizingCursor();
+		double expected = 0.;
+		while ( kc.hasNext() )
+		{
+			kc.fwd();
+			ra.setPosition( size / 2 + kc.getLongPosition( 0 ) - kernel.dimension( 0 ) / 2, 0 );
+			ra.setPosition( size / 2 + kc.getLongPosition( 1 ) - kernel.dimension( 1 ) / 2, 1 );
+			expected += kc.get().getRealDouble() * ra.get().getRealDouble();
+		}
+
+		RecursiveGaussian.laplacianOfGaussian( radius, calibration, img, 2 );
+		ra.setPosition( new long[] { size / 2, size / 2 } );
+		assertEquals( expected, ra.get().getRealDouble(), 0.05 * Math.abs( expected ) );
+	}
+}
@@ -0,0 +1,114 @@
+package fiji.plugin.trackmate.features;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings.TrackMateObject;
+
+public class FeatureIndexTest
+{
+
+	private static final String FEATURE_A = "A";
+
+	private static final String FEATURE_B = "B";
+
+	private static final int N_SPOTS = 10;
+
+	private Model model;
+
+	private List< Spot > spots;
+
+	private List< DefaultWeightedEdge > edges;
+
+	@Before
+	public void setUp()
+	{
+		model = new Model();
+		spots = new ArrayList<>();
+		edges = new ArrayList<>();
+		model.beginUpdate();
+		try
+		{
+			Spot previous = null;
+			for ( int t = 0; t < N_SPOTS; t++ )
+			{
+				final Spot spot = new Spot( t, t, 0., 1., -1. );
+				spot.putFeature( FEATURE_A, Double.valueOf( N_SPOTS - t ) );
+				spot.putFeature( FEATURE_B, Double.valueOf( t ) );
+				model.addSpotTo( spot, Integer.valueOf( t ) );
+				spots.add( spot );
+				if ( null != previous )
+					edges.add( model.addEdge( previous, spot, 1. ) );
+				previous = spot;
+			}
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		for ( final DefaultWeightedEdge edge : edges )
+		{
+			model.getFeatureModel().putEdgeFeature( edge, FEATURE_A, Double.valueOf( 1. ) );
+			model.getFeatureModel().putEdgeFeature( edge, FEATURE_B, Double.valueOf( 2. ) );
+		}
+	}
+
+	@Test
+	public void testSpotFeatureInvalidation()
+	{
+		final FeatureIndex index = model.getFeatureIndex();
+		final FeatureValues a = index.get( TrackMateObject.SPOTS, FEATURE_A, false );
+		final FeatureValues b = index.get( TrackMateObject.SPOTS, FEATURE_B, false );
+		assertSame( a, index.get( TrackMateObject.SPOTS, FEATURE_A, false ) );
+		assertEquals( N_SPOTS, a.size() );
+
+		for ( final Spot spot : spots )
+			spot.putFeature( FEATURE_B, Double.valueOf( 100. ) );
+		index.invalidate( TrackMateObject.SPOTS, FEATURE_B );
+
+		// Only the values of the feature that changed are collected again.
+		assertSame( a, index.get( TrackMateObject.SPOTS, FEATURE_A, false ) );
+		final FeatureValues b2 = index.get( TrackMateObject.SPOTS, FEATURE_B, false );
+		assertNotSame( b, b2 );
+		assertEquals( 100., b2.min(), 0. );
+		assertEquals( 100., b2.max(), 0. );
+	}
+
+	@Test
+	public void testEdgeFeatureInvalidation()
+	{
+		final FeatureIndex index = model.getFeatureIndex();
+		final FeatureValues a = index.get( TrackMateObject.EDGES, FEATURE_A, false );
+		final FeatureValues b = index.get( TrackMateObject.EDGES, FEATURE_B, false );
+		assertEquals( N_SPOTS - 1, b.size() );
+
+		// Writing in the feature model discards the values of this feature.
+		model.getFeatureModel().putEdgeFeature( edges.get( 0 ), FEATURE_B, Double.valueOf( -5. ) );
+		assertSame( a, index.get( TrackMateObject.EDGES, FEATURE_A, false ) );
+		final FeatureValues b2 = index.get( TrackMateObject.EDGES, FEATURE_B, false );
+		assertNotSame( b, b2 );
+		assertEquals( -5., b2.min(), 0. );
+	}
+
+	@Test
+	public void testCollectKeepsOrder()
+	{
+		final double[] expected = new double[ N_SPOTS ];
+		int i = 0;
+		for ( final Spot spot : model.getSpots().iterable( false ) )
+			expected[ i++ ] = spot.getFeature( FEATURE_A ).doubleValue();
+		final double[] values = FeatureUtils.collectFeatureValues( FEATURE_A, TrackMateObject.SPOTS, model, null, false );
+		assertArrayEquals( expected, values, 0. );
+	}
+}
@@ -0,0 +1,94 @@
+package fiji.plugin.trackmate.features;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FeatureValuesTest
+{
+
+	private static final int N_VALUES = 5000;
+
+	private double[] raw;
+
+	private FeatureValues values;
+
+	@Before
+	public void setUp()
+	{
+		final Random ran = new Random( 1l );
+		raw = new double[ N_VALUES ];
+		for ( int i = 0; i < N_VALUES; i++ )
+			raw[ i ] = ( i % 100 == 0 ) ? Double.NaN : 10. * ran.nextGaussian() + 3.;
+		values = FeatureValues.of( raw );
+	}
+
+	@Test
+	public void testSorted()
+	{
+		final double[] expected = Arrays.stream( raw ).filter( v -> !Double.isNaN( v ) ).sorted().toArray();
+		assertArrayEquals( expected, values.values(), 0. );
+		assertEquals( expected.length, values.size() );
+		assertEquals( expected[ 0 ], values.min(), 0. );
+		assertEquals( expected[ expected.length - 1 ], values.max(), 0. );
+		assertTrue( Double.isNaN( FeatureValues.EMPTY.min() ) );
+	}
+
+	@Test
+	public void testCount()
+	{
+		final Random ran = new Random( 2l );
+		for ( int q = 0; q < 100; q++ )
+		{
+			// Also test thresholds equal to a value.
+			final double threshold = ( q % 2 == 0 ) ? values.values()[ ran.nextInt( values.size() ) ] : 30. * ran.nextGaussian();
+			int above = 0;
+			int below = 0;
+			for ( final double v : raw )
+			{
+				if ( v >= threshold )
+					above++;
+				if ( v <= threshold )
+					below++;
+			}
+			assertEquals( above, values.countAbove( threshold ) );
+			assertEquals( below, values.countBelow( threshold ) );
+			assertEquals( above, values.count( new FeatureFilter( "F", threshold, true ) ) );
+		}
+	}
+
+	@Test
+	public void testHistogram()
+	{
+		final int nBins = values.nBins( 8, 100 );
+		assertTrue( nBins >= 8 && nBins <= 100 );
+
+		final int[] expected = new int[ nBins ];
+		final double binWidth = ( values.max() - values.min() ) / nBins;
+		for ( final double v : values.values() )
+			expected[ Math.min( ( int ) Math.floor( ( v - values.min() ) / binWidth ), nBins - 1 ) ]++;
+
+		final int[] hist = values.histogram( nBins );
+		assertArrayEquals( expected, hist );
+		assertEquals( values.size(), Arrays.stream( hist ).sum() );
+
+		final int[] constant = FeatureValues.of( new double[] { 2., 2., 2. } ).histogram( 5 );
+		assertArrayEquals( new int[] { 3, 0, 0, 0, 0 }, constant );
+	}
+
+	@Test
+	public void testPercentile()
+	{
+		final FeatureValues small = FeatureValues.of( new double[] { 4., 1., 3., 2. } );
+		assertEquals( 1., small.percentile( 0.1 ), 0. );
+		assertEquals( 1.25, small.percentile( 0.25 ), 1e-12 );
+		assertEquals( 2.5, small.percentile( 0.5 ), 1e-12 );
+		assertEquals( 4., small.percentile( 1. ), 0. );
+	}
+}
@@ -0,0 +1,129 @@
+package fiji.plugin.trackmate.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+
+public class CompactTrackGraphTest
+{
+
+	@Test
+	public void testAgainstSimpleWeightedGraph()
+	{
+		final Random ran = new Random( 3l );
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > expected = new SimpleWeightedGraph< >( DefaultWeightedEdge.class );
+		// Small capacity to exercise growth and compaction.
+		final CompactTrackGraph actual = new CompactTrackGraph( 2, 2 );
+		final List< Spot > spots = new ArrayList< >();
+
+		for ( int i = 0; i < 20000; i++ )
+		{
+			final int op = ran.nextInt( 10 );
+			if ( op < 2 || spots.size() < 2 )
+			{
+				final Spot spot = new Spot( 0d, 0d, 0d, 1d, -1d );
+				spots.add( spot );
+				assertEquals( expected.addVertex( spot ), actual.addVertex( spot ) );
+			}
+			else if ( op < 3 )
+			{
+				final Spot spot = spots.remove( ran.nextInt( spots.size() ) );
+				assertEquals( expected.removeVertex( spot ), actual.removeVertex( spot ) );
+			}
+			else if ( op < 7 )
+			{
+				final Spot source = spots.get( ran.nextInt( spots.size() ) );
+				final Spot target = spots.get( ran.nextInt( spots.size() ) );
+				if ( source == target )
+					continue;
+				final DefaultWeightedEdge edge = actual.addEdge( source, target );
+				if ( null == edge )
+				{
+					assertTrue( expected.containsEdge( source, target ) );
+					continue;
+				}
+				assertTrue( expected.addEdge( source, target, edge ) );
+				final double weight = ran.nextDouble();
+				expected.setEdgeWeight( edge, weight );
+				actual.setEdgeWeight( edge, weight );
+			}
+			else
+			{
+				final Spot source = spots.get( ran.nextInt( spots.size() ) );
+				final Spot target = spots.get( ran.nextInt( spots.size() ) );
+				assertEquals( expected.removeEdge( source, target ), actual.removeEdge( source, target ) );
+			}
+
+			if ( i % 500 == 0 )
+				assertSameGraph( expected, actual );
+		}
+		assertSameGraph( expected, actual );
+		assertSameGraph( expected, new CompactTrackGraph( expected ) );
+	}
+
+	@Test
+	public void testSimpleGraphRules()
+	{
+		final CompactTrackGraph graph = new CompactTrackGraph();
+		final Spot s1 = new Spot( 0d, 0d, 0d, 1d, -1d );
+		final Spot s2 = new Spot( 0d, 0d, 0d, 1d, -1d );
+		final Spot s3 = new Spot( 0d, 0d, 0d, 1d, -1d );
+		graph.addVertex( s1 );
+		graph.addVertex( s2 );
+
+		final DefaultWeightedEdge edge = graph.addEdge( s1, s2 );
+		assertEquals( 1d, graph.getEdgeWeight( edge ), 0d );
+		// No multiple edges.
+		assertNull( graph.addEdge( s2, s1 ) );
+		assertFalse( graph.addEdge( s2, s1, new DefaultWeightedEdge() ) );
+		assertEquals( edge, graph.getEdge( s2, s1 ) );
+		// No loops, no unknown vertex.
+		try
+		{
+			graph.addEdge( s1, s1 );
+			assertTrue( false );
+		}
+		catch ( final IllegalArgumentException e )
+		{}
+		try
+		{
+			graph.addEdge( s1, s3 );
+			assertTrue( false );
+		}
+		catch ( final IllegalArgumentException e )
+		{}
+		assertNull( graph.getAllEdges( s1, s3 ) );
+	}
+
+	private static void assertSameGraph( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > expected, final CompactTrackGraph actual )
+	{
+		assertEquals( new ArrayList< >( expected.vertexSet() ), new ArrayList< >( actual.vertexSet() ) );
+		assertEquals( new ArrayList< >( expected.edgeSet() ), new ArrayList< >( actual.edgeSet() ) );
+		for ( final Spot spot : expected.vertexSet() )
+		{
+			assertTrue( actual.containsVertex( spot ) );
+			assertEquals( expected.degreeOf( spot ), actual.degreeOf( spot ) );
+			assertEquals( new HashSet< >( expected.edgesOf( spot ) ), new HashSet< >( actual.edgesOf( spot ) ) );
+		}
+		for ( final DefaultWeightedEdge edge : expected.edgeSet() )
+		{
+			assertTrue( actual.containsEdge( edge ) );
+			assertEquals( expected.getEdgeSource( edge ), actual.getEdgeSource( edge ) );
+			assertEquals( expected.getEdgeTarget( edge ), actual.getEdgeTarget( edge ) );
+			assertEquals( expected.getEdgeWeight( edge ), actual.getEdgeWeight( edge ), 0d );
+			assertEquals( edge, actual.getEdge( expected.getEdgeSource( edge ), expected.getEdgeTarget( edge ) ) );
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package fiji.plugin.trackmate.interactivetests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import fiji.plugin.trackmate.tracking.sparselap.linker.LAPJV;
+import fiji.plugin.trackmate.tracking.sparselap.linker.SparseCostMatrix;
+
+/**
+ * Measures the time taken by {@link LAPJV} to solve sparse linear assignment
+ * problems shaped like the ones of frame-to-frame linking: spots moving
+ * randomly between two frames, linked to the spots of the next frame within a
+ * search radius, with the alternative costs of Jaqaman <i>et al.</i>.
+ * <p>
+ * Many small problems are solved in a row, like when linking small frames,
+ * and a few large ones.
+ */
+public class LAPJVPerformance
+{
+
+	private static final double MAX_DISPLACEMENT = 3.;
+
+	public static void main( final String[] args )
+	{
+		final int nwarmups = 5;
+		final int ntests = 20;
+		final int[] sizes = new int[] { 20, 100, 1000, 10000 };
+
+		System.out.println( "Spots\tProblems\tCardinality\tTime per problem (ms)" );
+		final Random ran = new Random( 1l );
+		for ( final int size : sizes )
+		{
+			// As many problems as needed to link about 200000 spots.
+			final int nProblems = Math.max( 1, 200000 / size );
+			final SparseCostMatrix[] problems = new SparseCostMatrix[ Math.min( nProblems, 100 ) ];
+			for ( int p = 0; p < problems.length; p++ )
+				problems[ p ] = createMatrix( ran, size );
+
+			for ( int i = 0; i < nwarmups; i++ )
+				execTest( problems, Math.min( nProblems, 100 ) );
+
+			final long start = System.nanoTime();
+			for ( int i = 0; i < ntests; i++ )
+				execTest( problems, nProblems );
+			final long end = System.nanoTime();
+			System.out.println( size + "\t" + nProblems + "\t" + problems[ 0 ].getCosts().length + "\t" + ( ( end - start ) / 1e6 / ntests / nProblems ) );
+		}
+	}
+
+	private static void execTest( final SparseCostMatrix[] problems, final int nProblems )
+	{
+		for ( int p = 0; p < nProblems; p++ )
+		{
+			final LAPJV lapjv = new LAPJV( problems[ p % problems.length ] );
+			if ( !lapjv.checkInput() || !lapjv.process() )
+				throw new IllegalStateException( lapjv.getErrorMessage() );
+		}
+	}
+
+	/**
+	 * Creates the full cost matrix of the linking of the specified number of
+	 * spots, uniformly spread in a square with a density of about one spot
+	 * per 25 square pixels, to the same spots after a random displacement.
+	 */
+	private static SparseCostMatrix createMatrix( final Random ran, final int nSpots )
+	{
+		final double width = Math.sqrt( 25. * nSpots );
+		final double[] x0 = new double[ nSpots ];
+		final double[] y0 = new double[ nSpots ];
+		final double[] x1 = new double[ nSpots ];
+		final double[] y1 = new double[ nSpots ];
+		for ( int i = 0; i < nSpots; i++ )
+		{
+			x0[ i ] = ran.nextDouble() * width;
+			y0[ i ] = ran.nextDouble() * width;
+			x1[ i ] = x0[ i ] + ran.nextGaussian();
+			y1[ i ] = y0[ i ] + ran.nextGaussian();
+		}
+
+		// Top left: the candidate links.
+		final double maxCost = MAX_DISPLACEMENT * MAX_DISPLACEMENT;
+		final int[] number = new int[ nSpots ];
+		double[] ccBuffer = new double[ 16 * nSpots ];
+		int[] kkBuffer = new int[ 16 * nSpots ];
+		int cardinality = 0;
+		double max = 0.;
+		for ( int i = 0; i < nSpots; i++ )
+		{
+			for ( int j = 0; j < nSpots; j++ )
+			{
+				final double dx = x1[ j ] - x0[ i ];
+				final double dy = y1[ j ] - y0[ i ];
+				final double cost = dx * dx + dy * dy;
+				// Always keep the actual displacement, so that no row is empty.
+				if ( cost > maxCost && i != j )
+					continue;
+				if ( cardinality == ccBuffer.length )
+				{
+					ccBuffer = Arrays.copyOf( ccBuffer, 2 * cardinality );
+					kkBuffer = Arrays.copyOf( kkBuffer, 2 * cardinality );
+				}
+				ccBuffer[ cardinality ] = cost;
+				kkBuffer[ cardinality ] = j;
+				cardinality++;
+				number[ i ]++;
+				max = Math.max( max, cost );
+			}
+		}
+		final double[] cc = Arrays.copyOf( ccBuffer, cardinality );
+		final int[] kk = Arrays.copyOf( kkBuffer, cardinality );
+		final SparseCostMatrix tl = new SparseCostMatrix( cc, kk, number, nSpots );
+
+		// Alternative costs.
+		final double alternativeCost = 1.05 * max;
+		final int[] kkDiag = new int[ nSpots ];
+		final double[] ccDiag = new double[ nSpots ];
+		final int[] numberDiag = new int[ nSpots ];
+		for ( int i = 0; i < nSpots; i++ )
+		{
+			kkDiag[ i ] = i;
+			ccDiag[ i ] = alternativeCost;
+			numberDiag[ i ] = 1;
+		}
+		final SparseCostMatrix tr = new SparseCostMatrix( ccDiag, kkDiag, numberDiag, nSpots );
+		final SparseCostMatrix bl = new SparseCostMatrix( ccDiag.clone(), kkDiag.clone(), numberDiag.clone(), nSpots );
+		final SparseCostMatrix br = tl.transpose();
+		br.fillWith( min( cc ) );
+		return ( tl.hcat( tr ) ).vcat( bl.hcat( br ) );
+	}
+
+	private static double min( final double[] values )
+	{
+		double min = Double.POSITIVE_INFINITY;
+		for ( final double value : values )
+			min = Math.min( min, value );
+		return min;
+	}
+}
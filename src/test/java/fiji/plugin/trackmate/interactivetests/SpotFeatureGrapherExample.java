@@ -72,7 +72,7 @@ public class SpotFeatureGrapherExample
 			final List< Spot > ts = new ArrayList<>( 1 );
 			ts.add( spot );
 			sc.put( i, ts );
-			spot.putFeature( SpotCollection.VISIBILITY, SpotCollection.ONE );
+			sc.setVisible( spot, true );
 		}
 
 		final Model model = new Model();
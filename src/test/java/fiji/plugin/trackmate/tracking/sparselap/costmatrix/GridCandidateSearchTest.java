@@ -0,0 +1,100 @@
+package fiji.plugin.trackmate.tracking.sparselap.costmatrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.FeaturePenaltyCostFunction;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.SquareDistCostFunction;
+
+public class GridCandidateSearchTest
+{
+
+	@Test
+	public void testSameAsBruteForce()
+	{
+		final Random ran = new Random( 1l );
+		for ( final boolean flat : new boolean[] { true, false } )
+		{
+			for ( final double radius : new double[] { 0.5, 3., 1000. } )
+			{
+				final List< Spot > sources = createSpots( ran, 200, flat );
+				final List< Spot > targets = createSpots( ran, 300, flat );
+				final GridCandidateSearch< Spot, Spot > search = new GridCandidateSearch<>( targets, radius );
+				for ( final Spot source : sources )
+				{
+					final Set< Spot > expected = new HashSet<>();
+					for ( final Spot target : targets )
+						if ( source.squareDistanceTo( target ) <= radius * radius )
+							expected.add( target );
+
+					final List< Spot > actual = new ArrayList<>();
+					search.forEachCandidate( source, target -> actual.add( target ) );
+					assertEquals( expected.size(), actual.size() );
+					assertEquals( expected, new HashSet<>( actual ) );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNoTarget()
+	{
+		final GridCandidateSearch< Spot, Spot > search = new GridCandidateSearch<>( new ArrayList< Spot >(), 1. );
+		search.forEachCandidate( new Spot( 0., 0., 0., 1., 1. ), target -> {
+			throw new AssertionError();
+		} );
+	}
+
+	@Test
+	public void testIsBoundedBySquareDistance()
+	{
+		final List< Spot > spots = createSpots( new Random( 2l ), 20, false );
+		for ( final Spot spot : spots )
+			spot.putFeature( "FEATURE", 1. + spot.getDoublePosition( 0 ) * spot.getDoublePosition( 0 ) );
+		assertTrue( GridCandidateSearch.isBoundedBySquareDistance( new SquareDistCostFunction(), null, spots ) );
+
+		final Map< String, Double > penalties = new HashMap<>();
+		penalties.put( "FEATURE", 1. );
+		final FeaturePenaltyCostFunction costFunction = new FeaturePenaltyCostFunction( penalties );
+		assertTrue( GridCandidateSearch.isBoundedBySquareDistance( costFunction, penalties, spots ) );
+		for ( final Spot source : spots )
+			for ( final Spot target : spots )
+				assertTrue( costFunction.linkingCost( source, target ) >= source.squareDistanceTo( target ) );
+
+		// Negative factor.
+		penalties.put( "FEATURE", -1. );
+		assertFalse( GridCandidateSearch.isBoundedBySquareDistance( costFunction, penalties, spots ) );
+
+		// Negative feature values: the penalty can be smaller than 1.
+		penalties.put( "FEATURE", 1. );
+		final Spot source = new Spot( 0., 0., 0., 1., 1. );
+		source.putFeature( "FEATURE", -3. );
+		final Spot target = new Spot( 1., 0., 0., 1., 1. );
+		target.putFeature( "FEATURE", -1. );
+		assertTrue( costFunction.linkingCost( source, target ) < source.squareDistanceTo( target ) );
+		assertFalse( GridCandidateSearch.isBoundedBySquareDistance( costFunction, penalties, Arrays.asList( source, target ) ) );
+		spots.add( source );
+		assertFalse( GridCandidateSearch.isBoundedBySquareDistance( costFunction, penalties, spots ) );
+	}
+
+	private static List< Spot > createSpots( final Random ran, final int n, final boolean flat )
+	{
+		final List< Spot > spots = new ArrayList<>( n );
+		for ( int i = 0; i < n; i++ )
+			spots.add( new Spot( 50. * ran.nextDouble() - 10., 20. * ran.nextDouble(), flat ? 0. : 10. * ran.nextDouble(), 1., 1. ) );
+		return spots;
+	}
+}
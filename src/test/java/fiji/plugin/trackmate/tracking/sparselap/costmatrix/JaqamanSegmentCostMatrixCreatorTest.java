@@ -0,0 +1,198 @@
+package fiji.plugin.trackmate.tracking.sparselap.costmatrix;
+
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_GAP_CLOSING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_TRACK_MERGING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_ALLOW_TRACK_SPLITTING;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_BLOCKING_VALUE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_FEATURE_PENALTIES;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_GAP_CLOSING_MAX_FRAME_GAP;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_FEATURE_PENALTIES;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_LINKING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_FEATURE_PENALTIES;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_MERGING_MAX_DISTANCE;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_FEATURE_PENALTIES;
+import static fiji.plugin.trackmate.tracking.TrackerKeys.KEY_SPLITTING_MAX_DISTANCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.tracking.LAPUtils;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.CostFunction;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.FeaturePenaltyCostFunction;
+import fiji.plugin.trackmate.tracking.sparselap.costfunction.SquareDistCostFunction;
+import fiji.plugin.trackmate.tracking.sparselap.linker.SparseCostMatrix;
+
+public class JaqamanSegmentCostMatrixCreatorTest
+{
+
+	private static final String FEATURE = "FEATURE";
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testSameAsAllPairs()
+	{
+		final Random ran = new Random( 1l );
+		for ( final int maxFrameInterval : new int[] { 0, 1, 2, 4 } )
+		{
+			for ( final boolean penalized : new boolean[] { false, true } )
+			{
+				// Negative feature values: no grid for the penalized costs.
+				for ( final boolean negative : new boolean[] { false, true } )
+				{
+					final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = createTracks( ran, 60, 20, negative );
+					final Map< String, Object > settings = LAPUtils.getDefaultLAPSettingsMap();
+					// Frame-to-frame linking settings.
+					settings.remove( KEY_LINKING_MAX_DISTANCE );
+					settings.remove( KEY_LINKING_FEATURE_PENALTIES );
+					settings.remove( KEY_BLOCKING_VALUE );
+					settings.put( KEY_ALLOW_GAP_CLOSING, true );
+					settings.put( KEY_GAP_CLOSING_MAX_FRAME_GAP, maxFrameInterval );
+					settings.put( KEY_GAP_CLOSING_MAX_DISTANCE, 8. );
+					settings.put( KEY_ALLOW_TRACK_MERGING, true );
+					settings.put( KEY_MERGING_MAX_DISTANCE, 5. );
+					settings.put( KEY_ALLOW_TRACK_SPLITTING, true );
+					settings.put( KEY_SPLITTING_MAX_DISTANCE, 6. );
+					if ( penalized )
+					{
+						( ( Map< String, Double > ) settings.get( KEY_GAP_CLOSING_FEATURE_PENALTIES ) ).put( FEATURE, 1. );
+						( ( Map< String, Double > ) settings.get( KEY_MERGING_FEATURE_PENALTIES ) ).put( FEATURE, 0.5 );
+						( ( Map< String, Double > ) settings.get( KEY_SPLITTING_FEATURE_PENALTIES ) ).put( FEATURE, 2. );
+					}
+
+					final String msg = "maxFrameInterval = " + maxFrameInterval + ", penalized = " + penalized + ", negative = " + negative;
+					final Map< Spot, Map< Spot, Double > > expected = allPairs( graph, settings );
+
+					for ( final int numThreads : new int[] { 1, 4 } )
+					{
+						final JaqamanSegmentCostMatrixCreator creator = new JaqamanSegmentCostMatrixCreator( graph, settings );
+						creator.setNumThreads( numThreads );
+						if ( !creator.checkInput() || !creator.process() )
+							fail( msg + ": " + creator.getErrorMessage() );
+
+						final SparseCostMatrix scm = creator.getResult();
+						final List< Spot > sources = creator.getSourceList();
+						final List< Spot > targets = creator.getTargetList();
+						int nExpected = 0;
+						for ( final Map< Spot, Double > row : expected.values() )
+							nExpected += row.size();
+						if ( nExpected == 0 )
+						{
+							assertTrue( msg, sources.isEmpty() && targets.isEmpty() );
+							continue;
+						}
+
+						assertNotNull( msg, scm );
+						assertEquals( msg, nExpected, scm.getCosts().length );
+						for ( int i = 0; i < sources.size(); i++ )
+						{
+							final Map< Spot, Double > row = expected.get( sources.get( i ) );
+							assertNotNull( msg, row );
+							for ( int j = 0; j < targets.size(); j++ )
+							{
+								final double cost = scm.get( i, j, Double.NaN );
+								if ( Double.isNaN( cost ) )
+									continue;
+								final Double expectedCost = row.get( targets.get( j ) );
+								assertNotNull( msg, expectedCost );
+								assertEquals( msg, expectedCost.doubleValue(), cost, 0. );
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates linear tracks of random length, starting at random frames, with
+	 * small random displacements, so that track ends have candidates in
+	 * several of the next frames.
+	 */
+	private static SimpleWeightedGraph< Spot, DefaultWeightedEdge > createTracks( final Random ran, final int nTracks, final int nFrames, final boolean negative )
+	{
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+		for ( int t = 0; t < nTracks; t++ )
+		{
+			final int start = ran.nextInt( nFrames );
+			final int length = 1 + ran.nextInt( 6 );
+			double x = 40. * ran.nextDouble();
+			double y = 40. * ran.nextDouble();
+			Spot previous = null;
+			for ( int frame = start; frame < Math.min( nFrames, start + length ); frame++ )
+			{
+				final Spot spot = new Spot( x, y, 0., 1., 1. );
+				spot.putFeature( Spot.FRAME, Double.valueOf( frame ) );
+				spot.putFeature( FEATURE, ( negative ? -5. : 1. ) + 10. * ran.nextDouble() );
+				graph.addVertex( spot );
+				if ( null != previous )
+					graph.addEdge( previous, spot );
+				previous = spot;
+				x += 2. * ran.nextGaussian();
+				y += 2. * ran.nextGaussian();
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * The costs of all the pairs of spots that can be linked, as computed by
+	 * iterating over all the targets of each source.
+	 */
+	private static Map< Spot, Map< Spot, Double > > allPairs( final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph, final Map< String, Object > settings )
+	{
+		final GraphSegmentSplitter segmentSplitter = new GraphSegmentSplitter( graph, true );
+		final List< Spot > segmentEnds = segmentSplitter.getSegmentEnds();
+		final List< Spot > segmentStarts = segmentSplitter.getSegmentStarts();
+		final List< Spot > allMiddles = new ArrayList<>();
+		for ( final List< Spot > segment : segmentSplitter.getSegmentMiddles() )
+			allMiddles.addAll( segment );
+
+		final int maxFrameInterval = ( Integer ) settings.get( KEY_GAP_CLOSING_MAX_FRAME_GAP );
+		final Map< Spot, Map< Spot, Double > > links = new HashMap<>();
+		for ( final Spot source : segmentEnds )
+		{
+			addLinks( links, source, segmentStarts, 1, maxFrameInterval, ( Double ) settings.get( KEY_GAP_CLOSING_MAX_DISTANCE ), costFunction( settings, KEY_GAP_CLOSING_FEATURE_PENALTIES ) );
+			addLinks( links, source, allMiddles, 1, 1, ( Double ) settings.get( KEY_MERGING_MAX_DISTANCE ), costFunction( settings, KEY_MERGING_FEATURE_PENALTIES ) );
+		}
+		for ( final Spot source : allMiddles )
+			addLinks( links, source, segmentStarts, 1, 1, ( Double ) settings.get( KEY_SPLITTING_MAX_DISTANCE ), costFunction( settings, KEY_SPLITTING_FEATURE_PENALTIES ) );
+		return links;
+	}
+
+	private static void addLinks( final Map< Spot, Map< Spot, Double > > links, final Spot source, final List< Spot > targets, final int minFrameInterval, final int maxFrameInterval, final double maxDistance, final CostFunction< Spot, Spot > costFunction )
+	{
+		final int sourceFrame = source.getFeature( Spot.FRAME ).intValue();
+		for ( final Spot target : targets )
+		{
+			final int tdiff = target.getFeature( Spot.FRAME ).intValue() - sourceFrame;
+			if ( tdiff < minFrameInterval || tdiff > maxFrameInterval )
+				continue;
+			final double cost = costFunction.linkingCost( source, target );
+			if ( cost > maxDistance * maxDistance )
+				continue;
+			links.computeIfAbsent( source, s -> new HashMap<>() ).put( target, cost );
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static CostFunction< Spot, Spot > costFunction( final Map< String, Object > settings, final String key )
+	{
+		final Map< String, Double > featurePenalties = ( Map< String, Double > ) settings.get( key );
+		if ( featurePenalties.isEmpty() )
+			return new SquareDistCostFunction();
+		return new FeaturePenaltyCostFunction( featurePenalties );
+	}
+}
@@ -0,0 +1,195 @@
+package fiji.plugin.trackmate.tracking.sparselap.linker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class AuctionLAPTest
+{
+
+	@Test
+	public void testSameCostAsLAPJV()
+	{
+		final Random ran = new Random( 1l );
+		for ( final int n : new int[] { 1, 5, 50, 3000 } )
+		{
+			for ( final boolean integer : new boolean[] { true, false } )
+			{
+				final SparseCostMatrix cm = createMatrix( ran, n, integer );
+
+				final LAPJV lapjv = new LAPJV( cm );
+				assertTrue( lapjv.checkInput() && lapjv.process() );
+				final double expected = cm.totalAssignmentCost( lapjv.getResult() );
+				for ( int i = 0; i < n; i++ )
+					assertEquals( cm.get( i, lapjv.getResult()[ i ], Double.NaN ), lapjv.getAssignmentCosts()[ i ], 0. );
+
+				int[] previous = null;
+				for ( final int numThreads : new int[] { 1, 3 } )
+				{
+					final AuctionLAP auction = new AuctionLAP( cm );
+					auction.setNumThreads( numThreads );
+					final boolean ok = auction.checkInput() && auction.process();
+					assertTrue( auction.getErrorMessage(), ok );
+					final int[] assignment = auction.getResult();
+
+					// A permutation using only the candidate links.
+					final boolean[] assigned = new boolean[ n ];
+					for ( int i = 0; i < n; i++ )
+					{
+						assertFalse( assigned[ assignment[ i ] ] );
+						assigned[ assignment[ i ] ] = true;
+						assertTrue( Double.isFinite( cm.get( i, assignment[ i ], Double.NaN ) ) );
+						assertEquals( cm.get( i, assignment[ i ], Double.NaN ), auction.getAssignmentCosts()[ i ], 0. );
+					}
+
+					final double actual = cm.totalAssignmentCost( assignment );
+					if ( integer )
+						assertEquals( expected, actual, 0. );
+					else
+						assertEquals( expected, actual, 1e-6 * 100. );
+
+					// Does not depend on the number of threads.
+					if ( null != previous )
+						assertArrayEquals( previous, assignment );
+					previous = assignment;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRejectsNonSquareMatrices()
+	{
+		final SparseCostMatrix cm = new SparseCostMatrix( new double[] { 1., 2. }, new int[] { 0, 1 }, new int[] { 2 }, 2 );
+		assertFalse( new AuctionLAP( cm ).checkInput() );
+	}
+
+	@Test( timeout = 60000 )
+	public void testNoCompleteAssignment()
+	{
+		// Two rows competing for the same single column.
+		final SparseCostMatrix small = new SparseCostMatrix( new double[] { 1., 2., 1., 2., 3. }, new int[] { 0, 0, 0, 1, 2 }, new int[] { 1, 1, 3 }, 3 );
+		assertNoCompleteAssignment( small, 1 );
+
+		/*
+		 * Three rows sharing two columns, in a large matrix bid in parallel.
+		 * The last row takes the costs of the columns they left.
+		 */
+		final Random ran = new Random( 2l );
+		for ( final boolean integer : new boolean[] { true, false } )
+		{
+			final SparseCostMatrix cm = createMatrix( ran, 3000, integer );
+			final int n = cm.nRows;
+			final List< TreeMap< Integer, Double > > rows = new ArrayList<>( n );
+			for ( int i = 0; i < n; i++ )
+			{
+				final TreeMap< Integer, Double > row = new TreeMap<>();
+				for ( int k = cm.start[ i ]; k < cm.start[ i ] + cm.number[ i ]; k++ )
+					row.put( cm.kk[ k ], cm.cc[ k ] );
+				rows.add( row );
+			}
+			final int[] shared = new int[] { rows.get( 0 ).firstKey(), rows.get( 1 ).firstKey() };
+			for ( int i = 0; i < 3; i++ )
+			{
+				for ( final Integer j : rows.get( i ).keySet() )
+					rows.get( n - 1 ).put( j, 1. + ran.nextInt( 100 ) );
+				rows.get( i ).clear();
+				for ( final int j : shared )
+					rows.get( i ).put( j, 1. + i + j % 7 );
+			}
+
+			final int[] number = new int[ n ];
+			int cardinality = 0;
+			for ( int i = 0; i < n; i++ )
+			{
+				number[ i ] = rows.get( i ).size();
+				cardinality += number[ i ];
+			}
+			final double[] cc = new double[ cardinality ];
+			final int[] kk = new int[ cardinality ];
+			int index = 0;
+			for ( final TreeMap< Integer, Double > row : rows )
+			{
+				for ( final Integer j : row.keySet() )
+				{
+					kk[ index ] = j.intValue();
+					cc[ index ] = row.get( j ).doubleValue();
+					index++;
+				}
+			}
+			final SparseCostMatrix infeasible = new SparseCostMatrix( cc, kk, number, n );
+			assertNoCompleteAssignment( infeasible, 1 );
+			assertNoCompleteAssignment( infeasible, 3 );
+		}
+	}
+
+	/**
+	 * Checks that the auction stops with an error on a matrix without a
+	 * complete assignment.
+	 */
+	private static void assertNoCompleteAssignment( final SparseCostMatrix cm, final int numThreads )
+	{
+		final AuctionLAP auction = new AuctionLAP( cm );
+		auction.setNumThreads( numThreads );
+		assertTrue( auction.checkInput() );
+		assertFalse( auction.process() );
+		assertTrue( auction.getErrorMessage().contains( "does not admit a complete assignment" ) );
+		assertNull( auction.getResult() );
+	}
+
+	/**
+	 * Creates a square sparse cost matrix with a complete assignment, with
+	 * about 5 costs per row.
+	 */
+	private static SparseCostMatrix createMatrix( final Random ran, final int n, final boolean integer )
+	{
+		final int[] permutation = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			permutation[ i ] = i;
+		for ( int i = n - 1; i > 0; i-- )
+		{
+			final int k = ran.nextInt( i + 1 );
+			final int tmp = permutation[ i ];
+			permutation[ i ] = permutation[ k ];
+			permutation[ k ] = tmp;
+		}
+
+		final int[] number = new int[ n ];
+		final int[][] cols = new int[ n ][];
+		int cardinality = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			final int[] row = new int[ 1 + ran.nextInt( 8 ) ];
+			row[ 0 ] = permutation[ i ];
+			for ( int k = 1; k < row.length; k++ )
+				row[ k ] = ran.nextInt( n );
+			cols[ i ] = Arrays.stream( row ).distinct().sorted().toArray();
+			number[ i ] = cols[ i ].length;
+			cardinality += number[ i ];
+		}
+
+		final double[] cc = new double[ cardinality ];
+		final int[] kk = new int[ cardinality ];
+		int index = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			for ( final int j : cols[ i ] )
+			{
+				kk[ index ] = j;
+				cc[ index ] = integer ? 1 + ran.nextInt( 100 ) : 1. + 99. * ran.nextDouble();
+				index++;
+			}
+		}
+		return new SparseCostMatrix( cc, kk, number, n );
+	}
+}
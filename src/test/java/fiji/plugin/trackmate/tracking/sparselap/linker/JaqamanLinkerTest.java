@@ -0,0 +1,262 @@
+package fiji.plugin.trackmate.tracking.sparselap.linker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.tracking.TrackerKeys;
+import fiji.plugin.trackmate.tracking.sparselap.costmatrix.CostMatrixCreator;
+import fiji.plugin.trackmate.tracking.sparselap.costmatrix.DefaultCostMatrixCreator;
+import net.imglib2.util.Util;
+
+public class JaqamanLinkerTest
+{
+
+	@Test
+	public void testSameAsMonolithicSolve()
+	{
+		final Random ran = new Random( 1l );
+		for ( int trial = 0; trial < 40; trial++ )
+		{
+			/*
+			 * Clusters of candidate links, including single links.
+			 */
+			final List< Integer > rows = new ArrayList<>();
+			final List< Integer > cols = new ArrayList<>();
+			final List< Double > costs = new ArrayList<>();
+			final Set< String > pairs = new HashSet<>();
+			int offset = 0;
+			final int nClusters = 1 + ran.nextInt( 50 );
+			for ( int c = 0; c < nClusters; c++ )
+			{
+				final int size = 1 + ran.nextInt( 6 );
+				final int nLinks = ran.nextBoolean() ? 1 : size * 2;
+				for ( int l = 0; l < nLinks; l++ )
+				{
+					final int row = offset + ran.nextInt( size );
+					final int col = offset + ran.nextInt( size );
+					if ( pairs.add( row + " " + col ) )
+					{
+						rows.add( row );
+						cols.add( col );
+						// Integer costs in half of the trials, to have ties.
+						costs.add( trial % 2 == 0 ? 1. + 100. * ran.nextDouble() : 1. + ran.nextInt( 5 ) );
+					}
+				}
+				offset += size;
+			}
+			final double[] cc = new double[ costs.size() ];
+			for ( int i = 0; i < cc.length; i++ )
+				cc[ i ] = costs.get( i );
+
+			final DefaultCostMatrixCreator< Integer, Integer > reference = new DefaultCostMatrixCreator<>( rows, cols, cc, 1., 0.5 );
+			assertTrue( reference.checkInput() && reference.process() );
+			final Map< Integer, Integer > expected = solveMonolithic( reference );
+			for ( final int numThreads : new int[] { 1, 3 } )
+			{
+				final DefaultCostMatrixCreator< Integer, Integer > creator = new DefaultCostMatrixCreator<>( rows, cols, cc, 1., 0.5 );
+				final JaqamanLinker< Integer, Integer > linker = new JaqamanLinker<>( creator );
+				linker.setNumThreads( numThreads );
+				linker.setSolver( TrackerKeys.LAP_SOLVER_JONKER_VOLGENANT );
+				final boolean ok = linker.checkInput() && linker.process();
+				assertTrue( linker.getErrorMessage(), ok );
+				// Ties are broken as when solving the whole matrix.
+				assertEquals( expected, linker.getResult() );
+				assertEquals( totalCost( creator, expected ), totalCost( creator, linker.getResult() ), 1e-9 );
+
+				final SparseCostMatrix tl = creator.getResult();
+				for ( final Integer source : linker.getResult().keySet() )
+				{
+					final int i = creator.getSourceList().indexOf( source );
+					final int j = creator.getTargetList().indexOf( linker.getResult().get( source ) );
+					assertEquals( tl.get( i, j, Double.NaN ), linker.getAssignmentCosts().get( source ).doubleValue(), 0. );
+				}
+			}
+
+			final DefaultCostMatrixCreator< Integer, Integer > creator = new DefaultCostMatrixCreator<>( rows, cols, cc, 1., 0.5 );
+			final JaqamanLinker< Integer, Integer > linker = new JaqamanLinker<>( creator );
+			linker.setSolver( TrackerKeys.LAP_SOLVER_AUCTION );
+			final boolean ok = linker.checkInput() && linker.process();
+			assertTrue( linker.getErrorMessage(), ok );
+			assertEquals( totalCost( creator, expected ), totalCost( creator, linker.getResult() ), 1e-3 );
+		}
+	}
+
+	/**
+	 * Returns the cost of the specified assignments in the full cost matrix.
+	 */
+	private static double totalCost( final DefaultCostMatrixCreator< Integer, Integer > creator, final Map< Integer, Integer > assignments )
+	{
+		final SparseCostMatrix tl = creator.getResult();
+		final double alternativeCost = creator.getAlternativeCostForSource( null );
+		double cost = 0.;
+		for ( final Integer source : assignments.keySet() )
+			cost += tl.get( creator.getSourceList().indexOf( source ), creator.getTargetList().indexOf( assignments.get( source ) ), Double.NaN ) + alternativeCost;
+		cost += ( tl.getNRows() - assignments.size() ) * alternativeCost;
+		cost += ( tl.getNCols() - assignments.size() ) * alternativeCost;
+		return cost;
+	}
+
+	@Test
+	public void testSingleLinkTies()
+	{
+		/*
+		 * Two independent single links. The alternative costs of the second
+		 * one set the smallest alternative cost. We scan the costs of the
+		 * first one, with many ties.
+		 */
+		for ( int cost = 1; cost <= 6; cost++ )
+			for ( int altSource = 1; altSource <= 4; altSource++ )
+				for ( int altTarget = 1; altTarget <= 4; altTarget++ )
+					for ( int minCost = 1; minCost <= Math.min( altSource, altTarget ); minCost++ )
+					{
+						final SingleLinksCreator reference = new SingleLinksCreator( cost, altSource, altTarget, minCost );
+						assertTrue( reference.checkInput() && reference.process() );
+						final Map< Integer, Integer > expected = solveMonolithic( reference );
+
+						final JaqamanLinker< Integer, Integer > linker = new JaqamanLinker<>( new SingleLinksCreator( cost, altSource, altTarget, minCost ) );
+						linker.setSolver( TrackerKeys.LAP_SOLVER_JONKER_VOLGENANT );
+						assertTrue( linker.getErrorMessage(), linker.checkInput() && linker.process() );
+						assertEquals( "cost = " + cost + ", altSource = " + altSource + ", altTarget = " + altTarget + ", minCost = " + minCost,
+								expected, linker.getResult() );
+					}
+	}
+
+	/**
+	 * Solves the full cost matrix of the specified processed creator in one
+	 * go.
+	 */
+	private static Map< Integer, Integer > solveMonolithic( final CostMatrixCreator< Integer, Integer > creator )
+	{
+		final SparseCostMatrix tl = creator.getResult();
+		final int nRows = tl.getNRows();
+		final int nCols = tl.getNCols();
+
+		final double[] cctr = new double[ nRows ];
+		final int[] kktr = new int[ nRows ];
+		for ( int i = 0; i < nRows; i++ )
+		{
+			kktr[ i ] = i;
+			cctr[ i ] = creator.getAlternativeCostForSource( creator.getSourceList().get( i ) );
+		}
+		final int[] numbertr = new int[ nRows ];
+		Arrays.fill( numbertr, 1 );
+		final SparseCostMatrix tr = new SparseCostMatrix( cctr, kktr, numbertr, nRows );
+
+		final double[] ccbl = new double[ nCols ];
+		final int[] kkbl = new int[ nCols ];
+		for ( int j = 0; j < nCols; j++ )
+		{
+			kkbl[ j ] = j;
+			ccbl[ j ] = creator.getAlternativeCostForTarget( creator.getTargetList().get( j ) );
+		}
+		final int[] numberbl = new int[ nCols ];
+		Arrays.fill( numberbl, 1 );
+		final SparseCostMatrix bl = new SparseCostMatrix( ccbl, kkbl, numberbl, nCols );
+
+		final SparseCostMatrix br = tl.transpose();
+		br.fillWith( Math.min( Util.min( ccbl ), Util.min( cctr ) ) );
+
+		final SparseCostMatrix full = ( tl.hcat( tr ) ).vcat( bl.hcat( br ) );
+		final LAPJV solver = new LAPJV( full );
+		assertTrue( solver.checkInput() && solver.process() );
+
+		final int[] assgn = solver.getResult();
+		final Map< Integer, Integer > assignments = new HashMap<>();
+		for ( int i = 0; i < nRows; i++ )
+			if ( assgn[ i ] < nCols )
+				assignments.put( creator.getSourceList().get( i ), creator.getTargetList().get( assgn[ i ] ) );
+		return assignments;
+	}
+
+	/**
+	 * Two sources and two targets, with a single candidate link between the
+	 * first ones, and one between the second ones.
+	 */
+	private static final class SingleLinksCreator implements CostMatrixCreator< Integer, Integer >
+	{
+
+		private final double cost;
+
+		private final double altSource;
+
+		private final double altTarget;
+
+		private final double minCost;
+
+		private SparseCostMatrix scm;
+
+		private SingleLinksCreator( final double cost, final double altSource, final double altTarget, final double minCost )
+		{
+			this.cost = cost;
+			this.altSource = altSource;
+			this.altTarget = altTarget;
+			this.minCost = minCost;
+		}
+
+		@Override
+		public boolean checkInput()
+		{
+			return true;
+		}
+
+		@Override
+		public boolean process()
+		{
+			scm = new SparseCostMatrix( new double[] { cost, 10. }, new int[] { 0, 1 }, new int[] { 1, 1 }, 2 );
+			return true;
+		}
+
+		@Override
+		public String getErrorMessage()
+		{
+			return null;
+		}
+
+		@Override
+		public SparseCostMatrix getResult()
+		{
+			return scm;
+		}
+
+		@Override
+		public List< Integer > getSourceList()
+		{
+			return Arrays.asList( 0, 1 );
+		}
+
+		@Override
+		public List< Integer > getTargetList()
+		{
+			return Arrays.asList( 0, 1 );
+		}
+
+		@Override
+		public double getAlternativeCostForSource( final Integer source )
+		{
+			return source.intValue() == 0 ? altSource : minCost;
+		}
+
+		@Override
+		public double getAlternativeCostForTarget( final Integer target )
+		{
+			return target.intValue() == 0 ? altTarget : minCost;
+		}
+
+		@Override
+		public long getProcessingTime()
+		{
+			return 0;
+		}
+	}
+}
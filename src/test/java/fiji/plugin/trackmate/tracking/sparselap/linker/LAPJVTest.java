@@ -0,0 +1,92 @@
+package fiji.plugin.trackmate.tracking.sparselap.linker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LAPJVTest
+{
+
+	@Test
+	public void testOptimalWithReusedWorkspace()
+	{
+		final Random ran = new Random( 1l );
+		// Decreasing and increasing sizes, so that the workspace is reused
+		// with stale values and grown.
+		for ( final int n : new int[] { 7, 3, 1, 6, 2, 5, 7, 4 } )
+		{
+			for ( int t = 0; t < 20; t++ )
+			{
+				final SparseCostMatrix cm = createMatrix( ran, n );
+				final LAPJV lapjv = new LAPJV( cm );
+				final boolean ok = lapjv.checkInput() && lapjv.process();
+				assertTrue( lapjv.getErrorMessage(), ok );
+
+				final int[] assignment = lapjv.getResult();
+				final double[] costs = lapjv.getAssignmentCosts();
+				final boolean[] assigned = new boolean[ n ];
+				for ( int i = 0; i < n; i++ )
+				{
+					assertFalse( assigned[ assignment[ i ] ] );
+					assigned[ assignment[ i ] ] = true;
+					assertEquals( cm.get( i, assignment[ i ], Double.NaN ), costs[ i ], 0. );
+				}
+				assertEquals( bruteForce( cm, 0, new boolean[ n ] ), cm.totalAssignmentCost( assignment ), 1e-9 );
+			}
+		}
+	}
+
+	/**
+	 * Returns the minimal cost of the assignment of the rows from the
+	 * specified one, to the columns not used yet.
+	 */
+	private static double bruteForce( final SparseCostMatrix cm, final int i, final boolean[] used )
+	{
+		if ( i == cm.getNRows() )
+			return 0.;
+		double min = Double.POSITIVE_INFINITY;
+		for ( int j = 0; j < cm.getNCols(); j++ )
+		{
+			final double cost = cm.get( i, j, Double.NaN );
+			if ( used[ j ] || Double.isNaN( cost ) )
+				continue;
+			used[ j ] = true;
+			min = Math.min( min, cost + bruteForce( cm, i + 1, used ) );
+			used[ j ] = false;
+		}
+		return min;
+	}
+
+	/**
+	 * Creates a square sparse cost matrix with a complete assignment on the
+	 * diagonal, plus random costs.
+	 */
+	private static SparseCostMatrix createMatrix( final Random ran, final int n )
+	{
+		final int[] number = new int[ n ];
+		final double[] ccFull = new double[ n * n ];
+		final int[] kkFull = new int[ n * n ];
+		int index = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			for ( int j = 0; j < n; j++ )
+			{
+				if ( i != j && ran.nextDouble() > 0.5 )
+					continue;
+				ccFull[ index ] = 1. + ran.nextInt( 20 );
+				kkFull[ index ] = j;
+				index++;
+				number[ i ]++;
+			}
+		}
+		final double[] cc = new double[ index ];
+		final int[] kk = new int[ index ];
+		System.arraycopy( ccFull, 0, cc, 0, index );
+		System.arraycopy( kkFull, 0, kk, 0, index );
+		return new SparseCostMatrix( cc, kk, number, n );
+	}
+}
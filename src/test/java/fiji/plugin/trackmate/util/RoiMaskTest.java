@@ -0,0 +1,107 @@
+package fiji.plugin.trackmate.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+import ij.gui.OvalRoi;
+import ij.gui.PolygonRoi;
+import ij.gui.Roi;
+
+public class RoiMaskTest
+{
+
+	@Test
+	public void testSameAsRoi()
+	{
+		final Roi[] rois = new Roi[] {
+				new Roi( 10, 20, 30, 15 ),
+				new OvalRoi( 5, 8, 40, 25 ),
+				new PolygonRoi( new int[] { 10, 50, 30, 12 }, new int[] { 5, 10, 45, 30 }, 4, Roi.POLYGON ) };
+
+		for ( final Roi roi : rois )
+		{
+			final RoiMask mask = new RoiMask( roi, 0, 99, 0, 99 );
+			for ( int y = 0; y < 60; y++ )
+				for ( int x = 0; x < 60; x++ )
+					assertEquals( roi + " at " + x + ", " + y, roi.contains( x, y ), mask.contains( x, y ) );
+		}
+	}
+
+	@Test
+	public void testCrop()
+	{
+		final Roi roi = new OvalRoi( 5, 8, 40, 25 );
+		final RoiMask mask = new RoiMask( roi, 20, 30, 0, 15 );
+		assertEquals( 20, mask.xmin() );
+		assertEquals( 30, mask.xmax() );
+		assertEquals( 8, mask.ymin() );
+		assertEquals( 15, mask.ymax() );
+		for ( int y = 0; y < 60; y++ )
+			for ( int x = 0; x < 60; x++ )
+			{
+				final boolean inCrop = x >= 20 && x <= 30 && y <= 15;
+				assertEquals( inCrop && roi.contains( x, y ), mask.contains( x, y ) );
+			}
+
+		assertTrue( new RoiMask( roi, 60, 80, 0, 99 ).isEmpty() );
+		assertFalse( mask.isEmpty() );
+	}
+
+	@Test
+	public void testFilter()
+	{
+		final double[] calibration = new double[] { 0.5, 0.25 };
+		final Roi roi = new Roi( 10, 20, 30, 15 );
+		final RoiMask mask = new RoiMask( roi, 0, 99, 0, 99 );
+
+		/*
+		 * Several spots per frame inside the ROI, and some outside, so that
+		 * all the spots of a frame must be kept, not only the last one.
+		 */
+		final SpotCollection spots = new SpotCollection();
+		final int nFrames = 3;
+		for ( int frame = 0; frame < nFrames; frame++ )
+		{
+			final List< Spot > list = new ArrayList<>();
+			for ( int x = 0; x < 50; x += 4 )
+				for ( int y = 0; y < 50; y += 4 )
+					list.add( new Spot( x * calibration[ 0 ], y * calibration[ 1 ], 0., 1., -1. ) );
+			spots.put( frame, list );
+		}
+
+		for ( int frame = 0; frame < nFrames; frame++ )
+		{
+			final List< Spot > kept = mask.filter( spots.iterable( frame, false ), calibration );
+			int expected = 0;
+			for ( final Spot spot : spots.iterable( frame, false ) )
+			{
+				final int x = ( int ) Math.round( spot.getDoublePosition( 0 ) / calibration[ 0 ] );
+				final int y = ( int ) Math.round( spot.getDoublePosition( 1 ) / calibration[ 1 ] );
+				if ( roi.contains( x, y ) )
+				{
+					expected++;
+					assertTrue( kept.contains( spot ) );
+				}
+			}
+			assertTrue( expected > 1 );
+			assertEquals( expected, kept.size() );
+		}
+	}
+
+	@Test
+	public void testMargin()
+	{
+		// 3 times the radius, in pixels, rounded up.
+		assertArrayEquals( new long[] { 15, 30 }, RoiMask.margin( 5., new double[] { 1., 0.5 } ) );
+		assertArrayEquals( new long[] { 8, 3 }, RoiMask.margin( 2.5, new double[] { 1., 2.5 } ) );
+	}
+}
@@ -0,0 +1,180 @@
+package fiji.plugin.trackmate.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+
+public class SpotSpatialIndexTest
+{
+
+	private static final int N_SPOTS = 2000;
+
+	private static final int N_QUERIES = 200;
+
+	private List< Spot > spots;
+
+	private Random ran;
+
+	@Before
+	public void setUp()
+	{
+		ran = new Random( 1l );
+		spots = new ArrayList<>( N_SPOTS );
+		for ( int i = 0; i < N_SPOTS; i++ )
+			spots.add( new Spot( 100. * ran.nextDouble(), 100. * ran.nextDouble(), 10. * ran.nextDouble(), 0.5 + 2. * ran.nextDouble(), i ) );
+	}
+
+	@Test
+	public void testNearest()
+	{
+		final SpotSpatialIndex index = new SpotSpatialIndex( spots );
+		final Predicate< Spot > even = s -> s.getFeature( Spot.QUALITY ).intValue() % 2 == 0;
+		for ( int q = 0; q < N_QUERIES; q++ )
+		{
+			final Spot query = randomLocation();
+			assertSame( bruteForceNearest( query, null ), index.nearest( query, null ) );
+			assertSame( bruteForceNearest( query, even ), index.nearest( query, even ) );
+		}
+		assertNull( index.nearest( randomLocation(), s -> false ) );
+		assertNull( new SpotSpatialIndex( new ArrayList<>() ).nearest( randomLocation(), null ) );
+	}
+
+	@Test
+	public void testKNearest()
+	{
+		final SpotSpatialIndex index = new SpotSpatialIndex( spots );
+		final int k = 7;
+		for ( int q = 0; q < N_QUERIES; q++ )
+		{
+			final Spot query = randomLocation();
+			final List< Spot > expected = new ArrayList<>( spots );
+			expected.sort( Comparator.comparingDouble( s -> s.squareDistanceTo( query ) ) );
+			assertEquals( expected.subList( 0, k ), index.kNearest( query, k, null ) );
+		}
+	}
+
+	@Test
+	public void testWithinRadius()
+	{
+		final SpotSpatialIndex index = new SpotSpatialIndex( spots );
+		final double radius = 8.;
+		for ( int q = 0; q < N_QUERIES; q++ )
+		{
+			final Spot query = randomLocation();
+			final HashSet< Spot > expected = new HashSet<>();
+			for ( final Spot spot : spots )
+				if ( spot.squareDistanceTo( query ) <= radius * radius )
+					expected.add( spot );
+			assertEquals( expected, new HashSet<>( index.withinRadius( query, radius, null ) ) );
+		}
+	}
+
+	@Test
+	public void testWithinBox()
+	{
+		final SpotSpatialIndex index = new SpotSpatialIndex( spots );
+		final double[] min = new double[] { 20., 30., 2. };
+		final double[] max = new double[] { 45., 41., 8. };
+		final HashSet< Spot > expected = new HashSet<>();
+		final HashSet< Spot > expected2D = new HashSet<>();
+		for ( final Spot spot : spots )
+		{
+			final double x = spot.getDoublePosition( 0 );
+			final double y = spot.getDoublePosition( 1 );
+			final double z = spot.getDoublePosition( 2 );
+			if ( x >= min[ 0 ] && x <= max[ 0 ] && y >= min[ 1 ] && y <= max[ 1 ] )
+			{
+				expected2D.add( spot );
+				if ( z >= min[ 2 ] && z <= max[ 2 ] )
+					expected.add( spot );
+			}
+		}
+		assertEquals( expected, new HashSet<>( index.withinBox( min, max, null ) ) );
+		assertEquals( expected2D, new HashSet<>( index.withinBox(
+				new double[] { min[ 0 ], min[ 1 ] },
+				new double[] { max[ 0 ], max[ 1 ] }, null ) ) );
+	}
+
+	@Test
+	public void testSpotAt()
+	{
+		final SpotSpatialIndex index = new SpotSpatialIndex( spots );
+		for ( int q = 0; q < N_QUERIES; q++ )
+		{
+			final Spot query = randomLocation();
+			Spot expected = null;
+			double minD2 = Double.POSITIVE_INFINITY;
+			for ( final Spot spot : spots )
+			{
+				final double d2 = spot.squareDistanceTo( query );
+				final double r = spot.getFeature( Spot.RADIUS );
+				if ( d2 < Math.min( minD2, r * r ) )
+				{
+					minD2 = d2;
+					expected = spot;
+				}
+			}
+			assertSame( expected, index.spotAt( query, null ) );
+		}
+	}
+
+	@Test
+	public void testManyEqualCoordinates()
+	{
+		// Spots on a coarse pixel grid, in a single Z plane.
+		final List< Spot > gridSpots = new ArrayList<>();
+		for ( int i = 0; i < 50000; i++ )
+			gridSpots.add( new Spot( ran.nextInt( 10 ), ran.nextInt( 10 ), 0., 0.5, i ) );
+		final SpotSpatialIndex index = new SpotSpatialIndex( gridSpots );
+		for ( int q = 0; q < 20; q++ )
+		{
+			final Spot query = new Spot( 10. * ran.nextDouble(), 10. * ran.nextDouble(), 0., 1., -1. );
+			double minD2 = Double.POSITIVE_INFINITY;
+			final HashSet< Spot > expected = new HashSet<>();
+			for ( final Spot spot : gridSpots )
+			{
+				final double d2 = spot.squareDistanceTo( query );
+				minD2 = Math.min( minD2, d2 );
+				if ( d2 <= 2. * 2. )
+					expected.add( spot );
+			}
+			assertEquals( minD2, index.nearest( query, null ).squareDistanceTo( query ), 0. );
+			assertEquals( expected, new HashSet<>( index.withinRadius( query, 2., null ) ) );
+		}
+	}
+
+	private Spot randomLocation()
+	{
+		return new Spot( 110. * ran.nextDouble() - 5., 110. * ran.nextDouble() - 5., 10. * ran.nextDouble(), 1., -1. );
+	}
+
+	private Spot bruteForceNearest( final Spot location, final Predicate< Spot > filter )
+	{
+		Spot best = null;
+		double minD2 = Double.POSITIVE_INFINITY;
+		for ( final Spot spot : spots )
+		{
+			if ( null != filter && !filter.test( spot ) )
+				continue;
+			final double d2 = spot.squareDistanceTo( location );
+			if ( d2 < minD2 )
+			{
+				minD2 = d2;
+				best = spot;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,102 @@
+package fiji.plugin.trackmate.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.MaskDetectorFactory;
+import fiji.plugin.trackmate.detection.ThresholdDetector;
+import fiji.plugin.trackmate.detection.ThresholdDetectorFactory;
+import ij.gui.OvalRoi;
+import ij.gui.Roi;
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+public class TMUtilsTest
+{
+
+	@Test
+	public void testCropToRoi()
+	{
+		final ImgPlus< FloatType > img = new ImgPlus<>( ArrayImgs.floats( 100, 80, 5 ), "test", new AxisType[] { Axes.X, Axes.Y, Axes.TIME } );
+		final Interval full = new FinalInterval( img );
+		final long[] margin = RoiMask.margin( 2., new double[] { 1., 0.5 } );
+
+		// The ROI bounds, grown by 3 radii, time untouched.
+		final RoiMask mask = new RoiMask( new Roi( 40, 30, 10, 20 ), 0, 99, 0, 79 );
+		final Interval cropped = TMUtils.cropToRoi( full, img, mask, margin );
+		assertArrayEquals( new long[] { 34, 18, 0 }, Intervals.minAsLongArray( cropped ) );
+		assertArrayEquals( new long[] { 55, 61, 4 }, Intervals.maxAsLongArray( cropped ) );
+
+		// Clamped to the image.
+		final RoiMask border = new RoiMask( new OvalRoi( 2, 70, 96, 10 ), 0, 99, 0, 79 );
+		final Interval clamped = TMUtils.cropToRoi( full, img, border, margin );
+		assertArrayEquals( new long[] { 0, 58, 0 }, Intervals.minAsLongArray( clamped ) );
+		assertArrayEquals( new long[] { 99, 79, 4 }, Intervals.maxAsLongArray( clamped ) );
+
+		// The settings crop restricts the ROI.
+		final RoiMask crop = new RoiMask( new Roi( 40, 30, 10, 20 ), 45, 99, 0, 35 );
+		final Interval cropped2 = TMUtils.cropToRoi( full, img, crop, margin );
+		assertArrayEquals( new long[] { 39, 18, 0 }, Intervals.minAsLongArray( cropped2 ) );
+		assertArrayEquals( new long[] { 55, 47, 4 }, Intervals.maxAsLongArray( cropped2 ) );
+
+		// No ROI, or ROI outside the crop: unchanged.
+		assertSame( full, TMUtils.cropToRoi( full, img, null, margin ) );
+		assertSame( full, TMUtils.cropToRoi( full, img, new RoiMask( new Roi( 40, 30, 10, 20 ), 60, 99, 0, 79 ), margin ) );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testNoCropWithoutRadius()
+	{
+		/*
+		 * A blob straddling the left edge of a rectangular ROI, its center
+		 * inside.
+		 */
+		final ImgPlus< FloatType > img = new ImgPlus<>( ArrayImgs.floats( 100, 80, 10 ), "test", new AxisType[] { Axes.X, Axes.Y, Axes.Z } );
+		for ( final FloatType p : Views.interval( img, new long[] { 36, 32, 2 }, new long[] { 47, 41, 5 } ) )
+			p.set( 1f );
+		final long blobVolume = 12 * 10 * 4;
+		final double[] calibration = new double[] { 1., 1., 1. };
+		final Interval full = new FinalInterval( img );
+		final RoiMask mask = new RoiMask( new Roi( 40, 30, 20, 20 ), 0, 99, 0, 79 );
+
+		/*
+		 * The threshold and mask detectors have no radius: the margin is
+		 * unknown and the image must not be cropped to the ROI.
+		 */
+		final Map< String, Object > thresholdSettings = new ThresholdDetectorFactory<>().getDefaultSettings();
+		final Map< String, Object > maskSettings = new MaskDetectorFactory<>().getDefaultSettings();
+		for ( final Map< String, Object > detectorSettings : new Map[] { thresholdSettings, maskSettings } )
+		{
+			final long[] margin = RoiMask.margin( detectorSettings, calibration );
+			assertNull( margin );
+			final Interval interval = TMUtils.cropToRoi( full, img, mask, margin );
+			assertSame( full, interval );
+
+			final ThresholdDetector< FloatType > detector = new ThresholdDetector<>( img, interval, calibration, 0., false );
+			detector.setNumThreads( 2 );
+			assertTrue( detector.getErrorMessage(), detector.checkInput() && detector.process() );
+			final List< Spot > spots = mask.filter( detector.getResult(), calibration );
+			assertEquals( 1, spots.size() );
+			final Spot spot = spots.get( 0 );
+			assertEquals( 41.5, spot.getDoublePosition( 0 ), 1e-9 );
+			assertEquals( Math.pow( 3. * blobVolume / ( 4. * Math.PI ), 1. / 3. ), spot.getFeature( Spot.RADIUS ), 1e-9 );
+		}
+	}
+}